@@ -17,7 +17,6 @@ package com.google.cloud.teleport.datadog;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.api.client.http.ByteArrayContent;
 import com.google.api.client.http.GZipEncoding;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpBackOffIOExceptionHandler;
@@ -166,9 +165,10 @@ public abstract class DatadogEventPublisher {
    */
   @VisibleForTesting
   protected HttpContent getContent(List<DatadogEvent> events) {
-    String payload = DatadogEventSerializer.getPayloadString(events);
-    LOG.debug("Payload content: {}", payload);
-    return ByteArrayContent.fromString(CONTENT_TYPE, payload);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Payload content: {}", DatadogEventSerializer.getPayloadString(events));
+    }
+    return DatadogEventSerializer.getPayloadContent(CONTENT_TYPE, events);
   }
 
   static class HttpSendLogsUnsuccessfulResponseHandler implements HttpUnsuccessfulResponseHandler {
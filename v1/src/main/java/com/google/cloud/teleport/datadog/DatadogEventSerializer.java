@@ -15,6 +15,8 @@
  */
 package com.google.cloud.teleport.datadog;
 
+import com.google.api.client.http.HttpContent;
+import com.google.cloud.teleport.util.JsonEventsContent;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.nio.charset.StandardCharsets;
@@ -31,6 +33,14 @@ public class DatadogEventSerializer {
     return GSON.toJson(events);
   }
 
+  /**
+   * Utility method to get a payload {@link HttpContent} from a list of {@link DatadogEvent}s. The
+   * events are serialized while the content is written, without building the payload string.
+   */
+  public static HttpContent getPayloadContent(String type, List<DatadogEvent> events) {
+    return JsonEventsContent.array(type, GSON, events);
+  }
+
   /** Utility method to get payload string from a {@link DatadogEvent}. */
   public static String getPayloadString(DatadogEvent event) {
     return GSON.toJson(event);
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Value;
+import com.google.cloud.teleport.spanner.ImportTransform.ReadExportManifestFile;
+import com.google.cloud.teleport.spanner.ImportTransform.ReadTableManifestFile;
+import com.google.cloud.teleport.spanner.ImportTransform.ValidateInputFiles;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.ddl.Table;
+import com.google.cloud.teleport.spanner.proto.ExportProtos.Export;
+import com.google.cloud.teleport.spanner.proto.ExportProtos.ProtoDialect;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.gcp.spanner.LocalSpannerIO;
+import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
+import org.apache.beam.sdk.io.gcp.spanner.SpannerWriteResult;
+import org.apache.beam.sdk.options.ValueProvider;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.Reshuffle;
+import org.apache.beam.sdk.transforms.Wait;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.joda.time.Duration;
+
+/**
+ * Applies delta exports, written by {@link ExportTransform} with a base export, on top of an
+ * imported export.
+ *
+ * <p>Each delta export must be a delta of the previous one, the first one of the imported export.
+ * For each row, only the change of the latest delta export is applied: the changed rows are
+ * upserted by increasing interleaving depth, so that parents are written before their children, and
+ * then the deleted rows are deleted by decreasing depth. The input signals that the imported export
+ * is written, and is output once the delta exports are applied.
+ */
+class ApplyDeltaExports extends PTransform<PCollection<Ddl>, PCollection<Ddl>> {
+
+  private final SpannerConfig spannerConfig;
+  private final ValueProvider<String> importDirectory;
+  private final ValueProvider<String> deltaInputDirs;
+  private final PCollectionView<Ddl> ddlView;
+  private final PCollectionView<Dialect> dialectView;
+
+  ApplyDeltaExports(
+      SpannerConfig spannerConfig,
+      ValueProvider<String> importDirectory,
+      ValueProvider<String> deltaInputDirs,
+      PCollectionView<Ddl> ddlView,
+      PCollectionView<Dialect> dialectView) {
+    this.spannerConfig = spannerConfig;
+    this.importDirectory = importDirectory;
+    this.deltaInputDirs = deltaInputDirs;
+    this.ddlView = ddlView;
+    this.dialectView = dialectView;
+  }
+
+  @Override
+  public PCollection<Ddl> expand(PCollection<Ddl> imported) {
+    // The delta files are read while the imported export is written, only the writes wait.
+    PCollection<KV<Integer, Mutation>> changes =
+        imported
+            .getPipeline()
+            .apply("Start delta exports", Create.of(1))
+            .apply(
+                "List delta files",
+                ParDo.of(
+                        new ListDeltaFilesFn(importDirectory, deltaInputDirs, ddlView, dialectView))
+                    .withSideInputs(ddlView, dialectView))
+            .apply("Reshuffle delta files", Reshuffle.viaRandomKey())
+            .apply(
+                "Read delta files", ParDo.of(new ReadDeltaFileFn(ddlView)).withSideInputs(ddlView))
+            .apply("Group changes by key", GroupByKey.create())
+            .apply(
+                "Keep latest changes",
+                ParDo.of(new KeepLatestChangeFn(ddlView)).withSideInputs(ddlView));
+
+    PCollection<?> previousComputation = imported;
+    for (int i = 0; i < 2 * ImportTransform.MAX_DEPTH; i++) {
+      final boolean deletes = i >= ImportTransform.MAX_DEPTH;
+      // Deleted rows go from the deepest tables up, after all the upserts.
+      final int depth = deletes ? 2 * ImportTransform.MAX_DEPTH - 1 - i : i;
+      final String stage = (deletes ? "deletes depth " : "upserts depth ") + depth;
+      PCollection<Mutation> mutations =
+          changes
+              .apply(
+                  "Select " + stage,
+                  ParDo.of(
+                      new DoFn<KV<Integer, Mutation>, Mutation>() {
+
+                        @ProcessElement
+                        public void processElement(ProcessContext c) {
+                          Mutation mutation = c.element().getValue();
+                          if (c.element().getKey() == depth
+                              && (mutation.getOperation() == Mutation.Op.DELETE) == deletes) {
+                            c.output(mutation);
+                          }
+                        }
+                      }))
+              .apply("Wait before " + stage, Wait.on(previousComputation));
+
+      SpannerWriteResult result =
+          mutations.apply(
+              "Write " + stage,
+              LocalSpannerIO.write()
+                  .withSchemaReadySignal(imported)
+                  .withSpannerConfig(spannerConfig)
+                  .withCommitDeadline(Duration.standardMinutes(1))
+                  .withMaxCumulativeBackoff(Duration.standardHours(2))
+                  .withMaxNumMutations(10000)
+                  .withGroupingFactor(100)
+                  .withDialectView(dialectView));
+      previousComputation = result.getOutput();
+    }
+    return imported.apply("Wait for delta exports", Wait.on(previousComputation));
+  }
+
+  /**
+   * Lists the data files of the delta exports, checking that they form a chain of deltas starting
+   * at the imported export. Outputs the files with their table, suffixed for deleted keys, and the
+   * index of their delta export.
+   */
+  @VisibleForTesting
+  static class ListDeltaFilesFn extends DoFn<Integer, KV<String, KV<String, Integer>>> {
+
+    private final ValueProvider<String> importDirectory;
+    private final ValueProvider<String> deltaInputDirs;
+    private final PCollectionView<Ddl> ddlView;
+    private final PCollectionView<Dialect> dialectView;
+
+    ListDeltaFilesFn(
+        ValueProvider<String> importDirectory,
+        ValueProvider<String> deltaInputDirs,
+        PCollectionView<Ddl> ddlView,
+        PCollectionView<Dialect> dialectView) {
+      this.importDirectory = importDirectory;
+      this.deltaInputDirs = deltaInputDirs;
+      this.ddlView = ddlView;
+      this.dialectView = dialectView;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      Ddl ddl = c.sideInput(ddlView);
+      Dialect dialect = c.sideInput(dialectView);
+      String base = importDirectory.get();
+      int index = 0;
+      for (String deltaDir : Strings.nullToEmpty(deltaInputDirs.get()).split(",")) {
+        deltaDir = deltaDir.trim();
+        if (deltaDir.isEmpty()) {
+          continue;
+        }
+        Export manifest =
+            ReadExportManifestFile.readManifest(
+                FileSystems.matchNewResource(
+                    GcsUtil.joinPath(deltaDir, "spanner-export.json"), false));
+        if (!sameDirectory(manifest.getBaseExport(), base)) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "%s is not a delta export of %s, but of \"%s\". Delta exports must be given"
+                      + " oldest first, each a delta of the previous one.",
+                  deltaDir, base, manifest.getBaseExport()));
+        }
+        if (manifest.getDialect() != ProtoDialect.valueOf(dialect.name())) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "Dialect mismatches: Dialect of the database (%s) is different from the one in"
+                      + " delta export %s (%s).",
+                  dialect, deltaDir, manifest.getDialect()));
+        }
+        for (Export.Table table : manifest.getTablesList()) {
+          // Views and models are not written.
+          if (ddl.table(table.getName()) != null) {
+            outputFiles(c, deltaDir, table, table.getName(), index);
+          }
+        }
+        for (Export.Table table : manifest.getDeletedKeysList()) {
+          outputFiles(c, deltaDir, table, table.getName() + DeltaKeys.DELETED_KEYS_SUFFIX, index);
+        }
+        base = deltaDir;
+        index++;
+      }
+    }
+
+    private void outputFiles(
+        ProcessContext c, String deltaDir, Export.Table table, String destination, int index) {
+      List<String> files =
+          ValidateInputFiles.validateFiles(
+              c.getPipelineOptions(),
+              deltaDir,
+              ReadTableManifestFile.readTableManifest(
+                  GcsUtil.joinPath(deltaDir, table.getManifestFile())));
+      for (String file : files) {
+        c.output(KV.of(file, KV.of(destination, index)));
+      }
+    }
+  }
+
+  /**
+   * Reads the rows of a delta file as mutations: upserts of the changed rows, or deletes of the
+   * deleted keys. Outputs them by key, with the index of their delta export.
+   */
+  private static class ReadDeltaFileFn
+      extends DoFn<KV<String, KV<String, Integer>>, KV<String, KV<Integer, Mutation>>> {
+
+    private final PCollectionView<Ddl> ddlView;
+
+    ReadDeltaFileFn(PCollectionView<Ddl> ddlView) {
+      this.ddlView = ddlView;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      Ddl ddl = c.sideInput(ddlView);
+      String destination = c.element().getValue().getKey();
+      int index = c.element().getValue().getValue();
+      boolean deletes = destination.endsWith(DeltaKeys.DELETED_KEYS_SUFFIX);
+      Table table =
+          ddl.table(
+              deletes
+                  ? destination.substring(
+                      0, destination.length() - DeltaKeys.DELETED_KEYS_SUFFIX.length())
+                  : destination);
+      AvroRecordConverter converter = new AvroRecordConverter(table);
+      try (InputStream stream =
+              Channels.newInputStream(
+                  FileSystems.open(FileSystems.matchNewResource(c.element().getKey(), false)));
+          DataFileStream<GenericRecord> records =
+              new DataFileStream<>(stream, new GenericDatumReader<>())) {
+        for (GenericRecord record : records) {
+          Mutation mutation = converter.apply(record);
+          List<Value> key = DeltaKeys.keyOf(table, mutation.asMap());
+          if (deletes) {
+            mutation = Mutation.delete(table.name(), DeltaKeys.toKey(key));
+          }
+          c.output(KV.of(DeltaKeys.encode(table.name(), key), KV.of(index, mutation)));
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /** Keeps the change of the latest delta export of a row, with the depth of its table. */
+  @VisibleForTesting
+  static class KeepLatestChangeFn
+      extends DoFn<KV<String, Iterable<KV<Integer, Mutation>>>, KV<Integer, Mutation>> {
+
+    private final PCollectionView<Ddl> ddlView;
+
+    KeepLatestChangeFn(PCollectionView<Ddl> ddlView) {
+      this.ddlView = ddlView;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      KV<Integer, Mutation> latest = null;
+      for (KV<Integer, Mutation> change : c.element().getValue()) {
+        if (latest == null || change.getKey() > latest.getKey()) {
+          latest = change;
+        }
+      }
+      Ddl ddl = c.sideInput(ddlView);
+      c.output(KV.of(depth(ddl, latest.getValue().getTable()), latest.getValue()));
+    }
+  }
+
+  /** Returns the interleaving depth of a table, 0 for root tables. */
+  @VisibleForTesting
+  static int depth(Ddl ddl, String tableName) {
+    int depth = 0;
+    Table table = ddl.table(tableName);
+    while (table.interleaveInParent() != null) {
+      table = ddl.table(table.interleaveInParent());
+      depth++;
+    }
+    return depth;
+  }
+
+  @VisibleForTesting
+  static boolean sameDirectory(String a, String b) {
+    return stripTrailingSlash(a).equals(stripTrailingSlash(b));
+  }
+
+  private static String stripTrailingSlash(String dir) {
+    return dir.endsWith("/") ? dir.substring(0, dir.length() - 1) : dir;
+  }
+}
@@ -17,23 +17,41 @@ package com.google.cloud.teleport.spanner;
 
 import static com.google.cloud.teleport.spanner.SpannerTableFilter.getFilteredTables;
 
+import com.google.cloud.spanner.Dialect;
 import com.google.cloud.spanner.PartitionOptions;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.Statement;
 import com.google.cloud.teleport.spanner.ddl.Column;
 import com.google.cloud.teleport.spanner.ddl.Ddl;
 import com.google.cloud.teleport.spanner.ddl.Table;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import org.apache.beam.sdk.io.gcp.spanner.LocalSpannerAccessor;
 import org.apache.beam.sdk.io.gcp.spanner.ReadOperation;
+import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.values.PCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-/** Given a Cloud Spanner {@link Ddl} generates a "read all" operation per table. */
+/**
+ * Given a Cloud Spanner {@link Ddl} generates a "read all" operation per table.
+ *
+ * <p>When given a {@link SpannerConfig}, the sizes of the tables are read from the table size
+ * statistics of the database: the read operations are output largest table first, and the number of
+ * partitions of each table is proportional to its size.
+ */
 class BuildReadFromTableOperations
     extends PTransform<PCollection<Ddl>, PCollection<ReadOperation>> {
 
@@ -41,6 +59,14 @@ class BuildReadFromTableOperations
   // (which can happen with a table with a lot of columns), the PartitionResponse size is bounded.
   private static final int MAX_PARTITIONS = 1000;
 
+  // The desired size of a read partition of a table of known size.
+  @VisibleForTesting static final long PARTITION_SIZE_BYTES = 256L * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(BuildReadFromTableOperations.class);
+
+  // Null if the table sizes are not to be read.
+  private final SpannerConfig spannerConfig;
+
   // A list of tables the user intends to export from Cloud Spanner along with their
   // original data; BuildReadFromTableOperations(tables) will create ReadOperations for
   // those tables (along with any necessary parent or foreign key tables). If this list is empty,
@@ -48,6 +74,11 @@ class BuildReadFromTableOperations
   private final ValueProvider<String> tables;
 
   public BuildReadFromTableOperations(ValueProvider<String> tables) {
+    this(null, tables);
+  }
+
+  public BuildReadFromTableOperations(SpannerConfig spannerConfig, ValueProvider<String> tables) {
+    this.spannerConfig = spannerConfig;
     this.tables = tables;
   }
 
@@ -58,6 +89,22 @@ class BuildReadFromTableOperations
         ParDo.of(
             new DoFn<Ddl, ReadOperation>() {
 
+              private transient LocalSpannerAccessor spannerAccessor;
+
+              @Setup
+              public void setup() throws Exception {
+                if (spannerConfig != null) {
+                  spannerAccessor = LocalSpannerAccessor.getOrCreate(spannerConfig);
+                }
+              }
+
+              @Teardown
+              public void teardown() throws Exception {
+                if (spannerAccessor != null) {
+                  spannerAccessor.close();
+                }
+              }
+
               @ProcessElement
               public void processElement(ProcessContext c) {
                 Ddl ddl = c.element();
@@ -69,7 +116,11 @@ class BuildReadFromTableOperations
                   tablesList = Arrays.asList(tables.get().split(",\\s*"));
                 }
 
-                for (Table table : getFilteredTables(ddl, tablesList)) {
+                Map<String, Long> tableSizes =
+                    spannerAccessor == null
+                        ? Collections.emptyMap()
+                        : readTableSizes(ddl.dialect());
+                for (Table table : orderBySize(getFilteredTables(ddl, tablesList), tableSizes)) {
                   String columnsListAsString =
                       table.columns().stream()
                           .filter(x -> !x.isGenerated())
@@ -77,7 +128,7 @@ class BuildReadFromTableOperations
                           .collect(Collectors.joining(","));
 
                   PartitionOptions partitionOptions =
-                      PartitionOptions.newBuilder().setMaxPartitions(MAX_PARTITIONS).build();
+                      partitionOptions(tableSizes.get(table.name().toLowerCase()));
 
                   // Also have to export table name to be able to identify which row belongs to
                   // which table.
@@ -108,9 +159,75 @@ class BuildReadFromTableOperations
                   c.output(read);
                 }
               }
+
+              /**
+               * Reads the latest sizes of the tables, by lower case name. Returns what could be
+               * read: the statistics may be missing, for instance for tables created in the last
+               * hour, or not readable by the user.
+               */
+              private Map<String, Long> readTableSizes(Dialect dialect) {
+                Map<String, Long> sizes = new HashMap<>();
+                try (ResultSet resultSet =
+                    spannerAccessor
+                        .getDatabaseClient()
+                        .singleUse()
+                        .executeQuery(Statement.of(tableSizesQuery(dialect)))) {
+                  while (resultSet.next()) {
+                    sizes.put(resultSet.getString(0).toLowerCase(), resultSet.getLong(1));
+                  }
+                } catch (SpannerException e) {
+                  LOG.warn("Could not read table sizes, reading all tables alike", e);
+                }
+                return sizes;
+              }
             }));
   }
 
+  @VisibleForTesting
+  static String tableSizesQuery(Dialect dialect) {
+    switch (dialect) {
+      case GOOGLE_STANDARD_SQL:
+        return "SELECT t.TABLE_NAME, t.USED_BYTES FROM SPANNER_SYS.TABLE_SIZES_STATS_1HOUR AS t"
+            + " WHERE t.INTERVAL_END ="
+            + " (SELECT MAX(s.INTERVAL_END) FROM SPANNER_SYS.TABLE_SIZES_STATS_1HOUR AS s)";
+      case POSTGRESQL:
+        return "SELECT t.table_name, t.used_bytes FROM spanner_sys.table_sizes_stats_1hour AS t"
+            + " WHERE t.interval_end ="
+            + " (SELECT MAX(s.interval_end) FROM spanner_sys.table_sizes_stats_1hour AS s)";
+      default:
+        throw new IllegalArgumentException(String.format("Unrecognized dialect: %s", dialect));
+    }
+  }
+
+  /**
+   * Orders tables largest first, so that the longest reads start first. Tables of unknown size come
+   * last, in their original order.
+   */
+  @VisibleForTesting
+  static List<Table> orderBySize(Collection<Table> tables, Map<String, Long> tableSizes) {
+    return tables.stream()
+        .sorted(
+            Comparator.comparingLong(
+                (Table t) -> -tableSizes.getOrDefault(t.name().toLowerCase(), -1L)))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the partition options of a table: one partition per {@link #PARTITION_SIZE_BYTES} of
+   * data if its size is known, up to {@link #MAX_PARTITIONS}.
+   */
+  @VisibleForTesting
+  static PartitionOptions partitionOptions(Long sizeBytes) {
+    if (sizeBytes == null) {
+      return PartitionOptions.newBuilder().setMaxPartitions(MAX_PARTITIONS).build();
+    }
+    long partitions = (sizeBytes + PARTITION_SIZE_BYTES - 1) / PARTITION_SIZE_BYTES;
+    return PartitionOptions.newBuilder()
+        .setPartitionSizeBytes(PARTITION_SIZE_BYTES)
+        .setMaxPartitions((int) Math.max(1, Math.min(MAX_PARTITIONS, partitions)))
+        .build();
+  }
+
   @VisibleForTesting
   String createColumnExpression(Column col) {
     switch (col.dialect()) {
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.io.range.OffsetRange;
+import org.apache.beam.sdk.values.KV;
+
+/**
+ * Finds the record boundaries of a CSV file whose values may contain quoted newlines, scanning its
+ * bytes from any offset.
+ *
+ * <p>The scanner follows the same rules as the {@link org.apache.commons.csv.CSVParser} used to
+ * read the shards: a value starting with the quote character is quoted until its closing quote,
+ * after which only whitespace is allowed, and the escape character escapes the next character. The
+ * quote, delimiter and escape characters must be ASCII, so that they can never be part of a
+ * multi-byte character.
+ *
+ * <p>A record boundary is the offset right after an unquoted, unescaped newline. From an arbitrary
+ * offset, the parse state is unknown, so {@link #findBoundary} follows every possible state at once
+ * and settles on the first newline all of them agree on. States that cannot continue, e.g. a quoted
+ * value closed and followed by data, are dropped as they are found. When several remain, the one
+ * seeing the fewest quotes in the middle of unquoted values is the most likely: writers quote the
+ * values containing quotes, so those are usually the closing quotes of values seen from inside.
+ */
+final class CsvBoundaryScanner {
+
+  // How far past an offset a boundary is looked for before settling on the most likely one.
+  static final long MAX_BOUNDARY_SEARCH_BYTES = 1024 * 1024L;
+
+  private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+  // Parse states.
+  private static final int INVALID = -1;
+  private static final int FIELD_START = 0;
+  private static final int UNQUOTED = 1;
+  private static final int UNQUOTED_ESCAPED = 2;
+  private static final int QUOTED = 3;
+  private static final int QUOTED_ESCAPED = 4;
+  private static final int QUOTE_SEEN = 5;
+  private static final int AFTER_QUOTE = 6;
+  // Same as FIELD_START, reached by the newline ending a record.
+  private static final int RECORD_END = 7;
+
+  private static final int[] UNKNOWN_STATES = {
+    FIELD_START, UNQUOTED, UNQUOTED_ESCAPED, QUOTED, QUOTED_ESCAPED, QUOTE_SEEN, AFTER_QUOTE
+  };
+
+  private final ResourceId file;
+  private final long size;
+  private final int quote;
+  private final int delimiter;
+  private final int escape;
+
+  CsvBoundaryScanner(ResourceId file, long size, char quote, char delimiter, char escape) {
+    if (!isAscii(quote) || !isAscii(delimiter) || !isAscii(escape)) {
+      throw new IllegalArgumentException(
+          "Quote, delimiter and escape characters must be ASCII to scan the bytes of " + file);
+    }
+    this.file = file;
+    this.size = size;
+    this.quote = quote;
+    this.delimiter = delimiter;
+    // No escape character.
+    this.escape = escape == 0 ? -1 : escape;
+  }
+
+  static boolean isAscii(char c) {
+    return c < 0x80;
+  }
+
+  /**
+   * Returns the most likely first record boundary after a newline at or after {@code from}, the end
+   * of the file if there is none before it, or -1 if there is none within {@link
+   * #MAX_BOUNDARY_SEARCH_BYTES}.
+   *
+   * <p>The boundary is certain when all the states the scan could have started in agree on it.
+   * Otherwise, e.g. when no quote is found to tell a quoted from an unquoted newline, the boundary
+   * of the most likely state is returned: callers have to verify it by parsing up to it from a
+   * known boundary, see {@link #countRecords}.
+   */
+  long findBoundary(long from) throws IOException {
+    long limit = Math.min(size, from + MAX_BOUNDARY_SEARCH_BYTES);
+    int[] states = Arrays.copyOf(UNKNOWN_STATES, UNKNOWN_STATES.length);
+    long[] boundaries = new long[states.length];
+    Arrays.fill(boundaries, -1);
+    // Quotes seen in the middle of unquoted values, per state.
+    int[] strayQuotes = new int[states.length];
+
+    byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+    long position = from;
+    try (InputStream stream = open(from)) {
+      while (position < limit) {
+        int read = stream.read(buffer, 0, (int) Math.min(buffer.length, limit - position));
+        if (read < 0) {
+          break;
+        }
+        for (int i = 0; i < read; i++) {
+          int data = buffer[i] & 0xFF;
+          position++;
+          boolean changed = false;
+          for (int s = 0; s < states.length; s++) {
+            if (states[s] == INVALID) {
+              continue;
+            }
+            if (states[s] == UNQUOTED && data == quote) {
+              strayQuotes[s]++;
+            }
+            states[s] = next(states[s], data);
+            if (states[s] == INVALID || (states[s] == RECORD_END && boundaries[s] < 0)) {
+              boundaries[s] = states[s] == INVALID ? -1 : position;
+              changed = true;
+            }
+          }
+          if (changed) {
+            long agreed = agreedBoundary(states, boundaries);
+            if (agreed >= 0) {
+              return agreed;
+            }
+            if (converged(states, boundaries)) {
+              // The remaining states disagree on a boundary already passed and will not diverge.
+              break;
+            }
+          }
+        }
+      }
+    }
+
+    if (position >= size) {
+      // A quoted value cannot be left open at the end of the file, which is a boundary otherwise.
+      for (int s = 0; s < states.length; s++) {
+        if (states[s] == QUOTED || states[s] == QUOTED_ESCAPED) {
+          states[s] = INVALID;
+        } else if (states[s] != INVALID && boundaries[s] < 0) {
+          boundaries[s] = size;
+        }
+      }
+      long agreed = agreedBoundary(states, boundaries);
+      if (agreed >= 0) {
+        return agreed;
+      }
+    }
+    long likeliest = -1;
+    int likeliestStrayQuotes = 0;
+    for (int s = 0; s < states.length; s++) {
+      if (states[s] == INVALID || boundaries[s] < 0) {
+        continue;
+      }
+      if (likeliest < 0
+          || strayQuotes[s] < likeliestStrayQuotes
+          || (strayQuotes[s] == likeliestStrayQuotes && boundaries[s] < likeliest)) {
+        likeliest = boundaries[s];
+        likeliestStrayQuotes = strayQuotes[s];
+      }
+    }
+    return likeliest;
+  }
+
+  /**
+   * Returns the number of records in {@code [from, to)}, {@code from} being a record boundary, or
+   * -1 if {@code to} turns out not to be one.
+   *
+   * @throws IllegalStateException if the records in the range are malformed.
+   */
+  long countRecords(long from, long to) throws IOException {
+    byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+    long position = from;
+    long recordCount = 0;
+    int state = FIELD_START;
+    try (InputStream stream = open(from)) {
+      while (position < to) {
+        int read = stream.read(buffer, 0, (int) Math.min(buffer.length, to - position));
+        if (read < 0) {
+          break;
+        }
+        for (int i = 0; i < read; i++) {
+          int data = buffer[i] & 0xFF;
+          position++;
+          state = nextOrThrow(state, data);
+          if (state == RECORD_END) {
+            recordCount++;
+          }
+        }
+      }
+    }
+    if (to >= size) {
+      // The last record may not end with a newline.
+      if (state != RECORD_END && to > from) {
+        recordCount++;
+      }
+      return recordCount;
+    }
+    return state == RECORD_END ? recordCount : -1;
+  }
+
+  /**
+   * Splits {@code [from, size)}, {@code from} being a record boundary, into record aligned ranges
+   * of a bit more than {@code desiredBundleSize} bytes, with their record counts, in a single pass.
+   */
+  List<KV<OffsetRange, Long>> splitSerially(long from, long desiredBundleSize) throws IOException {
+    List<KV<OffsetRange, Long>> ranges = new ArrayList<>();
+    byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+    long position = from;
+    long rangeStart = from;
+    long recordCount = 0;
+    int state = FIELD_START;
+    try (InputStream stream = open(from)) {
+      int read;
+      while ((read = stream.read(buffer)) >= 0) {
+        for (int i = 0; i < read; i++) {
+          int data = buffer[i] & 0xFF;
+          position++;
+          state = nextOrThrow(state, data);
+          if (state == RECORD_END) {
+            recordCount++;
+            if (position - rangeStart > desiredBundleSize) {
+              ranges.add(KV.of(new OffsetRange(rangeStart, position), recordCount));
+              rangeStart = position;
+              recordCount = 0;
+            }
+          }
+        }
+      }
+    }
+    if (state != RECORD_END && position > rangeStart) {
+      recordCount++;
+    }
+    if (recordCount > 0) {
+      ranges.add(KV.of(new OffsetRange(rangeStart, position), recordCount));
+    }
+    return ranges;
+  }
+
+  private InputStream open(long from) throws IOException {
+    SeekableByteChannel channel = (SeekableByteChannel) FileSystems.open(file);
+    channel.position(from);
+    return Channels.newInputStream(channel);
+  }
+
+  private int nextOrThrow(int state, int data) {
+    int next = next(state, data);
+    if (next == INVALID) {
+      throw new IllegalStateException("Found char '" + (char) data + "' outside quote");
+    }
+    return next;
+  }
+
+  private int next(int state, int data) {
+    switch (state) {
+      case FIELD_START:
+      case RECORD_END:
+        // If the first char is a quote, the whole value is quoted, as in the CSV parser.
+        if (data == quote) {
+          return QUOTED;
+        }
+        if (data == delimiter) {
+          return FIELD_START;
+        }
+        if (data == '\n') {
+          return RECORD_END;
+        }
+        return data == escape ? UNQUOTED_ESCAPED : UNQUOTED;
+      case UNQUOTED:
+        // Quotes inside an unquoted value are part of the data.
+        if (data == escape) {
+          return UNQUOTED_ESCAPED;
+        }
+        if (data == delimiter) {
+          return FIELD_START;
+        }
+        return data == '\n' ? RECORD_END : UNQUOTED;
+      case UNQUOTED_ESCAPED:
+        return UNQUOTED;
+      case QUOTED:
+        if (data == quote) {
+          return QUOTE_SEEN;
+        }
+        return data == escape ? QUOTED_ESCAPED : QUOTED;
+      case QUOTED_ESCAPED:
+        return QUOTED;
+      case QUOTE_SEEN:
+        // A doubled quote is an escaped quote, anything else closes the value.
+        if (data == quote) {
+          return QUOTED;
+        }
+        // Fall through.
+      case AFTER_QUOTE:
+        // Only whitespace is allowed between the closing quote and the end of the value.
+        if (data == delimiter) {
+          return FIELD_START;
+        }
+        if (data == '\n') {
+          return RECORD_END;
+        }
+        return data == ' ' || data == '\r' ? AFTER_QUOTE : INVALID;
+      default:
+        return INVALID;
+    }
+  }
+
+  /** Returns the boundary all the possible states found, or -1 if they do not agree yet. */
+  private static long agreedBoundary(int[] states, long[] boundaries) {
+    long agreed = -1;
+    for (int s = 0; s < states.length; s++) {
+      if (states[s] == INVALID) {
+        continue;
+      }
+      if (boundaries[s] < 0 || (agreed >= 0 && boundaries[s] != agreed)) {
+        return -1;
+      }
+      agreed = boundaries[s];
+    }
+    return agreed;
+  }
+
+  /** Whether the possible states are all the same, after finding different boundaries. */
+  private static boolean converged(int[] states, long[] boundaries) {
+    int state = INVALID;
+    for (int s = 0; s < states.length; s++) {
+      if (states[s] == INVALID) {
+        continue;
+      }
+      int current = states[s] == RECORD_END ? FIELD_START : states[s];
+      if (boundaries[s] < 0 || (state != INVALID && current != state)) {
+        return false;
+      }
+      state = current;
+    }
+    return state != INVALID;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Value;
+import com.google.cloud.teleport.spanner.ddl.Column;
+import com.google.cloud.teleport.spanner.ddl.IndexColumn;
+import com.google.cloud.teleport.spanner.ddl.Table;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Helpers for the primary keys of the rows of delta exports, which hold the rows changed since a
+ * base export and the keys of the rows deleted since then.
+ *
+ * <p>Keys are handled as the lists of their column values, in primary key order. Values are
+ * normalized so that equal keys have equal lists, whichever way they were read.
+ */
+final class DeltaKeys {
+
+  /** Suffix of the Avro files and manifests holding the keys of the rows deleted from a table. */
+  static final String DELETED_KEYS_SUFFIX = "-deletes";
+
+  private DeltaKeys() {}
+
+  /**
+   * Parses a primary key column value from the JSON encoding of change stream records, in which
+   * 64-bit integers, numerics, bytes, timestamps and dates are strings.
+   */
+  static Value fromJson(Column column, JsonElement json) {
+    boolean isNull = json == null || json.isJsonNull();
+    switch (column.type().getCode()) {
+      case BOOL:
+        return Value.bool(isNull ? null : json.getAsBoolean());
+      case INT64:
+        return Value.int64(isNull ? null : Long.parseLong(json.getAsString()));
+      case FLOAT64:
+        // Also parses NaN and infinities, which are strings.
+        return Value.float64(isNull ? null : Double.parseDouble(json.getAsString()));
+      case NUMERIC:
+        return normalize(Value.numeric(isNull ? null : new BigDecimal(json.getAsString())));
+      case STRING:
+        return Value.string(isNull ? null : json.getAsString());
+      case BYTES:
+        return Value.bytes(isNull ? null : ByteArray.fromBase64(json.getAsString()));
+      case TIMESTAMP:
+        return Value.timestamp(isNull ? null : Timestamp.parseTimestamp(json.getAsString()));
+      case DATE:
+        return Value.date(isNull ? null : Date.parseDate(json.getAsString()));
+      default:
+        throw new IllegalArgumentException(
+            "Unsupported primary key column type: " + column.typeString());
+    }
+  }
+
+  /** Returns the key of a row, given its column values. */
+  static List<Value> keyOf(Table table, Map<String, Value> row) {
+    List<Value> key = new ArrayList<>();
+    for (IndexColumn pk : table.primaryKeys()) {
+      Value value = row.get(table.column(pk.name()).name());
+      if (value == null) {
+        throw new IllegalArgumentException(
+            "Missing primary key column " + pk.name() + " of table " + table.name());
+      }
+      key.add(normalize(value));
+    }
+    return key;
+  }
+
+  /** Normalizes a key value: numerics with the same value but different scales are equal. */
+  static Value normalize(Value value) {
+    if (value.getType().getCode() == com.google.cloud.spanner.Type.Code.NUMERIC
+        && !value.isNull()) {
+      return Value.numeric(value.getNumeric().stripTrailingZeros());
+    }
+    return value;
+  }
+
+  /** Encodes the key of a row of a table as a string, equal for equal keys. */
+  static String encode(String table, List<Value> key) {
+    JsonArray result = new JsonArray();
+    result.add(table.toLowerCase());
+    for (Value value : key) {
+      result.add(value.isNull() ? JsonNull.INSTANCE : new JsonPrimitive(value.toString()));
+    }
+    return result.toString();
+  }
+
+  /** Returns the {@link Key} to delete a row with, given its key values. */
+  static Key toKey(List<Value> key) {
+    Key.Builder result = Key.newBuilder();
+    for (Value value : key) {
+      boolean isNull = value.isNull();
+      switch (value.getType().getCode()) {
+        case BOOL:
+          result.append(isNull ? null : value.getBool());
+          break;
+        case INT64:
+          result.append(isNull ? null : value.getInt64());
+          break;
+        case FLOAT64:
+          result.append(isNull ? null : value.getFloat64());
+          break;
+        case NUMERIC:
+          result.append(isNull ? null : value.getNumeric());
+          break;
+        case STRING:
+          result.append(isNull ? null : value.getString());
+          break;
+        case BYTES:
+          result.append(isNull ? null : value.getBytes());
+          break;
+        case TIMESTAMP:
+          result.append(isNull ? null : value.getTimestamp());
+          break;
+        case DATE:
+          result.append(isNull ? null : value.getDate());
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported primary key value: " + value);
+      }
+    }
+    return result.build();
+  }
+}
@@ -236,6 +236,35 @@ public class ExportPipeline {
     ValueProvider<Boolean> getDataBoostEnabled();
 
     void setDataBoostEnabled(ValueProvider<Boolean> value);
+
+    @TemplateParameter.GcsReadFolder(
+        order = 14,
+        optional = true,
+        description = "Base export directory for a delta export",
+        helpText =
+            "The Cloud Storage path of a previous export of the database, full or delta. If set,"
+                + " only the rows changed since that export, and the keys of the rows deleted since"
+                + " then, are exported, read from the `changeStreamName` change stream. Only"
+                + " supported for GoogleSQL databases.",
+        example = "gs://your-bucket/your-path/your-export")
+    @Default.String(value = "")
+    ValueProvider<String> getBaseExportDir();
+
+    void setBaseExportDir(ValueProvider<String> value);
+
+    @TemplateParameter.Text(
+        order = 15,
+        optional = true,
+        regexes = {"^[a-zA-Z0-9_]*$"},
+        description = "Change stream of a delta export",
+        helpText =
+            "Used in conjunction with `baseExportDir`. The name of a change stream tracking all the"
+                + " exported tables, whose retention period covers the time since the base"
+                + " export.")
+    @Default.String(value = "")
+    ValueProvider<String> getChangeStreamName();
+
+    void setChangeStreamName(ValueProvider<String> value);
   }
 
   /**
@@ -279,7 +308,9 @@ public class ExportPipeline {
                 options.getTableNames(),
                 options.getShouldExportRelatedTables(),
                 options.getShouldExportTimestampAsLogicalType(),
-                options.getAvroTempDirectory()));
+                options.getAvroTempDirectory(),
+                options.getBaseExportDir(),
+                options.getChangeStreamName()));
     PipelineResult result = p.run();
     if (options.getWaitUntilFinish()
         &&
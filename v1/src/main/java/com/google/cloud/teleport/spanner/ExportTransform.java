@@ -23,6 +23,7 @@ import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.TimestampBound;
 import com.google.cloud.teleport.spanner.ddl.ChangeStream;
 import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.ddl.IndexColumn;
 import com.google.cloud.teleport.spanner.ddl.Model;
 import com.google.cloud.teleport.spanner.ddl.Sequence;
 import com.google.cloud.teleport.spanner.ddl.Table;
@@ -77,6 +78,7 @@ import org.apache.beam.sdk.io.TextIO;
 import org.apache.beam.sdk.io.WriteFilesResult;
 import org.apache.beam.sdk.io.fs.ResolveOptions;
 import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.io.gcp.spanner.LocalSpannerAccessor;
 import org.apache.beam.sdk.io.gcp.spanner.LocalSpannerIO;
 import org.apache.beam.sdk.io.gcp.spanner.ReadOperation;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
@@ -87,6 +89,7 @@ import org.apache.beam.sdk.transforms.Combine.CombineFn;
 import org.apache.beam.sdk.transforms.Contextful;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.Filter;
 import org.apache.beam.sdk.transforms.Flatten;
 import org.apache.beam.sdk.transforms.GroupByKey;
 import org.apache.beam.sdk.transforms.PTransform;
@@ -137,6 +140,8 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
   private final ValueProvider<Boolean> exportRelatedTables;
   private final ValueProvider<Boolean> shouldExportTimestampAsLogicalType;
   private final ValueProvider<String> avroTempDirectory;
+  private final ValueProvider<String> baseExportDir;
+  private final ValueProvider<String> changeStreamName;
 
   public ExportTransform(
       SpannerConfig spannerConfig,
@@ -162,6 +167,35 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
       ValueProvider<Boolean> exportRelatedTables,
       ValueProvider<Boolean> shouldExportTimestampAsLogicalType,
       ValueProvider<String> avroTempDirectory) {
+    this(
+        spannerConfig,
+        outputDir,
+        testJobId,
+        snapshotTime,
+        tableNames,
+        exportRelatedTables,
+        shouldExportTimestampAsLogicalType,
+        avroTempDirectory,
+        /* baseExportDir= */ ValueProvider.StaticValueProvider.of(""),
+        /* changeStreamName= */ ValueProvider.StaticValueProvider.of(""));
+  }
+
+  /**
+   * Creates an export transform. If {@code baseExportDir} is not empty, only the rows changed since
+   * that export are exported, read from the {@code changeStreamName} change stream, see {@link
+   * ReadChangedRows}.
+   */
+  public ExportTransform(
+      SpannerConfig spannerConfig,
+      ValueProvider<String> outputDir,
+      ValueProvider<String> testJobId,
+      ValueProvider<String> snapshotTime,
+      ValueProvider<String> tableNames,
+      ValueProvider<Boolean> exportRelatedTables,
+      ValueProvider<Boolean> shouldExportTimestampAsLogicalType,
+      ValueProvider<String> avroTempDirectory,
+      ValueProvider<String> baseExportDir,
+      ValueProvider<String> changeStreamName) {
     this.spannerConfig = spannerConfig;
     this.outputDir = outputDir;
     this.testJobId = testJobId;
@@ -170,6 +204,8 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
     this.exportRelatedTables = exportRelatedTables;
     this.shouldExportTimestampAsLogicalType = shouldExportTimestampAsLogicalType;
     this.avroTempDirectory = avroTempDirectory;
+    this.baseExportDir = baseExportDir;
+    this.changeStreamName = changeStreamName;
   }
 
   /**
@@ -196,6 +232,13 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
                 ParDo.of(new CreateTransactionFnWithTimestamp(spannerConfig, snapshotTime)))
             .apply("Tx As PCollectionView", View.asSingleton());
 
+    PCollectionView<String> readTimestamp =
+        p.apply("Create read timestamp", Create.of(1))
+            .apply(
+                "Get read timestamp",
+                ParDo.of(new ReadTimestampFn(spannerConfig, tx)).withSideInputs(tx))
+            .apply("Read timestamp As PCollectionView", View.asSingleton());
+
     PCollectionView<Dialect> dialectView =
         p.apply("Read Dialect", new ReadDialect(spannerConfig))
             .apply("Dialect As PCollectionView", View.asSingleton());
@@ -280,7 +323,12 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
                   }
                 }));
     PCollection<ReadOperation> tables =
-        ddl.apply("Build table read operations", new BuildReadFromTableOperations(tableNames));
+        ddl.apply(
+                "Build table read operations",
+                new BuildReadFromTableOperations(spannerConfig, tableNames))
+            .apply(
+                "Skip full table reads of delta exports",
+                Filter.by(read -> Strings.isNullOrEmpty(baseExportDir.get())));
 
     PCollection<KV<String, Void>> allTableAndViewNames =
         ddl.apply(
@@ -395,16 +443,44 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
                                 .convert(c.element());
                         for (Schema schema : avroSchemas) {
                           c.output(KV.of(schema.getName(), new SerializableSchemaSupplier(schema)));
+                          // Delta exports also hold the keys of the deleted rows of each table.
+                          Table table = c.element().table(schema.getName());
+                          if (!Strings.isNullOrEmpty(baseExportDir.get()) && table != null) {
+                            c.output(
+                                KV.of(
+                                    table.name() + DeltaKeys.DELETED_KEYS_SUFFIX,
+                                    new SerializableSchemaSupplier(
+                                        deletedKeysSchema(schema, table))));
+                          }
                         }
                       }
                     }))
             .apply("As view", View.asMap());
 
-    PCollection<Struct> rows =
+    PCollectionView<Ddl> ddlView = ddl.apply("Cloud Spanner DDL as view", View.asSingleton());
+
+    PCollection<Struct> allRows =
         tables.apply(
             "Read all rows from Spanner",
             LocalSpannerIO.readAll().withTransaction(tx).withSpannerConfig(spannerConfig));
 
+    PCollection<Struct> changedRows =
+        p.apply(
+            "Read changed rows from Spanner",
+            new ReadChangedRows(
+                spannerConfig,
+                baseExportDir,
+                changeStreamName,
+                tableNames,
+                tx,
+                readTimestamp,
+                ddlView));
+
+    PCollection<Struct> rows =
+        PCollectionList.of(allRows)
+            .and(changedRows)
+            .apply("Combine all and changed rows", Flatten.pCollections());
+
     ValueProvider<ResourceId> resource =
         ValueProvider.NestedValueProvider.of(
             outputDir,
@@ -634,13 +710,11 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
         tableManifests.apply(
             "Combine table metadata", Combine.globally(new CombineTableMetadata()));
 
-    PCollectionView<Ddl> ddlView = ddl.apply("Cloud Spanner DDL as view", View.asSingleton());
-
     PCollection<String> metadataContent =
         metadataTables.apply(
             "Create database manifest",
-            ParDo.of(new CreateDatabaseManifest(ddlView, dialectView))
-                .withSideInputs(ddlView, dialectView));
+            ParDo.of(new CreateDatabaseManifest(ddlView, dialectView, readTimestamp, baseExportDir))
+                .withSideInputs(ddlView, dialectView, readTimestamp));
 
     Contextful.Fn<String, FileIO.Write.FileNaming> manifestNaming =
         (element, c) ->
@@ -798,6 +872,39 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
     }
   }
 
+  /** Outputs the read timestamp of the export transaction. */
+  static class ReadTimestampFn extends DoFn<Integer, String> {
+
+    private final SpannerConfig spannerConfig;
+    private final PCollectionView<Transaction> tx;
+    private transient LocalSpannerAccessor spannerAccessor;
+
+    ReadTimestampFn(SpannerConfig spannerConfig, PCollectionView<Transaction> tx) {
+      this.spannerConfig = spannerConfig;
+      this.tx = tx;
+    }
+
+    @Setup
+    public void setup() {
+      spannerAccessor = LocalSpannerAccessor.getOrCreate(spannerConfig);
+    }
+
+    @Teardown
+    public void teardown() {
+      spannerAccessor.close();
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      c.output(
+          spannerAccessor
+              .getBatchClient()
+              .batchReadOnlyTransaction(c.sideInput(tx).transactionId())
+              .getReadTimestamp()
+              .toString());
+    }
+  }
+
   /** Given map of table names, create the database manifest contents. */
   static class CombineTableMetadata
       extends CombineFn<KV<String, String>, List<Export.Table>, List<Export.Table>> {
@@ -839,11 +946,23 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
 
     private final PCollectionView<Ddl> ddlView;
     private final PCollectionView<Dialect> dialectView;
+    private final PCollectionView<String> readTimestamp;
+    private final ValueProvider<String> baseExportDir;
 
     public CreateDatabaseManifest(
         PCollectionView<Ddl> ddlView, PCollectionView<Dialect> dialectView) {
+      this(ddlView, dialectView, null, ValueProvider.StaticValueProvider.of(""));
+    }
+
+    public CreateDatabaseManifest(
+        PCollectionView<Ddl> ddlView,
+        PCollectionView<Dialect> dialectView,
+        PCollectionView<String> readTimestamp,
+        ValueProvider<String> baseExportDir) {
       this.ddlView = ddlView;
       this.dialectView = dialectView;
+      this.readTimestamp = readTimestamp;
+      this.baseExportDir = baseExportDir;
     }
 
     @ProcessElement
@@ -853,7 +972,13 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
       Dialect dialect = c.sideInput(dialectView);
       ExportProtos.Export.Builder exportManifest = ExportProtos.Export.newBuilder();
       for (Export.Table obj : exportMetadata) {
-        if (ddl.changeStream(obj.getName()) != null) {
+        if (obj.getName().endsWith(DeltaKeys.DELETED_KEYS_SUFFIX)) {
+          // The manifest of the deleted keys keeps its name, the entry is named after the table.
+          String tableName =
+              obj.getName()
+                  .substring(0, obj.getName().length() - DeltaKeys.DELETED_KEYS_SUFFIX.length());
+          exportManifest.addDeletedKeys(obj.toBuilder().setName(tableName));
+        } else if (ddl.changeStream(obj.getName()) != null) {
           exportManifest.addChangeStreams(obj);
         } else if (ddl.sequence(obj.getName()) != null) {
           exportManifest.addSequences(obj);
@@ -863,6 +988,10 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
       }
       exportManifest.addAllDatabaseOptions(ddl.databaseOptions());
       exportManifest.setDialect(ProtoDialect.valueOf(dialect.name()));
+      if (readTimestamp != null) {
+        exportManifest.setSnapshotTime(c.sideInput(readTimestamp));
+      }
+      exportManifest.setBaseExport(Strings.nullToEmpty(baseExportDir.get()));
       try {
         out.output(JsonFormat.printer().print(exportManifest.build()));
       } catch (InvalidProtocolBufferException e) {
@@ -875,6 +1004,23 @@ public class ExportTransform extends PTransform<PBegin, WriteFilesResult<String>
     return tableName + "-manifest.json";
   }
 
+  /**
+   * Returns the Avro schema of the deleted keys of a table in a delta export: the schema of the
+   * table with its primary key columns only.
+   */
+  @VisibleForTesting
+  static Schema deletedKeysSchema(Schema tableSchema, Table table) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (IndexColumn pk : table.primaryKeys()) {
+      Schema.Field field = tableSchema.getField(table.column(pk.name()).name());
+      Schema.Field keyField = new Schema.Field(field.name(), field.schema(), field.doc(), null);
+      keyField.addProp(AvroUtil.SQL_TYPE, field.getProp(AvroUtil.SQL_TYPE));
+      fields.add(keyField);
+    }
+    return Schema.createRecord(
+        tableSchema.getName(), tableSchema.getDoc(), tableSchema.getNamespace(), false, fields);
+  }
+
   @VisibleForTesting
   static TimestampBound createTimestampBound(String timestamp) {
     if ("".equals(timestamp)) {
@@ -208,6 +208,20 @@ public class ImportPipeline {
     ValueProvider<RpcPriority> getSpannerPriority();
 
     void setSpannerPriority(ValueProvider<RpcPriority> value);
+
+    @TemplateParameter.Text(
+        order = 12,
+        optional = true,
+        description = "Cloud Storage delta export directories",
+        helpText =
+            "A comma separated list of the Cloud Storage paths of delta exports to apply after"
+                + " importing `inputDir`, oldest first. Each delta export must have been taken"
+                + " with the previous export as its base export.",
+        example = "gs://your-bucket/your-path/delta-1,gs://your-bucket/your-path/delta-2")
+    @Default.String(value = "")
+    ValueProvider<String> getDeltaInputDirs();
+
+    void setDeltaInputDirs(ValueProvider<String> value);
   }
 
   public static void main(String[] args) {
@@ -243,7 +257,8 @@ public class ImportPipeline {
             options.getWaitForChangeStreams(),
             options.getWaitForSequences(),
             options.getEarlyIndexCreateFlag(),
-            options.getDdlCreationTimeoutInMinutes()));
+            options.getDdlCreationTimeoutInMinutes(),
+            options.getDeltaInputDirs()));
 
     PipelineResult result = p.run();
 
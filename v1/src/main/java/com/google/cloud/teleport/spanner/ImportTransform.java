@@ -43,7 +43,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -64,6 +68,7 @@ import org.apache.beam.sdk.io.gcp.spanner.LocalSpannerIO;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerWriteResult;
 import org.apache.beam.sdk.io.gcp.spanner.Transaction;
+import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.options.ValueProvider.NestedValueProvider;
 import org.apache.beam.sdk.transforms.Combine;
@@ -93,7 +98,10 @@ import org.slf4j.LoggerFactory;
 public class ImportTransform extends PTransform<PBegin, PDone> {
 
   private static final Logger LOG = LoggerFactory.getLogger(ImportTransform.class);
-  private static final int MAX_DEPTH = 8;
+  static final int MAX_DEPTH = 8;
+  // Number of independent chains of writes. The interleaving trees of tables are spread across the
+  // lanes, and a table only waits for the tables of lower depths in its own lane.
+  private static final int MAX_LANES = 4;
 
   private final SpannerConfig spannerConfig;
   private final ValueProvider<String> importDirectory;
@@ -108,6 +116,8 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
   private final ValueProvider<Boolean> waitForSequences;
   private final ValueProvider<Boolean> earlyIndexCreateFlag;
   private final ValueProvider<Integer> ddlCreationTimeoutInMinutes;
+  // Comma separated delta exports to apply on top of the imported export, oldest first.
+  private final ValueProvider<String> deltaInputDirs;
 
   public ImportTransform(
       SpannerConfig spannerConfig,
@@ -118,6 +128,28 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
       ValueProvider<Boolean> waitForSequences,
       ValueProvider<Boolean> earlyIndexCreateFlag,
       ValueProvider<Integer> ddlCreationTimeoutInMinutes) {
+    this(
+        spannerConfig,
+        importDirectory,
+        waitForIndexes,
+        waitForForeignKeys,
+        waitForChangeStreams,
+        waitForSequences,
+        earlyIndexCreateFlag,
+        ddlCreationTimeoutInMinutes,
+        /* deltaInputDirs= */ ValueProvider.StaticValueProvider.of(""));
+  }
+
+  public ImportTransform(
+      SpannerConfig spannerConfig,
+      ValueProvider<String> importDirectory,
+      ValueProvider<Boolean> waitForIndexes,
+      ValueProvider<Boolean> waitForForeignKeys,
+      ValueProvider<Boolean> waitForChangeStreams,
+      ValueProvider<Boolean> waitForSequences,
+      ValueProvider<Boolean> earlyIndexCreateFlag,
+      ValueProvider<Integer> ddlCreationTimeoutInMinutes,
+      ValueProvider<String> deltaInputDirs) {
     this.spannerConfig = spannerConfig;
     this.importDirectory = importDirectory;
     this.waitForIndexes = waitForIndexes;
@@ -126,6 +158,7 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
     this.waitForSequences = waitForSequences;
     this.earlyIndexCreateFlag = earlyIndexCreateFlag;
     this.ddlCreationTimeoutInMinutes = ddlCreationTimeoutInMinutes;
+    this.deltaInputDirs = deltaInputDirs;
   }
 
   @Override
@@ -235,48 +268,77 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
                       }
                     }));
 
-    PCollection<?> previousComputation = ddl;
-    for (int i = 0; i < MAX_DEPTH; i++) {
-      final int depth = i;
-      PCollection<KV<String, String>> levelFiles =
-          acc.apply(
-                  "Get Avro filenames depth " + depth,
-                  ParDo.of(
-                          new DoFn<HashMultimap<String, String>, KV<String, String>>() {
-
-                            @ProcessElement
-                            public void processElement(ProcessContext c) {
-                              HashMultimap<String, String> allFiles = c.element();
-                              HashMultimap<Integer, String> levels = c.sideInput(levelsView);
-
-                              Set<String> tables = levels.get(depth);
-                              for (String table : tables) {
-                                for (String file : allFiles.get(table)) {
-                                  c.output(KV.of(file, table));
+    PCollectionView<Map<String, Integer>> lanesView =
+        acc.apply(
+                "Assign tables to lanes",
+                ParDo.of(
+                        new DoFn<HashMultimap<String, String>, Map<String, Integer>>() {
+
+                          @ProcessElement
+                          public void processElement(ProcessContext c) {
+                            c.output(assignLanes(c.sideInput(ddlView), c.element(), MAX_LANES));
+                          }
+                        })
+                    .withSideInputs(ddlView))
+            .apply("Lanes as view", View.asSingleton());
+
+    PCollection<?>[] laneComputations = new PCollection<?>[MAX_LANES];
+    for (int l = 0; l < MAX_LANES; l++) {
+      final int lane = l;
+      PCollection<?> previousComputation = ddl;
+      for (int i = 0; i < MAX_DEPTH; i++) {
+        final int depth = i;
+        // The first lane keeps the step names of a single chain of writes.
+        final String stage = lane == 0 ? String.valueOf(depth) : lane + "-" + depth;
+        PCollection<KV<String, String>> levelFiles =
+            acc.apply(
+                    "Get Avro filenames depth " + stage,
+                    ParDo.of(
+                            new DoFn<HashMultimap<String, String>, KV<String, String>>() {
+
+                              @ProcessElement
+                              public void processElement(ProcessContext c) {
+                                HashMultimap<String, String> allFiles = c.element();
+                                HashMultimap<Integer, String> levels = c.sideInput(levelsView);
+                                Map<String, Integer> lanes = c.sideInput(lanesView);
+
+                                Set<String> tables = levels.get(depth);
+                                for (String table : tables) {
+                                  if (lanes.getOrDefault(table, 0) != lane) {
+                                    continue;
+                                  }
+                                  for (String file : allFiles.get(table)) {
+                                    c.output(KV.of(file, table));
+                                  }
                                 }
                               }
-                            }
-                          })
-                      .withSideInputs(levelsView))
-              .apply("Wait for previous depth " + depth, Wait.on(previousComputation));
-      PCollection<Mutation> mutations =
-          levelFiles.apply(
-              "Avro files as mutations " + depth, new AvroTableFileAsMutations(ddlView));
-
-      SpannerWriteResult result =
-          mutations.apply(
-              "Write mutations " + depth,
-              LocalSpannerIO.write()
-                  .withSchemaReadySignal(ddl)
-                  .withSpannerConfig(spannerConfig)
-                  .withCommitDeadline(Duration.standardMinutes(1))
-                  .withMaxCumulativeBackoff(Duration.standardHours(2))
-                  .withMaxNumMutations(10000)
-                  .withGroupingFactor(100)
-                  .withDialectView(dialectView));
-      previousComputation = result.getOutput();
+                            })
+                        .withSideInputs(levelsView, lanesView))
+                .apply("Wait for previous depth " + stage, Wait.on(previousComputation));
+        PCollection<Mutation> mutations =
+            levelFiles.apply(
+                "Avro files as mutations " + stage, new AvroTableFileAsMutations(ddlView));
+
+        SpannerWriteResult result =
+            mutations.apply(
+                "Write mutations " + stage,
+                LocalSpannerIO.write()
+                    .withSchemaReadySignal(ddl)
+                    .withSpannerConfig(spannerConfig)
+                    .withCommitDeadline(Duration.standardMinutes(1))
+                    .withMaxCumulativeBackoff(Duration.standardHours(2))
+                    .withMaxNumMutations(10000)
+                    .withGroupingFactor(100)
+                    .withDialectView(dialectView));
+        previousComputation = result.getOutput();
+      }
+      laneComputations[lane] = previousComputation;
     }
-    ddl.apply(Wait.on(previousComputation))
+    ddl.apply(Wait.on(laneComputations))
+        .apply(
+            "Apply delta exports",
+            new ApplyDeltaExports(
+                spannerConfig, importDirectory, deltaInputDirs, ddlView, dialectView))
         .apply(
             "Create Indexes", new ApplyDDLTransform(spannerConfig, pendingIndexes, waitForIndexes))
         .apply(
@@ -288,6 +350,53 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
     return PDone.in(begin.getPipeline());
   }
 
+  /**
+   * Assigns the tables to lanes of writes, keeping each interleaving tree in a single lane. Trees
+   * are placed largest first, by their number of files, each in the least loaded lane, so that a
+   * large tree does not hold back the import of the other trees.
+   */
+  @VisibleForTesting
+  static Map<String, Integer> assignLanes(
+      Ddl ddl, HashMultimap<String, String> tableFiles, int lanes) {
+    List<List<String>> trees = new ArrayList<>();
+    Map<String, Integer> treeSizes = new HashMap<>();
+    for (Table root : ddl.rootTables()) {
+      List<String> tree = new ArrayList<>();
+      int size = 0;
+      LinkedList<Table> pending = Lists.newLinkedList();
+      pending.add(root);
+      while (!pending.isEmpty()) {
+        Table table = pending.removeFirst();
+        String tableName = table.name().toLowerCase();
+        tree.add(tableName);
+        size += tableFiles.get(tableName).size();
+        pending.addAll(ddl.childTables(tableName));
+      }
+      trees.add(tree);
+      treeSizes.put(tree.get(0), size);
+    }
+    trees.sort(
+        Comparator.<List<String>>comparingInt(tree -> treeSizes.get(tree.get(0)))
+            .reversed()
+            .thenComparing(tree -> tree.get(0)));
+
+    long[] laneSizes = new long[lanes];
+    Map<String, Integer> result = new HashMap<>();
+    for (List<String> tree : trees) {
+      int lane = 0;
+      for (int i = 1; i < lanes; i++) {
+        if (laneSizes[i] < laneSizes[lane]) {
+          lane = i;
+        }
+      }
+      laneSizes[lane] += treeSizes.get(tree.get(0));
+      for (String tableName : tree) {
+        result.put(tableName, lane);
+      }
+    }
+    return result;
+  }
+
   /** Read contents of the top-level manifest file. */
   @VisibleForTesting
   static class ReadExportManifestFile extends PTransform<PBegin, PCollection<Export>> {
@@ -324,6 +433,13 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
                     @ProcessElement
                     public void processElement(ProcessContext c) {
                       Export proto = c.element();
+                      if (!proto.getBaseExport().isEmpty()) {
+                        throw new RuntimeException(
+                            String.format(
+                                "The export is a delta of %s. Import its base export, with the"
+                                    + " delta exports in --deltaInputDirs.",
+                                proto.getBaseExport()));
+                      }
                       Dialect dialect = c.sideInput(dialectView);
                       ProtoDialect protoDialect = proto.getDialect();
                       if (!protoDialect.name().equals(dialect.name())) {
@@ -340,7 +456,7 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
       return manifest;
     }
 
-    private static Export readManifest(ResourceId fileResource) {
+    static Export readManifest(ResourceId fileResource) {
       Export.Builder result = Export.newBuilder();
       try (InputStream stream = Channels.newInputStream(FileSystems.open(fileResource))) {
         Reader reader = new InputStreamReader(stream);
@@ -371,24 +487,30 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
 
                 @ProcessElement
                 public void processElement(ProcessContext c) {
-                  try {
-                    KV<String, String> kv = c.element();
-                    String filePath = GcsUtil.joinPath(importDirectory.get(), kv.getValue());
-                    MatchResult match = FileSystems.match(filePath, EmptyMatchTreatment.DISALLOW);
-                    ResourceId resourceId = match.metadata().get(0).resourceId();
-                    TableManifest.Builder builder = TableManifest.newBuilder();
-                    try (InputStream stream =
-                        Channels.newInputStream(FileSystems.open(resourceId))) {
-                      Reader reader = new InputStreamReader(stream);
-                      JsonFormat.parser().merge(reader, builder);
-                    }
-                    c.output(KV.of(kv.getKey(), builder.build()));
-                  } catch (IOException e) {
-                    throw new RuntimeException(e);
-                  }
+                  KV<String, String> kv = c.element();
+                  c.output(
+                      KV.of(
+                          kv.getKey(),
+                          readTableManifest(
+                              GcsUtil.joinPath(importDirectory.get(), kv.getValue()))));
                 }
               }));
     }
+
+    static TableManifest readTableManifest(String filePath) {
+      try {
+        MatchResult match = FileSystems.match(filePath, EmptyMatchTreatment.DISALLOW);
+        ResourceId resourceId = match.metadata().get(0).resourceId();
+        TableManifest.Builder builder = TableManifest.newBuilder();
+        try (InputStream stream = Channels.newInputStream(FileSystems.open(resourceId))) {
+          Reader reader = new InputStreamReader(stream);
+          JsonFormat.parser().merge(reader, builder);
+        }
+        return builder.build();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
 
   private static class CreateTables extends PTransform<PBegin, PCollectionTuple> {
@@ -776,24 +898,36 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
     public void processElement(ProcessContext c) {
       KV<String, TableManifest> kv = c.element();
       String table = kv.getKey();
-      TableManifest manifest = kv.getValue();
-      boolean gcs = GcsPath.GCS_URI.matcher(importDirectory.get()).matches();
+      for (String file :
+          validateFiles(c.getPipelineOptions(), importDirectory.get(), kv.getValue())) {
+        c.output(KV.of(table, file));
+      }
+    }
+
+    /**
+     * Validates the checksums of the files of a table manifest in a directory. Returns the paths of
+     * the files.
+     */
+    static List<String> validateFiles(
+        PipelineOptions options, String directory, TableManifest manifest) {
+      boolean gcs = GcsPath.GCS_URI.matcher(directory).matches();
       if (gcs) {
-        validateGcsFiles(c, table, manifest);
+        return validateGcsFiles(options, directory, manifest);
       } else {
-        validateLocalFiles(c, table, manifest);
+        return validateLocalFiles(directory, manifest);
       }
     }
 
-    private void validateGcsFiles(ProcessContext c, String table, TableManifest manifest) {
+    private static List<String> validateGcsFiles(
+        PipelineOptions options, String directory, TableManifest manifest) {
       org.apache.beam.sdk.extensions.gcp.util.GcsUtil gcsUtil =
-          c.getPipelineOptions().as(GcsOptions.class).getGcsUtil();
+          options.as(GcsOptions.class).getGcsUtil();
       // Convert file names to GcsPaths.
       List<GcsPath> gcsPaths =
           Lists.transform(
-              manifest.getFilesList(),
-              f -> GcsPath.fromUri(importDirectory.get()).resolve(f.getName()));
+              manifest.getFilesList(), f -> GcsPath.fromUri(directory).resolve(f.getName()));
       List<String> checksums = FileChecksum.getGcsFileChecksums(gcsUtil, gcsPaths);
+      List<String> result = new ArrayList<>();
       for (int i = 0; i < gcsPaths.size(); i++) {
         GcsPath path = gcsPaths.get(i);
         String fileName = gcsPaths.get(i).getFileName().getObject();
@@ -805,13 +939,15 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
             fileName,
             expectedHash,
             actualHash);
-        c.output(KV.of(table, path.toString()));
+        result.add(path.toString());
       }
+      return result;
     }
 
-    private void validateLocalFiles(ProcessContext c, String table, TableManifest manifest) {
+    private static List<String> validateLocalFiles(String directory, TableManifest manifest) {
+      List<String> result = new ArrayList<>();
       for (TableManifest.File file : manifest.getFilesList()) {
-        Path filePath = Paths.get(importDirectory.get(), file.getName());
+        Path filePath = Paths.get(directory, file.getName());
         String actualHash = FileChecksum.getLocalFileChecksum(filePath);
         String expectedHash = file.getMd5();
         Verify.verify(
@@ -820,8 +956,9 @@ public class ImportTransform extends PTransform<PBegin, PDone> {
             filePath,
             expectedHash,
             actualHash);
-        c.output(KV.of(table, filePath.toString()));
+        result.add(filePath.toString());
       }
+      return result;
     }
   }
 }
@@ -0,0 +1,578 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import static com.google.cloud.teleport.spanner.SpannerTableFilter.getFilteredTables;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.ResultSet;
+import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Value;
+import com.google.cloud.teleport.spanner.ImportTransform.ReadExportManifestFile;
+import com.google.cloud.teleport.spanner.ddl.Column;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.ddl.IndexColumn;
+import com.google.cloud.teleport.spanner.ddl.Table;
+import com.google.cloud.teleport.spanner.proto.ExportProtos.Export;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.gcp.spanner.LocalSpannerAccessor;
+import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
+import org.apache.beam.sdk.io.gcp.spanner.Transaction;
+import org.apache.beam.sdk.options.ValueProvider;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.Distinct;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.GroupIntoBatches;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.Reshuffle;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PBegin;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the rows of the exported tables that changed since a base export, for a delta export.
+ *
+ * <p>The keys of the rows changed between the snapshot time of the base export and the read
+ * timestamp of the export are read from a change stream, and the rows are read again by key at the
+ * read timestamp of the export. The keys without a row, i.e. of the rows deleted since the base
+ * export, are output as rows of the {@code <table>-deletes} tables, holding the primary key columns
+ * only. The change stream must track all the columns of the exported tables, and the base export
+ * must still be within the retention period of the change stream.
+ *
+ * <p>The changes are read in time slices of {@link #TIME_SLICE_SECONDS}, for which the partitions
+ * of the change stream are listed again, so that the partitions of every slice are read in
+ * parallel.
+ *
+ * <p>Only GoogleSQL databases are supported. Nothing is read when there is no base export.
+ */
+class ReadChangedRows extends PTransform<PBegin, PCollection<Struct>> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReadChangedRows.class);
+
+  // Number of keys read by a single query.
+  private static final int KEY_BATCH_SIZE = 1000;
+
+  private static final long HEARTBEAT_MILLIS = 10000;
+
+  // Duration of the time slices the partitions of the change stream are listed for.
+  @VisibleForTesting static final long TIME_SLICE_SECONDS = 600;
+
+  private final SpannerConfig spannerConfig;
+  private final ValueProvider<String> baseExportDir;
+  private final ValueProvider<String> changeStreamName;
+  private final ValueProvider<String> tableNames;
+  private final PCollectionView<Transaction> tx;
+  private final PCollectionView<String> readTimestamp;
+  private final PCollectionView<Ddl> ddlView;
+
+  ReadChangedRows(
+      SpannerConfig spannerConfig,
+      ValueProvider<String> baseExportDir,
+      ValueProvider<String> changeStreamName,
+      ValueProvider<String> tableNames,
+      PCollectionView<Transaction> tx,
+      PCollectionView<String> readTimestamp,
+      PCollectionView<Ddl> ddlView) {
+    this.spannerConfig = spannerConfig;
+    this.baseExportDir = baseExportDir;
+    this.changeStreamName = changeStreamName;
+    this.tableNames = tableNames;
+    this.tx = tx;
+    this.readTimestamp = readTimestamp;
+    this.ddlView = ddlView;
+  }
+
+  @Override
+  public PCollection<Struct> expand(PBegin begin) {
+    return begin
+        .apply("Start delta export", Create.of(1))
+        .apply(
+            "List time slices",
+            ParDo.of(new ListTimeSlicesFn()).withSideInputs(readTimestamp, ddlView))
+        .apply("Reshuffle time slices", Reshuffle.viaRandomKey())
+        .apply("List change stream partitions", ParDo.of(new ListPartitionsFn()))
+        .apply("Reshuffle partitions", Reshuffle.viaRandomKey())
+        .apply("Read changed keys", ParDo.of(new ReadChangedKeysFn()).withSideInputs(ddlView))
+        .apply("Distinct changed keys", Distinct.create())
+        .apply("Batch changed keys", GroupIntoBatches.ofSize(KEY_BATCH_SIZE))
+        .apply("Read changed rows", ParDo.of(new ReadRowsByKeyFn()).withSideInputs(tx, ddlView))
+        .setCoder(SerializableCoder.of(Struct.class));
+  }
+
+  /**
+   * Lists the time slices to read the changes of, from the snapshot time of the base export to the
+   * read timestamp of the export, as pairs of start and end timestamps.
+   */
+  private class ListTimeSlicesFn extends DoFn<Integer, KV<String, String>> {
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      String baseExport = baseExportDir.get();
+      if (Strings.isNullOrEmpty(baseExport)) {
+        return;
+      }
+      Ddl ddl = c.sideInput(ddlView);
+      if (ddl.dialect() != Dialect.GOOGLE_STANDARD_SQL) {
+        throw new IllegalArgumentException(
+            "Delta exports are only supported for GoogleSQL databases.");
+      }
+      String streamName = changeStreamName.get();
+      if (Strings.isNullOrEmpty(streamName) || ddl.changeStream(streamName) == null) {
+        throw new IllegalArgumentException(
+            "A delta export requires --changeStreamName, the name of a change stream tracking all"
+                + " the exported tables. Change stream not found: "
+                + streamName);
+      }
+      Map<String, Set<String>> trackedColumns =
+          trackedColumns(ddl.changeStream(streamName).forClause());
+      for (Table table : getFilteredTables(ddl, tableNamesList(tableNames.get()))) {
+        // Generated columns are not exported, the keys of the deleted rows could not be.
+        if (keyColumns(table).stream().anyMatch(Column::isGenerated)) {
+          throw new IllegalArgumentException(
+              "Delta exports do not support tables with generated primary key columns: "
+                  + table.name());
+        }
+        if (!tracksAllColumns(trackedColumns, table)) {
+          throw new IllegalArgumentException(
+              String.format(
+                  "Change stream %s does not track all the columns of the exported table %s.",
+                  streamName, table.name()));
+        }
+      }
+      Export base =
+          ReadExportManifestFile.readManifest(
+              FileSystems.matchNewResource(
+                  GcsUtil.joinPath(baseExport, "spanner-export.json"), false));
+      if (base.getSnapshotTime().isEmpty()) {
+        throw new IllegalArgumentException(
+            "The base export " + baseExport + " has no snapshot time to export the changes since.");
+      }
+      com.google.cloud.Timestamp start =
+          com.google.cloud.Timestamp.parseTimestamp(base.getSnapshotTime());
+      com.google.cloud.Timestamp end =
+          com.google.cloud.Timestamp.parseTimestamp(c.sideInput(readTimestamp));
+      LOG.info("Exporting the changes from {} to {} of change stream {}", start, end, streamName);
+
+      for (KV<com.google.cloud.Timestamp, com.google.cloud.Timestamp> slice :
+          timeSlices(start, end)) {
+        c.output(KV.of(slice.getKey().toString(), slice.getValue().toString()));
+      }
+    }
+  }
+
+  /**
+   * Lists the partitions of the change stream at the start of a time slice, with the time slice to
+   * read each of them for.
+   */
+  private class ListPartitionsFn extends DoFn<KV<String, String>, KV<String, KV<String, String>>> {
+
+    private transient LocalSpannerAccessor spannerAccessor;
+
+    @Setup
+    public void setup() {
+      spannerAccessor = LocalSpannerAccessor.getOrCreate(spannerConfig);
+    }
+
+    @Teardown
+    public void teardown() {
+      spannerAccessor.close();
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      com.google.cloud.Timestamp start =
+          com.google.cloud.Timestamp.parseTimestamp(c.element().getKey());
+      com.google.cloud.Timestamp end =
+          com.google.cloud.Timestamp.parseTimestamp(c.element().getValue());
+      try (ResultSet resultSet =
+          spannerAccessor
+              .getDatabaseClient()
+              .singleUse()
+              .executeQuery(changeStreamQuery(changeStreamName.get(), start, end, null))) {
+        while (resultSet.next()) {
+          for (Struct record : resultSet.getCurrentRowAsStruct().getStructList(0)) {
+            for (Struct childPartitions : record.getStructList("child_partitions_record")) {
+              String childStart = childPartitions.getTimestamp("start_timestamp").toString();
+              for (Struct child : childPartitions.getStructList("child_partitions")) {
+                c.output(
+                    KV.of(child.getString("token"), KV.of(childStart, c.element().getValue())));
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the keys of the rows changed in a partition of the change stream, and in the partitions
+   * it splits or merges into, up to the end of its time slice.
+   *
+   * <p>A partition merged from several parents is read from the parent with the lowest token only.
+   * Keys are output per table, as JSON arrays of their column values in primary key order.
+   */
+  private class ReadChangedKeysFn extends DoFn<KV<String, KV<String, String>>, KV<String, String>> {
+
+    private transient LocalSpannerAccessor spannerAccessor;
+
+    @Setup
+    public void setup() {
+      spannerAccessor = LocalSpannerAccessor.getOrCreate(spannerConfig);
+    }
+
+    @Teardown
+    public void teardown() {
+      spannerAccessor.close();
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      Ddl ddl = c.sideInput(ddlView);
+      Set<String> exportedTables =
+          getFilteredTables(ddl, tableNamesList(tableNames.get())).stream()
+              .map(t -> t.name().toLowerCase())
+              .collect(Collectors.toSet());
+      String streamName = changeStreamName.get();
+      com.google.cloud.Timestamp end =
+          com.google.cloud.Timestamp.parseTimestamp(c.element().getValue().getValue());
+
+      // The partitions split or merged into during the time slice, which is short enough for them
+      // to be read one after the other.
+      LinkedList<KV<String, String>> pending = new LinkedList<>();
+      pending.add(KV.of(c.element().getKey(), c.element().getValue().getKey()));
+      while (!pending.isEmpty()) {
+        KV<String, String> partition = pending.removeFirst();
+        String token = partition.getKey();
+        com.google.cloud.Timestamp start =
+            com.google.cloud.Timestamp.parseTimestamp(partition.getValue());
+        try (ResultSet resultSet =
+            spannerAccessor
+                .getDatabaseClient()
+                .singleUse()
+                .executeQuery(changeStreamQuery(streamName, start, end, token))) {
+          while (resultSet.next()) {
+            for (Struct record : resultSet.getCurrentRowAsStruct().getStructList(0)) {
+              for (Struct dataChange : record.getStructList("data_change_record")) {
+                String tableName = dataChange.getString("table_name");
+                if (!exportedTables.contains(tableName.toLowerCase())) {
+                  continue;
+                }
+                Table table = ddl.table(tableName);
+                for (Struct mod : dataChange.getStructList("mods")) {
+                  c.output(KV.of(table.name(), keyJson(table, mod.getJson("keys"))));
+                }
+              }
+              for (Struct childPartitions : record.getStructList("child_partitions_record")) {
+                String childStart = childPartitions.getTimestamp("start_timestamp").toString();
+                for (Struct child : childPartitions.getStructList("child_partitions")) {
+                  if (token.equals(
+                      Collections.min(child.getStringList("parent_partition_tokens")))) {
+                    pending.add(KV.of(child.getString("token"), childStart));
+                  }
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the changed rows of a table by key at the read timestamp of the export. Outputs the rows
+   * found, and the keys of the rows not found as rows of the {@code <table>-deletes} table.
+   */
+  private class ReadRowsByKeyFn extends DoFn<KV<String, Iterable<String>>, Struct> {
+
+    private transient LocalSpannerAccessor spannerAccessor;
+
+    @Setup
+    public void setup() {
+      spannerAccessor = LocalSpannerAccessor.getOrCreate(spannerConfig);
+    }
+
+    @Teardown
+    public void teardown() {
+      spannerAccessor.close();
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      Ddl ddl = c.sideInput(ddlView);
+      Table table = ddl.table(c.element().getKey());
+      List<Column> keyColumns = keyColumns(table);
+      List<Column> columns =
+          table.columns().stream().filter(col -> !col.isGenerated()).collect(Collectors.toList());
+
+      // The keys not read yet, by their encoding.
+      Map<String, List<Value>> missingKeys = new LinkedHashMap<>();
+      // Read by key rather than with a query, which would not match the NULL and NaN key values.
+      KeySet.Builder keySet = KeySet.newBuilder();
+      for (String json : c.element().getValue()) {
+        List<Value> key = parseKey(table, json);
+        missingKeys.put(DeltaKeys.encode(table.name(), key), key);
+        keySet.addKey(DeltaKeys.toKey(key));
+      }
+
+      try (ResultSet resultSet =
+          spannerAccessor
+              .getBatchClient()
+              .batchReadOnlyTransaction(c.sideInput(tx).transactionId())
+              .read(
+                  table.name(),
+                  keySet.build(),
+                  columns.stream().map(Column::name).collect(Collectors.toList()))) {
+        while (resultSet.next()) {
+          Struct row = resultSet.getCurrentRowAsStruct();
+          Map<String, Value> keyValues = new LinkedHashMap<>();
+          for (Column col : keyColumns) {
+            keyValues.put(col.name(), row.getValue(col.name()));
+          }
+          missingKeys.remove(DeltaKeys.encode(table.name(), DeltaKeys.keyOf(table, keyValues)));
+          c.output(exportRow(table.name(), columns, row));
+        }
+      }
+
+      for (List<Value> key : missingKeys.values()) {
+        Struct.Builder deletedKey =
+            Struct.newBuilder()
+                .set("_spanner_table")
+                .to(table.name() + DeltaKeys.DELETED_KEYS_SUFFIX);
+        for (int i = 0; i < keyColumns.size(); i++) {
+          deletedKey.set(keyColumns.get(i).name()).to(key.get(i));
+        }
+        c.output(deletedKey.build());
+      }
+    }
+  }
+
+  private static List<String> tableNamesList(String tableNames) {
+    if (tableNames.trim().isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Arrays.asList(tableNames.split(",\\s*"));
+  }
+
+  private static List<Column> keyColumns(Table table) {
+    List<Column> result = new ArrayList<>();
+    for (IndexColumn pk : table.primaryKeys()) {
+      result.add(table.column(pk.name()));
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  static Statement changeStreamQuery(
+      String changeStreamName, Timestamp start, Timestamp end, String partitionToken) {
+    return Statement.newBuilder(
+            String.format(
+                "SELECT ChangeRecord FROM READ_%s(start_timestamp => @startTimestamp,"
+                    + " end_timestamp => @endTimestamp, partition_token => @partitionToken,"
+                    + " heartbeat_milliseconds => @heartbeatMillis)",
+                changeStreamName))
+        .bind("startTimestamp")
+        .to(start)
+        .bind("endTimestamp")
+        .to(end)
+        .bind("partitionToken")
+        .to(partitionToken)
+        .bind("heartbeatMillis")
+        .to(HEARTBEAT_MILLIS)
+        .build();
+  }
+
+  /**
+   * Splits the time from {@code start} to {@code end} into slices of {@link #TIME_SLICE_SECONDS}.
+   */
+  @VisibleForTesting
+  static List<KV<Timestamp, Timestamp>> timeSlices(Timestamp start, Timestamp end) {
+    List<KV<Timestamp, Timestamp>> result = new ArrayList<>();
+    Timestamp sliceStart = start;
+    while (sliceStart.compareTo(end) < 0) {
+      Timestamp sliceEnd =
+          Timestamp.ofTimeSecondsAndNanos(
+              sliceStart.getSeconds() + TIME_SLICE_SECONDS, sliceStart.getNanos());
+      if (sliceEnd.compareTo(end) > 0) {
+        sliceEnd = end;
+      }
+      result.add(KV.of(sliceStart, sliceEnd));
+      sliceStart = sliceEnd;
+    }
+    return result;
+  }
+
+  /**
+   * Parses the for clause of a change stream, as read by the {@link
+   * com.google.cloud.teleport.spanner.ddl.InformationSchemaScanner}. Returns null if the change
+   * stream tracks all the tables, otherwise the lower case names of the tracked columns by lower
+   * case table name, or null for a table whose columns are all tracked.
+   */
+  @VisibleForTesting
+  static Map<String, Set<String>> trackedColumns(String forClause) {
+    String clause = Strings.nullToEmpty(forClause).trim();
+    if (clause.equalsIgnoreCase("FOR ALL")) {
+      return null;
+    }
+    Map<String, Set<String>> result = new HashMap<>();
+    if (!clause.regionMatches(true, 0, "FOR ", 0, 4)) {
+      return result;
+    }
+    // Splits the tables on the commas outside of the column lists.
+    List<String> tables = new ArrayList<>();
+    int depth = 0;
+    int tableStart = 4;
+    for (int i = tableStart; i < clause.length(); i++) {
+      char ch = clause.charAt(i);
+      if (ch == '(') {
+        depth++;
+      } else if (ch == ')') {
+        depth--;
+      } else if (ch == ',' && depth == 0) {
+        tables.add(clause.substring(tableStart, i));
+        tableStart = i + 1;
+      }
+    }
+    tables.add(clause.substring(tableStart));
+    for (String table : tables) {
+      int columnsStart = table.indexOf('(');
+      if (columnsStart < 0) {
+        result.put(unquote(table), null);
+        continue;
+      }
+      Set<String> columns = new HashSet<>();
+      for (String column : table.substring(columnsStart + 1, table.lastIndexOf(')')).split(",")) {
+        if (!column.trim().isEmpty()) {
+          columns.add(unquote(column));
+        }
+      }
+      result.put(unquote(table.substring(0, columnsStart)), columns);
+    }
+    return result;
+  }
+
+  /** Returns whether the columns tracked by a change stream include all the columns of a table. */
+  @VisibleForTesting
+  static boolean tracksAllColumns(Map<String, Set<String>> trackedColumns, Table table) {
+    if (trackedColumns == null) {
+      return true;
+    }
+    String tableName = table.name().toLowerCase();
+    if (!trackedColumns.containsKey(tableName)) {
+      return false;
+    }
+    Set<String> columns = trackedColumns.get(tableName);
+    if (columns == null) {
+      return true;
+    }
+    // The primary key columns are always tracked, generated columns are not exported.
+    Set<String> keyColumns =
+        keyColumns(table).stream().map(col -> col.name().toLowerCase()).collect(Collectors.toSet());
+    return table.columns().stream()
+        .filter(col -> !col.isGenerated())
+        .map(col -> col.name().toLowerCase())
+        .allMatch(col -> keyColumns.contains(col) || columns.contains(col));
+  }
+
+  private static String unquote(String identifier) {
+    return identifier.trim().replace("`", "").toLowerCase();
+  }
+
+  /**
+   * Returns a row read by key as the full export of the table reads it: with its table name, and
+   * with the JSON and NUMERIC array values as strings.
+   */
+  @VisibleForTesting
+  static Struct exportRow(String tableName, List<Column> columns, Struct row) {
+    Struct.Builder result = Struct.newBuilder().set("_spanner_table").to(tableName);
+    for (Column col : columns) {
+      String name = col.name();
+      boolean isNull = row.isNull(name);
+      switch (col.typeString()) {
+        case "JSON":
+          result.set(name).to(isNull ? null : row.getJson(name));
+          break;
+        case "ARRAY<JSON>":
+          result.set(name).toStringArray(isNull ? null : row.getJsonList(name));
+          break;
+        case "ARRAY<NUMERIC>":
+          result
+              .set(name)
+              .toStringArray(
+                  isNull
+                      ? null
+                      : row.getBigDecimalList(name).stream()
+                          .map(num -> num == null ? null : num.toString())
+                          .collect(Collectors.toList()));
+          break;
+        default:
+          result.set(name).to(row.getValue(name));
+      }
+    }
+    return result.build();
+  }
+
+  /**
+   * Converts the keys of a change stream mod, a JSON object by column name, to a JSON array of
+   * their values in primary key order.
+   */
+  @VisibleForTesting
+  static String keyJson(Table table, String modKeys) {
+    JsonObject keys = JsonParser.parseString(modKeys).getAsJsonObject();
+    JsonArray result = new JsonArray();
+    for (IndexColumn pk : table.primaryKeys()) {
+      result.add(keys.get(pk.name()));
+    }
+    return result.toString();
+  }
+
+  /** Parses a key output by {@link #keyJson}. */
+  @VisibleForTesting
+  static List<Value> parseKey(Table table, String keyJson) {
+    JsonArray values = JsonParser.parseString(keyJson).getAsJsonArray();
+    List<Value> result = new ArrayList<>();
+    int i = 0;
+    for (IndexColumn pk : table.primaryKeys()) {
+      JsonElement value = values.get(i++);
+      result.add(DeltaKeys.fromJson(table.column(pk.name()), value));
+    }
+    return result;
+  }
+}
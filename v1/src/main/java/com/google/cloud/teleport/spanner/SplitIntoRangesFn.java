@@ -16,20 +16,22 @@
 package com.google.cloud.teleport.spanner;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.beam.sdk.io.FileIO.ReadableFile;
-import org.apache.beam.sdk.io.FileSystems;
 import org.apache.beam.sdk.io.fs.MatchResult.Metadata;
 import org.apache.beam.sdk.io.range.OffsetRange;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +40,9 @@ import org.slf4j.LoggerFactory;
  * Splits a table File into a set of {@link FileShard} objects storing the file, tablename and the
  * range offset/size.
  *
+ * <p>In handleNewLine mode, the ranges end at record boundaries, which are found by scanning the
+ * file from several offsets in parallel, see {@link CsvBoundaryScanner}.
+ *
  * <p>Based on <code>SplitIntoRangesFn</code> in {@link
  * org.apache.beam.sdk.io.ReadAllViaFileBasedSource}.
  */
@@ -45,6 +50,8 @@ import org.slf4j.LoggerFactory;
 class SplitIntoRangesFn extends DoFn<ReadableFile, FileShard> {
   static final long DEFAULT_BUNDLE_SIZE = 64 * 1024 * 1024L;
   private static final Logger LOG = LoggerFactory.getLogger(SplitIntoRangesFn.class);
+  // Number of threads scanning a file for record boundaries, in handleNewLine mode.
+  private static final int SPLIT_THREADS = 8;
 
   final PCollectionView<Map<String, String>> filenamesToTableNamesMapView;
   private final long desiredBundleSize;
@@ -52,6 +59,7 @@ class SplitIntoRangesFn extends DoFn<ReadableFile, FileShard> {
   private final ValueProvider<Character> columnDelimiter;
   private final ValueProvider<Character> escapeChar;
   private final ValueProvider<Boolean> handleNewLine;
+  private transient ExecutorService executor;
 
   SplitIntoRangesFn(
       long desiredBundleSize,
@@ -81,6 +89,24 @@ class SplitIntoRangesFn extends DoFn<ReadableFile, FileShard> {
     this.handleNewLine = handleNewLine;
   }
 
+  @Setup
+  public void setup() {
+    executor =
+        Executors.newFixedThreadPool(
+            SPLIT_THREADS,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("split-into-ranges-%d")
+                .build());
+  }
+
+  @Teardown
+  public void teardown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
   @ProcessElement
   public void processElement(ProcessContext c) throws FileNotFoundException {
     Map<String, String> filenamesToTableNamesMap = c.sideInput(filenamesToTableNamesMapView);
@@ -109,160 +135,97 @@ class SplitIntoRangesFn extends DoFn<ReadableFile, FileShard> {
       }
       return;
     }
+    char quote = quoteChar.get();
+    char delimiter = columnDelimiter.get();
+    char escape = (escapeChar == null || escapeChar.get() == null) ? ((char) 0) : escapeChar.get();
+    if (!CsvBoundaryScanner.isAscii(quote)
+        || !CsvBoundaryScanner.isAscii(delimiter)
+        || !CsvBoundaryScanner.isAscii(escape)) {
+      // Record boundaries can only be found in the bytes of the file with ASCII special characters.
+      LOG.info(
+          "Not splitting {}, as its quote, delimiter or escape character is not ASCII", filename);
+      c.output(
+          FileShard.create(
+              tableName, c.element(), new OffsetRange(0, metadata.sizeBytes()), Long.MAX_VALUE));
+      return;
+    }
     try {
-      ReadableByteChannel channel = FileSystems.open(metadata.resourceId());
-      InputStream stream = Channels.newInputStream(channel);
-      Reader reader = new InputStreamReader(stream);
-      char escape =
-          (escapeChar == null || escapeChar.get() == null) ? ((char) 0) : escapeChar.get();
+      for (KV<OffsetRange, Long> range :
+          split(
+              new CsvBoundaryScanner(
+                  metadata.resourceId(), metadata.sizeBytes(), quote, delimiter, escape),
+              metadata.sizeBytes())) {
+        c.output(FileShard.create(tableName, c.element(), range.getKey(), range.getValue()));
+      }
+    } catch (IOException | ExecutionException e) {
+      throw new RuntimeException("Unable to readFile: " + metadata.resourceId().toString(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while splitting: " + filename, e);
+    }
+  }
+
+  /**
+   * Splits a file into record aligned ranges, with their record counts.
+   *
+   * <p>We need the record counts to know when to stop reading a shard, as the CSVParser library
+   * does not provide a way to use the end of shard position (in bytes) directly. The file is cut
+   * every {@code desiredBundleSize} bytes and each cut is moved to the first record boundary after
+   * it, found by scanning a few records from there, all cuts in parallel. Each range is then parsed
+   * in parallel from its start, which is known to be a boundary once the previous range was, to
+   * count its records and verify that its end is a boundary too. If the end of a range was not
+   * found right, the rest of the file is split in a single pass.
+   */
+  private List<KV<OffsetRange, Long>> split(CsvBoundaryScanner scanner, long size)
+      throws IOException, ExecutionException, InterruptedException {
+    List<Future<Long>> boundaries = new ArrayList<>();
+    for (long cut = desiredBundleSize; cut < size; cut += desiredBundleSize) {
+      long from = cut;
+      boundaries.add(executor.submit(() -> scanner.findBoundary(from)));
+    }
+    List<Long> starts = new ArrayList<>();
+    starts.add(0L);
+    for (Future<Long> boundary : boundaries) {
+      long start = boundary.get();
+      if (start > starts.get(starts.size() - 1) && start < size) {
+        starts.add(start);
+      }
+    }
 
-      int data = 0, prevData = 0;
-      // We need to store the record count to know when to stop reading the shard as the CSVParser
-      // library does not provide a way to use the end of shard position(in bytes) directly.
-      long bytesRead = 0, prevMarker = 0, maxShardSize = desiredBundleSize, recordCount = 0;
-      boolean quoted = false;
-      while (data != -1) {
-        data = reader.read();
-        bytesRead++;
-        // This always reads the first char of the column, which can either be the start of the row
-        // or the character after the delimiter.
-        // If the first char is a quote, we assume the whole value is going to be quoted to keep
-        // the behaviour consistent with the CSV parser.
-        quoted = ((char) data == quoteChar.get());
-        if (!quoted) {
-          // If unquoted, we need to reach the next unescaped delimiter or unescaped newline while
-          // skipping all characters. Any quotes found will be treated as part of the data.
-          prevData = data;
-          if ((char) data == columnDelimiter.get()) {
-            // The first character of the column was a delimiter.
-            continue;
-          }
-          if ((char) data == '\n') {
-            // The first character of the column was a newline.
-            recordCount++;
-            if (bytesRead > maxShardSize) {
-              c.output(
-                  FileShard.create(
-                      tableName,
-                      c.element(),
-                      new OffsetRange(prevMarker, prevMarker + bytesRead),
-                      recordCount));
-              prevMarker += bytesRead;
-              bytesRead = 0;
-              recordCount = 0;
-            }
-            continue;
-          }
-          while (data != -1) {
-            data = reader.read();
-            bytesRead++;
-            // If prev char is escaped, do nothing.
-            if ((char) prevData == escape) {
-              prevData = data;
-              continue;
-            }
-            prevData = data;
-            // We reached end of the column, we go back to the outer loop and move to the next
-            // column.
-            if ((char) data == columnDelimiter.get()) {
-              break;
-            }
-            // We reached an unescaped EOL, hence the record ends here.
-            if ((char) data == '\n') {
-              recordCount++;
-              if (bytesRead > maxShardSize) {
-                c.output(
-                    FileShard.create(
-                        tableName,
-                        c.element(),
-                        new OffsetRange(prevMarker, prevMarker + bytesRead),
-                        recordCount));
-                prevMarker += bytesRead;
-                bytesRead = 0;
-                recordCount = 0;
-              }
-              break;
-            }
-          }
-          // This means we reached a column delimiter, newline or end of file, go back to outer
-          // loop.
-          continue;
-        } else {
-          // If the first column character is a quote, we assume the whole data value is quoted. If
-          // the quote is followed by another quote, the value is still assumed to be quoted
-          // (""abc" is quoted "abc, ""abc would throw an error as it would treat it as character
-          // after a closed quote).
-          // In the quoted case, we know our value ends when we reach an unescaped quote,
-          // after which only whitespaces are allowed.  We throw an error if we find any character
-          // other  than a whitespace. We ignore any newlines or delimiters inside quotes.
-          while (data != -1) {
-            prevData = data;
-            data = reader.read();
-            bytesRead++;
-            // CSV quotes can be escaped via the escape character or the quote itself.
-            if ((char) data == escape || (char) data == quoteChar.get()) {
-              prevData = data;
-              data = reader.read();
-              bytesRead++;
-              if ((char) data == quoteChar.get()) {
-                // Character is quote hence ignore since prev was an escape.
-                continue;
-              }
-              // Next character is not a quote. If prev char was a quote, that denotes the value
-              // ended.
-              if ((char) prevData == quoteChar.get()) {
-                // We now skip to the next delimiter or EOL allowing only
-                // whitespaces as valid chars from here.
-                while (data != -1) {
-                  if ((char) data == columnDelimiter.get()) {
-                    prevData = data;
-                    break;
-                  }
-                  if ((char) data == '\n') {
-                    recordCount++;
-                    if (bytesRead > maxShardSize) {
-                      c.output(
-                          FileShard.create(
-                              tableName,
-                              c.element(),
-                              new OffsetRange(prevMarker, prevMarker + bytesRead),
-                              recordCount));
-                      prevMarker += bytesRead;
-                      bytesRead = 0;
-                      recordCount = 0;
-                    }
-                    break;
-                  }
-                  if ((char) data != ' ') {
-                    throw new RuntimeException("Found char '" + (char) data + "' outside quote");
-                  }
-                  prevData = data;
-                  data = reader.read();
-                  bytesRead++;
-                }
-                break;
-              }
-            }
-          }
+    List<Future<Long>> recordCounts = new ArrayList<>();
+    for (int i = 0; i < starts.size(); i++) {
+      long from = starts.get(i);
+      long to = i + 1 < starts.size() ? starts.get(i + 1) : size;
+      recordCounts.add(executor.submit(() -> scanner.countRecords(from, to)));
+    }
+    List<KV<OffsetRange, Long>> ranges = new ArrayList<>();
+    for (int i = 0; i < starts.size(); i++) {
+      long from = starts.get(i);
+      long recordCount;
+      try {
+        // The start of this range is a boundary, so a parse failure is a genuine one.
+        recordCount = recordCounts.get(i).get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
         }
+        throw e;
       }
-      // If the last record does not have a newline at the end, we need to account for that record
-      // as well.
-      if ((char) prevData != '\n') {
-        recordCount++;
+      if (recordCount < 0) {
+        LOG.warn(
+            "Record boundary at offset {} was not found in parallel, splitting the rest serially",
+            i + 1 < starts.size() ? starts.get(i + 1) : size);
+        for (Future<Long> pending : recordCounts) {
+          pending.cancel(true);
+        }
+        ranges.addAll(scanner.splitSerially(from, desiredBundleSize));
+        return ranges;
       }
-      // Add last shard to output collection only if it is non-empty.
       if (recordCount > 0) {
-        // We subtract one in the final offset to account for EOF read where data becomes -1.
-        c.output(
-            FileShard.create(
-                tableName,
-                c.element(),
-                new OffsetRange(prevMarker, prevMarker + bytesRead - 1),
-                recordCount));
+        long to = i + 1 < starts.size() ? starts.get(i + 1) : size;
+        ranges.add(KV.of(new OffsetRange(from, to), recordCount));
       }
-    } catch (IOException e) {
-      throw new RuntimeException("Unable to readFile: " + metadata.resourceId().toString());
     }
+    return ranges;
   }
 }
@@ -34,6 +34,7 @@ import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.options.ValueProvider.NestedValueProvider;
 import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.joda.time.Duration;
 
 /**
  * Text files to Cloud Spanner Import pipeline. This pipeline ingests CSV and other type of
@@ -293,6 +294,19 @@ public class TextImportPipeline {
     ValueProvider<String> getInvalidOutputPath();
 
     void setInvalidOutputPath(ValueProvider<String> value);
+
+    @TemplateParameter.Integer(
+        order = 17,
+        optional = true,
+        description = "Maximum buffering duration in seconds",
+        helpText =
+            "When the pipeline runs in streaming mode, the maximum time in seconds that mutations"
+                + " are buffered across bundles, to be written in batches sorted by key. 0 writes"
+                + " the mutations of each bundle as they come. Ignored in batch mode.")
+    @Default.Integer(0)
+    Integer getMaxBufferingDurationSeconds();
+
+    void setMaxBufferingDurationSeconds(Integer value);
   }
 
   public static void main(String[] args) {
@@ -321,7 +335,12 @@ public class TextImportPipeline {
 
     p.apply(
         new TextImportTransform(
-            spannerConfig, options.getImportManifest(), options.getInvalidOutputPath()));
+            spannerConfig,
+            options.getImportManifest(),
+            options.getInvalidOutputPath(),
+            options.getMaxBufferingDurationSeconds() > 0
+                ? Duration.standardSeconds(options.getMaxBufferingDurationSeconds())
+                : null));
 
     PipelineResult result = p.run();
     if (options.getWaitUntilFinish()
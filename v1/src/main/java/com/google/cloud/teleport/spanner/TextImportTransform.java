@@ -44,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.extensions.gcp.options.GcsOptions;
 import org.apache.beam.sdk.extensions.gcp.util.GcsUtil;
 import org.apache.beam.sdk.extensions.gcp.util.gcsfs.GcsPath;
@@ -92,14 +93,28 @@ public class TextImportTransform extends PTransform<PBegin, PDone> {
 
   private final ValueProvider<String> importManifest;
   private final ValueProvider<String> invalidOutputPath;
+  @Nullable private final Duration maxBufferingDuration;
 
   public TextImportTransform(
       SpannerConfig spannerConfig,
       ValueProvider<String> importManifest,
       ValueProvider<String> invalidOutputPath) {
+    this(spannerConfig, importManifest, invalidOutputPath, null);
+  }
+
+  /**
+   * Creates a transform which, on an unbounded input, buffers the mutations across bundles for at
+   * most {@code maxBufferingDuration}, see {@link LocalSpannerIO.Write#withMaxBufferingDuration}.
+   */
+  public TextImportTransform(
+      SpannerConfig spannerConfig,
+      ValueProvider<String> importManifest,
+      ValueProvider<String> invalidOutputPath,
+      @Nullable Duration maxBufferingDuration) {
     this.spannerConfig = spannerConfig;
     this.importManifest = importManifest;
     this.invalidOutputPath = invalidOutputPath;
+    this.maxBufferingDuration = maxBufferingDuration;
   }
 
   @Override
@@ -198,18 +213,21 @@ public class TextImportTransform extends PTransform<PBegin, PDone> {
                   "Text files as mutations. Depth: " + depth,
                   new TextTableFilesAsMutations(ddlView, tableColumnsView));
 
+      LocalSpannerIO.Write write =
+          LocalSpannerIO.write()
+              .withSpannerConfig(spannerConfig)
+              .withCommitDeadline(Duration.standardMinutes(1))
+              .withMaxCumulativeBackoff(Duration.standardHours(2))
+              .withMaxNumMutations(10000)
+              .withGroupingFactor(100)
+              .withDialectView(dialectView);
+      if (maxBufferingDuration != null) {
+        write = write.withMaxBufferingDuration(maxBufferingDuration);
+      }
       SpannerWriteResult result =
           mutations
               .apply("Wait for previous depth " + depth, Wait.on(previousComputation))
-              .apply(
-                  "Write mutations " + depth,
-                  LocalSpannerIO.write()
-                      .withSpannerConfig(spannerConfig)
-                      .withCommitDeadline(Duration.standardMinutes(1))
-                      .withMaxCumulativeBackoff(Duration.standardHours(2))
-                      .withMaxNumMutations(10000)
-                      .withGroupingFactor(100)
-                      .withDialectView(dialectView));
+              .apply("Write mutations " + depth, write);
       previousComputation = result.getOutput();
     }
 
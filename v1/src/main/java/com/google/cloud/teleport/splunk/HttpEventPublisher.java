@@ -15,6 +15,7 @@
  */
 package com.google.cloud.teleport.splunk;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.api.client.http.ByteArrayContent;
@@ -32,7 +33,9 @@ import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.apache.v2.ApacheHttpTransport;
 import com.google.api.client.util.ExponentialBackOff;
 import com.google.auto.value.AutoValue;
+import com.google.cloud.teleport.util.JsonEventsContent;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.io.ByteArrayInputStream;
@@ -46,6 +49,10 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.Nullable;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -92,6 +99,9 @@ public abstract class HttpEventPublisher {
 
   private static final String HTTPS_PROTOCOL_PREFIX = "https";
 
+  // Runs requests sent with executeAsync, one thread per connection. Created on first use.
+  private ExecutorService executor;
+
   public static Builder newBuilder() {
     return new AutoValue_HttpEventPublisher.Builder();
   }
@@ -114,6 +124,9 @@ public abstract class HttpEventPublisher {
 
   abstract Boolean enableGzipHttpCompression();
 
+  @Nullable
+  abstract Integer maxConnections();
+
   /**
    * Executes a POST for the list of {@link SplunkEvent} objects into Splunk's Http Event Collector
    * endpoint.
@@ -144,6 +157,40 @@ public abstract class HttpEventPublisher {
     return request.execute();
   }
 
+  /**
+   * Same as {@link HttpEventPublisher#execute(List)} but returns immediately. Requests run on a
+   * pool with one thread per connection, so up to {@code maxConnections} of them are sent at once
+   * over the shared connection pool of the {@link ApacheHttpTransport}.
+   *
+   * @param events List of {@link SplunkEvent}s
+   * @return a future completed with the {@link HttpResponse} for the POST, or failed with the
+   *     {@link IOException} raised while sending it.
+   */
+  public CompletableFuture<HttpResponse> executeAsync(List<SplunkEvent> events) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return execute(events);
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+        },
+        getExecutor());
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor =
+          Executors.newFixedThreadPool(
+              maxConnections(),
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("splunk-publisher-%d")
+                  .build());
+    }
+    return executor;
+  }
+
   /**
    * Same as {@link HttpEventPublisher#execute(List)} but with a single {@link SplunkEvent}.
    *
@@ -165,6 +212,11 @@ public abstract class HttpEventPublisher {
 
   /** Shutdown connection manager and releases all resources. */
   public void close() throws IOException {
+    synchronized (this) {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
     if (transport() != null) {
       LOG.info("Closing publisher transport.");
       transport().shutdown();
@@ -195,9 +247,16 @@ public abstract class HttpEventPublisher {
    */
   @VisibleForTesting
   protected HttpContent getContent(List<SplunkEvent> events) {
-    String payload = getStringPayload(events);
-    LOG.debug("Payload content: {}", payload);
-    return ByteArrayContent.fromString(CONTENT_TYPE, payload);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Payload content: {}", getStringPayload(events));
+    }
+
+    // Compressed requests are sent chunked anyway, so events are serialized straight into the
+    // gzip stream. Uncompressed requests are buffered to keep their Content-Length header.
+    if (enableGzipHttpCompression()) {
+      return JsonEventsContent.concatenated(CONTENT_TYPE, GSON, events);
+    }
+    return ByteArrayContent.fromString(CONTENT_TYPE, getStringPayload(events));
   }
 
   /** Utility method to get payload string from a list of {@link SplunkEvent}s. */
@@ -239,6 +298,10 @@ public abstract class HttpEventPublisher {
 
     abstract Integer maxElapsedMillis();
 
+    abstract Builder setMaxConnections(Integer maxConnections);
+
+    abstract Integer maxConnections();
+
     abstract HttpEventPublisher autoBuild();
 
     /**
@@ -314,6 +377,19 @@ public abstract class HttpEventPublisher {
       return setMaxElapsedMillis(maxElapsedMillis);
     }
 
+    /**
+     * Method to set the maximum number of connections to HEC, and so of requests sent at once by
+     * {@link HttpEventPublisher#executeAsync(List)}. Defaults to {@value DEFAULT_MAX_CONNECTIONS}.
+     *
+     * @param maxConnections maximum number of parallel connections.
+     * @return {@link Builder}
+     */
+    public Builder withMaxConnections(Integer maxConnections) {
+      checkNotNull(maxConnections, "withMaxConnections(maxConnections) called with null input.");
+      checkArgument(maxConnections > 0, "maxConnections must be positive.");
+      return setMaxConnections(maxConnections);
+    }
+
     /**
      * Validates and builds a {@link HttpEventPublisher} object.
      *
@@ -341,9 +417,12 @@ public abstract class HttpEventPublisher {
         setMaxElapsedMillis(ExponentialBackOff.DEFAULT_MAX_ELAPSED_TIME_MILLIS);
       }
 
+      if (maxConnections() == null) {
+        setMaxConnections(DEFAULT_MAX_CONNECTIONS);
+      }
+
       CloseableHttpClient httpClient =
-          getHttpClient(
-              DEFAULT_MAX_CONNECTIONS, disableCertificateValidation(), rootCaCertificate());
+          getHttpClient(maxConnections(), disableCertificateValidation(), rootCaCertificate());
 
       setTransport(new ApacheHttpTransport(httpClient));
       setRequestFactory(transport().createRequestFactory());
@@ -410,6 +489,7 @@ public abstract class HttpEventPublisher {
       }
 
       builder.setMaxConnTotal(maxConnections);
+      builder.setMaxConnPerRoute(maxConnections);
       builder.setDefaultRequestConfig(
           RequestConfig.custom().setCookieSpec(CookieSpecs.STANDARD).build());
 
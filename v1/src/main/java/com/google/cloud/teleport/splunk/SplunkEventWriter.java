@@ -29,18 +29,28 @@ import com.google.common.net.InetAddresses;
 import com.google.common.net.InternetDomainName;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.metrics.MetricsContainer;
+import org.apache.beam.sdk.metrics.MetricsEnvironment;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.StateSpec;
@@ -54,6 +64,7 @@ import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.KV;
 import org.joda.time.Duration;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,6 +76,7 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
   private static final Boolean DEFAULT_DISABLE_CERTIFICATE_VALIDATION = false;
   private static final Boolean DEFAULT_ENABLE_BATCH_LOGS = true;
   private static final Boolean DEFAULT_ENABLE_GZIP_HTTP_COMPRESSION = true;
+  private static final Integer DEFAULT_MAX_IN_FLIGHT_REQUESTS = 1;
   private static final Logger LOG = LoggerFactory.getLogger(SplunkEventWriter.class);
   private static final long DEFAULT_FLUSH_DELAY = 2;
   private static final Counter INPUT_COUNTER =
@@ -79,6 +91,8 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
       Metrics.counter(SplunkEventWriter.class, "http-server-error-requests");
   private static final Counter VALID_REQUESTS =
       Metrics.counter(SplunkEventWriter.class, "http-valid-requests");
+  private static final Counter SPLIT_REQUESTS =
+      Metrics.counter(SplunkEventWriter.class, "http-split-requests");
   private static final Distribution SUCCESSFUL_WRITE_LATENCY_MS =
       Metrics.distribution(SplunkEventWriter.class, "successful_write_to_splunk_latency_ms");
   private static final Distribution UNSUCCESSFUL_WRITE_LATENCY_MS =
@@ -108,8 +122,29 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
   private Boolean disableValidation;
   private Boolean enableBatchLogs;
   private Boolean enableGzipHttpCompression;
+  private Integer maxInFlight;
   private HttpEventPublisher publisher;
 
+  // Batches sent in this bundle whose write errors have not been output yet.
+  private transient Deque<InFlightBatch> inFlight;
+  private transient List<InFlightBatch> completed;
+
+  /** A batch sent to HEC, with the timestamp and window its write errors are output in. */
+  private static class InFlightBatch {
+    private final CompletableFuture<List<SplunkWriteError>> writeErrors;
+    private final Instant timestamp;
+    private final BoundedWindow window;
+
+    InFlightBatch(
+        CompletableFuture<List<SplunkWriteError>> writeErrors,
+        Instant timestamp,
+        BoundedWindow window) {
+      this.writeErrors = writeErrors;
+      this.timestamp = timestamp;
+      this.window = window;
+    }
+  }
+
   private static final Gson GSON =
       new GsonBuilder().setFieldNamingStrategy(f -> f.getName().toLowerCase()).create();
 
@@ -138,6 +173,9 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
   @Nullable
   abstract ValueProvider<Integer> inputBatchCount();
 
+  @Nullable
+  abstract ValueProvider<Integer> maxInFlightRequests();
+
   @Setup
   public void setup() {
 
@@ -177,6 +215,16 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
       LOG.info("Enable gzip http compression set to: {}", enableGzipHttpCompression);
     }
 
+    if (maxInFlight == null) {
+
+      if (maxInFlightRequests() != null) {
+        maxInFlight = maxInFlightRequests().get();
+      }
+
+      maxInFlight = MoreObjects.firstNonNull(maxInFlight, DEFAULT_MAX_IN_FLIGHT_REQUESTS);
+      LOG.info("Max in-flight requests set to: {}", maxInFlight);
+    }
+
     // Either user supplied or default disableValidation.
     if (disableValidation == null) {
 
@@ -195,7 +243,8 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
               .withUrl(url().get())
               .withToken(token().get())
               .withDisableCertificateValidation(disableValidation)
-              .withEnableGzipHttpCompression(enableGzipHttpCompression);
+              .withEnableGzipHttpCompression(enableGzipHttpCompression)
+              .withMaxConnections(maxInFlight);
 
       if (rootCaCertificatePath() != null && rootCaCertificatePath().get() != null) {
         builder.withRootCaCertificate(GCSUtils.getGcsFileAsBytes(rootCaCertificatePath().get()));
@@ -214,15 +263,20 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
     }
   }
 
+  @StartBundle
+  public void startBundle() {
+    inFlight = new ArrayDeque<>();
+    completed = new ArrayList<>();
+  }
+
   @ProcessElement
   public void processElement(
       @Element KV<Integer, SplunkEvent> input,
-      OutputReceiver<SplunkWriteError> receiver,
+      @Timestamp Instant timestamp,
       BoundedWindow window,
       @StateId(BUFFER_STATE_NAME) BagState<SplunkEvent> bufferState,
       @StateId(COUNT_STATE_NAME) ValueState<Long> countState,
-      @TimerId(TIME_ID_NAME) Timer timer)
-      throws IOException {
+      @TimerId(TIME_ID_NAME) Timer timer) {
 
     Long count = MoreObjects.<Long>firstNonNull(countState.read(), 0L);
     SplunkEvent event = input.getValue();
@@ -236,23 +290,40 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
       if (enableBatchLogs) {
         LOG.info("Flushing batch of {} events", count);
       }
-      flush(receiver, bufferState, countState);
+      flush(bufferState, countState, timestamp, window);
     }
   }
 
   @OnTimer(TIME_ID_NAME)
   public void onExpiry(
-      OutputReceiver<SplunkWriteError> receiver,
+      @Timestamp Instant timestamp,
+      BoundedWindow window,
       @StateId(BUFFER_STATE_NAME) BagState<SplunkEvent> bufferState,
-      @StateId(COUNT_STATE_NAME) ValueState<Long> countState)
-      throws IOException {
+      @StateId(COUNT_STATE_NAME) ValueState<Long> countState) {
 
     if (MoreObjects.<Long>firstNonNull(countState.read(), 0L) > 0) {
       if (enableBatchLogs) {
         LOG.info("Flushing window with {} events", countState.read());
       }
-      flush(receiver, bufferState, countState);
+      flush(bufferState, countState, timestamp, window);
+    }
+  }
+
+  /**
+   * Waits for every batch sent in this bundle, so that events are only acknowledged once HEC has
+   * accepted them or they have been output as {@link SplunkWriteError}s.
+   */
+  @FinishBundle
+  public void finishBundle(FinishBundleContext context) {
+    while (!inFlight.isEmpty()) {
+      awaitOldest();
+    }
+    for (InFlightBatch batch : completed) {
+      for (SplunkWriteError error : batch.writeErrors.join()) {
+        context.output(error, batch.timestamp, batch.window);
+      }
     }
+    completed.clear();
   }
 
   @Teardown
@@ -269,108 +340,168 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
   }
 
   /**
-   * Utility method to flush a batch of events via {@link HttpEventPublisher}.
-   *
-   * @param receiver Receiver to write {@link SplunkWriteError}s to
+   * Utility method to send a batch of events via {@link HttpEventPublisher}. Up to {@code
+   * maxInFlight} batches are in flight at once; their write errors are output when the bundle
+   * finishes.
    */
   private void flush(
-      OutputReceiver<SplunkWriteError> receiver,
       @StateId(BUFFER_STATE_NAME) BagState<SplunkEvent> bufferState,
-      @StateId(COUNT_STATE_NAME) ValueState<Long> countState)
-      throws IOException {
+      @StateId(COUNT_STATE_NAME) ValueState<Long> countState,
+      Instant timestamp,
+      BoundedWindow window) {
 
     if (!bufferState.isEmpty().read()) {
-
-      HttpResponse response = null;
       List<SplunkEvent> events = Lists.newArrayList(bufferState.read());
-      long startTime = System.nanoTime();
-      try {
-        // Important to close this response to avoid connection leak.
-        response = publisher.execute(events);
-        if (!response.isSuccessStatusCode()) {
-          UNSUCCESSFUL_WRITE_LATENCY_MS.update(nanosToMillis(System.nanoTime() - startTime));
-          FAILED_WRITES.inc(countState.read());
-          int statusCode = response.getStatusCode();
-          if (statusCode >= 400 && statusCode < 500) {
-            INVALID_REQUESTS.inc();
-          } else if (statusCode >= 500 && statusCode < 600) {
-            SERVER_ERROR_REQUESTS.inc();
-          }
-
-          logWriteFailures(
-              countState,
-              response.getStatusCode(),
-              response.parseAsString(),
-              response.getStatusMessage());
-          flushWriteFailures(
-              events, response.getStatusMessage(), response.getStatusCode(), receiver);
-
-        } else {
-          SUCCESSFUL_WRITE_LATENCY_MS.update(nanosToMillis(System.nanoTime() - startTime));
-          SUCCESS_WRITES.inc(countState.read());
-          VALID_REQUESTS.inc();
-          SUCCESSFUL_WRITE_BATCH_SIZE.update(countState.read());
-
-          if (enableBatchLogs) {
-            LOG.info("Successfully wrote {} events", countState.read());
-          }
-        }
 
-      } catch (HttpResponseException e) {
-        UNSUCCESSFUL_WRITE_LATENCY_MS.update(nanosToMillis(System.nanoTime() - startTime));
-        FAILED_WRITES.inc(countState.read());
-        int statusCode = e.getStatusCode();
-        if (statusCode >= 400 && statusCode < 500) {
-          INVALID_REQUESTS.inc();
-        } else if (statusCode >= 500 && statusCode < 600) {
-          SERVER_ERROR_REQUESTS.inc();
+      // States are cleared regardless of write success or failure since we
+      // write failed events to an output PCollection.
+      bufferState.clear();
+      countState.clear();
+
+      inFlight.addLast(new InFlightBatch(publish(events), timestamp, window));
+      while (inFlight.size() >= maxInFlight) {
+        awaitOldest();
+      }
+    }
+  }
+
+  private void awaitOldest() {
+    InFlightBatch batch = inFlight.pollFirst();
+    batch.writeErrors.join();
+    completed.add(batch);
+  }
+
+  /**
+   * Sends events to HEC. When HEC rejects a batch as invalid, the batch is split in halves which
+   * are sent again, so that only the events HEC rejects on their own end up as write errors.
+   *
+   * @param events List of {@link SplunkEvent}s to send
+   * @return a future completed with the write errors of the events which could not be written
+   */
+  private CompletableFuture<List<SplunkWriteError>> publish(List<SplunkEvent> events) {
+    long startTime = System.nanoTime();
+    // Responses are handled on the publisher's threads, which report metrics to this step.
+    MetricsContainer metricsContainer = MetricsEnvironment.getCurrentContainer();
+    return publisher
+        .executeAsync(events)
+        .handle(
+            (response, error) -> {
+              try (Closeable scope = MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+                return handleResponse(events, startTime, response, error);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            })
+        .thenCompose(writeErrors -> writeErrors);
+  }
+
+  private CompletableFuture<List<SplunkWriteError>> handleResponse(
+      List<SplunkEvent> events, long startTime, HttpResponse response, Throwable error) {
+    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+    try {
+      if (cause == null && response.isSuccessStatusCode()) {
+        SUCCESSFUL_WRITE_LATENCY_MS.update(nanosToMillis(System.nanoTime() - startTime));
+        SUCCESS_WRITES.inc(events.size());
+        VALID_REQUESTS.inc();
+        SUCCESSFUL_WRITE_BATCH_SIZE.update(events.size());
+
+        if (enableBatchLogs) {
+          LOG.info("Successfully wrote {} events", events.size());
         }
+        return CompletableFuture.completedFuture(Collections.emptyList());
+      }
 
-        logWriteFailures(countState, e.getStatusCode(), e.getContent(), e.getStatusMessage());
-        flushWriteFailures(events, e.getStatusMessage(), e.getStatusCode(), receiver);
+      UNSUCCESSFUL_WRITE_LATENCY_MS.update(nanosToMillis(System.nanoTime() - startTime));
+      Integer statusCode;
+      String content;
+      String statusMessage;
+      if (cause == null) {
+        statusCode = response.getStatusCode();
+        content = response.parseAsString();
+        statusMessage = response.getStatusMessage();
+      } else if (cause instanceof HttpResponseException) {
+        HttpResponseException e = (HttpResponseException) cause;
+        statusCode = e.getStatusCode();
+        content = e.getContent();
+        statusMessage = e.getStatusMessage();
+      } else {
+        statusCode = null;
+        content = cause.getMessage();
+        statusMessage = cause.getMessage();
+      }
 
-      } catch (IOException ioe) {
-        UNSUCCESSFUL_WRITE_LATENCY_MS.update(nanosToMillis(System.nanoTime() - startTime));
-        FAILED_WRITES.inc(countState.read());
-        INVALID_REQUESTS.inc();
+      if (statusCode != null && events.size() > 1 && isEventRejection(statusCode)) {
+        LOG.warn(
+            "Splunk rejected a batch of {} events with status {}, splitting it to isolate the"
+                + " invalid events.",
+            events.size(),
+            statusCode);
+        SPLIT_REQUESTS.inc();
+        int middle = events.size() / 2;
+        return publish(events.subList(0, middle))
+            .thenCombine(
+                publish(events.subList(middle, events.size())),
+                (left, right) -> {
+                  List<SplunkWriteError> writeErrors = new ArrayList<>(left);
+                  writeErrors.addAll(right);
+                  return writeErrors;
+                });
+      }
 
-        logWriteFailures(countState, 0, ioe.getMessage(), null);
-        flushWriteFailures(events, ioe.getMessage(), null, receiver);
-
-      } finally {
-        // States are cleared regardless of write success or failure since we
-        // write failed events to an output PCollection.
-        bufferState.clear();
-        countState.clear();
-
-        // We've observed cases where errors at this point can cause the pipeline to keep retrying
-        // the same events over and over (e.g. from Dataflow Runner's Pub/Sub implementation). Since
-        // the events have either been published or wrapped for error handling, we can safely
-        // ignore this error, though there may or may not be a leak of some type depending on
-        // HttpResponse's implementation. However, any potential leak would still happen if we let
-        // the exception fall through, so this isn't considered a major issue.
-        try {
-          if (response != null) {
-            response.ignore();
-          }
-        } catch (IOException e) {
-          LOG.warn(
-              "Error ignoring response from Splunk. Messages should still have published, but there"
-                  + " might be a connection leak.",
-              e);
+      FAILED_WRITES.inc(events.size());
+      if (statusCode == null || (statusCode >= 400 && statusCode < 500)) {
+        INVALID_REQUESTS.inc();
+      } else if (statusCode >= 500 && statusCode < 600) {
+        SERVER_ERROR_REQUESTS.inc();
+      }
+      logWriteFailures(events.size(), statusCode == null ? 0 : statusCode, content, statusMessage);
+      return CompletableFuture.completedFuture(toWriteErrors(events, statusMessage, statusCode));
+
+    } catch (IOException ioe) {
+      FAILED_WRITES.inc(events.size());
+      INVALID_REQUESTS.inc();
+
+      logWriteFailures(events.size(), 0, ioe.getMessage(), null);
+      return CompletableFuture.completedFuture(toWriteErrors(events, ioe.getMessage(), null));
+
+    } finally {
+      // We've observed cases where errors at this point can cause the pipeline to keep retrying
+      // the same events over and over (e.g. from Dataflow Runner's Pub/Sub implementation). Since
+      // the events have either been published or wrapped for error handling, we can safely
+      // ignore this error, though there may or may not be a leak of some type depending on
+      // HttpResponse's implementation. However, any potential leak would still happen if we let
+      // the exception fall through, so this isn't considered a major issue.
+      try {
+        if (response != null) {
+          response.ignore();
         }
+      } catch (IOException e) {
+        LOG.warn(
+            "Error ignoring response from Splunk. Messages should still have published, but there"
+                + " might be a connection leak.",
+            e);
       }
     }
   }
 
+  /**
+   * Whether a status means HEC rejected the content of the request, which a subset of the events
+   * may not trigger. Authentication, missing endpoint and throttling errors affect every request
+   * alike, so splitting the batch would not help.
+   */
+  private static boolean isEventRejection(int statusCode) {
+    return statusCode >= 400
+        && statusCode < 500
+        && statusCode != 401
+        && statusCode != 403
+        && statusCode != 404
+        && statusCode != 429;
+  }
+
   /** Utility method to log write failures. */
-  private void logWriteFailures(
-      @StateId(COUNT_STATE_NAME) ValueState<Long> countState,
-      int statusCode,
-      String content,
-      String statusMessage) {
+  private void logWriteFailures(int count, int statusCode, String content, String statusMessage) {
     if (enableBatchLogs) {
-      LOG.error("Failed to write {} events", countState.read());
+      LOG.error("Failed to write {} events", count);
     }
     LOG.error(
         "Error writing to Splunk. StatusCode: {}, content: {}, StatusMessage: {}",
@@ -380,18 +511,15 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
   }
 
   /**
-   * Utility method to un-batch and flush failed write events.
+   * Utility method to un-batch failed write events.
    *
    * @param events List of {@link SplunkEvent}s to un-batch
    * @param statusMessage Status message to be added to {@link SplunkWriteError}
    * @param statusCode Status code to be added to {@link SplunkWriteError}
-   * @param receiver Receiver to write {@link SplunkWriteError}s to
+   * @return a {@link SplunkWriteError} for each event
    */
-  private static void flushWriteFailures(
-      List<SplunkEvent> events,
-      String statusMessage,
-      Integer statusCode,
-      OutputReceiver<SplunkWriteError> receiver) {
+  private static List<SplunkWriteError> toWriteErrors(
+      List<SplunkEvent> events, String statusMessage, Integer statusCode) {
 
     checkNotNull(events, "SplunkEvents cannot be null.");
 
@@ -405,12 +533,12 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
       builder.withStatusCode(statusCode);
     }
 
+    List<SplunkWriteError> writeErrors = new ArrayList<>(events.size());
     for (SplunkEvent event : events) {
       String payload = GSON.toJson(event);
-      SplunkWriteError error = builder.withPayload(payload).build();
-
-      receiver.output(error);
+      writeErrors.add(builder.withPayload(payload).build());
     }
+    return writeErrors;
   }
 
   /**
@@ -460,6 +588,8 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
 
     abstract Builder setInputBatchCount(ValueProvider<Integer> inputBatchCount);
 
+    abstract Builder setMaxInFlightRequests(ValueProvider<Integer> maxInFlightRequests);
+
     abstract SplunkEventWriter autoBuild();
 
     /**
@@ -561,6 +691,16 @@ public abstract class SplunkEventWriter extends DoFn<KV<Integer, SplunkEvent>, S
       return setEnableGzipHttpCompression(enableGzipHttpCompression);
     }
 
+    /**
+     * Method to set the maximum number of requests kept in flight.
+     *
+     * @param maxInFlightRequests for sending batches without waiting for earlier ones.
+     * @return {@link Builder}
+     */
+    public Builder withMaxInFlightRequests(ValueProvider<Integer> maxInFlightRequests) {
+      return setMaxInFlightRequests(maxInFlightRequests);
+    }
+
     /** Build a new {@link SplunkEventWriter} objects based on the configuration. */
     public SplunkEventWriter build() {
       checkNotNull(url(), "url needs to be provided.");
@@ -35,7 +35,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.script.Invocable;
@@ -48,6 +50,7 @@ import org.apache.beam.sdk.io.fs.MatchResult;
 import org.apache.beam.sdk.io.fs.MatchResult.Metadata;
 import org.apache.beam.sdk.io.fs.MatchResult.Status;
 import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.PipelineOptions;
@@ -131,12 +134,25 @@ public abstract class JavascriptTextTransformer {
     @Nullable
     public abstract Integer reloadIntervalMinutes();
 
-    private static LoadingCache<JavascriptRuntime, Invocable> cache =
+    /**
+     * Maximum number of script engines kept per runtime. Defaults to the number of available
+     * processors when unset.
+     */
+    @Nullable
+    public abstract Integer maxPoolSize();
+
+    private static final Distribution JAVASCRIPT_POOL_WAIT_US =
+        Metrics.distribution(JavascriptTextTransformer.class, "javascript_pool_wait_us");
+
+    private static final Distribution JAVASCRIPT_INVOKE_LATENCY_US =
+        Metrics.distribution(JavascriptTextTransformer.class, "javascript_invoke_latency_us");
+
+    private static LoadingCache<JavascriptRuntime, InvocablePool> cache =
         Caffeine.newBuilder()
             .expireAfter(
-                new Expiry<JavascriptRuntime, Invocable>() {
+                new Expiry<JavascriptRuntime, InvocablePool>() {
                   public long expireAfterCreate(
-                      JavascriptRuntime runtime, Invocable invocable, long currentTime) {
+                      JavascriptRuntime runtime, InvocablePool pool, long currentTime) {
                     // Do not expire if reload is disabled
                     if (runtime.reloadIntervalMinutes() == null
                         || runtime.reloadIntervalMinutes() <= 0) {
@@ -147,7 +163,7 @@ public abstract class JavascriptTextTransformer {
 
                   public long expireAfterUpdate(
                       JavascriptRuntime runtime,
-                      Invocable invocable,
+                      InvocablePool pool,
                       long currentTime,
                       long currentDuration) {
                     return currentDuration;
@@ -155,13 +171,74 @@ public abstract class JavascriptTextTransformer {
 
                   public long expireAfterRead(
                       JavascriptRuntime runtime,
-                      Invocable invocable,
+                      InvocablePool pool,
                       long currentTime,
                       long currentDuration) {
                     return currentDuration;
                   }
                 })
-            .build(runtime -> buildInvocable(runtime));
+            .build(runtime -> buildInvocablePool(runtime));
+
+    /**
+     * A bounded pool of {@link Invocable}s evaluated from the same scripts. Script engines are not
+     * thread safe, so each concurrent caller borrows its own engine instead of serializing on a
+     * single shared one. Engines are created lazily up to {@code maxSize}; once that many are in
+     * use, callers wait for one to be released.
+     */
+    private static class InvocablePool {
+      private final Collection<String> scripts;
+      private final int maxSize;
+      private final LinkedBlockingQueue<Invocable> idle = new LinkedBlockingQueue<>();
+      private final AtomicInteger created = new AtomicInteger();
+      // Engine handed out by getInvocable(), never borrowed by invoke().
+      private Invocable dedicated;
+
+      InvocablePool(Collection<String> scripts, int maxSize) throws ScriptException {
+        this.scripts = scripts;
+        this.maxSize = maxSize;
+        // Eagerly evaluate one engine so that script errors surface when the UDF is loaded.
+        created.incrementAndGet();
+        idle.add(newInvocable(scripts));
+      }
+
+      Invocable borrow() throws ScriptException {
+        Invocable invocable = idle.poll();
+        if (invocable != null) {
+          return invocable;
+        }
+        if (created.incrementAndGet() <= maxSize) {
+          try {
+            return newInvocable(scripts);
+          } catch (ScriptException | RuntimeException e) {
+            created.decrementAndGet();
+            throw e;
+          }
+        }
+        created.decrementAndGet();
+        long startTime = System.nanoTime();
+        try {
+          invocable = idle.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for a JavaScript engine", e);
+        }
+        JAVASCRIPT_POOL_WAIT_US.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+        return invocable;
+      }
+
+      void release(Invocable invocable) {
+        idle.offer(invocable);
+      }
+
+      /** Returns an engine outside of the pool, created on first use. */
+      synchronized Invocable dedicated() throws ScriptException {
+        if (dedicated == null) {
+          dedicated = newInvocable(scripts);
+        }
+        return dedicated;
+      }
+    }
 
     /** Builder for {@link JavascriptTextTransformer}. */
     @AutoValue.Builder
@@ -172,6 +249,8 @@ public abstract class JavascriptTextTransformer {
 
       public abstract Builder setReloadIntervalMinutes(@Nullable Integer value);
 
+      public abstract Builder setMaxPoolSize(@Nullable Integer value);
+
       public abstract JavascriptRuntime build();
     }
 
@@ -185,12 +264,28 @@ public abstract class JavascriptTextTransformer {
     }
 
     /**
-     * Gets a cached Javascript Invocable, if fileSystemPath() not set, returns null.
+     * Gets a cached Javascript Invocable, if fileSystemPath() not set, returns null. The returned
+     * Invocable is not one of the engines used by {@link #invoke(String)}, but it is shared by all
+     * the callers of this method.
      *
      * @return a Javascript Invocable or null
      */
     @Nullable
     public Invocable getInvocable() {
+      InvocablePool pool = getInvocablePool();
+      if (pool == null) {
+        return null;
+      }
+
+      try {
+        return pool.dedicated();
+      } catch (ScriptException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Nullable
+    private InvocablePool getInvocablePool() {
 
       // return null if no UDF path specified.
       if (Strings.isNullOrEmpty(fileSystemPath())) {
@@ -199,6 +294,13 @@ public abstract class JavascriptTextTransformer {
       return cache.get(this);
     }
 
+    /**
+     * Builds a new Invocable from the scripts of the runtime.
+     *
+     * @deprecated the runtime keeps a pool of Invocables, use {@link #invoke(String)} or {@link
+     *     #getInvocable()}.
+     */
+    @Deprecated
     public static Invocable buildInvocable(JavascriptRuntime runtime)
         throws IOException, ScriptException {
       // List of all scripts read from the filesystem
@@ -206,6 +308,17 @@ public abstract class JavascriptTextTransformer {
       return newInvocable(scripts);
     }
 
+    private static InvocablePool buildInvocablePool(JavascriptRuntime runtime)
+        throws IOException, ScriptException {
+      // List of all scripts read from the filesystem
+      Collection<String> scripts = getScripts(runtime.fileSystemPath());
+      int maxPoolSize =
+          runtime.maxPoolSize() != null && runtime.maxPoolSize() > 0
+              ? runtime.maxPoolSize()
+              : Runtime.getRuntime().availableProcessors();
+      return new InvocablePool(scripts, maxPoolSize);
+    }
+
     /**
      * Factory method for making a new Invocable.
      *
@@ -251,14 +364,20 @@ public abstract class JavascriptTextTransformer {
      */
     @Nullable
     public String invoke(String data) throws ScriptException, IOException, NoSuchMethodException {
-      Invocable invocable = getInvocable();
-      if (invocable == null) {
+      InvocablePool pool = getInvocablePool();
+      if (pool == null) {
         throw new RuntimeException("No UDF was loaded");
       }
 
       Object result;
-      synchronized (invocable) {
+      Invocable invocable = pool.borrow();
+      long startTime = System.nanoTime();
+      try {
         result = invocable.invokeFunction(functionName(), data);
+      } finally {
+        JAVASCRIPT_INVOKE_LATENCY_US.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+        pool.release(invocable);
       }
       if (result == null || ScriptObjectMirror.isUndefined(result)) {
         return null;
@@ -248,6 +248,17 @@ public class SplunkConverters {
     ValueProvider<Boolean> getEnableGzipHttpCompression();
 
     void setEnableGzipHttpCompression(ValueProvider<Boolean> enableGzipHttpCompression);
+
+    @TemplateParameter.Integer(
+        order = 13,
+        optional = true,
+        description = "Maximum number of in-flight requests per worker thread.",
+        helpText =
+            "Maximum number of HEC requests each worker thread keeps in flight. Batches are sent "
+                + "without waiting for earlier ones to complete, up to this many at a time. Default 1.")
+    ValueProvider<Integer> getMaxInFlightRequests();
+
+    void setMaxInFlightRequests(ValueProvider<Integer> maxInFlightRequests);
   }
 
   private static class FailsafeStringToSplunkEvent
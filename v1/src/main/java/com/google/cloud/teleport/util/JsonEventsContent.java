@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.client.http.AbstractHttpContent;
+import com.google.gson.Gson;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The {@link JsonEventsContent} class is an {@link com.google.api.client.http.HttpContent} which
+ * serializes a batch of events to JSON while the request body is written.
+ *
+ * <p>Unlike building the payload as a {@link String} first, no copy of the whole batch is kept in
+ * memory: events are written through a small buffer straight into the request stream, which is the
+ * gzip stream of the request when compression is enabled. The content can be written again when a
+ * request is retried.
+ */
+public class JsonEventsContent extends AbstractHttpContent {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Gson gson;
+  private final List<?> events;
+  private final boolean asArray;
+
+  private JsonEventsContent(String type, Gson gson, List<?> events, boolean asArray) {
+    super(type);
+    this.gson = checkNotNull(gson, "Gson cannot be null.");
+    this.events = checkNotNull(events, "Events cannot be null.");
+    this.asArray = asArray;
+  }
+
+  /**
+   * Creates a content which writes events as consecutive JSON objects, e.g. {@code {..}{..}}.
+   *
+   * @param type content type of the content
+   * @param gson {@link Gson} used to serialize each event
+   * @param events events to write
+   * @return {@link JsonEventsContent}
+   */
+  public static JsonEventsContent concatenated(String type, Gson gson, List<?> events) {
+    return new JsonEventsContent(type, gson, events, false);
+  }
+
+  /**
+   * Creates a content which writes events as a JSON array, e.g. {@code [{..},{..}]}.
+   *
+   * @param type content type of the content
+   * @param gson {@link Gson} used to serialize the events
+   * @param events events to write
+   * @return {@link JsonEventsContent}
+   */
+  public static JsonEventsContent array(String type, Gson gson, List<?> events) {
+    return new JsonEventsContent(type, gson, events, true);
+  }
+
+  @Override
+  public long getLength() {
+    // Unknown until written, so the request is sent with chunked transfer encoding.
+    return -1;
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    // The stream belongs to the caller, so the writer is flushed but not closed.
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    if (asArray) {
+      gson.toJson(events, writer);
+    } else {
+      for (Object event : events) {
+        gson.toJson(event, writer);
+      }
+    }
+    writer.flush();
+  }
+}
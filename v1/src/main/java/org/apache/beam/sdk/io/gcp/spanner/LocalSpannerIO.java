@@ -54,6 +54,8 @@ import com.google.cloud.spanner.TimestampBound;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -65,7 +67,9 @@ import org.apache.beam.runners.core.metrics.GcpResourceIdentifiers;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
 import org.apache.beam.runners.core.metrics.ServiceCallMetric;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.io.gcp.spanner.changestreams.ChangeStreamMetrics;
 import org.apache.beam.sdk.io.gcp.spanner.changestreams.action.ActionFactory;
 import org.apache.beam.sdk.io.gcp.spanner.changestreams.dao.DaoFactory;
@@ -85,6 +89,14 @@ import org.apache.beam.sdk.options.StreamingOptions;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.options.ValueProvider.StaticValueProvider;
 import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.Flatten;
@@ -98,6 +110,7 @@ import org.apache.beam.sdk.transforms.View;
 import org.apache.beam.sdk.transforms.Wait;
 import org.apache.beam.sdk.transforms.WithTimestamps;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.DefaultTrigger;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindows;
@@ -105,6 +118,7 @@ import org.apache.beam.sdk.transforms.windowing.Window;
 import org.apache.beam.sdk.util.BackOff;
 import org.apache.beam.sdk.util.FluentBackoff;
 import org.apache.beam.sdk.util.Sleeper;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollection.IsBounded;
@@ -266,6 +280,12 @@ import org.slf4j.LoggerFactory;
  *       This is the default for Batch pipelines, where sorted batches of Mutations are created and
  *       written. This is the most efficient way to ingest large amounts of data, but the highest
  *       latency before writing
+ *   <li>With Grouping and Batching across bundles <br>
+ *       If {@link Write#withMaxBufferingDuration(Duration) .withMaxBufferingDuration()} is set on a
+ *       Streaming pipeline, Mutations are buffered in state per table for at most that duration, or
+ *       until {@code GroupingFactor} batches are filled (10 unless set), and sorted batches are
+ *       created from the buffer. This bounds the additional latency while still writing batches of
+ *       keys that are close to each other.
  *   <li>With Batching but no Grouping <br>
  *       If {@link Write#withGroupingFactor(int) .withGroupingFactor(1)}, is set, grouping is
  *       disabled. This is the default for Streaming pipelines. Unsorted batches are created and
@@ -355,6 +375,11 @@ import org.slf4j.LoggerFactory;
  *
  * <p>{@link Write} can be used as a streaming sink, however as with batch mode note that the write
  * order of individual {@link Mutation}/{@link MutationGroup} objects is not guaranteed.
+ *
+ * <p>As streaming bundles are usually small, sorting within a bundle rarely groups mutations of
+ * close keys together. Use {@link Write#withMaxBufferingDuration(Duration)} to buffer mutations
+ * across bundles before sorting them into batches, which reduces the number of commits and the
+ * number of splits each commit touches.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://issues.apache.org/jira/browse/BEAM-10402)
@@ -370,6 +395,11 @@ public class LocalSpannerIO {
   private static final int DEFAULT_MAX_NUM_ROWS = 500;
   // Multiple of mutation size to use to gather and sort mutations
   private static final int DEFAULT_GROUPING_FACTOR = 1000;
+  // Multiple of mutation size to buffer across bundles in streaming pipelines.
+  private static final int DEFAULT_STREAMING_GROUPING_FACTOR = 10;
+  // Number of buffers per table in streaming pipelines, by the first bytes of the encoded key.
+  @VisibleForTesting static final int BUFFER_KEY_BUCKETS = 16;
+  private static final int BUFFER_KEY_PREFIX_BYTES = 8;
 
   /**
    * Creates an uninitialized instance of {@link Read}. Before use, the {@link Read} must be
@@ -963,6 +993,8 @@ public class LocalSpannerIO {
 
     abstract @Nullable PCollectionView<Dialect> getDialectView();
 
+    abstract @Nullable Duration getMaxBufferingDuration();
+
     abstract Builder toBuilder();
 
     @AutoValue.Builder
@@ -984,6 +1016,8 @@ public class LocalSpannerIO {
 
       abstract Builder setDialectView(PCollectionView<Dialect> dialect);
 
+      abstract Builder setMaxBufferingDuration(Duration maxBufferingDuration);
+
       abstract Write build();
     }
 
@@ -1135,6 +1169,17 @@ public class LocalSpannerIO {
       return toBuilder().setGroupingFactor(groupingFactor).build();
     }
 
+    /**
+     * Specifies, for streaming pipelines, the maximum time mutations are buffered across bundles
+     * before being sorted into batches. Mutations are buffered per table and bucket of key
+     * prefixes, and a buffer is also flushed once it holds {@code GroupingFactor} batches. Ignored
+     * for batch pipelines, which sort within bundles. By default mutations are not buffered across
+     * bundles.
+     */
+    public Write withMaxBufferingDuration(Duration maxBufferingDuration) {
+      return toBuilder().setMaxBufferingDuration(maxBufferingDuration).build();
+    }
+
     public Write withLowPriority() {
       SpannerConfig config = getSpannerConfig();
       return withSpannerConfig(config.withRpcPriority(RpcPriority.LOW));
@@ -1180,6 +1225,9 @@ public class LocalSpannerIO {
                       ? Integer.toString(getGroupingFactor().getAsInt())
                       : "DEFAULT"))
               .withLabel("Number of batches to sort over"));
+      builder.addIfNotNull(
+          DisplayData.item("maxBufferingDuration", getMaxBufferingDuration())
+              .withLabel("Max duration to buffer mutations across bundles"));
     }
   }
 
@@ -1296,26 +1344,51 @@ public class LocalSpannerIO {
                         .withOutputTags(
                             BATCHABLE_MUTATIONS_TAG, TupleTagList.of(UNBATCHABLE_MUTATIONS_TAG)));
 
-        // Build a set of Mutation groups from the current bundle,
-        // sort them by table/key then split into batches.
-        PCollection<Iterable<MutationGroup>> batchedMutations =
-            filteredMutations
-                .get(BATCHABLE_MUTATIONS_TAG)
-                .apply(
-                    "Gather Sort And Create Batches",
-                    ParDo.of(
-                            new GatherSortCreateBatchesFn(
-                                spec.getBatchSizeBytes(),
-                                spec.getMaxNumMutations(),
-                                spec.getMaxNumRows(),
-                                // Do not group on streaming unless explicitly set.
-                                spec.getGroupingFactor()
-                                    .orElse(
-                                        input.isBounded() == IsBounded.BOUNDED
-                                            ? DEFAULT_GROUPING_FACTOR
-                                            : 1),
-                                schemaView))
-                        .withSideInputs(schemaView));
+        PCollection<Iterable<MutationGroup>> batchedMutations;
+        if (input.isBounded() == IsBounded.UNBOUNDED && spec.getMaxBufferingDuration() != null) {
+          // Buffer the Mutation groups of each table and key bucket across bundles,
+          // sort them by key then split into batches.
+          batchedMutations =
+              filteredMutations
+                  .get(BATCHABLE_MUTATIONS_TAG)
+                  .apply(
+                      "Key By Table And Key Bucket",
+                      ParDo.of(new KeyByTableAndKeyBucketFn(schemaView)).withSideInputs(schemaView))
+                  .setCoder(KvCoder.of(StringUtf8Coder.of(), CODER))
+                  .apply(
+                      "Buffer Sort And Create Batches",
+                      ParDo.of(
+                              new BufferSortCreateBatchesFn(
+                                  spec.getBatchSizeBytes(),
+                                  spec.getMaxNumMutations(),
+                                  spec.getMaxNumRows(),
+                                  spec.getGroupingFactor()
+                                      .orElse(DEFAULT_STREAMING_GROUPING_FACTOR),
+                                  spec.getMaxBufferingDuration(),
+                                  schemaView))
+                          .withSideInputs(schemaView));
+        } else {
+          // Build a set of Mutation groups from the current bundle,
+          // sort them by table/key then split into batches.
+          batchedMutations =
+              filteredMutations
+                  .get(BATCHABLE_MUTATIONS_TAG)
+                  .apply(
+                      "Gather Sort And Create Batches",
+                      ParDo.of(
+                              new GatherSortCreateBatchesFn(
+                                  spec.getBatchSizeBytes(),
+                                  spec.getMaxNumMutations(),
+                                  spec.getMaxNumRows(),
+                                  // Do not group on streaming unless explicitly set.
+                                  spec.getGroupingFactor()
+                                      .orElse(
+                                          input.isBounded() == IsBounded.BOUNDED
+                                              ? DEFAULT_GROUPING_FACTOR
+                                              : 1),
+                                  schemaView))
+                          .withSideInputs(schemaView));
+        }
 
         // Merge the batched and unbatchable mutation PCollections and write to Spanner.
         batches =
@@ -1755,42 +1828,8 @@ public class LocalSpannerIO {
         }
 
         // Sort then split the sorted mutations into batches.
-        mutationsToSort.sort(Comparator.naturalOrder());
-        int batchStart = 0;
-        int batchEnd = 0;
-
-        // total size of the current batch.
-        long batchSizeBytes = 0;
-        // total number of mutated cells.
-        long batchCells = 0;
-        // total number of rows mutated.
-        long batchRows = 0;
-
-        // collect and output batches.
-        while (batchEnd < mutationsToSort.size()) {
-          MutationGroupContainer mg = mutationsToSort.get(batchEnd);
-
-          if (((batchCells + mg.numCells) > maxBatchNumMutations)
-              || ((batchSizeBytes + mg.sizeBytes) > maxBatchSizeBytes
-                  || (batchRows + mg.numRows > maxBatchNumRows))) {
-            // Cannot add new element, current batch is full; output.
-            outputBatch(out, batchStart, batchEnd);
-            batchStart = batchEnd;
-            batchSizeBytes = 0;
-            batchCells = 0;
-            batchRows = 0;
-          }
-
-          batchEnd++;
-          batchSizeBytes += mg.sizeBytes;
-          batchCells += mg.numCells;
-          batchRows += mg.numRows;
-        }
-
-        if (batchStart < batchEnd) {
-          // output remaining elements
-          outputBatch(out, batchStart, mutationsToSort.size());
-        }
+        outputSortedBatches(
+            mutationsToSort, maxBatchSizeBytes, maxBatchNumMutations, maxBatchNumRows, out);
       } finally {
         initSorter();
       }
@@ -1798,10 +1837,7 @@ public class LocalSpannerIO {
 
     private void outputBatch(
         OutputReceiver<Iterable<MutationGroup>> out, int batchStart, int batchEnd) {
-      out.output(
-          mutationsToSort.subList(batchStart, batchEnd).stream()
-              .map(o -> o.mutationGroup)
-              .collect(toList()));
+      LocalSpannerIO.outputBatch(mutationsToSort, out, batchStart, batchEnd);
     }
 
     @ProcessElement
@@ -1830,35 +1866,6 @@ public class LocalSpannerIO {
       }
     }
 
-    // Container class to store a MutationGroup, its sortable encoded key and its statistics.
-    private static final class MutationGroupContainer
-        implements Comparable<MutationGroupContainer> {
-
-      final MutationGroup mutationGroup;
-      final long sizeBytes;
-      final long numCells;
-      final long numRows;
-      final byte[] encodedKey;
-
-      MutationGroupContainer(
-          MutationGroup mutationGroup,
-          long sizeBytes,
-          long numCells,
-          long numRows,
-          byte[] encodedKey) {
-        this.mutationGroup = mutationGroup;
-        this.sizeBytes = sizeBytes;
-        this.numCells = numCells;
-        this.numRows = numRows;
-        this.encodedKey = encodedKey;
-      }
-
-      @Override
-      public int compareTo(MutationGroupContainer o) {
-        return UnsignedBytes.lexicographicalComparator().compare(this.encodedKey, o.encodedKey);
-      }
-    }
-
     // TODO(BEAM-1287): Remove this when FinishBundle has added support for an {@link
     // OutputReceiver}
     private static class OutputReceiverForFinishBundle
@@ -1882,6 +1889,279 @@ public class LocalSpannerIO {
     }
   }
 
+  /**
+   * Keys mutation groups by their table and a bucket of the first bytes of their encoded key, so
+   * that the mutation groups of a table are buffered by at most {@link #BUFFER_KEY_BUCKETS} keys.
+   * Only the mutation groups of the same table whose encoded keys share their first {@link
+   * #BUFFER_KEY_PREFIX_BYTES} bytes are sure to share a bucket.
+   */
+  @VisibleForTesting
+  static class KeyByTableAndKeyBucketFn extends DoFn<MutationGroup, KV<String, MutationGroup>> {
+
+    private final PCollectionView<SpannerSchema> schemaView;
+
+    KeyByTableAndKeyBucketFn(PCollectionView<SpannerSchema> schemaView) {
+      this.schemaView = schemaView;
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      MutationGroup mg = c.element();
+      String table = mg.primary().getTable().toLowerCase();
+      byte[] encodedKey =
+          new MutationKeyEncoder(c.sideInput(schemaView)).encodeTableNameAndKey(mg.primary());
+      c.output(KV.of(table + "/" + keyBucket(table, encodedKey), mg));
+    }
+  }
+
+  /** Returns the bucket of the first bytes of a key, encoded after its table name. */
+  @VisibleForTesting
+  static int keyBucket(String table, byte[] encodedTableNameAndKey) {
+    OrderedCode tableName = new OrderedCode();
+    tableName.writeBytes(table.getBytes(StandardCharsets.UTF_8));
+    int prefixLength =
+        Math.min(
+            encodedTableNameAndKey.length,
+            tableName.getEncodedBytes().length + BUFFER_KEY_PREFIX_BYTES);
+    return Math.floorMod(
+        Arrays.hashCode(Arrays.copyOf(encodedTableNameAndKey, prefixLength)), BUFFER_KEY_BUCKETS);
+  }
+
+  /**
+   * Buffers the mutation groups of a key across bundles, in state, then sorts them by key and
+   * outputs them in batches. The buffer is flushed when it holds {@code groupingFactor} batches, or
+   * when the oldest buffered mutation group has waited for {@code maxBufferingDuration}.
+   *
+   * <p>Cloud Spanner does not expose its split points, so the buffers are per table and bucket of
+   * key prefixes: sorting a buffer and cutting it into consecutive batches makes each batch cover a
+   * narrow key range, and so as few splits as possible.
+   */
+  @VisibleForTesting
+  static class BufferSortCreateBatchesFn
+      extends DoFn<KV<String, MutationGroup>, Iterable<MutationGroup>> {
+
+    private final long maxBatchSizeBytes;
+    private final long maxBatchNumMutations;
+    private final long maxBatchNumRows;
+    private final long maxBufferedSizeBytes;
+    private final long maxBufferedNumMutations;
+    private final long maxBufferedNumRows;
+    private final Duration maxBufferingDuration;
+    private final PCollectionView<SpannerSchema> schemaView;
+
+    @StateId("buffer")
+    private final StateSpec<BagState<MutationGroupContainer>> bufferSpec =
+        StateSpecs.bag(SerializableCoder.of(MutationGroupContainer.class));
+
+    // total size, number of mutated cells and number of rows of the buffered MutationGroups.
+    @StateId("bufferedSizeBytes")
+    private final StateSpec<ValueState<Long>> bufferedSizeBytesSpec = StateSpecs.value();
+
+    @StateId("bufferedNumCells")
+    private final StateSpec<ValueState<Long>> bufferedNumCellsSpec = StateSpecs.value();
+
+    @StateId("bufferedNumRows")
+    private final StateSpec<ValueState<Long>> bufferedNumRowsSpec = StateSpecs.value();
+
+    @TimerId("flush")
+    private final TimerSpec flushSpec = TimerSpecs.timer(TimeDomain.PROCESSING_TIME);
+
+    // Flushes what is left when the input ends, for instance when the pipeline is drained.
+    @TimerId("endOfWindow")
+    private final TimerSpec endOfWindowSpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+
+    BufferSortCreateBatchesFn(
+        long maxBatchSizeBytes,
+        long maxNumMutations,
+        long maxNumRows,
+        long groupingFactor,
+        Duration maxBufferingDuration,
+        PCollectionView<SpannerSchema> schemaView) {
+      this.maxBatchSizeBytes = maxBatchSizeBytes;
+      this.maxBatchNumMutations = maxNumMutations;
+      this.maxBatchNumRows = maxNumRows;
+
+      if (groupingFactor <= 0) {
+        groupingFactor = 1;
+      }
+
+      this.maxBufferedSizeBytes = maxBatchSizeBytes * groupingFactor;
+      this.maxBufferedNumMutations = maxNumMutations * groupingFactor;
+      this.maxBufferedNumRows = maxNumRows * groupingFactor;
+      this.maxBufferingDuration = maxBufferingDuration;
+      this.schemaView = schemaView;
+    }
+
+    @ProcessElement
+    public void processElement(
+        ProcessContext c,
+        @StateId("buffer") BagState<MutationGroupContainer> buffer,
+        @StateId("bufferedSizeBytes") ValueState<Long> bufferedSizeBytes,
+        @StateId("bufferedNumCells") ValueState<Long> bufferedNumCells,
+        @StateId("bufferedNumRows") ValueState<Long> bufferedNumRows,
+        @TimerId("flush") Timer flushTimer,
+        @TimerId("endOfWindow") Timer endOfWindowTimer,
+        BoundedWindow window,
+        OutputReceiver<Iterable<MutationGroup>> out) {
+      SpannerSchema spannerSchema = c.sideInput(schemaView);
+      MutationKeyEncoder encoder = new MutationKeyEncoder(spannerSchema);
+      MutationGroup mg = c.element().getValue();
+      long groupSize = MutationSizeEstimator.sizeOf(mg);
+      long groupCells = MutationCellCounter.countOf(spannerSchema, mg);
+      long groupRows = mg.size();
+
+      long sizeBytes = MoreObjects.firstNonNull(bufferedSizeBytes.read(), 0L);
+      long numCells = MoreObjects.firstNonNull(bufferedNumCells.read(), 0L);
+      long numRows = MoreObjects.firstNonNull(bufferedNumRows.read(), 0L);
+      if ((numCells + groupCells) > maxBufferedNumMutations
+          || (sizeBytes + groupSize) > maxBufferedSizeBytes
+          || (numRows + groupRows) > maxBufferedNumRows) {
+        flush(buffer, bufferedSizeBytes, bufferedNumCells, bufferedNumRows, out);
+        sizeBytes = 0;
+        numCells = 0;
+        numRows = 0;
+      }
+      if (numRows == 0) {
+        // First mutation group of the buffer, which must not wait longer than the duration.
+        flushTimer.offset(maxBufferingDuration).setRelative();
+        endOfWindowTimer.set(window.maxTimestamp());
+      }
+
+      buffer.add(
+          new MutationGroupContainer(
+              mg, groupSize, groupCells, groupRows, encoder.encodeTableNameAndKey(mg.primary())));
+      bufferedSizeBytes.write(sizeBytes + groupSize);
+      bufferedNumCells.write(numCells + groupCells);
+      bufferedNumRows.write(numRows + groupRows);
+    }
+
+    @OnTimer("flush")
+    public void onFlush(
+        @StateId("buffer") BagState<MutationGroupContainer> buffer,
+        @StateId("bufferedSizeBytes") ValueState<Long> bufferedSizeBytes,
+        @StateId("bufferedNumCells") ValueState<Long> bufferedNumCells,
+        @StateId("bufferedNumRows") ValueState<Long> bufferedNumRows,
+        OutputReceiver<Iterable<MutationGroup>> out) {
+      flush(buffer, bufferedSizeBytes, bufferedNumCells, bufferedNumRows, out);
+    }
+
+    @OnTimer("endOfWindow")
+    public void onEndOfWindow(
+        @StateId("buffer") BagState<MutationGroupContainer> buffer,
+        @StateId("bufferedSizeBytes") ValueState<Long> bufferedSizeBytes,
+        @StateId("bufferedNumCells") ValueState<Long> bufferedNumCells,
+        @StateId("bufferedNumRows") ValueState<Long> bufferedNumRows,
+        OutputReceiver<Iterable<MutationGroup>> out) {
+      flush(buffer, bufferedSizeBytes, bufferedNumCells, bufferedNumRows, out);
+    }
+
+    private void flush(
+        BagState<MutationGroupContainer> buffer,
+        ValueState<Long> bufferedSizeBytes,
+        ValueState<Long> bufferedNumCells,
+        ValueState<Long> bufferedNumRows,
+        OutputReceiver<Iterable<MutationGroup>> out) {
+      List<MutationGroupContainer> mutationGroups = new ArrayList<>();
+      buffer.read().forEach(mutationGroups::add);
+      if (!mutationGroups.isEmpty()) {
+        outputSortedBatches(
+            mutationGroups, maxBatchSizeBytes, maxBatchNumMutations, maxBatchNumRows, out);
+      }
+      buffer.clear();
+      bufferedSizeBytes.clear();
+      bufferedNumCells.clear();
+      bufferedNumRows.clear();
+    }
+  }
+
+  // Container class to store a MutationGroup, its sortable encoded key and its statistics.
+  private static final class MutationGroupContainer
+      implements Comparable<MutationGroupContainer>, Serializable {
+
+    final MutationGroup mutationGroup;
+    final long sizeBytes;
+    final long numCells;
+    final long numRows;
+    final byte[] encodedKey;
+
+    MutationGroupContainer(
+        MutationGroup mutationGroup,
+        long sizeBytes,
+        long numCells,
+        long numRows,
+        byte[] encodedKey) {
+      this.mutationGroup = mutationGroup;
+      this.sizeBytes = sizeBytes;
+      this.numCells = numCells;
+      this.numRows = numRows;
+      this.encodedKey = encodedKey;
+    }
+
+    @Override
+    public int compareTo(MutationGroupContainer o) {
+      return UnsignedBytes.lexicographicalComparator().compare(this.encodedKey, o.encodedKey);
+    }
+  }
+
+  /**
+   * Sorts mutation groups by table and key, then splits them into consecutive batches within the
+   * given limits, and outputs the batches.
+   */
+  private static void outputSortedBatches(
+      List<MutationGroupContainer> mutationGroups,
+      long maxBatchSizeBytes,
+      long maxBatchNumMutations,
+      long maxBatchNumRows,
+      DoFn.OutputReceiver<Iterable<MutationGroup>> out) {
+    mutationGroups.sort(Comparator.naturalOrder());
+    int batchStart = 0;
+    int batchEnd = 0;
+
+    // total size of the current batch.
+    long batchSizeBytes = 0;
+    // total number of mutated cells.
+    long batchCells = 0;
+    // total number of rows mutated.
+    long batchRows = 0;
+
+    // collect and output batches.
+    while (batchEnd < mutationGroups.size()) {
+      MutationGroupContainer mg = mutationGroups.get(batchEnd);
+
+      if (((batchCells + mg.numCells) > maxBatchNumMutations)
+          || ((batchSizeBytes + mg.sizeBytes) > maxBatchSizeBytes
+              || (batchRows + mg.numRows > maxBatchNumRows))) {
+        // Cannot add new element, current batch is full; output.
+        outputBatch(mutationGroups, out, batchStart, batchEnd);
+        batchStart = batchEnd;
+        batchSizeBytes = 0;
+        batchCells = 0;
+        batchRows = 0;
+      }
+
+      batchEnd++;
+      batchSizeBytes += mg.sizeBytes;
+      batchCells += mg.numCells;
+      batchRows += mg.numRows;
+    }
+
+    if (batchStart < batchEnd) {
+      // output remaining elements
+      outputBatch(mutationGroups, out, batchStart, mutationGroups.size());
+    }
+  }
+
+  private static void outputBatch(
+      List<MutationGroupContainer> mutationGroups,
+      DoFn.OutputReceiver<Iterable<MutationGroup>> out,
+      int batchStart,
+      int batchEnd) {
+    out.output(
+        mutationGroups.subList(batchStart, batchEnd).stream()
+            .map(o -> o.mutationGroup)
+            .collect(toList()));
+  }
+
   /**
    * Filters MutationGroups larger than the batch size to the output tagged with {@code
    * UNBATCHABLE_MUTATIONS_TAG}.
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.teleport.spanner.ApplyDeltaExports.KeepLatestChangeFn;
+import com.google.cloud.teleport.spanner.ApplyDeltaExports.ListDeltaFilesFn;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.proto.ExportProtos.Export;
+import com.google.cloud.teleport.spanner.proto.ExportProtos.ProtoDialect;
+import com.google.cloud.teleport.spanner.proto.ExportProtos.TableManifest;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.beam.sdk.Pipeline.PipelineExecutionException;
+import org.apache.beam.sdk.coders.IterableCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.options.ValueProvider.StaticValueProvider;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for ApplyDeltaExports. */
+public class ApplyDeltaExportsTest {
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+  @Rule public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+  private static Ddl ddl() {
+    return Ddl.builder()
+        .createTable("Singers")
+        .column("SingerId")
+        .int64()
+        .endColumn()
+        .primaryKey()
+        .asc("SingerId")
+        .end()
+        .endTable()
+        .createTable("Albums")
+        .column("SingerId")
+        .int64()
+        .endColumn()
+        .column("AlbumId")
+        .int64()
+        .endColumn()
+        .primaryKey()
+        .asc("SingerId")
+        .asc("AlbumId")
+        .end()
+        .interleaveInParent("Singers")
+        .endTable()
+        .createTable("Songs")
+        .column("SingerId")
+        .int64()
+        .endColumn()
+        .column("AlbumId")
+        .int64()
+        .endColumn()
+        .column("SongId")
+        .int64()
+        .endColumn()
+        .primaryKey()
+        .asc("SingerId")
+        .asc("AlbumId")
+        .asc("SongId")
+        .end()
+        .interleaveInParent("Albums")
+        .endTable()
+        .build();
+  }
+
+  @Test
+  public void depth() {
+    Ddl ddl = ddl();
+
+    assertEquals(0, ApplyDeltaExports.depth(ddl, "Singers"));
+    assertEquals(1, ApplyDeltaExports.depth(ddl, "Albums"));
+    assertEquals(2, ApplyDeltaExports.depth(ddl, "Songs"));
+  }
+
+  @Test
+  public void sameDirectory() {
+    assertTrue(ApplyDeltaExports.sameDirectory("gs://bucket/export", "gs://bucket/export"));
+    assertTrue(ApplyDeltaExports.sameDirectory("gs://bucket/export/", "gs://bucket/export"));
+    assertTrue(ApplyDeltaExports.sameDirectory("gs://bucket/export", "gs://bucket/export/"));
+    assertFalse(ApplyDeltaExports.sameDirectory("gs://bucket/export", "gs://bucket/export2"));
+    assertFalse(ApplyDeltaExports.sameDirectory("", "gs://bucket/export"));
+  }
+
+  @Test
+  public void keepLatestChange() {
+    Mutation oldUpsert = Mutation.newInsertOrUpdateBuilder("Albums").set("AlbumId").to(1L).build();
+    Mutation delete = Mutation.delete("Albums", Key.of(1L, 1L));
+    Mutation newUpsert = Mutation.newInsertOrUpdateBuilder("Albums").set("AlbumId").to(2L).build();
+    Mutation songUpsert = Mutation.newInsertOrUpdateBuilder("Songs").set("SongId").to(1L).build();
+
+    PCollectionView<Ddl> ddlView = pipeline.apply(Create.of(ddl())).apply(View.asSingleton());
+    PCollection<KV<Integer, Mutation>> latest =
+        pipeline
+            .apply(
+                "Create changes",
+                Create.of(
+                        KV.<String, Iterable<KV<Integer, Mutation>>>of(
+                            "albums",
+                            Arrays.asList(
+                                KV.of(0, oldUpsert), KV.of(2, newUpsert), KV.of(1, delete))),
+                        KV.<String, Iterable<KV<Integer, Mutation>>>of(
+                            "songs", Arrays.asList(KV.of(0, songUpsert))))
+                    .withCoder(
+                        KvCoder.of(
+                            StringUtf8Coder.of(),
+                            IterableCoder.of(
+                                KvCoder.of(
+                                    VarIntCoder.of(), SerializableCoder.of(Mutation.class))))))
+            .apply(ParDo.of(new KeepLatestChangeFn(ddlView)).withSideInputs(ddlView))
+            .setCoder(KvCoder.of(VarIntCoder.of(), SerializableCoder.of(Mutation.class)));
+
+    PAssert.that(latest).containsInAnyOrder(KV.of(1, newUpsert), KV.of(2, songUpsert));
+    pipeline.run();
+  }
+
+  @Test
+  public void listDeltaFiles() throws Exception {
+    String base = tmpDir.newFolder("base").getPath();
+    String delta1 = tmpDir.newFolder("delta1").getPath();
+    String delta2 = tmpDir.newFolder("delta2").getPath();
+    String singers1 = writeTable(delta1, "Singers");
+    String albums1 = writeTable(delta1, "Albums-deletes");
+    writeDeltaManifest(delta1, base, "Singers", "Albums");
+    String singers2 = writeTable(delta2, "Singers");
+    // The base export may be given with a trailing slash.
+    writeDeltaManifest(delta2, delta1 + "/", "Singers", null);
+
+    PCollection<KV<String, KV<String, Integer>>> files = listDeltaFiles(base, delta1, delta2);
+
+    PAssert.that(files)
+        .containsInAnyOrder(
+            KV.of(singers1, KV.of("Singers", 0)),
+            KV.of(albums1, KV.of("Albums-deletes", 0)),
+            KV.of(singers2, KV.of("Singers", 1)));
+    pipeline.run();
+  }
+
+  @Test
+  public void listDeltaFilesOutOfOrder() throws Exception {
+    String base = tmpDir.newFolder("base").getPath();
+    String delta1 = tmpDir.newFolder("delta1").getPath();
+    String delta2 = tmpDir.newFolder("delta2").getPath();
+    writeTable(delta1, "Singers");
+    writeDeltaManifest(delta1, base, "Singers", null);
+    writeTable(delta2, "Singers");
+    writeDeltaManifest(delta2, delta1, "Singers", null);
+
+    // The second delta export is not a delta of the imported export.
+    listDeltaFiles(base, delta2, delta1);
+
+    PipelineExecutionException e = assertThrows(PipelineExecutionException.class, pipeline::run);
+    assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+    assertThat(e.getCause().getMessage(), containsString(delta2 + " is not a delta export of"));
+  }
+
+  private PCollection<KV<String, KV<String, Integer>>> listDeltaFiles(
+      String base, String... deltas) {
+    PCollectionView<Ddl> ddlView = pipeline.apply(Create.of(ddl())).apply(View.asSingleton());
+    PCollectionView<Dialect> dialectView =
+        pipeline
+            .apply("Create dialect", Create.of(Dialect.GOOGLE_STANDARD_SQL))
+            .apply("Dialect as view", View.asSingleton());
+    return pipeline
+        .apply("Start", Create.of(1))
+        .apply(
+            ParDo.of(
+                    new ListDeltaFilesFn(
+                        StaticValueProvider.of(base),
+                        StaticValueProvider.of(String.join(", ", deltas)),
+                        ddlView,
+                        dialectView))
+                .withSideInputs(ddlView, dialectView));
+  }
+
+  /** Writes a data file of a table, and its manifest. Returns the path of the data file. */
+  private static String writeTable(String dir, String name) throws IOException {
+    Path file = new File(dir, name + ".avro-00000-of-00001").toPath();
+    Files.write(file, name.getBytes(StandardCharsets.UTF_8));
+    writeJson(
+        dir,
+        name + "-manifest.json",
+        TableManifest.newBuilder()
+            .addFiles(
+                TableManifest.File.newBuilder()
+                    .setName(file.getFileName().toString())
+                    .setMd5(FileChecksum.getLocalFileChecksum(file)))
+            .build());
+    return file.toString();
+  }
+
+  /**
+   * Writes the manifest of a delta export, with the changed rows of a table and the deleted keys of
+   * another one, if any. The changed rows of a view, which has no data files, are listed as well.
+   */
+  private static void writeDeltaManifest(
+      String dir, String baseExport, String changedTable, String deletedTable) throws IOException {
+    Export.Builder manifest =
+        Export.newBuilder()
+            .setBaseExport(baseExport)
+            .setDialect(ProtoDialect.GOOGLE_STANDARD_SQL)
+            .addTables(
+                Export.Table.newBuilder()
+                    .setName(changedTable)
+                    .setManifestFile(changedTable + "-manifest.json"))
+            .addTables(
+                Export.Table.newBuilder().setName("SingersView").setManifestFile("missing.json"));
+    if (deletedTable != null) {
+      manifest.addDeletedKeys(
+          Export.Table.newBuilder()
+              .setName(deletedTable)
+              .setManifestFile(deletedTable + "-deletes-manifest.json"));
+    }
+    writeJson(dir, "spanner-export.json", manifest.build());
+  }
+
+  private static void writeJson(String dir, String name, Message message) throws IOException {
+    Files.write(
+        new File(dir, name).toPath(),
+        JsonFormat.printer().print(message).getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -18,8 +18,13 @@ package com.google.cloud.teleport.spanner;
 import static org.junit.Assert.assertEquals;
 
 import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.PartitionOptions;
 import com.google.cloud.teleport.spanner.common.Type;
 import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.ddl.Table;
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 import org.junit.Test;
 
 /** Tests for BuildReadFromTableOperations class. */
@@ -122,4 +127,54 @@ public class BuildReadFromTableOperationsTest {
         "t.\"colName\"",
         buildReadFromTableOperations.createColumnExpression(ddl.table("table").column("colName")));
   }
+
+  @Test
+  public void testOrderBySize() {
+    Ddl ddl =
+        Ddl.builder(Dialect.GOOGLE_STANDARD_SQL)
+            .createTable("Small")
+            .endTable()
+            .createTable("Unknown1")
+            .endTable()
+            .createTable("Large")
+            .endTable()
+            .createTable("Unknown2")
+            .endTable()
+            .createTable("Empty")
+            .endTable()
+            .build();
+    assertEquals(
+        Arrays.asList("Large", "Small", "Empty", "Unknown1", "Unknown2"),
+        BuildReadFromTableOperations.orderBySize(
+                ddl.allTables(), ImmutableMap.of("small", 10L, "large", 1000L, "empty", 0L))
+            .stream()
+            .map(Table::name)
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testPartitionOptions() {
+    long partitionSize = BuildReadFromTableOperations.PARTITION_SIZE_BYTES;
+    assertEquals(
+        PartitionOptions.newBuilder().setMaxPartitions(1000).build(),
+        BuildReadFromTableOperations.partitionOptions(null));
+    assertEquals(
+        PartitionOptions.newBuilder()
+            .setPartitionSizeBytes(partitionSize)
+            .setMaxPartitions(1)
+            .build(),
+        BuildReadFromTableOperations.partitionOptions(0L));
+    assertEquals(
+        PartitionOptions.newBuilder()
+            .setPartitionSizeBytes(partitionSize)
+            .setMaxPartitions(3)
+            .build(),
+        BuildReadFromTableOperations.partitionOptions(2 * partitionSize + 1));
+    assertEquals(
+        PartitionOptions.newBuilder()
+            .setPartitionSizeBytes(partitionSize)
+            .setMaxPartitions(1000)
+            .build(),
+        BuildReadFromTableOperations.partitionOptions(5000 * partitionSize));
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.range.OffsetRange;
+import org.apache.beam.sdk.values.KV;
+import org.junit.Test;
+
+/** Tests for CsvBoundaryScanner class. */
+public final class CsvBoundaryScannerTest {
+
+  private static CsvBoundaryScanner scanner(String data) throws IOException {
+    Path inputFile = Files.createTempFile("TestTable", ".csv");
+    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+    Files.write(inputFile, bytes);
+    return new CsvBoundaryScanner(
+        FileSystems.matchNewResource(inputFile.toString(), false), bytes.length, '"', ',', '\\');
+  }
+
+  @Test
+  public void findBoundaryOfUnquotedRecords() throws Exception {
+    CsvBoundaryScanner scanner = scanner("1,abc,def\n" + "2,abc,def\n" + "3,abc,def");
+
+    assertEquals(10L, scanner.findBoundary(1));
+    assertEquals(20L, scanner.findBoundary(10));
+    // The end of the file.
+    assertEquals(29L, scanner.findBoundary(21));
+  }
+
+  @Test
+  public void findBoundarySkipsQuotedNewlines() throws Exception {
+    CsvBoundaryScanner scanner = scanner("1,\"a\nb\",x\n" + "2,\"c\nd\",\"y\"\n" + "3,e,f");
+
+    // Inside the first quoted value: its closing quote would be a stray quote in an unquoted one.
+    assertEquals(10L, scanner.findBoundary(3));
+    // Inside the second one, closed and followed by a quoted value.
+    assertEquals(22L, scanner.findBoundary(13));
+  }
+
+  @Test
+  public void findBoundaryWithMultiByteCharacters() throws Exception {
+    CsvBoundaryScanner scanner = scanner("1,\"\u00e9\n\u00fc\"\n" + "2,\u00df\n");
+
+    assertEquals(10L, scanner.findBoundary(4));
+  }
+
+  @Test
+  public void countRecordsVerifiesTheEndOfTheRange() throws Exception {
+    CsvBoundaryScanner scanner = scanner("1,\"a\nb\",x\n" + "2,y\n" + "3,z");
+
+    assertEquals(1L, scanner.countRecords(0, 10));
+    assertEquals(2L, scanner.countRecords(0, 14));
+    // The newline at 4 is quoted.
+    assertEquals(-1L, scanner.countRecords(0, 5));
+    // The last record does not end with a newline.
+    assertEquals(2L, scanner.countRecords(10, 17));
+  }
+
+  @Test
+  public void countRecordsThrowsOnDataAfterClosedQuote() throws Exception {
+    CsvBoundaryScanner scanner = scanner("1,\"ab\"c\n");
+
+    assertThrows(IllegalStateException.class, () -> scanner.countRecords(0, 8));
+  }
+
+  @Test
+  public void splitSerially() throws Exception {
+    CsvBoundaryScanner scanner = scanner("1,\"a\nb\",x\n" + "2,y\n" + "3,z\n" + "4,w");
+
+    assertEquals(
+        Arrays.asList(KV.of(new OffsetRange(0, 14), 2L), KV.of(new OffsetRange(14, 21), 2L)),
+        scanner.splitSerially(0, 10));
+  }
+}
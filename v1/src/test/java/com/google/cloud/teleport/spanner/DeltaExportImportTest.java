@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
+import org.apache.beam.sdk.options.ValueProvider;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.values.PCollection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * An end to end test that exports a database, changes it, exports the changes as a delta export and
+ * imports both into a new database, verifying that the new database matches the changed one. This
+ * requires a Spanner instance, or the emulator through SPANNER_EMULATOR_HOST.
+ */
+@Category(IntegrationTest.class)
+public class DeltaExportImportTest {
+
+  private final String tmpDir = Files.createTempDir().getAbsolutePath();
+  private final long numericTime = System.currentTimeMillis();
+  private final String sourceDb = "delta" + numericTime;
+  private final String destinationDb = "deltaimport" + numericTime;
+
+  @Rule public final transient TestPipeline exportPipeline = TestPipeline.create();
+  @Rule public final transient TestPipeline deltaExportPipeline = TestPipeline.create();
+  @Rule public final transient TestPipeline importPipeline = TestPipeline.create();
+  @Rule public final transient TestPipeline comparePipeline = TestPipeline.create();
+
+  @Rule public final SpannerServerResource spannerServer = new SpannerServerResource();
+
+  @Before
+  public void setup() {
+    spannerServer.dropDatabase(sourceDb);
+    spannerServer.dropDatabase(destinationDb);
+  }
+
+  @After
+  public void teardown() {
+    spannerServer.dropDatabase(sourceDb);
+    spannerServer.dropDatabase(destinationDb);
+  }
+
+  @Test
+  public void deltaExportImport() throws Exception {
+    Ddl ddl =
+        Ddl.builder()
+            .createTable("Singers")
+            .column("SingerId")
+            .int64()
+            .endColumn()
+            .column("Name")
+            .string()
+            .max()
+            .endColumn()
+            .primaryKey()
+            .asc("SingerId")
+            .end()
+            .endTable()
+            .createTable("Albums")
+            .column("SingerId")
+            .int64()
+            .endColumn()
+            .column("AlbumId")
+            .int64()
+            .endColumn()
+            .column("Title")
+            .string()
+            .max()
+            .endColumn()
+            .primaryKey()
+            .asc("SingerId")
+            .asc("AlbumId")
+            .end()
+            .interleaveInParent("Singers")
+            .endTable()
+            .createTable("Scores")
+            .column("Score")
+            .float64()
+            .endColumn()
+            .column("Name")
+            .string()
+            .max()
+            .endColumn()
+            .primaryKey()
+            .asc("Score")
+            .end()
+            .endTable()
+            .createChangeStream("DeltaStream")
+            .forClause("FOR ALL")
+            .options(ImmutableList.of("retention_period=\"1d\""))
+            .endChangeStream()
+            .build();
+    spannerServer.createDatabase(sourceDb, ddl.statements());
+    spannerServer
+        .getDbClient(sourceDb)
+        .write(
+            Arrays.asList(
+                singer(1L, "a"),
+                singer(2L, "b"),
+                singer(3L, "c"),
+                singer(null, "null"),
+                score(Double.NaN, "nan"),
+                score(1.5, "one and a half"),
+                album(1, 1, "a1"),
+                album(2, 1, "b1"),
+                album(2, 2, "b2")));
+
+    export("full", "", "", exportPipeline);
+
+    // Changes the rows of all the tables, including a new child of a new parent and rows with NULL
+    // and NaN keys, which must not be taken for deleted rows, and deletes rows.
+    spannerServer
+        .getDbClient(sourceDb)
+        .write(
+            Arrays.asList(
+                singer(1L, "a changed"),
+                singer(4L, "d"),
+                singer(null, "null changed"),
+                score(Double.NaN, "nan changed"),
+                Mutation.delete("Scores", Key.of(1.5)),
+                album(4, 1, "d1"),
+                album(2, 1, "b1 changed"),
+                Mutation.delete("Albums", Key.of(2L, 2L)),
+                Mutation.delete("Singers", Key.of(3L))));
+
+    export("delta", tmpDir + "/full", "DeltaStream", deltaExportPipeline);
+
+    spannerServer.createDatabase(destinationDb, Collections.emptyList());
+    importPipeline.apply(
+        "Import",
+        new ImportTransform(
+            spannerServer.getSpannerConfig(destinationDb),
+            ValueProvider.StaticValueProvider.of(tmpDir + "/full"),
+            ValueProvider.StaticValueProvider.of(true),
+            ValueProvider.StaticValueProvider.of(true),
+            ValueProvider.StaticValueProvider.of(true),
+            ValueProvider.StaticValueProvider.of(true),
+            ValueProvider.StaticValueProvider.of(true),
+            ValueProvider.StaticValueProvider.of(30),
+            ValueProvider.StaticValueProvider.of(tmpDir + "/delta")));
+    importPipeline.run().waitUntilFinish();
+
+    SpannerConfig sourceConfig = spannerServer.getSpannerConfig(sourceDb);
+    SpannerConfig destinationConfig = spannerServer.getSpannerConfig(destinationDb);
+    PCollection<Long> mismatchCount =
+        comparePipeline.apply("Compare", new CompareDatabases(sourceConfig, destinationConfig));
+    PAssert.that(mismatchCount)
+        .satisfies(
+            (x) -> {
+              assertEquals(Lists.newArrayList(x), Lists.newArrayList(0L));
+              return null;
+            });
+    comparePipeline.run().waitUntilFinish();
+  }
+
+  private void export(
+      String jobId, String baseExportDir, String changeStreamName, TestPipeline pipeline) {
+    pipeline.apply(
+        "Export",
+        new ExportTransform(
+            spannerServer.getSpannerConfig(sourceDb),
+            ValueProvider.StaticValueProvider.of(tmpDir),
+            ValueProvider.StaticValueProvider.of(jobId),
+            /* snapshotTime= */ ValueProvider.StaticValueProvider.of(""),
+            /* tableNames= */ ValueProvider.StaticValueProvider.of(""),
+            /* exportRelatedTables= */ ValueProvider.StaticValueProvider.of(false),
+            /* shouldExportTimestampAsLogicalType= */ ValueProvider.StaticValueProvider.of(false),
+            /* avroTempDirectory= */ ValueProvider.StaticValueProvider.of(null),
+            ValueProvider.StaticValueProvider.of(baseExportDir),
+            ValueProvider.StaticValueProvider.of(changeStreamName)));
+    pipeline.run().waitUntilFinish();
+  }
+
+  private static Mutation singer(Long singerId, String name) {
+    return Mutation.newInsertOrUpdateBuilder("Singers")
+        .set("SingerId")
+        .to(singerId)
+        .set("Name")
+        .to(name)
+        .build();
+  }
+
+  private static Mutation score(double score, String name) {
+    return Mutation.newInsertOrUpdateBuilder("Scores")
+        .set("Score")
+        .to(score)
+        .set("Name")
+        .to(name)
+        .build();
+  }
+
+  private static Mutation album(long singerId, long albumId, String title) {
+    return Mutation.newInsertOrUpdateBuilder("Albums")
+        .set("SingerId")
+        .to(singerId)
+        .set("AlbumId")
+        .to(albumId)
+        .set("Title")
+        .to(title)
+        .build();
+  }
+}
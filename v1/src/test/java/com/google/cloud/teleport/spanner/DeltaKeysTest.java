@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Date;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Mutation;
+import com.google.cloud.spanner.Value;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.ddl.Table;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/** Tests for DeltaKeys class. */
+public class DeltaKeysTest {
+
+  private static Table table() {
+    return Ddl.builder(Dialect.GOOGLE_STANDARD_SQL)
+        .createTable("Users")
+        .column("id")
+        .int64()
+        .endColumn()
+        .column("amount")
+        .numeric()
+        .endColumn()
+        .column("name")
+        .string()
+        .max()
+        .endColumn()
+        .column("data")
+        .bytes()
+        .max()
+        .endColumn()
+        .column("created")
+        .timestamp()
+        .endColumn()
+        .column("day")
+        .date()
+        .endColumn()
+        .column("score")
+        .float64()
+        .endColumn()
+        .primaryKey()
+        .asc("id")
+        .asc("amount")
+        .asc("name")
+        .end()
+        .endTable()
+        .build()
+        .table("Users");
+  }
+
+  @Test
+  public void fromJson() {
+    Table table = table();
+    assertEquals(
+        Value.int64(123L),
+        DeltaKeys.fromJson(table.column("id"), JsonParser.parseString("\"123\"")));
+    assertEquals(
+        Value.numeric(new BigDecimal("1.5")),
+        DeltaKeys.fromJson(table.column("amount"), JsonParser.parseString("\"1.50\"")));
+    assertEquals(
+        Value.bytes(ByteArray.copyFrom("abc")),
+        DeltaKeys.fromJson(table.column("data"), JsonParser.parseString("\"YWJj\"")));
+    assertEquals(
+        Value.timestamp(Timestamp.parseTimestamp("2024-01-02T03:04:05.123456789Z")),
+        DeltaKeys.fromJson(
+            table.column("created"), JsonParser.parseString("\"2024-01-02T03:04:05.123456789Z\"")));
+    assertEquals(
+        Value.date(Date.parseDate("2024-01-02")),
+        DeltaKeys.fromJson(table.column("day"), JsonParser.parseString("\"2024-01-02\"")));
+    assertEquals(
+        Value.float64(Double.NEGATIVE_INFINITY),
+        DeltaKeys.fromJson(table.column("score"), JsonParser.parseString("\"-Infinity\"")));
+    assertEquals(
+        Value.string(null),
+        DeltaKeys.fromJson(table.column("name"), JsonParser.parseString("null")));
+  }
+
+  @Test
+  public void keyOfMutationIsNormalized() {
+    Table table = table();
+    Mutation mutation =
+        Mutation.newInsertOrUpdateBuilder("Users")
+            .set("id")
+            .to(1L)
+            .set("amount")
+            .to(new BigDecimal("2.000"))
+            .set("name")
+            .to("a")
+            .set("score")
+            .to(0.5)
+            .build();
+
+    assertEquals(
+        Arrays.asList(Value.int64(1L), Value.numeric(new BigDecimal("2")), Value.string("a")),
+        DeltaKeys.keyOf(table, mutation.asMap()));
+  }
+
+  @Test
+  public void encodeDistinguishesKeys() {
+    List<Value> key = Arrays.asList(Value.string("a,b"), Value.string("c"));
+
+    assertEquals(DeltaKeys.encode("Users", key), DeltaKeys.encode("users", key));
+    assertNotEquals(
+        DeltaKeys.encode("Users", key),
+        DeltaKeys.encode("Users", Arrays.asList(Value.string("a"), Value.string("b,c"))));
+    assertNotEquals(
+        DeltaKeys.encode("Users", Arrays.asList(Value.string("NULL"))),
+        DeltaKeys.encode("Users", Arrays.asList(Value.string(null))));
+  }
+
+  @Test
+  public void toKey() {
+    assertEquals(
+        Key.newBuilder().append(1L).append(new BigDecimal("2")).append((String) null).build(),
+        DeltaKeys.toKey(
+            Arrays.asList(
+                Value.int64(1L), Value.numeric(new BigDecimal("2")), Value.string(null))));
+  }
+}
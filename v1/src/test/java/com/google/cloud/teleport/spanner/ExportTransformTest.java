@@ -53,6 +53,7 @@ import java.util.List;
 import java.util.Map;
 import org.apache.avro.Schema;
 import org.apache.avro.SchemaBuilder;
+import org.apache.beam.sdk.options.ValueProvider.StaticValueProvider;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Combine;
@@ -215,6 +216,138 @@ public class ExportTransformTest {
     pipeline.run();
   }
 
+  @Test
+  public void buildDeltaDatabaseManifestFile() {
+    Map<String, String> tablesAndManifests =
+        ImmutableMap.of(
+            "table1", "table1 manifest", "table1-deletes", "table1 deleted keys manifest");
+
+    PCollection<List<Export.Table>> metadataTables =
+        pipeline
+            .apply("Initialize table manifests", Create.of(tablesAndManifests))
+            .apply("Combine table manifests", Combine.globally(new CombineTableMetadata()));
+
+    Ddl ddl =
+        Ddl.builder()
+            .createTable("table1")
+            .column("id")
+            .int64()
+            .endColumn()
+            .primaryKey()
+            .asc("id")
+            .end()
+            .endTable()
+            .build();
+    PCollectionView<Ddl> ddlView = pipeline.apply(Create.of(ddl)).apply(View.asSingleton());
+    PCollectionView<Dialect> dialectView =
+        pipeline
+            .apply("CreateSingleton", Create.of(Dialect.GOOGLE_STANDARD_SQL))
+            .apply("As PCollectionView", View.asSingleton());
+    PCollectionView<String> readTimestamp =
+        pipeline
+            .apply("Create read timestamp", Create.of("2024-01-02T03:04:05Z"))
+            .apply("Read timestamp as view", View.asSingleton());
+    PCollection<String> databaseManifest =
+        metadataTables.apply(
+            "Test adding deleted keys to manifest",
+            ParDo.of(
+                    new CreateDatabaseManifest(
+                        ddlView,
+                        dialectView,
+                        readTimestamp,
+                        StaticValueProvider.of("gs://bucket/base")))
+                .withSideInputs(ddlView, dialectView, readTimestamp));
+
+    PAssert.thatSingleton(databaseManifest)
+        .satisfies(
+            (SerializableFunction<String, Void>)
+                input -> {
+                  Builder builder1 = Export.newBuilder();
+                  try {
+                    JsonFormat.parser().merge(input, builder1);
+                  } catch (InvalidProtocolBufferException e) {
+                    throw new RuntimeException(e);
+                  }
+                  Export manifestProto = builder1.build();
+
+                  assertThat(manifestProto.getTablesCount(), is(1));
+                  assertThat(manifestProto.getTables(0).getName(), is("table1"));
+                  assertThat(
+                      manifestProto.getTables(0).getManifestFile(), is("table1-manifest.json"));
+
+                  // The deleted keys are named after their table, but keep their own manifest.
+                  assertThat(manifestProto.getDeletedKeysCount(), is(1));
+                  assertThat(manifestProto.getDeletedKeys(0).getName(), is("table1"));
+                  assertThat(
+                      manifestProto.getDeletedKeys(0).getManifestFile(),
+                      is("table1-deletes-manifest.json"));
+
+                  assertThat(manifestProto.getSnapshotTime(), is("2024-01-02T03:04:05Z"));
+                  assertThat(manifestProto.getBaseExport(), is("gs://bucket/base"));
+                  return null;
+                });
+
+    pipeline.run();
+  }
+
+  @Test
+  public void deletedKeysSchema() {
+    Schema tableSchema =
+        SchemaBuilder.builder()
+            .record("table1")
+            .namespace("spannerexport")
+            .fields()
+            .name("name")
+            .prop(AvroUtil.SQL_TYPE, "STRING(MAX)")
+            .type()
+            .optional()
+            .stringType()
+            .name("id")
+            .prop(AvroUtil.SQL_TYPE, "INT64")
+            .type()
+            .longType()
+            .noDefault()
+            .name("value")
+            .prop(AvroUtil.SQL_TYPE, "FLOAT64")
+            .type()
+            .optional()
+            .doubleType()
+            .endRecord();
+    com.google.cloud.teleport.spanner.ddl.Table table =
+        Ddl.builder()
+            .createTable("table1")
+            .column("name")
+            .string()
+            .max()
+            .endColumn()
+            .column("id")
+            .int64()
+            .endColumn()
+            .column("value")
+            .float64()
+            .endColumn()
+            .primaryKey()
+            .asc("id")
+            .asc("name")
+            .end()
+            .endTable()
+            .build()
+            .table("table1");
+
+    Schema keysSchema = ExportTransform.deletedKeysSchema(tableSchema, table);
+
+    // Only the primary key, in its order, with the types of the table.
+    assertEquals("table1", keysSchema.getName());
+    assertEquals("spannerexport", keysSchema.getNamespace());
+    assertEquals(2, keysSchema.getFields().size());
+    assertEquals("id", keysSchema.getFields().get(0).name());
+    assertEquals("INT64", keysSchema.getFields().get(0).getProp(AvroUtil.SQL_TYPE));
+    assertEquals(Schema.Type.LONG, keysSchema.getFields().get(0).schema().getType());
+    assertEquals("name", keysSchema.getFields().get(1).name());
+    assertEquals("STRING(MAX)", keysSchema.getFields().get(1).getProp(AvroUtil.SQL_TYPE));
+    assertEquals(tableSchema.getField("name").schema(), keysSchema.getFields().get(1).schema());
+  }
+
   @Test
   public void createTimestampBound_noTimestamp() {
     assertEquals(TimestampBound.strong(), ExportTransform.createTimestampBound(""));
@@ -16,6 +16,7 @@
 package com.google.cloud.teleport.spanner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.google.cloud.spanner.Dialect;
@@ -24,8 +25,10 @@ import com.google.cloud.teleport.spanner.ImportTransform.ReadExportManifestFile;
 import com.google.cloud.teleport.spanner.ImportTransform.ReadManifestFiles;
 import com.google.cloud.teleport.spanner.ImportTransform.ReadTableManifestFile;
 import com.google.cloud.teleport.spanner.ImportTransform.ValidateInputFiles;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
 import com.google.cloud.teleport.spanner.proto.ExportProtos.Export;
 import com.google.cloud.teleport.spanner.proto.ExportProtos.TableManifest;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import java.nio.file.Files;
@@ -61,6 +64,65 @@ public class ImportTransformTest {
   @Rule public final transient TestPipeline pipeline = TestPipeline.create();
   @Rule public transient TemporaryFolder tmpFolder = new TemporaryFolder();
 
+  @Test
+  public void assignLanesKeepsInterleavedTablesTogether() {
+    Ddl ddl =
+        Ddl.builder()
+            .createTable("Big")
+            .column("id")
+            .int64()
+            .endColumn()
+            .primaryKey()
+            .asc("id")
+            .end()
+            .endTable()
+            .createTable("BigChild")
+            .column("id")
+            .int64()
+            .endColumn()
+            .column("child_id")
+            .int64()
+            .endColumn()
+            .primaryKey()
+            .asc("id")
+            .asc("child_id")
+            .end()
+            .interleaveInParent("Big")
+            .endTable()
+            .createTable("Small1")
+            .column("id")
+            .int64()
+            .endColumn()
+            .primaryKey()
+            .asc("id")
+            .end()
+            .endTable()
+            .createTable("Small2")
+            .column("id")
+            .int64()
+            .endColumn()
+            .primaryKey()
+            .asc("id")
+            .end()
+            .endTable()
+            .build();
+    HashMultimap<String, String> tableFiles = HashMultimap.create();
+    for (int i = 0; i < 10; i++) {
+      tableFiles.put("big", "big.avro-" + i);
+    }
+    tableFiles.put("bigchild", "bigchild.avro-0");
+    tableFiles.put("small1", "small1.avro-0");
+    tableFiles.put("small2", "small2.avro-0");
+
+    Map<String, Integer> lanes = ImportTransform.assignLanes(ddl, tableFiles, 2);
+
+    assertEquals(4, lanes.size());
+    assertEquals(lanes.get("big"), lanes.get("bigchild"));
+    // The small tables do not wait for the large table.
+    assertNotEquals(lanes.get("big"), lanes.get("small1"));
+    assertEquals(lanes.get("small1"), lanes.get("small2"));
+  }
+
   @Test
   public void validateInputFiles() throws Exception {
     Path f1 = Files.createTempFile("table1-file", "1");
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.spanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.Struct;
+import com.google.cloud.spanner.Value;
+import com.google.cloud.teleport.spanner.ddl.Column;
+import com.google.cloud.teleport.spanner.ddl.Ddl;
+import com.google.cloud.teleport.spanner.ddl.Table;
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.beam.sdk.values.KV;
+import org.junit.Test;
+
+/** Tests for ReadChangedRows class. */
+public class ReadChangedRowsTest {
+
+  private static Table table() {
+    return Ddl.builder(Dialect.GOOGLE_STANDARD_SQL)
+        .createTable("Albums")
+        .column("SingerId")
+        .int64()
+        .endColumn()
+        .column("Title")
+        .string()
+        .max()
+        .endColumn()
+        .column("Details")
+        .json()
+        .endColumn()
+        .column("TitleLength")
+        .int64()
+        .generatedAs("LENGTH(Title)")
+        .stored()
+        .endColumn()
+        .primaryKey()
+        .asc("SingerId")
+        .desc("Title")
+        .end()
+        .endTable()
+        .build()
+        .table("Albums");
+  }
+
+  @Test
+  public void keyJsonIsInPrimaryKeyOrder() {
+    Table table = table();
+    String json = ReadChangedRows.keyJson(table, "{\"Title\":\"Blue\",\"SingerId\":\"42\"}");
+
+    assertEquals("[\"42\",\"Blue\"]", json);
+    assertEquals(
+        Arrays.asList(Value.int64(42L), Value.string("Blue")),
+        ReadChangedRows.parseKey(table, json));
+  }
+
+  @Test
+  public void nullableKeyIsReadByKey() {
+    Table table = table();
+    List<Value> key = ReadChangedRows.parseKey(table, "[null,\"Blue\"]");
+
+    assertEquals(Arrays.asList(Value.int64(null), Value.string("Blue")), key);
+    assertEquals(Key.of(null, "Blue"), DeltaKeys.toKey(key));
+  }
+
+  @Test
+  public void exportRow() {
+    Table table = table();
+    List<Column> columns = Arrays.asList(table.column("SingerId"), table.column("Details"));
+    Struct row =
+        Struct.newBuilder()
+            .set("SingerId")
+            .to(Value.int64(null))
+            .set("Details")
+            .to(Value.json("{\"a\":1}"))
+            .build();
+
+    assertEquals(
+        Struct.newBuilder()
+            .set("_spanner_table")
+            .to("Albums")
+            .set("SingerId")
+            .to(Value.int64(null))
+            .set("Details")
+            .to("{\"a\":1}")
+            .build(),
+        ReadChangedRows.exportRow("Albums", columns, row));
+  }
+
+  @Test
+  public void trackedColumns() {
+    assertNull(ReadChangedRows.trackedColumns("FOR ALL"));
+    assertTrue(ReadChangedRows.trackedColumns("").isEmpty());
+
+    Map<String, Set<String>> tracked =
+        ReadChangedRows.trackedColumns("FOR `Singers`, `Albums`(`Details`, `Title`), `Songs`()");
+    assertEquals(3, tracked.size());
+    assertNull(tracked.get("singers"));
+    assertEquals(ImmutableSet.of("details", "title"), tracked.get("albums"));
+    assertEquals(ImmutableSet.of(), tracked.get("songs"));
+  }
+
+  @Test
+  public void tracksAllColumns() {
+    Table table = table();
+
+    assertTrue(ReadChangedRows.tracksAllColumns(null, table));
+    assertTrue(
+        ReadChangedRows.tracksAllColumns(ReadChangedRows.trackedColumns("FOR Albums"), table));
+    // The key columns are always tracked, the generated columns are not exported.
+    assertTrue(
+        ReadChangedRows.tracksAllColumns(
+            ReadChangedRows.trackedColumns("FOR `Albums`(`Details`)"), table));
+    assertFalse(
+        ReadChangedRows.tracksAllColumns(ReadChangedRows.trackedColumns("FOR `Albums`()"), table));
+    assertFalse(
+        ReadChangedRows.tracksAllColumns(ReadChangedRows.trackedColumns("FOR `Singers`"), table));
+    assertFalse(ReadChangedRows.tracksAllColumns(ReadChangedRows.trackedColumns(""), table));
+  }
+
+  @Test
+  public void timeSlices() {
+    Timestamp start = Timestamp.parseTimestamp("2024-01-01T00:00:00.5Z");
+    Timestamp end = Timestamp.parseTimestamp("2024-01-01T00:25:00Z");
+
+    assertEquals(
+        Arrays.asList(
+            KV.of(start, Timestamp.parseTimestamp("2024-01-01T00:10:00.5Z")),
+            KV.of(
+                Timestamp.parseTimestamp("2024-01-01T00:10:00.5Z"),
+                Timestamp.parseTimestamp("2024-01-01T00:20:00.5Z")),
+            KV.of(Timestamp.parseTimestamp("2024-01-01T00:20:00.5Z"), end)),
+        ReadChangedRows.timeSlices(start, end));
+    assertTrue(ReadChangedRows.timeSlices(end, end).isEmpty());
+  }
+}
@@ -600,6 +600,73 @@ public final class SplitIntoRangesFnTest implements Serializable {
     pipeline.run();
   }
 
+  @Test
+  public void quotedNewlinesAcrossSplits() throws Exception {
+    Path inputFile = Files.createTempFile(testTableName, ".csv");
+
+    Charset charset = Charset.forName("UTF-8");
+    try (BufferedWriter writer = Files.newBufferedWriter(inputFile, charset)) {
+      String data = "1,\"a\nb\nc\nd\",x\n" + "2,\"e\nf\",y\n" + "3,g,h";
+      writer.write(data, 0, data.length());
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    PCollectionView<Map<String, String>> filesToTablesMapView =
+        pipeline
+            .apply("filesToTablesMapView", Create.of(KV.of(inputFile.toString(), testTableName)))
+            .apply(View.asMap());
+
+    PCollection<FileShard> fileShards =
+        pipeline
+            .apply("Create file name collection", Create.of(inputFile.toString()))
+            .apply(FileIO.matchAll().withEmptyMatchTreatment(EmptyMatchTreatment.DISALLOW))
+            // PCollection<Match.Metadata>
+            .apply(FileIO.readMatches())
+            // PCollection<FileIO.ReadableFile>
+            .apply(
+                "Split into ranges",
+                ParDo.of(
+                        new SplitIntoRangesFn(
+                            3L,
+                            filesToTablesMapView,
+                            fieldQualifier,
+                            columnDelimiter,
+                            escapeChar,
+                            handleNewLine))
+                    .withSideInputs(filesToTablesMapView))
+            .setCoder(FileShard.Coder.of());
+    PCollection<OffsetRange> offsetRanges =
+        fileShards.apply(
+            "Get offset ranges",
+            ParDo.of(
+                new DoFn<FileShard, OffsetRange>() {
+
+                  @ProcessElement
+                  public void processElement(ProcessContext c) {
+                    c.output(c.element().getRange());
+                  }
+                }));
+
+    PCollection<Long> recordCounts =
+        fileShards.apply(
+            "Get record counts",
+            ParDo.of(
+                new DoFn<FileShard, Long>() {
+
+                  @ProcessElement
+                  public void processElement(ProcessContext c) {
+                    c.output(c.element().getRecordCount());
+                  }
+                }));
+
+    PAssert.that(offsetRanges)
+        .containsInAnyOrder(
+            new OffsetRange(0L, 14L), new OffsetRange(14L, 24L), new OffsetRange(24L, 29L));
+    PAssert.that(recordCounts).containsInAnyOrder(1L, 1L, 1L);
+
+    pipeline.run();
+  }
+
   @Test(expected = PipelineExecutionException.class)
   public void dataAfterClosedQuote() throws Exception {
     Path inputFile = Files.createTempFile(testTableName, ".csv");
@@ -337,6 +337,84 @@ public class SplunkEventWriterTest {
     mockServer.verify(HttpRequest.request(EXPECTED_PATH), VerificationTimes.once());
   }
 
+  /** Test a rejected batch is split until each rejected event is written to the error output. */
+  @Test
+  @Category(NeedsRunner.class)
+  public void failedSplunkWriteSplitsRejectedBatchTest() {
+
+    // Create server expectation for FAILURE.
+    mockServerListening(400);
+
+    int testPort = mockServer.getPort();
+
+    List<KV<Integer, SplunkEvent>> testEvents =
+        ImmutableList.of(
+            KV.of(
+                123,
+                SplunkEvent.newBuilder()
+                    .withEvent("test-event-1")
+                    .withHost("test-host-1")
+                    .withIndex("test-index-1")
+                    .withSource("test-source-1")
+                    .withSourceType("test-source-type-1")
+                    .withTime(12345L)
+                    .build()),
+            KV.of(
+                123,
+                SplunkEvent.newBuilder()
+                    .withEvent("test-event-2")
+                    .withHost("test-host-2")
+                    .withIndex("test-index-2")
+                    .withSource("test-source-2")
+                    .withSourceType("test-source-type-2")
+                    .withTime(12345L)
+                    .build()));
+
+    PCollection<SplunkWriteError> actual =
+        pipeline
+            .apply(
+                "Create Input data",
+                Create.of(testEvents)
+                    .withCoder(KvCoder.of(BigEndianIntegerCoder.of(), SplunkEventCoder.of())))
+            .apply(
+                "SplunkEventWriter",
+                ParDo.of(
+                    SplunkEventWriter.newBuilder()
+                        .withUrl(Joiner.on(':').join("http://localhost", testPort))
+                        .withInputBatchCount(
+                            StaticValueProvider.of(
+                                testEvents.size())) // all requests in a single batch.
+                        .withMaxInFlightRequests(StaticValueProvider.of(2))
+                        .withToken("test-token")
+                        .build()))
+            .setCoder(SplunkWriteErrorCoder.of());
+
+    // Expect a 400 Bad Request SplunkWriteError for each event
+    PAssert.that(actual)
+        .containsInAnyOrder(
+            SplunkWriteError.newBuilder()
+                .withStatusCode(400)
+                .withStatusMessage("Bad Request")
+                .withPayload(
+                    "{\"time\":12345,\"host\":\"test-host-1\","
+                        + "\"source\":\"test-source-1\",\"sourcetype\":\"test-source-type-1\","
+                        + "\"index\":\"test-index-1\",\"event\":\"test-event-1\"}")
+                .build(),
+            SplunkWriteError.newBuilder()
+                .withStatusCode(400)
+                .withStatusMessage("Bad Request")
+                .withPayload(
+                    "{\"time\":12345,\"host\":\"test-host-2\","
+                        + "\"source\":\"test-source-2\",\"sourcetype\":\"test-source-type-2\","
+                        + "\"index\":\"test-index-2\",\"event\":\"test-event-2\"}")
+                .build());
+
+    pipeline.run();
+
+    // Server received the whole batch, then each half of it.
+    mockServer.verify(HttpRequest.request(EXPECTED_PATH), VerificationTimes.exactly(3));
+  }
+
   private void mockServerListening(int statusCode) {
     mockServer
         .when(HttpRequest.request(EXPECTED_PATH))
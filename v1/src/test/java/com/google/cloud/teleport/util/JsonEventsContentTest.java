@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test for {@link JsonEventsContent}. */
+@RunWith(JUnit4.class)
+public final class JsonEventsContentTest {
+
+  private static final Gson GSON = new Gson();
+
+  private static final List<Map<String, String>> EVENTS =
+      ImmutableList.of(ImmutableMap.of("event", "test-event-1"), ImmutableMap.of("event", "\u00e9"));
+
+  /** Tests events are written as consecutive JSON objects, each time the content is written. */
+  @Test
+  public void testConcatenatedContent() throws IOException {
+    JsonEventsContent content = JsonEventsContent.concatenated("application/json", GSON, EVENTS);
+
+    String expected = "{\"event\":\"test-event-1\"}{\"event\":\"\u00e9\"}";
+    assertThat(write(content), is(equalTo(expected)));
+    assertThat(write(content), is(equalTo(expected)));
+    assertThat(content.getType(), is(equalTo("application/json")));
+  }
+
+  /** Tests events are written as a JSON array. */
+  @Test
+  public void testArrayContent() throws IOException {
+    JsonEventsContent content = JsonEventsContent.array("application/json", GSON, EVENTS);
+
+    assertThat(write(content), is(equalTo("[{\"event\":\"test-event-1\"},{\"event\":\"\u00e9\"}]")));
+  }
+
+  private static String write(JsonEventsContent content) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    content.writeTo(bos);
+    return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
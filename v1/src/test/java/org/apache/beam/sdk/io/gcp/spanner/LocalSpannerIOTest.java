@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io.gcp.spanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.spanner.Dialect;
+import com.google.cloud.spanner.Mutation;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.testing.TestStream;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for the streaming batching of {@link LocalSpannerIO}. */
+@RunWith(JUnit4.class)
+public class LocalSpannerIOTest {
+
+  private static final Duration MAX_BUFFERING_DURATION = Duration.standardSeconds(5);
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  private static SpannerSchema schema() {
+    return SpannerSchema.builder(Dialect.GOOGLE_STANDARD_SQL)
+        .addColumn("users", "id", "STRING(MAX)")
+        .addKeyPart("users", "id", false)
+        .build();
+  }
+
+  private static KV<String, MutationGroup> upsert(String id) {
+    return KV.of(
+        "users/0",
+        MutationGroup.create(Mutation.newInsertOrUpdateBuilder("Users").set("id").to(id).build()));
+  }
+
+  private static TestStream.Builder<KV<String, MutationGroup>> mutations() {
+    return TestStream.create(
+        KvCoder.of(StringUtf8Coder.of(), SerializableCoder.of(MutationGroup.class)));
+  }
+
+  /**
+   * Buffers the mutations with batches of at most {@code maxNumRows} rows, and returns the batches
+   * output, as the concatenated ids of their rows.
+   */
+  private PCollection<String> bufferSortCreateBatches(
+      TestStream<KV<String, MutationGroup>> mutations, long maxNumRows, long groupingFactor) {
+    PCollectionView<SpannerSchema> schemaView =
+        pipeline.apply(Create.of(schema())).apply(View.asSingleton());
+    return pipeline
+        .apply(mutations)
+        .apply(
+            ParDo.of(
+                    new LocalSpannerIO.BufferSortCreateBatchesFn(
+                        1024L * 1024L,
+                        5000,
+                        maxNumRows,
+                        groupingFactor,
+                        MAX_BUFFERING_DURATION,
+                        schemaView))
+                .withSideInputs(schemaView))
+        .apply(
+            MapElements.into(TypeDescriptors.strings())
+                .via(
+                    (Iterable<MutationGroup> batch) -> {
+                      StringBuilder ids = new StringBuilder();
+                      for (MutationGroup mg : batch) {
+                        ids.append(mg.primary().asMap().get("id").getString());
+                      }
+                      return ids.toString();
+                    }));
+  }
+
+  /**
+   * Tests that the buffer is flushed as sorted batches once it would hold more than {@code
+   * groupingFactor} batches.
+   */
+  @Test
+  public void testBufferSortCreateBatchesFlushesFullBuffer() {
+    TestStream<KV<String, MutationGroup>> mutations =
+        mutations()
+            .addElements(upsert("e"), upsert("c"), upsert("d"))
+            .addElements(upsert("a"), upsert("f"), upsert("b"))
+            // The buffer holds 2 batches of 3 rows, and is flushed before this row is added.
+            .addElements(upsert("g"))
+            .advanceWatermarkToInfinity();
+
+    PAssert.that(bufferSortCreateBatches(mutations, 3, 2)).containsInAnyOrder("abc", "def", "g");
+    pipeline.run();
+  }
+
+  /** Tests that the buffer is flushed once its oldest row has waited for the buffering duration. */
+  @Test
+  public void testBufferSortCreateBatchesFlushesOnTimer() {
+    TestStream<KV<String, MutationGroup>> mutations =
+        mutations()
+            .addElements(upsert("c"), upsert("a"))
+            .advanceProcessingTime(Duration.standardSeconds(2))
+            .addElements(upsert("b"))
+            .advanceProcessingTime(Duration.standardSeconds(4))
+            .addElements(upsert("e"), upsert("d"))
+            .advanceWatermarkToInfinity();
+
+    // Without the timer, all the rows would be flushed in one batch at the end of the window.
+    PAssert.that(bufferSortCreateBatches(mutations, 10, 10)).containsInAnyOrder("abc", "de");
+    pipeline.run();
+  }
+
+  /** Tests that the rows left in the buffer are flushed, sorted, at the end of the window. */
+  @Test
+  public void testBufferSortCreateBatchesFlushesAtEndOfWindow() {
+    TestStream<KV<String, MutationGroup>> mutations =
+        mutations()
+            .addElements(upsert("d"), upsert("b"))
+            .addElements(upsert("a"))
+            .addElements(upsert("c"))
+            .advanceWatermarkToInfinity();
+
+    PAssert.that(bufferSortCreateBatches(mutations, 10, 10)).containsInAnyOrder("abcd");
+    pipeline.run();
+  }
+
+  /**
+   * Tests that the keys of a table sharing their first 8 bytes share a bucket, and that the buckets
+   * are bounded.
+   */
+  @Test
+  public void testKeyBucket() {
+    MutationKeyEncoder encoder = new MutationKeyEncoder(schema());
+    Set<Integer> buckets = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      int bucket = LocalSpannerIO.keyBucket("users", encode(encoder, "row" + i));
+      assertTrue(bucket >= 0 && bucket < LocalSpannerIO.BUFFER_KEY_BUCKETS);
+      buckets.add(bucket);
+    }
+
+    assertEquals(LocalSpannerIO.BUFFER_KEY_BUCKETS, buckets.size());
+    assertEquals(
+        LocalSpannerIO.keyBucket("users", encode(encoder, "prefix01-row1")),
+        LocalSpannerIO.keyBucket("users", encode(encoder, "prefix01-row2")));
+  }
+
+  private static byte[] encode(MutationKeyEncoder encoder, String id) {
+    return encoder.encodeTableNameAndKey(
+        Mutation.newInsertOrUpdateBuilder("Users").set("id").to(id).build());
+  }
+}
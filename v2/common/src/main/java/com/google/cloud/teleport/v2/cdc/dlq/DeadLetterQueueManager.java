@@ -31,6 +31,7 @@ import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.sdk.values.TupleTagList;
+import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +40,8 @@ import org.slf4j.LoggerFactory;
  */
 public class DeadLetterQueueManager implements Serializable {
   private static final Logger LOG = LoggerFactory.getLogger(DeadLetterQueueManager.class);
-  private static final String DATETIME_FILEPATH_SUFFIX = "YYYY/MM/dd/HH/mm/";
+  private static final String DATETIME_FILEPATH_SUFFIX =
+      FileBasedDeadLetterQueueReconsumer.DEFAULT_PARTITION_LAYOUT;
   private final String retryDlqDirectory;
   private final String severeDlqDirectory;
   private final int maxRetries;
@@ -106,6 +108,28 @@ public class DeadLetterQueueManager implements Serializable {
     return FileBasedDeadLetterQueueReconsumer.create(retryDlqDirectory, recheckPeriodMinutes);
   }
 
+  /**
+   * Reconsumes a retry DLQ whose files are written under {@code partitionLayout}, a {@link
+   * com.google.cloud.teleport.v2.io.WindowedFilenamePolicy} directory template relative to the
+   * retry directory, instead of the layout of {@link #getRetryDlqDirectoryWithDateTime()}.
+   */
+  public PTransform<PBegin, PCollection<String>> dlqReconsumerForLayout(String partitionLayout) {
+    return FileBasedDeadLetterQueueReconsumer.create(retryDlqDirectory)
+        .withPartitionLayout(partitionLayout);
+  }
+
+  /**
+   * Reconsumes the retry DLQ, holding back records which were already retried with an exponential
+   * backoff starting at {@code retryBackoffMinutes} and capped at {@code maxRetryBackoffMinutes}.
+   */
+  public PTransform<PBegin, PCollection<String>> dlqReconsumer(
+      Integer recheckPeriodMinutes, Integer retryBackoffMinutes, Integer maxRetryBackoffMinutes) {
+    return FileBasedDeadLetterQueueReconsumer.create(retryDlqDirectory, recheckPeriodMinutes)
+        .withRetryBackoff(
+            Duration.standardMinutes(retryBackoffMinutes),
+            Duration.standardMinutes(maxRetryBackoffMinutes));
+  }
+
   public PCollectionTuple getReconsumerDataTransformForFiles(PCollection<Metadata> input) {
     return getReconsumerDataTransform(
         input.apply(
@@ -18,37 +18,63 @@ package com.google.cloud.teleport.v2.cdc.dlq;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.cloud.teleport.v2.io.WindowedFilenamePolicy;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.io.FileIO;
 import org.apache.beam.sdk.io.FileSystems;
 import org.apache.beam.sdk.io.GenerateSequence;
 import org.apache.beam.sdk.io.fs.MatchResult.Metadata;
-import org.apache.beam.sdk.io.fs.MetadataCoder;
+import org.apache.beam.sdk.io.fs.MetadataCoderV2;
 import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.io.range.OffsetRange;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.transforms.DoFn;
-import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.Flatten;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.Reshuffle;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
 import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.sdk.values.TupleTagList;
-import org.apache.beam.sdk.values.TypeDescriptors;
 import org.joda.time.Duration;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +82,19 @@ import org.slf4j.LoggerFactory;
  * A DeadLetterQueueReconsumer that works by periodically fetching files from a DLQ directory.
  *
  * <p>This transforms assumes that the DLQ files are stored in JSON Lines format.
+ *
+ * <p>DLQ writers place files under date partitions resolved by {@link WindowedFilenamePolicy} from
+ * a partition layout (see {@link DeadLetterQueueManager#getRetryDlqDirectoryWithDateTime()}), so
+ * most rechecks only list the partitions that can have received files since the previous recheck.
+ * Every {@code fullScanInterval} rechecks, starting with the first one, the whole directory is
+ * listed to pick up files left behind in older partitions. Matched files are distributed across
+ * workers, and files larger than {@code splitSizeBytes} are read as several independent
+ * line-aligned byte ranges. A file is deleted once each of its ranges has been read, even if
+ * overlapping rechecks matched it more than once.
+ *
+ * <p>When a retry backoff is configured, a record which has already been retried {@code n} times is
+ * held back until {@code initialBackoff * 2^(n-1)} (capped at {@code maxBackoff}) has elapsed since
+ * its DLQ file was written, so records that keep failing do not crowd out fresh ones.
  */
 public class FileBasedDeadLetterQueueReconsumer extends PTransform<PBegin, PCollection<String>> {
 
@@ -64,102 +103,391 @@ public class FileBasedDeadLetterQueueReconsumer extends PTransform<PBegin, PColl
 
   public static final Duration DEFAULT_RECHECK_PERIOD = Duration.standardMinutes(5);
 
+  /** Default number of rechecks between listings of the whole DLQ directory. */
+  public static final int DEFAULT_FULL_SCAN_INTERVAL = 12;
+
+  /** Default size above which a DLQ file is split into several ranges. */
+  public static final long DEFAULT_SPLIT_SIZE_BYTES = 64L * 1024 * 1024;
+
+  /** Partition layout DLQ writers use below the DLQ directory by default. */
+  public static final String DEFAULT_PARTITION_LAYOUT = "YYYY/MM/dd/HH/mm/";
+
+  /** Number of keys records held back by the retry backoff are spread over. */
+  private static final int BACKOFF_SHARDS = 64;
+
+  /** How long the ranges read from a file are remembered if the file is never fully read. */
+  private static final Duration COMPLETED_RANGES_EXPIRY = Duration.standardHours(1);
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
   private final String dlqDirectory;
+  @Nullable private final String partitionLayout;
   private final Duration recheckPeriod;
+  private final int fullScanInterval;
+  private final long splitSizeBytes;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
 
   public static FileBasedDeadLetterQueueReconsumer create(
       String dlqDirectory, Integer recheckPeriodMinutes) {
     return new FileBasedDeadLetterQueueReconsumer(
-        dlqDirectory, Duration.standardMinutes(recheckPeriodMinutes));
+        dlqDirectory,
+        DEFAULT_PARTITION_LAYOUT,
+        Duration.standardMinutes(recheckPeriodMinutes),
+        DEFAULT_FULL_SCAN_INTERVAL,
+        DEFAULT_SPLIT_SIZE_BYTES,
+        Duration.ZERO,
+        Duration.ZERO);
   }
 
   public static FileBasedDeadLetterQueueReconsumer create(String dlqDirectory) {
-    return new FileBasedDeadLetterQueueReconsumer(dlqDirectory, DEFAULT_RECHECK_PERIOD);
+    return new FileBasedDeadLetterQueueReconsumer(
+        dlqDirectory,
+        DEFAULT_PARTITION_LAYOUT,
+        DEFAULT_RECHECK_PERIOD,
+        DEFAULT_FULL_SCAN_INTERVAL,
+        DEFAULT_SPLIT_SIZE_BYTES,
+        Duration.ZERO,
+        Duration.ZERO);
   }
 
-  private FileBasedDeadLetterQueueReconsumer(String dlqDirectory, Duration recheckPeriod) {
+  private FileBasedDeadLetterQueueReconsumer(
+      String dlqDirectory,
+      @Nullable String partitionLayout,
+      Duration recheckPeriod,
+      int fullScanInterval,
+      long splitSizeBytes,
+      Duration initialBackoff,
+      Duration maxBackoff) {
     this.dlqDirectory = dlqDirectory;
+    this.partitionLayout = partitionLayout;
     this.recheckPeriod = recheckPeriod;
+    this.fullScanInterval = fullScanInterval;
+    this.splitSizeBytes = splitSizeBytes;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+  }
+
+  /**
+   * Sets the date partition layout DLQ files are written under, relative to the DLQ directory, as
+   * passed to {@link WindowedFilenamePolicy} by the writer (for example {@code YYYY/MM/dd/HH/mm/}).
+   * A null layout lists the whole directory on every recheck.
+   */
+  public FileBasedDeadLetterQueueReconsumer withPartitionLayout(@Nullable String partitionLayout) {
+    return new FileBasedDeadLetterQueueReconsumer(
+        dlqDirectory,
+        partitionLayout,
+        recheckPeriod,
+        fullScanInterval,
+        splitSizeBytes,
+        initialBackoff,
+        maxBackoff);
+  }
+
+  /** Lists the whole DLQ directory every {@code fullScanInterval} rechecks. */
+  public FileBasedDeadLetterQueueReconsumer withFullScanInterval(int fullScanInterval) {
+    if (fullScanInterval < 1) {
+      throw new IllegalArgumentException("fullScanInterval must be at least 1.");
+    }
+    return new FileBasedDeadLetterQueueReconsumer(
+        dlqDirectory,
+        partitionLayout,
+        recheckPeriod,
+        fullScanInterval,
+        splitSizeBytes,
+        initialBackoff,
+        maxBackoff);
+  }
+
+  /** Splits DLQ files larger than {@code splitSizeBytes} into several ranges read in parallel. */
+  public FileBasedDeadLetterQueueReconsumer withSplitSizeBytes(long splitSizeBytes) {
+    if (splitSizeBytes < 1) {
+      throw new IllegalArgumentException("splitSizeBytes must be positive.");
+    }
+    return new FileBasedDeadLetterQueueReconsumer(
+        dlqDirectory,
+        partitionLayout,
+        recheckPeriod,
+        fullScanInterval,
+        splitSizeBytes,
+        initialBackoff,
+        maxBackoff);
+  }
+
+  /**
+   * Holds back retried records with an exponential backoff based on their {@code
+   * _metadata_retry_count}. A zero {@code initialBackoff} disables the backoff.
+   */
+  public FileBasedDeadLetterQueueReconsumer withRetryBackoff(
+      Duration initialBackoff, Duration maxBackoff) {
+    if (maxBackoff.isShorterThan(initialBackoff)) {
+      throw new IllegalArgumentException("maxBackoff must not be shorter than initialBackoff.");
+    }
+    return new FileBasedDeadLetterQueueReconsumer(
+        dlqDirectory,
+        partitionLayout,
+        recheckPeriod,
+        fullScanInterval,
+        splitSizeBytes,
+        initialBackoff,
+        maxBackoff);
   }
 
   public PCollection<String> expand(PBegin in) {
+    return in.getPipeline()
+        .apply("TriggerConsumeDLQ", GenerateSequence.from(0).withRate(1, this.recheckPeriod))
+        .apply(
+            "AsFilePatterns",
+            ParDo.of(
+                new DiscoverFilePatternsFn(
+                    dlqDirectory, partitionLayout, recheckPeriod, fullScanInterval)))
+        .apply("MatchFiles", FileIO.matchAll())
+        .apply("ConsumeMatches", moveAndConsumeMatches(splitSizeBytes, initialBackoff, maxBackoff));
+  }
+
+  /**
+   * Returns the file patterns to match for the given recheck. The first recheck and every {@code
+   * fullScanInterval}-th one after it match the whole directory; the others only match the
+   * partitions which may have received files since the previous recheck. Partitions are resolved
+   * from {@code partitionLayout} the same way the DLQ writers resolve them, from the end of each
+   * minute-long window.
+   */
+  static List<String> filePatternsForRecheck(
+      String dlqDirectory,
+      @Nullable String partitionLayout,
+      Duration recheckPeriod,
+      int fullScanInterval,
+      long recheckNumber,
+      Instant now) {
     // We want to match all the files in this directory (but not the directories).
     // TODO: Paths resolve converts "gs://bucket/.." to "gs:/bucket/.."
     // String filePattern = Paths.get(dlqDirectory).resolve("*").toString();
+    if (partitionLayout == null || recheckNumber % fullScanInterval == 0) {
+      return Collections.singletonList(dlqDirectory + "**");
+    }
 
-    String filePattern = dlqDirectory + "**";
-    return in.getPipeline()
-        .apply("TriggerConsumeDLQ", GenerateSequence.from(0).withRate(1, this.recheckPeriod))
-        .apply("AsFilePattern", MapElements.into(TypeDescriptors.strings()).via(seq -> filePattern))
-        .apply("MatchFiles", FileIO.matchAll())
-        .apply("ConsumeMatches", moveAndConsumeMatches());
+    // Files are placed in the partition of the window they were written in, and are written a few
+    // minutes after that window closes, so look back further than a single recheck period.
+    Instant since = now.minus(recheckPeriod.multipliedBy(2)).minus(Duration.standardMinutes(10));
+    long minuteMillis = Duration.standardMinutes(1).getMillis();
+    WindowedFilenamePolicy partitions = WindowedFilenamePolicy.writeWindowedFiles();
+    Set<String> patterns = new LinkedHashSet<>();
+    for (long end = since.getMillis() / minuteMillis * minuteMillis;
+        end <= now.getMillis() + minuteMillis;
+        end += minuteMillis) {
+      IntervalWindow window = new IntervalWindow(new Instant(end - minuteMillis), new Instant(end));
+      patterns.add(
+          partitions.resolveWithDateTemplates(dlqDirectory + partitionLayout, window).toString()
+              + "**");
+    }
+    return new ArrayList<>(patterns);
+  }
+
+  private static class DiscoverFilePatternsFn extends DoFn<Long, String> {
+    private final String dlqDirectory;
+    @Nullable private final String partitionLayout;
+    private final Duration recheckPeriod;
+    private final int fullScanInterval;
+
+    DiscoverFilePatternsFn(
+        String dlqDirectory,
+        @Nullable String partitionLayout,
+        Duration recheckPeriod,
+        int fullScanInterval) {
+      this.dlqDirectory = dlqDirectory;
+      this.partitionLayout = partitionLayout;
+      this.recheckPeriod = recheckPeriod;
+      this.fullScanInterval = fullScanInterval;
+    }
+
+    @ProcessElement
+    public void process(@Element Long recheckNumber, OutputReceiver<String> out) {
+      for (String pattern :
+          filePatternsForRecheck(
+              dlqDirectory,
+              partitionLayout,
+              recheckPeriod,
+              fullScanInterval,
+              recheckNumber,
+              Instant.now())) {
+        out.output(pattern);
+      }
+    }
   }
 
   /** Build a {@link PTransform} that consumes matched DLQ files. */
   static PTransform<PCollection<Metadata>, PCollection<String>> moveAndConsumeMatches() {
+    return moveAndConsumeMatches(DEFAULT_SPLIT_SIZE_BYTES, Duration.ZERO, Duration.ZERO);
+  }
+
+  /** Build a {@link PTransform} that consumes matched DLQ files. */
+  static PTransform<PCollection<Metadata>, PCollection<String>> moveAndConsumeMatches(
+      long splitSizeBytes, Duration initialBackoff, Duration maxBackoff) {
     return new PTransform<PCollection<Metadata>, PCollection<String>>() {
       @Override
       public PCollection<String> expand(PCollection<Metadata> input) {
         // TODO(pabloem, dhercher): Use a Beam standard transform once possible
         // TODO(pabloem, dhercher): Add a _metadata attribute to track whether a row comes from DLQ.
         TupleTag<String> fileContents = new TupleTag<String>();
-        TupleTag<Metadata> fileMetadata = new TupleTag<Metadata>();
+        TupleTag<KV<KV<String, Long>, KV<Integer, Integer>>> completedRanges =
+            new TupleTag<KV<KV<String, Long>, KV<Integer, Integer>>>();
+        TupleTag<KV<Integer, KV<Long, String>>> delayedContents =
+            new TupleTag<KV<Integer, KV<Long, String>>>();
+
+        // Matches for one pattern are all produced by a single worker, so spread the files (and
+        // the ranges of large files) before reading them.
         PCollectionTuple results =
-            input.apply(
-                ParDo.of(new MoveAndConsumeFn(fileContents, fileMetadata))
-                    .withOutputTags(fileContents, TupleTagList.of(fileMetadata)));
+            input
+                .apply("SplitFiles", ParDo.of(new SplitFileFn(splitSizeBytes)))
+                .setCoder(KvCoder.of(MetadataCoderV2.of(), SerializableCoder.of(OffsetRange.class)))
+                .apply("ReshuffleRanges", Reshuffle.viaRandomKey())
+                .apply(
+                    ParDo.of(
+                            new MoveAndConsumeFn(
+                                fileContents,
+                                completedRanges,
+                                delayedContents,
+                                splitSizeBytes,
+                                initialBackoff,
+                                maxBackoff))
+                        .withOutputTags(
+                            fileContents, TupleTagList.of(completedRanges).and(delayedContents)));
 
+        // Keying by file shuffles the completion markers, so files are only deleted once the
+        // contents read from them have been committed.
         results
-            .get(fileMetadata)
-            .setCoder(MetadataCoder.of())
-            .apply("ReshuffleFiles", Reshuffle.viaRandomKey())
-            .apply(ParDo.of(new RemoveFiles()));
+            .get(completedRanges)
+            .setCoder(
+                KvCoder.of(
+                    KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of()),
+                    KvCoder.of(VarIntCoder.of(), VarIntCoder.of())))
+            .apply("RemoveFiles", ParDo.of(new RemoveFiles()));
 
-        return results
-            .get(fileContents)
-            .setCoder(StringUtf8Coder.of())
-            .apply("ReshuffleContents", Reshuffle.viaRandomKey());
+        PCollection<String> contents = results.get(fileContents).setCoder(StringUtf8Coder.of());
+        PCollection<KV<Integer, KV<Long, String>>> delayed =
+            results
+                .get(delayedContents)
+                .setCoder(
+                    KvCoder.of(
+                        VarIntCoder.of(), KvCoder.of(VarLongCoder.of(), StringUtf8Coder.of())));
+        if (initialBackoff.isLongerThan(Duration.ZERO)) {
+          contents =
+              PCollectionList.of(contents)
+                  .and(delayed.apply("HoldForBackoff", ParDo.of(new HoldUntilEligibleFn())))
+                  .apply("FlattenContents", Flatten.pCollections());
+        }
+
+        return contents.apply("ReshuffleContents", Reshuffle.viaRandomKey());
       }
     };
   }
 
-  private static class RemoveFiles extends DoFn<Metadata, Void> {
-    private final List<ResourceId> filesToRemove = new ArrayList<>();
+  /** Returns the number of ranges a file of the given size is split into. */
+  static int numRanges(long sizeBytes, long splitSizeBytes) {
+    return (int) Math.max(1, (sizeBytes + splitSizeBytes - 1) / splitSizeBytes);
+  }
+
+  private static class SplitFileFn extends DoFn<Metadata, KV<Metadata, OffsetRange>> {
+    private final long splitSizeBytes;
+
+    SplitFileFn(long splitSizeBytes) {
+      this.splitSizeBytes = splitSizeBytes;
+    }
+
+    @ProcessElement
+    public void process(@Element Metadata dlqFile, OutputReceiver<KV<Metadata, OffsetRange>> out) {
+      LOG.info("Found DLQ File: {}", dlqFile.resourceId().toString());
+      if (dlqFile.resourceId().toString().contains("/tmp/.temp")) {
+        return;
+      }
+      long size = dlqFile.sizeBytes();
+      int ranges = numRanges(size, splitSizeBytes);
+      for (int i = 0; i < ranges; i++) {
+        long start = i * splitSizeBytes;
+        long end = i == ranges - 1 ? Math.max(size, start) : start + splitSizeBytes;
+        out.output(KV.of(dlqFile, new OffsetRange(start, end)));
+      }
+    }
+  }
+
+  /**
+   * Deletes each DLQ file once every one of its ranges has been read. Completions are keyed by the
+   * file's path and last modification time, and are given as {@code KV(rangeIndex, numRanges)}.
+   * Overlapping rechecks can match a file more than once, so a range read twice only counts once.
+   */
+  static class RemoveFiles extends DoFn<KV<KV<String, Long>, KV<Integer, Integer>>, Void> {
     private final Counter failedDeletions =
         Metrics.counter(MoveAndConsumeFn.class, "failedDeletions");
 
+    @StateId("completed")
+    private final StateSpec<BagState<Integer>> completedSpec = StateSpecs.bag(VarIntCoder.of());
+
+    @TimerId("expire")
+    private final TimerSpec expireSpec = TimerSpecs.timer(TimeDomain.PROCESSING_TIME);
+
     @ProcessElement
-    public void process(@Element Metadata dlqFile, MultiOutputReceiver outputs) throws IOException {
-      this.filesToRemove.add(dlqFile.resourceId());
-    }
-
-    @FinishBundle
-    public void cleanupFiles() {
-      for (ResourceId file : filesToRemove) {
-        try {
-          FileSystems.delete(Collections.singleton(file));
-          LOG.info("Deleted file {}.", file);
-        } catch (IOException e) {
-          LOG.error("Unable to delete file {}. Exception: {}", file, e);
-          failedDeletions.inc();
-        }
+    public void process(
+        @Element KV<KV<String, Long>, KV<Integer, Integer>> completedRange,
+        @StateId("completed") BagState<Integer> completed,
+        @TimerId("expire") Timer expire) {
+      Set<Integer> done = new HashSet<>();
+      completed.read().forEach(done::add);
+      if (!done.add(completedRange.getValue().getKey())) {
+        return;
+      }
+      if (done.size() < completedRange.getValue().getValue()) {
+        completed.add(completedRange.getValue().getKey());
+        // Ranges of a file deleted by another match are never read, so forget the file eventually.
+        expire.offset(COMPLETED_RANGES_EXPIRY).setRelative();
+        return;
+      }
+      completed.clear();
+
+      ResourceId file = FileSystems.matchNewResource(completedRange.getKey().getKey(), false);
+      try {
+        FileSystems.delete(Collections.singleton(file));
+        LOG.info("Deleted file {}.", file);
+      } catch (IOException e) {
+        LOG.error("Unable to delete file {}. Exception: {}", file, e);
+        failedDeletions.inc();
       }
-      filesToRemove.clear();
+    }
+
+    @OnTimer("expire")
+    public void onExpire(@StateId("completed") BagState<Integer> completed) {
+      completed.clear();
     }
   }
 
   // TODO(pabloem): Switch over to use FileIO after BEAM-10246
-  private static class MoveAndConsumeFn extends DoFn<Metadata, String> {
+  private static class MoveAndConsumeFn extends DoFn<KV<Metadata, OffsetRange>, String> {
 
     private final Counter reconsumedElements =
         Metrics.counter(MoveAndConsumeFn.class, "elementsReconsumedFromDeadLetterQueue");
 
-    private final TupleTag<Metadata> filesTag;
+    private final Counter delayedElements =
+        Metrics.counter(MoveAndConsumeFn.class, "elementsDelayedByRetryBackoff");
+
     private final TupleTag<String> contentTag;
+    private final TupleTag<KV<KV<String, Long>, KV<Integer, Integer>>> completedTag;
+    private final TupleTag<KV<Integer, KV<Long, String>>> delayedTag;
+    private final long splitSizeBytes;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
 
-    MoveAndConsumeFn(TupleTag<String> contentTag, TupleTag<Metadata> filesTag) {
-      this.filesTag = filesTag;
+    MoveAndConsumeFn(
+        TupleTag<String> contentTag,
+        TupleTag<KV<KV<String, Long>, KV<Integer, Integer>>> completedTag,
+        TupleTag<KV<Integer, KV<Long, String>>> delayedTag,
+        long splitSizeBytes,
+        Duration initialBackoff,
+        Duration maxBackoff) {
       this.contentTag = contentTag;
+      this.completedTag = completedTag;
+      this.delayedTag = delayedTag;
+      this.splitSizeBytes = splitSizeBytes;
+      this.initialBackoff = initialBackoff;
+      this.maxBackoff = maxBackoff;
     }
 
     /* Gets the total number of times the record has circulated through the retry
@@ -175,47 +503,184 @@ public class FileBasedDeadLetterQueueReconsumer extends PTransform<PBegin, PColl
     }
 
     @ProcessElement
-    public void process(@Element Metadata dlqFile, MultiOutputReceiver outputs) throws IOException {
-      LOG.info("Found DLQ File: {}", dlqFile.resourceId().toString());
-      if (dlqFile.resourceId().toString().contains("/tmp/.temp")) {
-        return;
-      }
+    public void process(@Element KV<Metadata, OffsetRange> range, MultiOutputReceiver outputs)
+        throws IOException {
+      Metadata dlqFile = range.getKey();
+      long writtenAtMillis =
+          dlqFile.lastModifiedMillis() > 0
+              ? dlqFile.lastModifiedMillis()
+              : Instant.now().getMillis();
+      long now = Instant.now().getMillis();
 
-      BufferedReader jsonReader;
       try {
-        jsonReader = readFile(dlqFile.resourceId());
+        readLines(
+            dlqFile.resourceId(),
+            range.getValue(),
+            line -> {
+              ObjectNode resultNode;
+              // Each line is expecting this format: {"message": ROW, "error_message": ERROR}
+              try {
+                JsonNode jsonDLQElement = MAPPER.readTree(line);
+                if (!jsonDLQElement.get("message").isObject()) {
+                  throw new IOException("Unable to parse JSON record " + line);
+                }
+                resultNode = (ObjectNode) jsonDLQElement.get("message");
+                resultNode.put("_metadata_error", jsonDLQElement.get("error_message"));
+                // Populate the retried count.
+                long retryErrorCount = getRetryCountForRecord(resultNode);
+                resultNode.put("_metadata_retry_count", retryErrorCount);
+
+                long eligibleAt = writtenAtMillis + backoffMillis(retryErrorCount);
+                if (eligibleAt > now) {
+                  int shard = Math.floorMod(line.hashCode(), BACKOFF_SHARDS);
+                  outputs
+                      .get(delayedTag)
+                      .output(KV.of(shard, KV.of(eligibleAt, resultNode.toString())));
+                  delayedElements.inc();
+                } else {
+                  outputs.get(contentTag).output(resultNode.toString());
+                }
+                reconsumedElements.inc();
+              } catch (IOException e) {
+                LOG.error("Issue parsing JSON record {}. Unable to continue.", line, e);
+                throw new RuntimeException(e);
+              }
+            });
       } catch (FileNotFoundException e) {
         // If the file does exist, it will be retried on the next trigger.
         LOG.warn("DLQ File Not Found: {}", dlqFile.resourceId().toString());
         return;
       }
+      outputs
+          .get(completedTag)
+          .output(
+              KV.of(
+                  KV.of(dlqFile.resourceId().toString(), dlqFile.lastModifiedMillis()),
+                  KV.of(
+                      (int) (range.getValue().getFrom() / splitSizeBytes),
+                      numRanges(dlqFile.sizeBytes(), splitSizeBytes))));
+    }
 
-      // Assuming that files are JSONLines formatted.
-      ObjectMapper mapper = new ObjectMapper();
-      jsonReader
-          .lines()
-          .forEach(
-              line -> {
-                ObjectNode resultNode;
-                // Each line is expecting this format: {"message": ROW, "error_message": ERROR}
-                try {
-                  JsonNode jsonDLQElement = mapper.readTree(line);
-                  if (!jsonDLQElement.get("message").isObject()) {
-                    throw new IOException("Unable to parse JSON record " + line);
-                  }
-                  resultNode = (ObjectNode) jsonDLQElement.get("message");
-                  resultNode.put("_metadata_error", jsonDLQElement.get("error_message"));
-                  // Populate the retried count.
-                  long retryErrorCount = getRetryCountForRecord(resultNode);
-                  resultNode.put("_metadata_retry_count", retryErrorCount);
-                  outputs.get(contentTag).output(resultNode.toString());
-                  reconsumedElements.inc();
-                } catch (IOException e) {
-                  LOG.error("Issue parsing JSON record {}. Unable to continue.", line, e);
-                  throw new RuntimeException(e);
-                }
-              });
-      outputs.get(filesTag).output(dlqFile);
+    private long backoffMillis(long retryCount) {
+      long backoff = initialBackoff.getMillis();
+      for (long i = 1; i < retryCount && backoff < maxBackoff.getMillis(); i++) {
+        backoff *= 2;
+      }
+      return Math.min(backoff, maxBackoff.getMillis());
+    }
+  }
+
+  /** Holds records back until the time paired with them, using a processing-time timer per key. */
+  private static class HoldUntilEligibleFn extends DoFn<KV<Integer, KV<Long, String>>, String> {
+
+    @StateId("held")
+    private final StateSpec<BagState<KV<Long, String>>> heldSpec =
+        StateSpecs.bag(KvCoder.of(VarLongCoder.of(), StringUtf8Coder.of()));
+
+    @StateId("nextRelease")
+    private final StateSpec<ValueState<Long>> nextReleaseSpec = StateSpecs.value(VarLongCoder.of());
+
+    @TimerId("release")
+    private final TimerSpec releaseSpec = TimerSpecs.timer(TimeDomain.PROCESSING_TIME);
+
+    @ProcessElement
+    public void process(
+        @Element KV<Integer, KV<Long, String>> element,
+        @StateId("held") BagState<KV<Long, String>> held,
+        @StateId("nextRelease") ValueState<Long> nextRelease,
+        @TimerId("release") Timer release) {
+      held.add(element.getValue());
+      long eligibleAt = element.getValue().getKey();
+      Long scheduled = nextRelease.read();
+      if (scheduled == null || eligibleAt < scheduled) {
+        release.set(new Instant(eligibleAt));
+        nextRelease.write(eligibleAt);
+      }
+    }
+
+    @OnTimer("release")
+    public void onRelease(
+        OnTimerContext context,
+        @StateId("held") BagState<KV<Long, String>> held,
+        @StateId("nextRelease") ValueState<Long> nextRelease,
+        @TimerId("release") Timer release) {
+      long now = Instant.now().getMillis();
+      List<KV<Long, String>> remaining = new ArrayList<>();
+      long next = Long.MAX_VALUE;
+      for (KV<Long, String> record : held.read()) {
+        if (record.getKey() <= now) {
+          context.output(record.getValue());
+        } else {
+          remaining.add(record);
+          next = Math.min(next, record.getKey());
+        }
+      }
+      held.clear();
+      if (remaining.isEmpty()) {
+        nextRelease.clear();
+        return;
+      }
+      remaining.forEach(held::add);
+      release.set(new Instant(next));
+      nextRelease.write(next);
+    }
+  }
+
+  /**
+   * Reads the lines which start within {@code range}. A line belongs to the range holding its first
+   * byte, so the ranges of a file together yield each of its lines exactly once.
+   */
+  static void readLines(ResourceId resourceId, OffsetRange range, Consumer<String> consumer)
+      throws IOException {
+    try (ReadableByteChannel channel = FileSystems.open(resourceId)) {
+      long position = Math.max(0, range.getFrom() - 1);
+      InputStream stream;
+      if (channel instanceof SeekableByteChannel) {
+        ((SeekableByteChannel) channel).position(position);
+        stream = new BufferedInputStream(Channels.newInputStream(channel));
+      } else {
+        stream = new BufferedInputStream(Channels.newInputStream(channel));
+        long skipped = 0;
+        while (skipped < position) {
+          long n = stream.skip(position - skipped);
+          if (n <= 0) {
+            return;
+          }
+          skipped += n;
+        }
+      }
+
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      if (range.getFrom() > 0) {
+        // Skip the rest of the line started in the previous range.
+        int b;
+        while ((b = stream.read()) != -1) {
+          position++;
+          if (b == '\n') {
+            break;
+          }
+        }
+      }
+      while (position < range.getTo()) {
+        line.reset();
+        int b;
+        boolean read = false;
+        while ((b = stream.read()) != -1) {
+          read = true;
+          position++;
+          if (b == '\n') {
+            break;
+          }
+          line.write(b);
+        }
+        if (!read) {
+          return;
+        }
+        String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (!text.isEmpty()) {
+          consumer.accept(text);
+        }
+      }
     }
   }
 
@@ -440,6 +440,7 @@ public class BigQueryConverters {
                         .setFunctionName(options().getJavascriptTextTransformFunctionName())
                         .setReloadIntervalMinutes(
                             options().getJavascriptTextTransformReloadIntervalMinutes())
+                        .setBatchSize(options().getJavascriptTextTransformBatchSize())
                         .setSuccessTag(udfOutTag())
                         .setFailureTag(udfDeadletterOutTag())
                         .build());
@@ -316,6 +316,9 @@ public class CsvConverters {
     @Nullable
     public abstract Integer udfReloadIntervalMinutes();
 
+    @Nullable
+    public abstract Integer udfBatchSize();
+
     @Nullable
     public abstract String jsonSchemaPath();
 
@@ -350,6 +353,7 @@ public class CsvConverters {
                 .setFileSystemPath(udfFileSystemPath())
                 .setFunctionName(udfFunctionName())
                 .setReloadIntervalMinutes(udfReloadIntervalMinutes())
+                .setBatchSize(udfBatchSize())
                 .setSuccessTag(udfOutputTag())
                 .setFailureTag(udfDeadletterTag())
                 .build());
@@ -414,6 +418,8 @@ public class CsvConverters {
 
       public abstract Builder setUdfReloadIntervalMinutes(int udfReloadIntervalMinutes);
 
+      public abstract Builder setUdfBatchSize(Integer udfBatchSize);
+
       public abstract Builder setJsonSchemaPath(String jsonSchemaPath);
 
       public abstract Builder setJsonSchema(String jsonSchema);
@@ -32,8 +32,13 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.script.Invocable;
@@ -53,10 +58,13 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.sdk.values.ValueInSingleWindow;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Strings;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Throwables;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.io.CharStreams;
@@ -108,6 +116,21 @@ public abstract class JavascriptTextTransformer {
 
     void setJavascriptTextTransformReloadIntervalMinutes(
         Integer javascriptTextTransformReloadIntervalMinutes);
+
+    @TemplateParameter.Integer(
+        order = 5,
+        optional = true,
+        description = "JavaScript UDF batch size",
+        helpText =
+            "The number of elements to pass to the JavaScript UDF in one call. When greater than"
+                + " 1, the function receives an array of strings and must return an array of the"
+                + " same length, where each entry is the transformed string, null to drop the"
+                + " element, or an object with an `error` property to send the element to the"
+                + " dead-letter output. Defaults to 1, one element per call.")
+    @Default.Integer(1)
+    Integer getJavascriptTextTransformBatchSize();
+
+    void setJavascriptTextTransformBatchSize(Integer javascriptTextTransformBatchSize);
   }
 
   /**
@@ -130,15 +153,28 @@ public abstract class JavascriptTextTransformer {
     @Nullable
     public abstract Integer reloadIntervalMinutes();
 
+    /**
+     * Maximum number of script engines kept per runtime. Defaults to the number of available
+     * processors when unset.
+     */
+    @Nullable
+    public abstract Integer maxPoolSize();
+
     private static final Distribution JAVASCRIPT_RELOAD_LATENCY_MS =
         Metrics.distribution(JavascriptTextTransformer.class, "javascript_reload_latency_ms");
 
-    private static LoadingCache<JavascriptRuntime, Invocable> cache =
+    private static final Distribution JAVASCRIPT_POOL_WAIT_US =
+        Metrics.distribution(JavascriptTextTransformer.class, "javascript_pool_wait_us");
+
+    private static final Distribution JAVASCRIPT_INVOKE_LATENCY_US =
+        Metrics.distribution(JavascriptTextTransformer.class, "javascript_invoke_latency_us");
+
+    private static LoadingCache<JavascriptRuntime, InvocablePool> cache =
         Caffeine.newBuilder()
             .expireAfter(
-                new Expiry<JavascriptRuntime, Invocable>() {
+                new Expiry<JavascriptRuntime, InvocablePool>() {
                   public long expireAfterCreate(
-                      JavascriptRuntime runtime, Invocable invocable, long currentTime) {
+                      JavascriptRuntime runtime, InvocablePool pool, long currentTime) {
                     // Do not expire if reload is disabled
                     if (runtime.reloadIntervalMinutes() == null
                         || runtime.reloadIntervalMinutes() <= 0) {
@@ -149,7 +185,7 @@ public abstract class JavascriptTextTransformer {
 
                   public long expireAfterUpdate(
                       JavascriptRuntime runtime,
-                      Invocable invocable,
+                      InvocablePool pool,
                       long currentTime,
                       long currentDuration) {
                     return currentDuration;
@@ -157,16 +193,77 @@ public abstract class JavascriptTextTransformer {
 
                   public long expireAfterRead(
                       JavascriptRuntime runtime,
-                      Invocable invocable,
+                      InvocablePool pool,
                       long currentTime,
                       long currentDuration) {
                     return currentDuration;
                   }
                 })
-            .build(runtime -> buildInvocable(runtime));
+            .build(runtime -> buildInvocablePool(runtime));
 
     private Instant lastRefreshCheck = Instant.now();
 
+    /**
+     * A bounded pool of {@link Invocable}s evaluated from the same scripts. Script engines are not
+     * thread safe, so each concurrent caller borrows its own engine instead of serializing on a
+     * single shared one. Engines are created lazily up to {@code maxSize}; once that many are in
+     * use, callers wait for one to be released.
+     */
+    private static class InvocablePool {
+      private final Collection<String> scripts;
+      private final int maxSize;
+      private final LinkedBlockingQueue<Invocable> idle = new LinkedBlockingQueue<>();
+      private final AtomicInteger created = new AtomicInteger();
+      // Engine handed out by getInvocable(), never borrowed by invoke().
+      private Invocable dedicated;
+
+      InvocablePool(Collection<String> scripts, int maxSize) throws ScriptException {
+        this.scripts = scripts;
+        this.maxSize = maxSize;
+        // Eagerly evaluate one engine so that script errors surface when the UDF is loaded.
+        created.incrementAndGet();
+        idle.add(newInvocable(scripts));
+      }
+
+      Invocable borrow() throws ScriptException {
+        Invocable invocable = idle.poll();
+        if (invocable != null) {
+          return invocable;
+        }
+        if (created.incrementAndGet() <= maxSize) {
+          try {
+            return newInvocable(scripts);
+          } catch (ScriptException | RuntimeException e) {
+            created.decrementAndGet();
+            throw e;
+          }
+        }
+        created.decrementAndGet();
+        long startTime = System.nanoTime();
+        try {
+          invocable = idle.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for a JavaScript engine", e);
+        }
+        JAVASCRIPT_POOL_WAIT_US.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+        return invocable;
+      }
+
+      void release(Invocable invocable) {
+        idle.offer(invocable);
+      }
+
+      /** Returns an engine outside of the pool, created on first use. */
+      synchronized Invocable dedicated() throws ScriptException {
+        if (dedicated == null) {
+          dedicated = newInvocable(scripts);
+        }
+        return dedicated;
+      }
+    }
+
     /** Builder for {@link JavascriptTextTransformer}. */
     @AutoValue.Builder
     public abstract static class Builder {
@@ -176,6 +273,8 @@ public abstract class JavascriptTextTransformer {
 
       public abstract Builder setReloadIntervalMinutes(@Nullable Integer value);
 
+      public abstract Builder setMaxPoolSize(@Nullable Integer value);
+
       public abstract JavascriptRuntime build();
     }
 
@@ -189,12 +288,24 @@ public abstract class JavascriptTextTransformer {
     }
 
     /**
-     * Gets a cached Javascript Invocable, if fileSystemPath() not set, returns null.
+     * Gets a cached Javascript Invocable, if fileSystemPath() not set, returns null. The returned
+     * Invocable is not one of the engines used by {@link #invoke(String)}, but it is shared by all
+     * the callers of this method.
      *
      * @return a Javascript Invocable or null
      */
     @Nullable
     public Invocable getInvocable() throws ScriptException, IOException {
+      InvocablePool pool = getInvocablePool();
+      if (pool == null) {
+        return null;
+      }
+
+      return pool.dedicated();
+    }
+
+    @Nullable
+    private InvocablePool getInvocablePool() {
 
       // return null if no UDF path specified.
       if (Strings.isNullOrEmpty(fileSystemPath())) {
@@ -219,11 +330,15 @@ public abstract class JavascriptTextTransformer {
       return (Invocable) engine;
     }
 
-    private static Invocable buildInvocable(JavascriptRuntime runtime)
+    private static InvocablePool buildInvocablePool(JavascriptRuntime runtime)
         throws IOException, ScriptException {
       // List of all scripts read from the filesystem
       Collection<String> scripts = getScripts(runtime.fileSystemPath());
-      return newInvocable(scripts);
+      int maxPoolSize =
+          runtime.maxPoolSize() != null && runtime.maxPoolSize() > 0
+              ? runtime.maxPoolSize()
+              : Runtime.getRuntime().availableProcessors();
+      return new InvocablePool(scripts, maxPoolSize);
     }
 
     private static ScriptEngine getJavaScriptEngine() {
@@ -257,14 +372,20 @@ public abstract class JavascriptTextTransformer {
      */
     @Nullable
     public String invoke(String data) throws ScriptException, IOException, NoSuchMethodException {
-      Invocable invocable = getInvocable();
-      if (invocable == null) {
+      InvocablePool pool = getInvocablePool();
+      if (pool == null) {
         throw new RuntimeException("No UDF was loaded");
       }
 
       Object result;
-      synchronized (invocable) {
+      Invocable invocable = pool.borrow();
+      long startTime = System.nanoTime();
+      try {
         result = invocable.invokeFunction(functionName(), data);
+      } finally {
+        JAVASCRIPT_INVOKE_LATENCY_US.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+        pool.release(invocable);
       }
       if (result == null || ScriptObjectMirror.isUndefined(result)) {
         return null;
@@ -277,6 +398,76 @@ public abstract class JavascriptTextTransformer {
       }
     }
 
+    /**
+     * Invokes a batch UDF with a list of payloads in a single engine call.
+     *
+     * <p>The function receives a JavaScript array of strings and must return an array of the same
+     * length. Each returned entry is either a String with the transformed payload, {@code null} or
+     * {@code undefined} to drop the element, or an object with an {@code error} property describing
+     * why that element failed.
+     *
+     * @param data payloads to pass to the invocable function
+     * @return one {@link BatchResult} per payload, in input order
+     */
+    public List<BatchResult> invokeBatch(List<String> data)
+        throws ScriptException, IOException, NoSuchMethodException {
+      if (data.isEmpty()) {
+        return Collections.emptyList();
+      }
+
+      InvocablePool pool = getInvocablePool();
+      if (pool == null) {
+        throw new RuntimeException("No UDF was loaded");
+      }
+
+      Object result;
+      Invocable invocable = pool.borrow();
+      long startTime = System.nanoTime();
+      try {
+        Object javaGlobal = ((ScriptEngine) invocable).get("Java");
+        Object payloads =
+            invocable.invokeMethod(javaGlobal, "from", (Object) data.toArray(new String[0]));
+        result = invocable.invokeFunction(functionName(), payloads);
+      } finally {
+        JAVASCRIPT_INVOKE_LATENCY_US.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+        pool.release(invocable);
+      }
+
+      if (!(result instanceof ScriptObjectMirror) || !((ScriptObjectMirror) result).isArray()) {
+        String className = result == null ? "null" : result.getClass().getName();
+        throw new RuntimeException(
+            "Batch UDF Function did not return an Array. Instead got: " + className);
+      }
+      ScriptObjectMirror results = (ScriptObjectMirror) result;
+      if (results.size() != data.size()) {
+        throw new RuntimeException(
+            String.format(
+                "Batch UDF Function returned %d results for %d inputs.",
+                results.size(), data.size()));
+      }
+
+      List<BatchResult> batchResults = new ArrayList<>(data.size());
+      for (int i = 0; i < data.size(); i++) {
+        batchResults.add(toBatchResult(results.getSlot(i)));
+      }
+      return batchResults;
+    }
+
+    private static BatchResult toBatchResult(Object item) {
+      if (item == null || ScriptObjectMirror.isUndefined(item)) {
+        return BatchResult.success(null);
+      } else if (item instanceof String) {
+        return BatchResult.success((String) item);
+      } else if (item instanceof ScriptObjectMirror
+          && ((ScriptObjectMirror) item).hasMember("error")) {
+        return BatchResult.failure(String.valueOf(((ScriptObjectMirror) item).getMember("error")));
+      } else {
+        return BatchResult.failure(
+            "UDF Function did not return a String. Instead got: " + item.getClass().getName());
+      }
+    }
+
     /**
      * Loads into memory scripts from a File System from a given path. Supports any file system that
      * {@link FileSystems} supports.
@@ -306,6 +497,29 @@ public abstract class JavascriptTextTransformer {
     }
   }
 
+  /** The outcome of a batch UDF invocation for a single payload. */
+  @AutoValue
+  public abstract static class BatchResult {
+
+    /** The transformed payload, or {@code null} if the UDF dropped the element. */
+    public abstract @Nullable String payload();
+
+    /** The error reported by the UDF for this element, or {@code null} on success. */
+    public abstract @Nullable String error();
+
+    public boolean isFailure() {
+      return error() != null;
+    }
+
+    public static BatchResult success(@Nullable String payload) {
+      return new AutoValue_JavascriptTextTransformer_BatchResult(payload, null);
+    }
+
+    public static BatchResult failure(String error) {
+      return new AutoValue_JavascriptTextTransformer_BatchResult(null, error);
+    }
+  }
+
   /** Transforms Text Strings via a Javascript UDF. */
   @AutoValue
   public abstract static class TransformTextViaJavascript
@@ -316,6 +530,12 @@ public abstract class JavascriptTextTransformer {
 
     public abstract @Nullable Integer reloadIntervalMinutes();
 
+    /**
+     * Number of elements passed to the UDF per call. When greater than one, the UDF is invoked with
+     * the batch contract described in {@link JavascriptRuntime#invokeBatch(List)}.
+     */
+    public abstract @Nullable Integer batchSize();
+
     /** Builder for {@link TransformTextViaJavascript}. */
     @AutoValue.Builder
     public abstract static class Builder {
@@ -325,6 +545,8 @@ public abstract class JavascriptTextTransformer {
 
       public abstract Builder setReloadIntervalMinutes(@Nullable Integer value);
 
+      public abstract Builder setBatchSize(@Nullable Integer value);
+
       public abstract TransformTextViaJavascript build();
     }
 
@@ -338,6 +560,7 @@ public abstract class JavascriptTextTransformer {
           ParDo.of(
               new DoFn<String, String>() {
                 private JavascriptRuntime javascriptRuntime;
+                private Map<BoundedWindow, List<ValueInSingleWindow<String>>> batches;
 
                 @Setup
                 public void setup() {
@@ -350,11 +573,34 @@ public abstract class JavascriptTextTransformer {
                   }
                 }
 
+                @StartBundle
+                public void startBundle() {
+                  batches = new HashMap<>();
+                }
+
                 @ProcessElement
-                public void processElement(ProcessContext c)
+                public void processElement(ProcessContext c, BoundedWindow window)
                     throws IOException, NoSuchMethodException, ScriptException {
                   String element = c.element();
 
+                  if (javascriptRuntime != null && isBatched(batchSize())) {
+                    List<ValueInSingleWindow<String>> batch =
+                        batches.computeIfAbsent(window, w -> new ArrayList<>());
+                    batch.add(ValueInSingleWindow.of(element, c.timestamp(), window, c.pane()));
+                    if (batch.size() >= batchSize()) {
+                      batches.remove(window);
+                      List<String> results = invokeBatch(javascriptRuntime, batch);
+                      for (int i = 0; i < batch.size(); i++) {
+                        if (!Strings.isNullOrEmpty(results.get(i))) {
+                          c.outputWithTimestamp(
+                              results.get(i),
+                              inWindowTimestamp(batch.get(i).getTimestamp(), c.timestamp()));
+                        }
+                      }
+                    }
+                    return;
+                  }
+
                   if (javascriptRuntime != null) {
                     element = javascriptRuntime.invoke(element);
                   }
@@ -363,8 +609,40 @@ public abstract class JavascriptTextTransformer {
                     c.output(element);
                   }
                 }
+
+                @FinishBundle
+                public void finishBundle(FinishBundleContext c)
+                    throws IOException, NoSuchMethodException, ScriptException {
+                  for (List<ValueInSingleWindow<String>> batch : batches.values()) {
+                    List<String> results = invokeBatch(javascriptRuntime, batch);
+                    for (int i = 0; i < batch.size(); i++) {
+                      if (!Strings.isNullOrEmpty(results.get(i))) {
+                        c.output(
+                            results.get(i), batch.get(i).getTimestamp(), batch.get(i).getWindow());
+                      }
+                    }
+                  }
+                  batches.clear();
+                }
               }));
     }
+
+    private static List<String> invokeBatch(
+        JavascriptRuntime javascriptRuntime, List<ValueInSingleWindow<String>> batch)
+        throws IOException, NoSuchMethodException, ScriptException {
+      List<String> payloads = new ArrayList<>(batch.size());
+      for (ValueInSingleWindow<String> element : batch) {
+        payloads.add(element.getValue());
+      }
+      List<String> results = new ArrayList<>(batch.size());
+      for (BatchResult result : javascriptRuntime.invokeBatch(payloads)) {
+        if (result.isFailure()) {
+          throw new RuntimeException("UDF Function failed: " + result.error());
+        }
+        results.add(result.payload());
+      }
+      return results;
+    }
   }
 
   /**
@@ -383,6 +661,12 @@ public abstract class JavascriptTextTransformer {
 
     public abstract @Nullable Boolean loggingEnabled();
 
+    /**
+     * Number of elements passed to the UDF per call. When greater than one, the UDF is invoked with
+     * the batch contract described in {@link JavascriptRuntime#invokeBatch(List)}.
+     */
+    public abstract @Nullable Integer batchSize();
+
     public abstract TupleTag<FailsafeElement<T, String>> successTag();
 
     public abstract TupleTag<FailsafeElement<T, String>> failureTag();
@@ -408,6 +692,8 @@ public abstract class JavascriptTextTransformer {
 
       public abstract Builder<T> setLoggingEnabled(@Nullable Boolean loggingEnabled);
 
+      public abstract Builder<T> setBatchSize(@Nullable Integer value);
+
       public abstract Builder<T> setSuccessTag(TupleTag<FailsafeElement<T, String>> successTag);
 
       public abstract Builder<T> setFailureTag(TupleTag<FailsafeElement<T, String>> failureTag);
@@ -423,6 +709,9 @@ public abstract class JavascriptTextTransformer {
                   new DoFn<FailsafeElement<T, String>, FailsafeElement<T, String>>() {
                     private JavascriptRuntime javascriptRuntime;
                     private boolean loggingEnabled;
+                    private Map<
+                            BoundedWindow, List<ValueInSingleWindow<FailsafeElement<T, String>>>>
+                        batches;
 
                     @Setup
                     public void setup() {
@@ -439,11 +728,36 @@ public abstract class JavascriptTextTransformer {
                       }
                     }
 
+                    @StartBundle
+                    public void startBundle() {
+                      batches = new HashMap<>();
+                    }
+
                     @ProcessElement
-                    public void processElement(ProcessContext context) {
+                    public void processElement(ProcessContext context, BoundedWindow window) {
                       FailsafeElement<T, String> element = context.element();
                       String payloadStr = element.getPayload();
 
+                      if (javascriptRuntime != null && isBatched(batchSize())) {
+                        List<ValueInSingleWindow<FailsafeElement<T, String>>> batch =
+                            batches.computeIfAbsent(window, w -> new ArrayList<>());
+                        batch.add(
+                            ValueInSingleWindow.of(
+                                element, context.timestamp(), window, context.pane()));
+                        if (batch.size() >= batchSize()) {
+                          batches.remove(window);
+                          processBatch(
+                              batch,
+                              (tag, value, source) ->
+                                  context.outputWithTimestamp(
+                                      tag,
+                                      value,
+                                      inWindowTimestamp(
+                                          source.getTimestamp(), context.timestamp())));
+                        }
+                        return;
+                      }
+
                       try {
                         if (javascriptRuntime != null) {
                           payloadStr = javascriptRuntime.invoke(payloadStr);
@@ -473,9 +787,100 @@ public abstract class JavascriptTextTransformer {
                         failedCounter.inc();
                       }
                     }
+
+                    @FinishBundle
+                    public void finishBundle(FinishBundleContext context) {
+                      for (List<ValueInSingleWindow<FailsafeElement<T, String>>> batch :
+                          batches.values()) {
+                        processBatch(
+                            batch,
+                            (tag, value, source) ->
+                                context.output(
+                                    tag, value, source.getTimestamp(), source.getWindow()));
+                      }
+                      batches.clear();
+                    }
+
+                    private void processBatch(
+                        List<ValueInSingleWindow<FailsafeElement<T, String>>> batch,
+                        BatchOutput<T> output) {
+                      List<String> payloads = new ArrayList<>(batch.size());
+                      for (ValueInSingleWindow<FailsafeElement<T, String>> element : batch) {
+                        payloads.add(element.getValue().getPayload());
+                      }
+
+                      List<BatchResult> results;
+                      try {
+                        results = javascriptRuntime.invokeBatch(payloads);
+                      } catch (Throwable e) {
+                        // Throwable caught because UDFS can trigger Errors (e.g., StackOverflow)
+                        if (loggingEnabled) {
+                          LOG.warn(
+                              "Exception occurred while applying batch UDF '{}' from file path"
+                                  + " '{}' due to '{}'",
+                              functionName(),
+                              fileSystemPath(),
+                              e.getMessage());
+                        }
+                        for (ValueInSingleWindow<FailsafeElement<T, String>> element : batch) {
+                          output.output(
+                              failureTag(),
+                              FailsafeElement.of(element.getValue())
+                                  .setErrorMessage(e.getMessage())
+                                  .setStacktrace(Throwables.getStackTraceAsString(e)),
+                              element);
+                        }
+                        failedCounter.inc(batch.size());
+                        return;
+                      }
+
+                      for (int i = 0; i < batch.size(); i++) {
+                        ValueInSingleWindow<FailsafeElement<T, String>> element = batch.get(i);
+                        BatchResult result = results.get(i);
+                        if (result.isFailure()) {
+                          output.output(
+                              failureTag(),
+                              FailsafeElement.of(element.getValue())
+                                  .setErrorMessage(result.error()),
+                              element);
+                          failedCounter.inc();
+                        } else if (!Strings.isNullOrEmpty(result.payload())) {
+                          output.output(
+                              successTag(),
+                              FailsafeElement.of(
+                                  element.getValue().getOriginalPayload(), result.payload()),
+                              element);
+                          successCounter.inc();
+                        }
+                      }
+                    }
                   })
               .withOutputTags(successTag(), TupleTagList.of(failureTag())));
     }
+
+    /** Emits a batch result alongside the buffered element it was computed from. */
+    private interface BatchOutput<T> {
+      void output(
+          TupleTag<FailsafeElement<T, String>> tag,
+          FailsafeElement<T, String> value,
+          ValueInSingleWindow<FailsafeElement<T, String>> source);
+    }
+  }
+
+  private static boolean isBatched(@Nullable Integer batchSize) {
+    return batchSize != null && batchSize > 1;
+  }
+
+  /**
+   * Returns the timestamp to emit a buffered element with when its batch fills up while processing
+   * a later element of the same window. Elements buffered with an earlier timestamp are moved to
+   * the timestamp of the element being processed, as outputs may not move back in time; both
+   * timestamps are in the batch's window, so the element stays in its window.
+   */
+  @VisibleForTesting
+  static org.joda.time.Instant inWindowTimestamp(
+      org.joda.time.Instant bufferedTimestamp, org.joda.time.Instant currentTimestamp) {
+    return bufferedTimestamp.isBefore(currentTimestamp) ? currentTimestamp : bufferedTimestamp;
   }
 
   /**
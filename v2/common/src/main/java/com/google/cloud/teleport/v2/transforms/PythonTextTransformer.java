@@ -23,21 +23,27 @@ import com.google.cloud.teleport.v2.values.FailsafeElement;
 import com.google.common.base.Strings;
 import com.google.common.io.CharStreams;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.UncheckedIOException;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -58,6 +64,10 @@ import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.sdk.values.ValueInSingleWindow;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Throwables;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,6 +78,15 @@ public abstract class PythonTextTransformer implements Serializable {
 
   public static final String DEFAULT_PYTHON_VERSION = "python3";
 
+  /** Default number of requests a DoFn keeps in flight to its Python worker. */
+  public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+
+  /** Default number of seconds to wait for the Python worker to answer a request. */
+  public static final int DEFAULT_REQUEST_TIMEOUT_SECONDS = 60;
+
+  /** Classpath location of the driver script run by {@link PythonUdfWorker}. */
+  private static final String WORKER_SCRIPT_RESOURCE = "/python-udf/udf_worker.py";
+
   private static final Logger LOG = LoggerFactory.getLogger(PythonTextTransformer.class);
 
   /** Necessary CLI options for running UDF function. */
@@ -98,7 +117,11 @@ public abstract class PythonTextTransformer implements Serializable {
         optional = true,
         description = "UDF Python Function Name",
         helpText =
-            "The name of the function to call from your JavaScript file. Use only letters, digits, and underscores.",
+            "The name of the function to call from your Python file. The file is imported as a"
+                + " module and the function is called with each event as a dict; it returns a"
+                + " dict, a list of dicts, or None to discard the event. Files which do not define"
+                + " this function are run as scripts once per event, as in earlier versions. Use"
+                + " only letters, digits, and underscores.",
         example = "transform_udf1")
     String getPythonTextTransformFunctionName();
 
@@ -113,6 +136,19 @@ public abstract class PythonTextTransformer implements Serializable {
     Integer getRuntimeRetries();
 
     void setRuntimeRetries(Integer runtimeRetries);
+
+    @TemplateParameter.Integer(
+        order = 5,
+        optional = true,
+        description = "Python UDF request timeout in seconds",
+        helpText =
+            "The number of seconds to wait for the Python UDF to transform an event. Events which"
+                + " time out are sent to the dead-letter queue, and the Python process is"
+                + " restarted.")
+    @Default.Integer(60)
+    Integer getPythonTextTransformTimeoutSeconds();
+
+    void setPythonTextTransformTimeoutSeconds(Integer pythonTextTransformTimeoutSeconds);
   }
 
   /** Grabs code from a FileSystem, loads into ProcessBuilder. */
@@ -237,6 +273,47 @@ public abstract class PythonTextTransformer implements Serializable {
       installRuntime.destroy();
     }
 
+    /**
+     * Starts a long-lived {@link PythonUdfWorker} which applies the UDF to requests streamed over
+     * its stdin, installing the Python runtime first if it is missing.
+     *
+     * @param maxInFlight maximum number of requests outstanding at once
+     * @param maxRestarts number of times the worker is restarted after exiting unexpectedly
+     * @param requestTimeoutMillis time after which an unanswered request fails
+     * @return a started worker
+     */
+    PythonUdfWorker startWorker(int maxInFlight, int maxRestarts, long requestTimeoutMillis)
+        throws IOException, NoSuchMethodException, InterruptedException {
+      // Writes the UDF scripts to a local file named after the function.
+      getProcessBuilder();
+
+      File workerScript = File.createTempFile("udf_worker", ".py");
+      workerScript.deleteOnExit();
+      try (InputStream in =
+          PythonTextTransformer.class.getResourceAsStream(WORKER_SCRIPT_RESOURCE)) {
+        if (in == null) {
+          throw new IOException("Missing Python UDF worker script " + WORKER_SCRIPT_RESOURCE);
+        }
+        Files.copy(in, workerScript.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+      List<String> command =
+          Arrays.asList(
+              runtimeVersion(),
+              workerScript.getAbsolutePath(),
+              new File(functionName()).getAbsolutePath(),
+              functionName());
+      try {
+        return new PythonUdfWorker(command, maxInFlight, maxRestarts, requestTimeoutMillis);
+      } catch (IOException e) {
+        if (e.getMessage() == null || !e.getMessage().startsWith(missingPythonErrorMessage)) {
+          throw e;
+        }
+        buildPythonExecutable(runtimeVersion());
+        return new PythonUdfWorker(command, maxInFlight, maxRestarts, requestTimeoutMillis);
+      }
+    }
+
     /**
      * Invokes the UDF with specified list of data.
      *
@@ -367,6 +444,12 @@ public abstract class PythonTextTransformer implements Serializable {
 
     public abstract @Nullable Integer runtimeRetries();
 
+    /** Maximum number of elements each DoFn keeps in flight to its Python worker. */
+    public abstract @Nullable Integer maxInFlightRequests();
+
+    /** Number of seconds to wait for the Python worker to answer an element. */
+    public abstract @Nullable Integer requestTimeoutSeconds();
+
     public abstract TupleTag<FailsafeElement<T, String>> successTag();
 
     public abstract TupleTag<FailsafeElement<T, String>> failureTag();
@@ -396,6 +479,10 @@ public abstract class PythonTextTransformer implements Serializable {
 
       public abstract Builder<T> setRuntimeRetries(@Nullable Integer runtimeRetries);
 
+      public abstract Builder<T> setMaxInFlightRequests(@Nullable Integer maxInFlightRequests);
+
+      public abstract Builder<T> setRequestTimeoutSeconds(@Nullable Integer requestTimeoutSeconds);
+
       public abstract Builder<T> setSuccessTag(TupleTag<FailsafeElement<T, String>> successTag);
 
       public abstract Builder<T> setFailureTag(TupleTag<FailsafeElement<T, String>> failureTag);
@@ -413,18 +500,17 @@ public abstract class PythonTextTransformer implements Serializable {
 
     @Override
     public PCollectionTuple expand(PCollection<FailsafeElement<T, String>> elements) {
+      checkArgument(
+          requestTimeoutSeconds() == null || requestTimeoutSeconds() > 0,
+          "The Python UDF request timeout must be positive, got %s",
+          requestTimeoutSeconds());
       return elements.apply(
           "ProcessUdf",
           ParDo.of(
                   new DoFn<FailsafeElement<T, String>, FailsafeElement<T, String>>() {
                     private PythonRuntime pythonRuntime;
-                    private Integer batchLimit;
-                    private Integer batchCounter;
-                    private HashMap<String, FailsafeElement<T, String>> futures;
-                    private String processUUID;
-                    private File manifestFile;
-                    private BufferedWriter dataWriter;
-                    private BoundedWindow window;
+                    private PythonUdfWorker worker;
+                    private ArrayDeque<InFlightElement<T>> inFlight;
 
                     @Setup
                     public void setup()
@@ -438,6 +524,7 @@ public abstract class PythonTextTransformer implements Serializable {
                         LOG.info("Build Python Env for version {}", runtimeVersion);
 
                         pythonRuntime.buildPythonExecutable(runtimeVersion);
+                        worker = startWorker();
                       } else {
                         LOG.warn(
                             "Not setting up a Python Mapper runtime, because "
@@ -449,91 +536,153 @@ public abstract class PythonTextTransformer implements Serializable {
                     }
 
                     @StartBundle
-                    public void startBundle(StartBundleContext context) throws IOException {
-                      batchCounter = 0;
-                      batchLimit = 1000;
-                      processUUID = UUID.randomUUID().toString();
-                      manifestFile =
-                          File.createTempFile(String.format("manifest_%s", processUUID), null);
-                      futures = new HashMap<String, FailsafeElement<T, String>>();
-                      dataWriter =
-                          new BufferedWriter(new FileWriter(manifestFile.getAbsolutePath()));
-                      LOG.info("file is at {}", manifestFile.getAbsolutePath());
-
-                      // initialize a temp file (non local) and a counter
-                      // TODO: createFile function
-
+                    public void startBundle()
+                        throws IOException, NoSuchMethodException, InterruptedException {
+                      inFlight = new ArrayDeque<>();
+                      if (worker != null && worker.isClosed()) {
+                        LOG.warn("Python UDF worker is no longer running, starting a new one.");
+                        worker = startWorker();
+                      }
                     }
 
                     @ProcessElement
                     public void processElement(ProcessContext context, BoundedWindow window)
-                        throws IOException {
-                      this.window = window;
+                        throws IOException, InterruptedException {
                       FailsafeElement<T, String> element = context.element();
-                      String payloadStr = element.getPayload();
-                      String eventId = UUID.randomUUID().toString();
-                      JSONObject originalPayload = new JSONObject(payloadStr);
-                      JSONObject json = new JSONObject();
-                      json.put("id", eventId);
-                      json.put("event", originalPayload);
-                      String wrappedPayload = json.toString();
-                      futures.put(eventId, element);
-                      // TODO: add a counter of sum of total bytes
-                      // 1) add event and increase counter
-                      // 2) if counter > X process all of the rows
-
-                      dataWriter.write(wrappedPayload);
-                      dataWriter.newLine();
-                      dataWriter.flush();
-                      batchCounter++;
+                      ValueInSingleWindow<FailsafeElement<T, String>> value =
+                          ValueInSingleWindow.of(
+                              element, context.timestamp(), window, context.pane());
+
+                      CompletableFuture<String> response;
+                      try {
+                        JSONObject json = new JSONObject();
+                        json.put("id", UUID.randomUUID().toString());
+                        json.put("event", new JSONObject(element.getPayload()));
+                        response = worker.submit(json.toString());
+                      } catch (JSONException | IOException e) {
+                        response = new CompletableFuture<>();
+                        response.completeExceptionally(e);
+                      }
+                      inFlight.addLast(new InFlightElement<>(value, response));
+
+                      // Emit whatever has already been answered so completed results do not
+                      // accumulate for the rest of the bundle. Only the elements of this window
+                      // which are not earlier than this element can be output here; the others
+                      // are output when the bundle finishes.
+                      Iterator<InFlightElement<T>> answered = inFlight.iterator();
+                      while (answered.hasNext()) {
+                        InFlightElement<T> done = answered.next();
+                        if (!done.response.isDone()) {
+                          break;
+                        }
+                        if (done.element.getWindow().equals(window)
+                            && !done.element.getTimestamp().isBefore(context.timestamp())) {
+                          answered.remove();
+                          emit(
+                              done,
+                              (tag, result) ->
+                                  context.outputWithTimestamp(
+                                      tag, result, done.element.getTimestamp()));
+                        }
+                      }
                     }
 
-                    // TODO: create an execute batch fn
-
                     @FinishBundle
-                    public void finishBundle(FinishBundleContext context)
+                    public void finishBundle(FinishBundleContext context) {
+                      InFlightElement<T> done;
+                      while ((done = inFlight.pollFirst()) != null) {
+                        InFlightElement<T> current = done;
+                        emit(
+                            current,
+                            (tag, result) ->
+                                context.output(
+                                    tag,
+                                    result,
+                                    current.element.getTimestamp(),
+                                    current.element.getWindow()));
+                      }
+                    }
+
+                    @Teardown
+                    public void teardown() {
+                      if (worker != null) {
+                        worker.close();
+                      }
+                    }
+
+                    private PythonUdfWorker startWorker()
                         throws IOException, NoSuchMethodException, InterruptedException {
-                      LOG.info("closing batch at {} events", batchCounter);
-                      Integer retries = runtimeRetries();
-                      List<String> results = new ArrayList<>();
-                      LOG.info("executing the batch!!!");
-                      results = pythonRuntime.invoke(manifestFile, retries);
-                      LOG.info("processed {} number of records", results.size());
-                      for (int iter = 0; iter < results.size(); iter++) {
-                        String event = results.get(iter);
-                        JSONObject json = new JSONObject(event);
-                        String eventId = json.getString("id");
-                        FailsafeElement<T, String> originalEvent = futures.get(eventId);
-
-                        // FIX THIS
-                        if (json.getString("status").equals("SUCCESS")) {
-                          String transformedEvent = json.getJSONObject("event").toString();
-                          context.output(
-                              FailsafeElement.of(
-                                  originalEvent.getOriginalPayload(),
-                                  json.getJSONObject("event").toString()),
-                              window.maxTimestamp(),
-                              window);
-                          successCounter.inc();
-                        } else if (json.getString("status").equals("FAILED")) {
-                          context.output(
-                              originalEvent
-                                  .setErrorMessage(json.getString("error_message"))
-                                  .setStacktrace(json.getString("error_message")),
-                              window.maxTimestamp(),
-                              window);
-                        } else {
-                          LOG.info("Failed to emit an event");
-                          LOG.info("event status was {}", json.getString("status"));
+                      return pythonRuntime.startWorker(
+                          maxInFlightRequests() != null
+                              ? maxInFlightRequests()
+                              : DEFAULT_MAX_IN_FLIGHT_REQUESTS,
+                          runtimeRetries() != null ? runtimeRetries() : 0,
+                          TimeUnit.SECONDS.toMillis(
+                              requestTimeoutSeconds() != null
+                                  ? requestTimeoutSeconds()
+                                  : DEFAULT_REQUEST_TIMEOUT_SECONDS));
+                    }
+
+                    private void emit(InFlightElement<T> done, ElementOutput<T> output) {
+                      FailsafeElement<T, String> originalEvent = done.element.getValue();
+                      try {
+                        JSONArray results = new JSONArray(done.response.get());
+                        for (int iter = 0; iter < results.length(); iter++) {
+                          JSONObject json = results.getJSONObject(iter);
+                          String status = json.getString("status");
+                          if (status.equals("SUCCESS")) {
+                            output.output(
+                                successTag(),
+                                FailsafeElement.of(
+                                    originalEvent.getOriginalPayload(),
+                                    json.get("event").toString()));
+                            successCounter.inc();
+                          } else if (status.equals("FAILED")) {
+                            output.output(
+                                failureTag(),
+                                FailsafeElement.of(originalEvent)
+                                    .setErrorMessage(json.getString("error_message"))
+                                    .setStacktrace(json.getString("error_message")));
+                            failedCounter.inc();
+                          } else {
+                            LOG.info("Failed to emit an event");
+                            LOG.info("event status was {}", status);
+                          }
+                        }
+                      } catch (ExecutionException | InterruptedException | JSONException e) {
+                        if (e instanceof InterruptedException) {
+                          Thread.currentThread().interrupt();
                         }
+                        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                        output.output(
+                            failureTag(),
+                            FailsafeElement.of(originalEvent)
+                                .setErrorMessage(cause.getMessage())
+                                .setStacktrace(Throwables.getStackTraceAsString(cause)));
+                        failedCounter.inc();
                       }
-                      futures.clear();
-                      dataWriter.close();
-                      manifestFile.delete();
                     }
                   })
               .withOutputTags(successTag(), TupleTagList.of(failureTag())));
     }
+
+    /** An element which has been sent to the Python worker, along with its pending response. */
+    private static class InFlightElement<T> {
+      private final ValueInSingleWindow<FailsafeElement<T, String>> element;
+      private final CompletableFuture<String> response;
+
+      InFlightElement(
+          ValueInSingleWindow<FailsafeElement<T, String>> element,
+          CompletableFuture<String> response) {
+        this.element = element;
+        this.response = response;
+      }
+    }
+
+    /** Emits a UDF result for an in-flight element. */
+    private interface ElementOutput<T> {
+      void output(TupleTag<FailsafeElement<T, String>> tag, FailsafeElement<T, String> result);
+    }
   }
 
   /**
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.transforms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long-lived Python process which applies a UDF to requests streamed over its stdin.
+ *
+ * <p>Requests and responses are framed as a 4-byte big-endian length followed by a UTF-8 payload.
+ * The process answers requests in order, so several requests can be in flight at once; {@link
+ * #submit(String)} blocks once {@code maxInFlight} requests are outstanding. If the process exits
+ * unexpectedly it is restarted and every outstanding request is sent again, up to {@code
+ * maxRestarts} times over the worker's lifetime.
+ *
+ * <p>The process works on one request at a time, so a request is timed from the moment the previous
+ * one was answered. If it is not answered within {@code requestTimeoutMillis} it fails with a
+ * {@link TimeoutException}, and the process, which may be stuck on it, is killed and restarted
+ * without it. These restarts do not count towards {@code maxRestarts}.
+ */
+class PythonUdfWorker implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PythonUdfWorker.class);
+
+  private static final Counter WORKER_RESTARTS =
+      Metrics.counter(PythonUdfWorker.class, "python_udf_worker_restarts");
+
+  private static final Distribution REQUEST_LATENCY_MS =
+      Metrics.distribution(PythonUdfWorker.class, "python_udf_request_latency_ms");
+
+  private final List<String> command;
+  private final int maxRestarts;
+  private final long requestTimeoutMillis;
+  private final Semaphore inFlight;
+  private final ConcurrentLinkedDeque<PendingRequest> pending = new ConcurrentLinkedDeque<>();
+  private final ScheduledExecutorService watchdog =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "python-udf-watchdog");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private Process process;
+  private DataOutputStream requests;
+  private int restarts = 0;
+  // The request the process is working on, and since when, as last seen by the watchdog.
+  private PendingRequest current;
+  private long currentSince;
+  // The process killed because a request timed out, if any.
+  private Process timedOutProcess;
+  private boolean closed = false;
+
+  /** A request which has been written to the process and is awaiting its response. */
+  private static class PendingRequest {
+    private final byte[] payload;
+    private final CompletableFuture<String> response = new CompletableFuture<>();
+    private final long startTime = System.nanoTime();
+
+    PendingRequest(byte[] payload) {
+      this.payload = payload;
+    }
+  }
+
+  PythonUdfWorker(List<String> command, int maxInFlight, int maxRestarts, long requestTimeoutMillis)
+      throws IOException {
+    this.command = new ArrayList<>(command);
+    this.maxRestarts = maxRestarts;
+    this.requestTimeoutMillis = requestTimeoutMillis;
+    this.inFlight = new Semaphore(maxInFlight);
+    synchronized (this) {
+      start();
+    }
+    long checkPeriodMillis = Math.max(1, requestTimeoutMillis / 10);
+    watchdog.scheduleWithFixedDelay(
+        this::checkTimeout, checkPeriodMillis, checkPeriodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends a request to the worker, blocking while {@code maxInFlight} requests are outstanding.
+   *
+   * @param request the UTF-8 request payload
+   * @return a future completed with the worker's response
+   */
+  CompletableFuture<String> submit(String request) throws IOException, InterruptedException {
+    inFlight.acquire();
+    PendingRequest pendingRequest = new PendingRequest(request.getBytes(StandardCharsets.UTF_8));
+    synchronized (this) {
+      if (closed) {
+        inFlight.release();
+        throw new IOException("Python UDF worker is closed.");
+      }
+      pending.addLast(pendingRequest);
+      try {
+        writeFrame(pendingRequest.payload);
+        requests.flush();
+      } catch (IOException e) {
+        // The reader thread notices the dead process and replays the pending requests.
+        LOG.warn("Failed to write to Python UDF worker: {}", e.getMessage());
+      }
+    }
+    return pendingRequest.response;
+  }
+
+  /** Returns whether the worker was closed or ran out of restarts. */
+  synchronized boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    watchdog.shutdownNow();
+    if (process != null) {
+      process.destroy();
+    }
+    failPending(new IOException("Python UDF worker was closed."));
+  }
+
+  private void start() throws IOException {
+    process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    DataInputStream responses =
+        new DataInputStream(new BufferedInputStream(process.getInputStream()));
+    Process started = process;
+    Thread reader = new Thread(() -> readResponses(started, responses), "python-udf-reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private void writeFrame(byte[] payload) throws IOException {
+    requests.writeInt(payload.length);
+    requests.write(payload);
+  }
+
+  private void readResponses(Process source, DataInputStream responses) {
+    try {
+      while (true) {
+        int length = responses.readInt();
+        byte[] payload = new byte[length];
+        responses.readFully(payload);
+        PendingRequest request = pending.pollFirst();
+        if (request == null) {
+          throw new IOException("Python UDF worker answered a request that was never sent.");
+        }
+        inFlight.release();
+        REQUEST_LATENCY_MS.update(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.startTime));
+        request.response.complete(new String(payload, StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      handleExit(source, e);
+    }
+  }
+
+  /** Fails the request the process is working on and kills the process once it has timed out. */
+  private synchronized void checkTimeout() {
+    if (closed || timedOutProcess == process) {
+      return;
+    }
+    PendingRequest head = pending.peekFirst();
+    if (head != current) {
+      current = head;
+      currentSince = System.nanoTime();
+      return;
+    }
+    if (head == null
+        || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - currentSince) < requestTimeoutMillis) {
+      return;
+    }
+    LOG.warn("Python UDF worker did not answer within {} ms, killing it.", requestTimeoutMillis);
+    head.response.completeExceptionally(
+        new TimeoutException(
+            "Python UDF worker did not answer within " + requestTimeoutMillis + " ms."));
+    // The reader thread notices the dead process and restarts it.
+    timedOutProcess = process;
+    process.destroyForcibly();
+  }
+
+  /** Restarts the process and replays outstanding requests, or fails them once out of restarts. */
+  private synchronized void handleExit(Process source, IOException cause) {
+    if (closed || source != process) {
+      return;
+    }
+    source.destroyForcibly();
+    // A request which timed out already failed, and is not sent again.
+    Iterator<PendingRequest> iterator = pending.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().response.isDone()) {
+        iterator.remove();
+        inFlight.release();
+      }
+    }
+    current = null;
+    boolean timedOut = source == timedOutProcess;
+    while (timedOut || restarts < maxRestarts) {
+      if (timedOut) {
+        timedOut = false;
+      } else {
+        restarts++;
+      }
+      WORKER_RESTARTS.inc();
+      LOG.warn(
+          "Python UDF worker exited, restarting ({}/{}) and replaying {} requests.",
+          restarts,
+          maxRestarts,
+          pending.size());
+      try {
+        start();
+      } catch (IOException e) {
+        cause = e;
+        continue;
+      }
+      try {
+        for (PendingRequest request : pending) {
+          writeFrame(request.payload);
+        }
+        requests.flush();
+      } catch (IOException e) {
+        // A failed replay surfaces as another exit of the new process.
+        LOG.warn("Failed to replay requests to Python UDF worker: {}", e.getMessage());
+      }
+      return;
+    }
+    LOG.error("Python UDF worker exited and will not be restarted.", cause);
+    closed = true;
+    watchdog.shutdownNow();
+    failPending(new IOException("Python UDF worker exited.", cause));
+  }
+
+  private void failPending(IOException cause) {
+    PendingRequest request;
+    while ((request = pending.pollFirst()) != null) {
+      inFlight.release();
+      request.response.completeExceptionally(cause);
+    }
+  }
+}
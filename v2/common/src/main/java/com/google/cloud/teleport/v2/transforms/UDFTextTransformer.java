@@ -87,9 +87,11 @@ public class UDFTextTransformer {
     public String javascriptTransformPath;
     public String javascriptTransformFnName;
     public Integer javascriptTransformReloadInterval;
+    public Integer javascriptTransformBatchSize;
     public String pythonTransformPath;
     public String pythonTransformFnName;
     public Integer pythonTransformRetries;
+    public Integer pythonTransformTimeoutSeconds;
 
     private FailsafeElementCoder<InputT, String> coder;
 
@@ -115,6 +117,20 @@ public class UDFTextTransformer {
       this.coder = coder;
     }
 
+    /** Sets the number of elements passed to the JavaScript UDF in one call. */
+    public InputUDFToTableRow<InputT> withJavascriptTransformBatchSize(
+        Integer javascriptTransformBatchSize) {
+      this.javascriptTransformBatchSize = javascriptTransformBatchSize;
+      return this;
+    }
+
+    /** Sets the number of seconds to wait for the Python UDF to transform an element. */
+    public InputUDFToTableRow<InputT> withPythonTransformTimeoutSeconds(
+        Integer pythonTransformTimeoutSeconds) {
+      this.pythonTransformTimeoutSeconds = pythonTransformTimeoutSeconds;
+      return this;
+    }
+
     public PCollectionTuple expand(PCollection<FailsafeElement<InputT, String>> input) {
 
       PCollectionTuple udfOut;
@@ -128,6 +144,7 @@ public class UDFTextTransformer {
                     .setFunctionName(this.pythonTransformFnName)
                     .setRuntimeVersion("python3")
                     .setRuntimeRetries(this.pythonTransformRetries)
+                    .setRequestTimeoutSeconds(this.pythonTransformTimeoutSeconds)
                     .setSuccessTag(udfTempOut)
                     .setFailureTag(udfDeadletterOut)
                     .build());
@@ -139,6 +156,7 @@ public class UDFTextTransformer {
                     .setFileSystemPath(this.javascriptTransformPath)
                     .setFunctionName(this.javascriptTransformFnName)
                     .setReloadIntervalMinutes(this.javascriptTransformReloadInterval)
+                    .setBatchSize(this.javascriptTransformBatchSize)
                     .setSuccessTag(udfTempOut)
                     .setFailureTag(udfDeadletterOut)
                     .build());
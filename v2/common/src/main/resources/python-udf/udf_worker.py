@@ -0,0 +1,197 @@
+"""
+Copyright (C) 2024 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License"); you may not
+use this file except in compliance with the License. You may obtain a copy of
+the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+License for the specific language governing permissions and limitations under
+the License.
+"""
+
+"""
+Long-lived worker which applies a Python UDF to events streamed over stdin.
+
+Usage: udf_worker.py <udf_file> <function_name>
+
+Requests and responses are frames made of a 4-byte big-endian length followed
+by a UTF-8 JSON payload. Each request is {"id": ..., "event": ...}. Each
+response is a JSON list of {"status", "id", "event", "error_message"} records,
+one per event returned by the UDF (empty if the UDF discarded the event).
+Responses are written in request order.
+
+The UDF file is imported as a module and <function_name> is called with each
+event, returning a dict, a list of dicts, or None to discard the event. Files
+which do not define <function_name> are treated as legacy scripts: they are
+compiled once, then run as __main__ once per event with argv [<function_name>,
+<data_file>], where the data file, which is also the script's stdin, holds the
+{"id": ..., "event": ...} request as one JSON line, and every line they print
+is read back as a response record.
+"""
+import ast
+import atexit
+import builtins
+import contextlib
+import importlib.machinery
+import importlib.util
+import io
+import json
+import os
+import struct
+import sys
+import tempfile
+import traceback
+
+_HEADER = struct.Struct('>I')
+
+
+def _defines(path, function_name):
+  with open(path, 'rb') as source:
+    tree = ast.parse(source.read(), path)
+  for node in tree.body:
+    if isinstance(node, (ast.FunctionDef, ast.AsyncFunctionDef)):
+      if node.name == function_name:
+        return True
+    elif isinstance(node, ast.Assign):
+      for target in node.targets:
+        if isinstance(target, ast.Name) and target.id == function_name:
+          return True
+    elif isinstance(node, (ast.Import, ast.ImportFrom)):
+      for alias in node.names:
+        if (alias.asname or alias.name) == function_name:
+          return True
+  return False
+
+
+def _load_udf(path, function_name):
+  loader = importlib.machinery.SourceFileLoader('python_udf', path)
+  spec = importlib.util.spec_from_loader('python_udf', loader)
+  module = importlib.util.module_from_spec(spec)
+  loader.exec_module(module)
+  return getattr(module, function_name)
+
+
+def _read_exactly(stream, size):
+  data = b''
+  while len(data) < size:
+    chunk = stream.read(size - len(data))
+    if not chunk:
+      return None
+    data += chunk
+  return data
+
+
+def _read_frame(stream):
+  header = _read_exactly(stream, _HEADER.size)
+  if header is None:
+    return None
+  (length,) = _HEADER.unpack(header)
+  return _read_exactly(stream, length)
+
+
+def _write_frame(stream, payload):
+  stream.write(_HEADER.pack(len(payload)))
+  stream.write(payload)
+  stream.flush()
+
+
+class _LegacyScript(object):
+  """ A legacy script, compiled once and run as __main__ for each event. """
+
+  def __init__(self, path, function_name):
+    with open(path, 'rb') as source:
+      self.code = compile(source.read(), path, 'exec')
+    self.path = path
+    self.function_name = function_name
+    # The data file is rewritten for every event rather than created anew.
+    handle, self.data_file = tempfile.mkstemp(suffix='.json')
+    os.close(handle)
+    atexit.register(os.remove, self.data_file)
+
+
+def _run_legacy_script(script, request):
+  line = json.dumps(request) + '\n'
+  with open(script.data_file, 'w') as data_file:
+    data_file.write(line)
+  output = io.StringIO()
+  argv = sys.argv
+  stdin = sys.stdin
+  try:
+    sys.argv = [script.function_name, script.data_file]
+    sys.stdin = io.StringIO(line)
+    with contextlib.redirect_stdout(output):
+      try:
+        exec(script.code, {'__name__': '__main__',
+                           '__file__': script.path,
+                           '__builtins__': builtins})
+      except SystemExit as e:
+        if e.code:
+          raise
+  finally:
+    sys.argv = argv
+    sys.stdin = stdin
+  records = []
+  for line in output.getvalue().splitlines():
+    if line.strip():
+      record = json.loads(line)
+      record['id'] = request['id']
+      records.append(record)
+  return records
+
+
+def _apply_legacy(script, request):
+  try:
+    return _run_legacy_script(script, request)
+  except BaseException:
+    return [{'status': 'FAILED',
+             'id': request['id'],
+             'event': request['event'],
+             'error_message': traceback.format_exc()}]
+
+
+def _apply(udf, request):
+  event_id = request['id']
+  event = request['event']
+  try:
+    transformed = udf(event)
+  except Exception:
+    return [{'status': 'FAILED',
+             'id': event_id,
+             'event': event,
+             'error_message': traceback.format_exc()}]
+  if transformed is None:
+    return []
+  if not isinstance(transformed, list):
+    transformed = [transformed]
+  return [{'status': 'SUCCESS',
+           'id': event_id,
+           'event': row,
+           'error_message': None} for row in transformed]
+
+
+def main(udf_file, function_name):
+  if _defines(udf_file, function_name):
+    udf = _load_udf(udf_file, function_name)
+    apply = lambda request: _apply(udf, request)
+  else:
+    script = _LegacyScript(udf_file, function_name)
+    apply = lambda request: _apply_legacy(script, request)
+  requests = sys.stdin.buffer
+  responses = sys.stdout.buffer
+  # Anything the UDF prints must not corrupt the response frames.
+  sys.stdout = sys.stderr
+  while True:
+    frame = _read_frame(requests)
+    if frame is None:
+      return
+    results = apply(json.loads(frame.decode('utf-8')))
+    _write_frame(responses, json.dumps(results).encode('utf-8'))
+
+
+if __name__ == '__main__':
+  main(sys.argv[1], sys.argv[2])
@@ -26,6 +26,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 import com.google.cloud.teleport.v2.coders.FailsafeElementCoder;
+import com.google.cloud.teleport.v2.transforms.JavascriptTextTransformer.BatchResult;
 import com.google.cloud.teleport.v2.transforms.JavascriptTextTransformer.FailsafeJavascriptUdf;
 import com.google.cloud.teleport.v2.transforms.JavascriptTextTransformer.JavascriptRuntime;
 import com.google.cloud.teleport.v2.transforms.JavascriptTextTransformer.TransformTextViaJavascript;
@@ -33,10 +34,15 @@ import com.google.cloud.teleport.v2.values.FailsafeElement;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.beam.sdk.coders.CoderRegistry;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.io.gcp.pubsub.PubsubMessage;
@@ -47,7 +53,9 @@ import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionTuple;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.sdk.values.TupleTag;
+import org.joda.time.Instant;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -142,6 +150,58 @@ public class JavascriptTextTransformerTest {
     assertEquals("{\"answerToLife\":42,\"someProp\":\"someValue\"}", data);
   }
 
+  /**
+   * Test {@link JavascriptRuntime#invoke(String)} returns transformed data when called from more
+   * threads than there are pooled engines.
+   */
+  @Test
+  public void testInvokeConcurrently() throws Exception {
+    JavascriptRuntime javascriptRuntime =
+        JavascriptRuntime.newBuilder()
+            .setFileSystemPath(TRANSFORM_FILE_PATH)
+            .setFunctionName("transform")
+            .setReloadIntervalMinutes(0)
+            .setMaxPoolSize(2)
+            .build();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        Callable<String> call = () -> javascriptRuntime.invoke("{\"answerToLife\": 42}");
+        results.add(executor.submit(call));
+      }
+      for (Future<String> result : results) {
+        assertEquals("{\"answerToLife\":42,\"someProp\":\"someValue\"}", result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Test {@link JavascriptRuntime#invokeBatch(List)} returns one result per input, including
+   * dropped elements and per-element errors.
+   */
+  @Test
+  public void testInvokeBatch() throws Exception {
+    JavascriptRuntime javascriptRuntime =
+        JavascriptRuntime.newBuilder()
+            .setFileSystemPath(TRANSFORM_FILE_PATH)
+            .setFunctionName("transformBatch")
+            .setReloadIntervalMinutes(0)
+            .build();
+    List<BatchResult> results =
+        javascriptRuntime.invokeBatch(
+            Arrays.asList("{\"answerToLife\": 42}", "{\"answerToLife\": 43}", "notJson"));
+
+    assertEquals(3, results.size());
+    assertEquals(
+        BatchResult.success("{\"answerToLife\":42,\"someProp\":\"someValue\"}"), results.get(0));
+    assertEquals(BatchResult.success(null), results.get(1));
+    assertThat(results.get(2).isFailure(), is(true));
+  }
+
   /**
    * Test {@link JavascriptRuntime#invoke(String)} errors when undefined data returned from
    * javascript function.
@@ -274,6 +334,136 @@ public class JavascriptTextTransformerTest {
     pipeline.run();
   }
 
+  /** Test {@link TransformTextViaJavascript} transforms and filters data in batch mode. */
+  @Test
+  @Category(NeedsRunner.class)
+  public void testDoFnBatch() {
+    List<String> inJson =
+        Arrays.asList("{\"answerToLife\": 42}", "{\"answerToLife\": 43}", "{\"answerToLife\": 42}");
+    List<String> expectedJson =
+        Arrays.asList(
+            "{\"answerToLife\":42,\"someProp\":\"someValue\"}",
+            "{\"answerToLife\":42,\"someProp\":\"someValue\"}");
+
+    PCollection<String> transformedJson =
+        pipeline
+            .apply("Create", Create.of(inJson))
+            .apply(
+                TransformTextViaJavascript.newBuilder()
+                    .setFileSystemPath(TRANSFORM_FILE_PATH)
+                    .setFunctionName("transformBatch")
+                    .setReloadIntervalMinutes(0)
+                    .setBatchSize(2)
+                    .build());
+
+    PAssert.that(transformedJson).containsInAnyOrder(expectedJson);
+
+    pipeline.run();
+  }
+
+  /**
+   * Tests that batched outputs emitted while processing a later element do not move back in time
+   * when the buffered elements carry earlier timestamps.
+   */
+  @Test
+  @Category(NeedsRunner.class)
+  public void testDoFnBatchOutOfOrderTimestamps() {
+    PCollection<String> transformedJson =
+        pipeline
+            .apply(
+                "Create",
+                Create.timestamped(
+                    TimestampedValue.of("{\"answerToLife\": 42}", new Instant(3000L)),
+                    TimestampedValue.of("{\"answerToLife\": 42}", new Instant(1000L)),
+                    TimestampedValue.of("{\"answerToLife\": 42}", new Instant(2000L))))
+            .apply(
+                TransformTextViaJavascript.newBuilder()
+                    .setFileSystemPath(TRANSFORM_FILE_PATH)
+                    .setFunctionName("transformBatch")
+                    .setReloadIntervalMinutes(0)
+                    .setBatchSize(2)
+                    .build());
+
+    PAssert.that(transformedJson)
+        .containsInAnyOrder(
+            "{\"answerToLife\":42,\"someProp\":\"someValue\"}",
+            "{\"answerToLife\":42,\"someProp\":\"someValue\"}",
+            "{\"answerToLife\":42,\"someProp\":\"someValue\"}");
+
+    pipeline.run();
+  }
+
+  @Test
+  public void testInWindowTimestamp() {
+    assertEquals(
+        new Instant(2000L),
+        JavascriptTextTransformer.inWindowTimestamp(new Instant(1000L), new Instant(2000L)));
+    assertEquals(
+        new Instant(3000L),
+        JavascriptTextTransformer.inWindowTimestamp(new Instant(3000L), new Instant(2000L)));
+  }
+
+  /**
+   * Tests the {@link FailsafeJavascriptUdf} in batch mode routes per-element errors to the
+   * dead-letter and successful elements to the main output.
+   */
+  @Test
+  @Category(NeedsRunner.class)
+  public void testFailsafeJavaScriptUdfBatch() {
+    final String validPayload = "{\"answerToLife\": 42}";
+    final String invalidPayload = "\"answerToLife\": 42";
+    final PubsubMessage validMessage =
+        new PubsubMessage(validPayload.getBytes(), ImmutableMap.of("id", "1"));
+    final PubsubMessage invalidMessage =
+        new PubsubMessage(invalidPayload.getBytes(), ImmutableMap.of("id", "2"));
+
+    FailsafeElementCoder<PubsubMessage, String> coder =
+        FailsafeElementCoder.of(PubsubMessageWithAttributesCoder.of(), StringUtf8Coder.of());
+
+    CoderRegistry coderRegistry = pipeline.getCoderRegistry();
+    coderRegistry.registerCoderForType(coder.getEncodedTypeDescriptor(), coder);
+
+    PCollectionTuple output =
+        pipeline
+            .apply(
+                "CreateInput",
+                Create.of(
+                        FailsafeElement.of(validMessage, validPayload),
+                        FailsafeElement.of(invalidMessage, invalidPayload))
+                    .withCoder(coder))
+            .apply(
+                "InvokeUdf",
+                FailsafeJavascriptUdf.<PubsubMessage>newBuilder()
+                    .setFileSystemPath(TRANSFORM_FILE_PATH)
+                    .setFunctionName("transformBatch")
+                    .setReloadIntervalMinutes(0)
+                    .setBatchSize(10)
+                    .setSuccessTag(SUCCESS_TAG)
+                    .setFailureTag(FAILURE_TAG)
+                    .build());
+
+    PAssert.that(output.get(SUCCESS_TAG))
+        .satisfies(
+            collection -> {
+              FailsafeElement<PubsubMessage, String> result = collection.iterator().next();
+              assertThat(
+                  result.getPayload(),
+                  is(equalTo("{\"answerToLife\":42,\"someProp\":\"someValue\"}")));
+              assertThat(new String(result.getOriginalPayload().getPayload()), is(validPayload));
+              return null;
+            });
+    PAssert.that(output.get(FAILURE_TAG))
+        .satisfies(
+            collection -> {
+              FailsafeElement<PubsubMessage, String> result = collection.iterator().next();
+              assertThat(result.getPayload(), is(equalTo(invalidPayload)));
+              assertThat(result.getErrorMessage(), is(notNullValue()));
+              return null;
+            });
+
+    pipeline.run();
+  }
+
   /** Tests the {@link FailsafeJavascriptUdf} when the input is valid. */
   @Test
   @Category(NeedsRunner.class)
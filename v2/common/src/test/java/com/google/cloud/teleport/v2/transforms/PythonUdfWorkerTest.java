@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.transforms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.io.Resources;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PythonUdfWorker}. Requires python3 on the local machine. */
+@RunWith(JUnit4.class)
+public class PythonUdfWorkerTest {
+
+  private static final String WORKER_SCRIPT_PATH =
+      Resources.getResource("python-udf/udf_worker.py").getPath();
+
+  private static final String TRANSFORM_FILE_PATH =
+      Resources.getResource("PythonUdfWorkerTest/transform.py").getPath();
+
+  private static final String LEGACY_TRANSFORM_FILE_PATH =
+      Resources.getResource("PythonUdfWorkerTest/legacy_transform.py").getPath();
+
+  private static final long TIMEOUT_MILLIS = 30000;
+
+  private static final List<String> COMMAND =
+      Arrays.asList("python3", WORKER_SCRIPT_PATH, TRANSFORM_FILE_PATH, "transform");
+
+  @Before
+  public void checkPython() throws Exception {
+    boolean available;
+    try {
+      available = new ProcessBuilder("python3", "--version").start().waitFor() == 0;
+    } catch (Exception e) {
+      available = false;
+    }
+    assumeTrue("python3 is not installed", available);
+  }
+
+  @Test
+  public void testPipelinedRequestsAnsweredInOrder() throws Exception {
+    try (PythonUdfWorker worker = new PythonUdfWorker(COMMAND, 4, 0, TIMEOUT_MILLIS)) {
+      List<CompletableFuture<String>> responses = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        responses.add(worker.submit(request(String.valueOf(i), "{\"answerToLife\": 42}")));
+      }
+      for (int i = 0; i < 20; i++) {
+        JSONArray results = new JSONArray(responses.get(i).get(30, TimeUnit.SECONDS));
+        assertEquals(1, results.length());
+        JSONObject result = results.getJSONObject(0);
+        assertEquals(String.valueOf(i), result.getString("id"));
+        assertEquals("SUCCESS", result.getString("status"));
+        assertEquals("someValue", result.getJSONObject("event").getString("someProp"));
+      }
+    }
+  }
+
+  @Test
+  public void testFailedAndDiscardedEvents() throws Exception {
+    try (PythonUdfWorker worker = new PythonUdfWorker(COMMAND, 4, 0, TIMEOUT_MILLIS)) {
+      JSONArray failed =
+          new JSONArray(
+              worker.submit(request("1", "{\"answerToLife\": 43}")).get(30, TimeUnit.SECONDS));
+      JSONArray discarded =
+          new JSONArray(worker.submit(request("2", "{}")).get(30, TimeUnit.SECONDS));
+
+      assertEquals("FAILED", failed.getJSONObject(0).getString("status"));
+      assertTrue(failed.getJSONObject(0).getString("error_message").contains("wrong answer"));
+      assertEquals(0, discarded.length());
+    }
+  }
+
+  @Test
+  public void testLegacyScriptRunAsMain() throws Exception {
+    List<String> command =
+        Arrays.asList("python3", WORKER_SCRIPT_PATH, LEGACY_TRANSFORM_FILE_PATH, "transform");
+    try (PythonUdfWorker worker = new PythonUdfWorker(command, 4, 0, TIMEOUT_MILLIS)) {
+      JSONArray results =
+          new JSONArray(
+              worker.submit(request("1", "{\"answerToLife\": 42}")).get(30, TimeUnit.SECONDS));
+
+      assertEquals(1, results.length());
+      assertEquals("1", results.getJSONObject(0).getString("id"));
+      assertEquals("SUCCESS", results.getJSONObject(0).getString("status"));
+      assertEquals(
+          "someValue", results.getJSONObject(0).getJSONObject("event").getString("someProp"));
+    }
+  }
+
+  @Test
+  public void testRequestWhichKillsWorkerFailsOnceOutOfRestarts() throws Exception {
+    try (PythonUdfWorker worker = new PythonUdfWorker(COMMAND, 4, 2, TIMEOUT_MILLIS)) {
+      CompletableFuture<String> crash = worker.submit(request("1", "{\"crash\": true}"));
+      try {
+        crash.get(30, TimeUnit.SECONDS);
+        throw new AssertionError("Expected the crashing request to fail.");
+      } catch (ExecutionException e) {
+        assertTrue(worker.isClosed());
+      }
+    }
+  }
+
+  @Test
+  public void testRequestWhichTimesOutFailsAndWorkerRestarts() throws Exception {
+    try (PythonUdfWorker worker = new PythonUdfWorker(COMMAND, 4, 0, 2000)) {
+      CompletableFuture<String> hang = worker.submit(request("1", "{\"hang\": true}"));
+      CompletableFuture<String> next = worker.submit(request("2", "{\"answerToLife\": 42}"));
+      try {
+        hang.get(30, TimeUnit.SECONDS);
+        throw new AssertionError("Expected the hanging request to time out.");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof TimeoutException);
+      }
+
+      // The request sent after the hanging one is answered by the restarted process.
+      JSONArray results = new JSONArray(next.get(30, TimeUnit.SECONDS));
+      assertEquals("2", results.getJSONObject(0).getString("id"));
+      assertEquals("SUCCESS", results.getJSONObject(0).getString("status"));
+      assertFalse(worker.isClosed());
+    }
+  }
+
+  private static String request(String id, String event) {
+    JSONObject json = new JSONObject();
+    json.put("id", id);
+    json.put("event", new JSONObject(event));
+    return json.toString();
+  }
+}
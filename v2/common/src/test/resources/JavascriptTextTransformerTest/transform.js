@@ -37,3 +37,24 @@ function transformWithFilter(inJson) {
     return JSON.stringify(obj);
   }
 }
+
+/**
+ * A batch transform function which drops answers other than 42 and reports invalid JSON as a
+ * per-element error.
+ * @param {Array<string>} inJsons
+ * @return {Array<string|Object>} outJsons
+ */
+function transformBatch(inJsons) {
+  return inJsons.map(function(inJson) {
+    try {
+      var obj = JSON.parse(inJson);
+      if (obj.answerToLife != 42) {
+        return null;
+      }
+      obj.someProp = "someValue";
+      return JSON.stringify(obj);
+    } catch (e) {
+      return {error: e.message};
+    }
+  });
+}
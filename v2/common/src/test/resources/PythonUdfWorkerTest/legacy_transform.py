@@ -0,0 +1,32 @@
+"""
+Copyright (C) 2024 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License"); you may not
+use this file except in compliance with the License. You may obtain a copy of
+the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+License for the specific language governing permissions and limitations under
+the License.
+"""
+import json
+import sys
+
+
+def _transform(event):
+  event['someProp'] = 'someValue'
+  return event
+
+
+if __name__ == '__main__':
+  with open(sys.argv[1], 'r') as data_file:
+    for line in data_file:
+      request = json.loads(line)
+      print(json.dumps({'status': 'SUCCESS',
+                        'id': request['id'],
+                        'event': _transform(request['event']),
+                        'error_message': None}))
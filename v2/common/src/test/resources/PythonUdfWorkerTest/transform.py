@@ -0,0 +1,31 @@
+"""
+Copyright (C) 2024 Google LLC
+
+Licensed under the Apache License, Version 2.0 (the "License"); you may not
+use this file except in compliance with the License. You may obtain a copy of
+the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+License for the specific language governing permissions and limitations under
+the License.
+"""
+import os
+import time
+
+
+def transform(event):
+  """ Adds a key, discards events without an answer, exits or hangs on request. """
+  if event.get('crash'):
+    os._exit(1)
+  if event.get('hang'):
+    time.sleep(3600)
+  if 'answerToLife' not in event:
+    return None
+  if event['answerToLife'] != 42:
+    raise ValueError('wrong answer')
+  event['someProp'] = 'someValue'
+  return event
@@ -15,6 +15,8 @@
  */
 package com.google.cloud.teleport.v2.cdc.merge;
 
+import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.MoreObjects.firstNonNull;
+
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.BigQueryOptions;
@@ -27,8 +29,19 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.InstantCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.state.Timer;
+import org.apache.beam.sdk.state.TimerSpec;
+import org.apache.beam.sdk.state.TimerSpecs;
+import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.GroupByKey;
 import org.apache.beam.sdk.transforms.MapElements;
@@ -37,14 +50,17 @@ import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.Reshuffle;
 import org.apache.beam.sdk.transforms.Values;
 import org.apache.beam.sdk.transforms.windowing.AfterProcessingTime;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindows;
 import org.apache.beam.sdk.transforms.windowing.Repeatedly;
 import org.apache.beam.sdk.transforms.windowing.Window;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TimestampedValue;
 import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.sdk.values.TypeDescriptors;
 import org.joda.time.Duration;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,15 +83,27 @@ public class BigQueryMerger extends PTransform<PCollection<MergeInfo>, PCollecti
 
   @Override
   public PCollection<Void> expand(PCollection<MergeInfo> input) {
-    return input
-        .apply(
+    PCollection<KV<String, MergeInfo>> mergeInfosPerTable =
+        input.apply(
             MapElements.into(
                     TypeDescriptors.kvs(
                         TypeDescriptors.strings(), TypeDescriptor.of(MergeInfo.class)))
-                .via(mergeInfo -> KV.of(mergeInfo.getReplicaTableReference(), mergeInfo)))
-        .apply(
-            new TriggerPerKeyOnFixedIntervals<String, MergeInfo>(
-                mergeConfiguration.mergeWindowDuration()))
+                .via(mergeInfo -> KV.of(mergeInfo.getReplicaTableReference(), mergeInfo)));
+    PCollection<KV<String, MergeInfo>> triggeredMerges;
+    if (mergeConfiguration.mergeRowThreshold() > 0) {
+      triggeredMerges =
+          mergeInfosPerTable.apply(
+              new TriggerPerKeyOnChangeVolume<String, MergeInfo>(
+                  mergeConfiguration.mergeWindowDuration(),
+                  mergeConfiguration.minMergeInterval(),
+                  mergeConfiguration.mergeRowThreshold()));
+    } else {
+      triggeredMerges =
+          mergeInfosPerTable.apply(
+              new TriggerPerKeyOnFixedIntervals<String, MergeInfo>(
+                  mergeConfiguration.mergeWindowDuration()));
+    }
+    return triggeredMerges
         .apply(
             MapElements.into(
                     TypeDescriptors.kvs(
@@ -167,6 +195,199 @@ public class BigQueryMerger extends PTransform<PCollection<MergeInfo>, PCollecti
     }
   }
 
+  /**
+   * Class {@link TriggerPerKeyOnChangeVolume}.
+   *
+   * <p>Emits the latest value of a key once {@code rowThreshold} values were seen for it since its
+   * last emission, but no sooner than {@code minInterval} after that emission, and otherwise {@code
+   * maxInterval} after the first value seen since then. Keys without new values are never emitted.
+   *
+   * <p>Values of a key seen shortly before an emission may not have reached the staging table yet,
+   * so such an emission is followed by another one {@code maxInterval} later.
+   *
+   * @param <K> key.
+   * @param <V> value.
+   */
+  public static class TriggerPerKeyOnChangeVolume<K, V>
+      extends PTransform<PCollection<KV<K, V>>, PCollection<KV<K, V>>> {
+
+    private final Duration maxInterval;
+    private final Duration minInterval;
+    private final long rowThreshold;
+
+    public TriggerPerKeyOnChangeVolume(
+        Duration maxInterval, Duration minInterval, long rowThreshold) {
+      this.maxInterval = maxInterval;
+      this.minInterval = minInterval;
+      this.rowThreshold = rowThreshold;
+    }
+
+    @Override
+    public PCollection<KV<K, V>> expand(PCollection<KV<K, V>> input) {
+      KvCoder<K, V> inputCoder = (KvCoder<K, V>) input.getCoder();
+      return input
+          .apply(Window.<KV<K, V>>into(new GlobalWindows()))
+          .apply(ParDo.of(new CountPerKeyValues<K, V>()))
+          .setCoder(
+              KvCoder.of(
+                  inputCoder.getKeyCoder(),
+                  KvCoder.of(inputCoder.getValueCoder(), VarLongCoder.of())))
+          .apply(
+              ParDo.of(
+                  new TriggerOnChangeVolumeFn<K, V>(
+                      inputCoder.getValueCoder(), maxInterval, minInterval, rowThreshold)))
+          .setCoder(inputCoder);
+    }
+
+    /** Counts the values of each key in a bundle, so that state is only updated once per key. */
+    private static class CountPerKeyValues<K, V> extends DoFn<KV<K, V>, KV<K, KV<V, Long>>> {
+      private Map<K, TimestampedValue<KV<V, Long>>> valuesPerKey;
+
+      @StartBundle
+      public void startBundle() {
+        valuesPerKey = new HashMap<>();
+      }
+
+      @ProcessElement
+      public void process(ProcessContext c) {
+        TimestampedValue<KV<V, Long>> counted = valuesPerKey.get(c.element().getKey());
+        long count = 1;
+        Instant timestamp = c.timestamp();
+        if (counted != null) {
+          count += counted.getValue().getValue();
+          if (counted.getTimestamp().isAfter(timestamp)) {
+            timestamp = counted.getTimestamp();
+          }
+        }
+        valuesPerKey.put(
+            c.element().getKey(),
+            TimestampedValue.of(KV.of(c.element().getValue(), count), timestamp));
+      }
+
+      @FinishBundle
+      public void finishBundle(FinishBundleContext c) {
+        for (Map.Entry<K, TimestampedValue<KV<V, Long>>> counted : valuesPerKey.entrySet()) {
+          c.output(
+              KV.of(counted.getKey(), counted.getValue().getValue()),
+              counted.getValue().getTimestamp(),
+              GlobalWindow.INSTANCE);
+        }
+        valuesPerKey = null;
+      }
+    }
+
+    private static class TriggerOnChangeVolumeFn<K, V> extends DoFn<KV<K, KV<V, Long>>, KV<K, V>> {
+
+      private static final String LATEST_VALUE = "latestValue";
+      private static final String PENDING_ROWS = "pendingRows";
+      private static final String LAST_CHANGE = "lastChange";
+      private static final String LAST_TRIGGER = "lastTrigger";
+      private static final String SCHEDULED_TRIGGER = "scheduledTrigger";
+      private static final String TRIGGER_TIMER = "triggerTimer";
+
+      private final Duration maxInterval;
+      private final Duration minInterval;
+      private final long rowThreshold;
+
+      @StateId(LATEST_VALUE)
+      private final StateSpec<ValueState<V>> latestValueSpec;
+
+      @StateId(PENDING_ROWS)
+      private final StateSpec<ValueState<Long>> pendingRowsSpec =
+          StateSpecs.value(VarLongCoder.of());
+
+      @StateId(LAST_CHANGE)
+      private final StateSpec<ValueState<Instant>> lastChangeSpec =
+          StateSpecs.value(InstantCoder.of());
+
+      @StateId(LAST_TRIGGER)
+      private final StateSpec<ValueState<Instant>> lastTriggerSpec =
+          StateSpecs.value(InstantCoder.of());
+
+      @StateId(SCHEDULED_TRIGGER)
+      private final StateSpec<ValueState<Instant>> scheduledTriggerSpec =
+          StateSpecs.value(InstantCoder.of());
+
+      @TimerId(TRIGGER_TIMER)
+      private final TimerSpec triggerTimerSpec = TimerSpecs.timer(TimeDomain.PROCESSING_TIME);
+
+      TriggerOnChangeVolumeFn(
+          Coder<V> valueCoder, Duration maxInterval, Duration minInterval, long rowThreshold) {
+        this.latestValueSpec = StateSpecs.value(valueCoder);
+        this.maxInterval = maxInterval;
+        this.minInterval = minInterval;
+        this.rowThreshold = rowThreshold;
+      }
+
+      @ProcessElement
+      public void process(
+          ProcessContext c,
+          @StateId(LATEST_VALUE) ValueState<V> latestValue,
+          @StateId(PENDING_ROWS) ValueState<Long> pendingRows,
+          @StateId(LAST_CHANGE) ValueState<Instant> lastChange,
+          @StateId(LAST_TRIGGER) ValueState<Instant> lastTrigger,
+          @StateId(SCHEDULED_TRIGGER) ValueState<Instant> scheduledTrigger,
+          @TimerId(TRIGGER_TIMER) Timer triggerTimer) {
+        Instant now = triggerTimer.getCurrentRelativeTime();
+        long pending = firstNonNull(pendingRows.read(), 0L) + c.element().getValue().getValue();
+        pendingRows.write(pending);
+        latestValue.write(c.element().getValue().getKey());
+        lastChange.write(now);
+
+        // Triggers are only ever moved earlier, so a busy key cannot postpone its own trigger.
+        Instant scheduled = scheduledTrigger.read();
+        Instant triggerAt = scheduled == null ? now.plus(maxInterval) : scheduled;
+        if (pending >= rowThreshold) {
+          Instant previous = lastTrigger.read();
+          Instant earliest = previous == null ? now : previous.plus(minInterval);
+          if (earliest.isBefore(now)) {
+            earliest = now;
+          }
+          if (earliest.isBefore(triggerAt)) {
+            triggerAt = earliest;
+          }
+        }
+        if (!triggerAt.equals(scheduled)) {
+          triggerTimer.set(triggerAt);
+          scheduledTrigger.write(triggerAt);
+        }
+      }
+
+      @OnTimer(TRIGGER_TIMER)
+      public void onTrigger(
+          OnTimerContext c,
+          @Key K key,
+          @StateId(LATEST_VALUE) ValueState<V> latestValue,
+          @StateId(PENDING_ROWS) ValueState<Long> pendingRows,
+          @StateId(LAST_CHANGE) ValueState<Instant> lastChange,
+          @StateId(LAST_TRIGGER) ValueState<Instant> lastTrigger,
+          @StateId(SCHEDULED_TRIGGER) ValueState<Instant> scheduledTrigger,
+          @TimerId(TRIGGER_TIMER) Timer triggerTimer) {
+        V value = latestValue.read();
+        scheduledTrigger.clear();
+        if (value == null || firstNonNull(pendingRows.read(), 0L) == 0) {
+          return;
+        }
+        LOG.debug("Triggering {} after {} changed rows", key, pendingRows.read());
+        c.output(KV.of(key, value));
+
+        Instant now = triggerTimer.getCurrentRelativeTime();
+        lastTrigger.write(now);
+        Instant changed = lastChange.read();
+        if (changed != null && changed.isAfter(now.minus(minInterval))) {
+          // Keep the trailing changes pending, in case they were not yet staged when triggered.
+          pendingRows.write(1L);
+          Instant triggerAt = now.plus(maxInterval);
+          triggerTimer.set(triggerAt);
+          scheduledTrigger.write(triggerAt);
+        } else {
+          pendingRows.clear();
+          latestValue.clear();
+        }
+      }
+    }
+  }
+
   /** Class {@link BigQueryStatementIssuingFn}. */
   public static class BigQueryStatementIssuingFn extends DoFn<MergeInfo, Void> {
 
@@ -44,6 +44,7 @@ public abstract class MergeConfiguration implements Serializable {
       String.join(
           "",
           "BEGIN ",
+          "{partitionRangeSql}",
           "BEGIN TRANSACTION; ",
           "MERGE `{replicaTable}` AS {replicaAlias} ",
           "USING ({stagingViewSql}) AS {stagingAlias} ",
@@ -60,6 +61,9 @@ public abstract class MergeConfiguration implements Serializable {
   public static final int DEFAULT_PARTITION_RETENTION_DAYS = 1;
   public static final Duration DEFAULT_MERGE_WINDOW_DURATION = Duration.standardMinutes(30);
   public static final int DEFAULT_MERGE_CONCURRENCY = 30;
+  public static final long DEFAULT_MERGE_ROW_THRESHOLD = 0;
+  public static final Duration DEFAULT_MIN_MERGE_INTERVAL = Duration.standardMinutes(5);
+  public static final Boolean DEFAULT_MERGE_CHANGED_PARTITIONS_ONLY = false;
 
   // BigQuery-specific properties
   public static final String BIGQUERY_QUOTE_CHARACTER = "`";
@@ -79,6 +83,21 @@ public abstract class MergeConfiguration implements Serializable {
 
   public abstract int mergeConcurrency();
 
+  /**
+   * The number of changed rows after which a table is merged before its merge window elapses, or 0
+   * to merge every table on fixed intervals of {@link #mergeWindowDuration()}.
+   */
+  public abstract long mergeRowThreshold();
+
+  /** The minimum time between two merges of a table when merging on changed rows. */
+  public abstract Duration minMergeInterval();
+
+  /**
+   * Whether merges only scan the replica partitions holding the changed rows. Only safe when the
+   * partitioning column of a row never changes.
+   */
+  public abstract Boolean mergeChangedPartitionsOnly();
+
   public static MergeConfiguration bigQueryConfiguration() {
     return MergeConfiguration.builder().setQuoteCharacter(BIGQUERY_QUOTE_CHARACTER).build();
   }
@@ -101,6 +120,19 @@ public abstract class MergeConfiguration implements Serializable {
     return this.toBuilder().setMergeConcurrency(mergeConcurrency).build();
   }
 
+  public MergeConfiguration withMergeRowThreshold(long mergeRowThreshold) {
+    checkArgument(mergeRowThreshold >= 0, "mergeRowThreshold must not be negative");
+    return this.toBuilder().setMergeRowThreshold(mergeRowThreshold).build();
+  }
+
+  public MergeConfiguration withMinMergeInterval(Duration minMergeInterval) {
+    return this.toBuilder().setMinMergeInterval(minMergeInterval).build();
+  }
+
+  public MergeConfiguration withMergeChangedPartitionsOnly(Boolean mergeChangedPartitionsOnly) {
+    return this.toBuilder().setMergeChangedPartitionsOnly(mergeChangedPartitionsOnly).build();
+  }
+
   public abstract Builder toBuilder();
 
   static Builder builder() {
@@ -110,7 +142,10 @@ public abstract class MergeConfiguration implements Serializable {
         .setPartitionRetention(DEFAULT_PARTITION_RETENTION_DAYS)
         .setSupportPartitionedTables(true)
         .setMergeWindowDuration(DEFAULT_MERGE_WINDOW_DURATION)
-        .setMergeConcurrency(DEFAULT_MERGE_CONCURRENCY);
+        .setMergeConcurrency(DEFAULT_MERGE_CONCURRENCY)
+        .setMergeRowThreshold(DEFAULT_MERGE_ROW_THRESHOLD)
+        .setMinMergeInterval(DEFAULT_MIN_MERGE_INTERVAL)
+        .setMergeChangedPartitionsOnly(DEFAULT_MERGE_CHANGED_PARTITIONS_ONLY);
   }
 
   @AutoValue.Builder
@@ -129,6 +164,12 @@ public abstract class MergeConfiguration implements Serializable {
 
     abstract Builder setMergeConcurrency(int mergeConcurrency);
 
+    abstract Builder setMergeRowThreshold(long mergeRowThreshold);
+
+    abstract Builder setMinMergeInterval(Duration minMergeInterval);
+
+    abstract Builder setMergeChangedPartitionsOnly(Boolean mergeChangedPartitionsOnly);
+
     abstract MergeConfiguration build();
   }
 }
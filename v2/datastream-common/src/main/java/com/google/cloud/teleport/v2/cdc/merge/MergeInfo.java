@@ -20,6 +20,7 @@ import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryOptions;
 import com.google.cloud.bigquery.Field;
 import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableId;
 import com.google.cloud.teleport.v2.utils.BigQueryTableCache;
@@ -111,13 +112,22 @@ public abstract class MergeInfo implements Serializable {
    */
   public String buildMergeStatement(MergeConfiguration mergeConfiguration) {
     MergeStatementBuilder mergeBuilder = new MergeStatementBuilder(mergeConfiguration);
+    List<String> columns = this.getColumns();
+    String replicaPartitionField = null;
+    if (mergeConfiguration.mergeChangedPartitionsOnly()) {
+      replicaPartitionField = getPartitionField(getReplicaTable());
+      if (replicaPartitionField != null && !columns.contains(replicaPartitionField)) {
+        replicaPartitionField = null;
+      }
+    }
     return mergeBuilder.buildMergeStatement(
         getReplicaTableReference(),
         getStagingTableReference(),
         this.getAllPkFields(),
         this.getOrderByFields(),
         this.getDeleteField(),
-        this.getColumns());
+        columns,
+        replicaPartitionField);
   }
 
   @Override
@@ -200,6 +210,23 @@ public abstract class MergeInfo implements Serializable {
     return mergeFields;
   }
 
+  /** Returns the column a table is partitioned on, or null for unpartitioned tables. */
+  @VisibleForTesting
+  String getPartitionField(TableId tableId) {
+    Table table = getTableCache().get(tableId);
+    if (table == null || !(table.getDefinition() instanceof StandardTableDefinition)) {
+      return null;
+    }
+    StandardTableDefinition definition = table.getDefinition();
+    if (definition.getTimePartitioning() != null) {
+      // Ingestion-time partitioned tables have no partitioning column.
+      return definition.getTimePartitioning().getField();
+    } else if (definition.getRangePartitioning() != null) {
+      return definition.getRangePartitioning().getField();
+    }
+    return null;
+  }
+
   public static String getTableReference(TableId tableId) {
     return String.format(
         "%s.%s.%s", tableId.getProject(), tableId.getDataset(), tableId.getTable());
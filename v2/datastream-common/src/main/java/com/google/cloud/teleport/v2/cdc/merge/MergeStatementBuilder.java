@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.commons.text.StringSubstitutor;
 
 /** Class {@link MergeStatementBuilder}. */
@@ -42,6 +43,28 @@ public class MergeStatementBuilder implements Serializable {
       List<String> orderByFields,
       String deletedFieldName,
       List<String> allFields) {
+    return buildMergeStatement(
+        replicaTable,
+        stagingTable,
+        primaryKeyFields,
+        orderByFields,
+        deletedFieldName,
+        allFields,
+        null);
+  }
+
+  /**
+   * Builds a merge statement which, when {@code replicaPartitionField} is set, only scans the
+   * replica partitions between the lowest and highest values of that field in the staging table.
+   */
+  public String buildMergeStatement(
+      String replicaTable,
+      String stagingTable,
+      List<String> primaryKeyFields,
+      List<String> orderByFields,
+      String deletedFieldName,
+      List<String> allFields,
+      @Nullable String replicaPartitionField) {
     // Key/Value Map used to replace values in template
     Map<String, String> mergeQueryValues = new HashMap<>();
 
@@ -60,9 +83,21 @@ public class MergeStatementBuilder implements Serializable {
             deletedFieldName,
             configuration.partitionRetention()));
 
-    mergeQueryValues.put(
-        "joinCondition",
-        buildJoinConditions(primaryKeyFields, REPLICA_TABLE_NAME, STAGING_TABLE_NAME));
+    String joinCondition =
+        buildJoinConditions(primaryKeyFields, REPLICA_TABLE_NAME, STAGING_TABLE_NAME);
+    if (replicaPartitionField == null) {
+      mergeQueryValues.put("partitionRangeSql", "");
+    } else {
+      mergeQueryValues.put(
+          "partitionRangeSql",
+          buildPartitionRangeDeclarations(stagingTable, replicaPartitionField, deletedFieldName));
+      joinCondition =
+          joinCondition
+              + " AND "
+              + buildPartitionRangeCondition(
+                  replicaPartitionField, REPLICA_TABLE_NAME, configuration.quoteCharacter());
+    }
+    mergeQueryValues.put("joinCondition", joinCondition);
     mergeQueryValues.put("sortFieldsCompareSql", buildSortFieldComparisons(orderByFields));
     mergeQueryValues.put(
         "mergeUpdateSql", buildUpdateStatement(allFields, configuration.quoteCharacter()));
@@ -211,6 +246,31 @@ public class MergeStatementBuilder implements Serializable {
     }
   }
 
+  public static final String PARTITION_RANGE_TEMPLATE =
+      String.join(
+          "",
+          "DECLARE _merge_min_partition DEFAULT (SELECT MIN(%2$s) FROM `%1$s` %3$s); ",
+          "DECLARE _merge_max_partition DEFAULT (SELECT MAX(%2$s) FROM `%1$s` %3$s); ");
+
+  // The range is held in script variables, as BigQuery only prunes partitions on constant
+  // expressions and variables, not on subqueries.
+  private String buildPartitionRangeDeclarations(
+      String stagingTable, String partitionField, String deletedFieldName) {
+    return String.format(
+        PARTITION_RANGE_TEMPLATE,
+        stagingTable,
+        configuration.quoteCharacter() + partitionField + configuration.quoteCharacter(),
+        buildRetentionWhereClause(deletedFieldName));
+  }
+
+  // Rows without a partition value live in their own partition, which is always scanned.
+  static String buildPartitionRangeCondition(
+      String partitionField, String tableName, String quoteChar) {
+    String column = String.format("%s.%s%s%s", tableName, quoteChar, partitionField, quoteChar);
+    return String.format(
+        "(%s BETWEEN _merge_min_partition AND _merge_max_partition OR %s IS NULL)", column, column);
+  }
+
   static String buildJoinConditions(
       List<String> primaryKeyFields, final String leftTableName, final String rightTableName) {
     List<String> equalityConditions =
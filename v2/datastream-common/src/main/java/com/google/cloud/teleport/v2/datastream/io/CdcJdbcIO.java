@@ -23,10 +23,15 @@ import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import javax.annotation.Nullable;
@@ -65,6 +70,11 @@ import org.slf4j.LoggerFactory;
  * <p>JDBC sink supports writing records into a database. It writes a {@link PCollection} to the
  * database by converting each T into a string via a user-provided {@link StatementFormatter}.
  *
+ * <p>Alternatively, a {@link PreparedStatementFormatter} converts each T into a parameterized
+ * statement. The statements of a batch are then grouped by SQL and sent as {@link
+ * PreparedStatement} parameter batches, and a batch failing on a data error is split in halves
+ * until the failing statements are isolated and skipped.
+ *
  * <p>Like the source, to configure the sink, you have to provide a {@link DataSourceConfiguration}.
  *
  * <pre>{@code
@@ -315,6 +325,24 @@ public class CdcJdbcIO {
     String formatStatement(T element);
   }
 
+  /**
+   * An interface used by the JdbcIO Write to write elements as {@link PreparedStatement}s. Elements
+   * with the same SQL are batched on the same prepared statement.
+   */
+  public interface PreparedStatementFormatter<T> extends Serializable {
+    /** Returns the SQL of the element, with a {@code ?} placeholder for each parameter. */
+    String formatPreparedStatement(T element);
+
+    /** Sets the parameters of the element on a statement prepared from its SQL. */
+    void setParameters(T element, PreparedStatement preparedStatement) throws SQLException;
+
+    /**
+     * Returns the key of the row changed by the element. Changes to the same row are applied in the
+     * order of their elements.
+     */
+    String getRowKey(T element);
+  }
+
   /**
    * An interface used to control if we retry the statements when a {@link SQLException} occurs. If
    * {@link RetryStrategy#apply(SQLException)} returns true, {@link Write} tries to replay the
@@ -357,6 +385,11 @@ public class CdcJdbcIO {
       return new Write(inner.withStatementFormatter(formatter));
     }
 
+    /** See {@link WriteVoid#withPreparedStatementFormatter(PreparedStatementFormatter)}. */
+    public Write<T> withPreparedStatementFormatter(PreparedStatementFormatter<T> formatter) {
+      return new Write(inner.withPreparedStatementFormatter(formatter));
+    }
+
     /** See {@link WriteVoid#withBatchSize(long)}. */
     public Write<T> withBatchSize(long batchSize) {
       return new Write(inner.withBatchSize(batchSize));
@@ -409,6 +442,9 @@ public class CdcJdbcIO {
     @Nullable
     abstract StatementFormatter<T> getStatementFormatter();
 
+    @Nullable
+    abstract PreparedStatementFormatter<T> getPreparedStatementFormatter();
+
     @Nullable
     abstract RetryStrategy getRetryStrategy();
 
@@ -423,6 +459,8 @@ public class CdcJdbcIO {
 
       abstract Builder<T> setStatementFormatter(StatementFormatter<T> formatter);
 
+      abstract Builder<T> setPreparedStatementFormatter(PreparedStatementFormatter<T> formatter);
+
       abstract Builder<T> setRetryStrategy(RetryStrategy deadlockPredicate);
 
       abstract WriteVoid<T> build();
@@ -441,6 +479,14 @@ public class CdcJdbcIO {
       return toBuilder().setStatementFormatter(formatter).build();
     }
 
+    /**
+     * Writes the elements as prepared statements, rather than with the {@link StatementFormatter}.
+     */
+    public WriteVoid<T> withPreparedStatementFormatter(PreparedStatementFormatter<T> formatter) {
+      checkArgument(formatter != null, "formatter can not be null");
+      return toBuilder().setPreparedStatementFormatter(formatter).build();
+    }
+
     /**
      * Provide a maximum size in number of SQL statement for the batch. Default is 1000.
      *
@@ -466,6 +512,9 @@ public class CdcJdbcIO {
       checkArgument(
           (getDataSourceProviderFn() != null),
           "withDataSourceConfiguration() or withDataSourceProviderFn() is required");
+      checkArgument(
+          getStatementFormatter() != null || getPreparedStatementFormatter() != null,
+          "withStatementFormatter() or withPreparedStatementFormatter() is required");
 
       return input.apply(ParDo.of(new WriteFn<>(this)));
     }
@@ -530,6 +579,11 @@ public class CdcJdbcIO {
         if (records.isEmpty()) {
           return;
         }
+        if (spec.getPreparedStatementFormatter() != null) {
+          executePreparedBatch(records);
+          records.clear();
+          return;
+        }
         Sleeper sleeper = Sleeper.DEFAULT;
         BackOff backoff = BUNDLE_WRITE_BACKOFF.backoff();
         boolean singleStatementMode = false;
@@ -595,6 +649,101 @@ public class CdcJdbcIO {
           }
         }
       }
+
+      /**
+       * Executes the prepared statements of a batch in one transaction. Transient failures are
+       * retried, other failures split the batch in halves which are executed in order, so that a
+       * failing statement is isolated, logged and skipped without losing the rest of the batch.
+       */
+      private void executePreparedBatch(List<T> batch)
+          throws SQLException, IOException, InterruptedException {
+        Sleeper sleeper = Sleeper.DEFAULT;
+        BackOff backoff = BUNDLE_WRITE_BACKOFF.backoff();
+        while (true) {
+          try {
+            executePreparedStatements(batch);
+            connection.commit();
+            return;
+          } catch (SQLException exception) {
+            connection.rollback();
+            if (isTransient(exception)) {
+              if (!BackOffUtils.next(sleeper, backoff)) {
+                throw exception;
+              }
+              LOG.warn("SQLException Occurred: {}", exception.toString());
+            } else if (batch.size() == 1) {
+              LOG.error(
+                  "SQLException Occurred: {} while executing statement: {}",
+                  exception.toString(),
+                  spec.getPreparedStatementFormatter().formatPreparedStatement(batch.get(0)));
+              return;
+            } else {
+              LOG.warn(
+                  "SQLException Occurred: {}, splitting batch of {} statements",
+                  exception.toString(),
+                  batch.size());
+              int middle = batch.size() / 2;
+              executePreparedBatch(batch.subList(0, middle));
+              executePreparedBatch(batch.subList(middle, batch.size()));
+              return;
+            }
+          }
+        }
+      }
+
+      private void executePreparedStatements(List<T> batch) throws SQLException {
+        PreparedStatementFormatter<T> formatter = spec.getPreparedStatementFormatter();
+        // Statements are executed in the order of their first element, and rows changed by
+        // different statements are flushed first so that changes to a row stay in order.
+        Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<>();
+        Map<String, String> pendingRowStatements = new HashMap<>();
+        try {
+          for (T record : batch) {
+            String sql = formatter.formatPreparedStatement(record);
+            String previousSql = pendingRowStatements.put(formatter.getRowKey(record), sql);
+            if (previousSql != null && !previousSql.equals(sql)) {
+              executePreparedStatementBatches(preparedStatements.values());
+              pendingRowStatements.clear();
+              pendingRowStatements.put(formatter.getRowKey(record), sql);
+            }
+            PreparedStatement preparedStatement = preparedStatements.get(sql);
+            if (preparedStatement == null) {
+              preparedStatement = connection.prepareStatement(sql);
+              preparedStatements.put(sql, preparedStatement);
+            }
+            formatter.setParameters(record, preparedStatement);
+            preparedStatement.addBatch();
+          }
+          executePreparedStatementBatches(preparedStatements.values());
+        } finally {
+          for (PreparedStatement preparedStatement : preparedStatements.values()) {
+            preparedStatement.close();
+          }
+        }
+      }
+
+      private static void executePreparedStatementBatches(
+          Collection<PreparedStatement> preparedStatements) throws SQLException {
+        for (PreparedStatement preparedStatement : preparedStatements) {
+          preparedStatement.executeBatch();
+        }
+      }
+
+      /**
+       * Returns whether the exception, or one chained to it by the driver, is worth retrying as is:
+       * a retryable error per the {@link RetryStrategy}, or a connection error.
+       */
+      private boolean isTransient(SQLException exception) {
+        for (SQLException e = exception; e != null; e = e.getNextException()) {
+          if ((spec.getRetryStrategy() != null && spec.getRetryStrategy().apply(e))
+              || e instanceof SQLTransientException
+              || e instanceof SQLRecoverableException
+              || (e.getSQLState() != null && e.getSQLState().startsWith("08"))) {
+            return true;
+          }
+        }
+        return false;
+      }
     }
   }
 
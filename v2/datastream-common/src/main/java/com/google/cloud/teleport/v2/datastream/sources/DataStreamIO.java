@@ -18,11 +18,13 @@ package com.google.cloud.teleport.v2.datastream.sources;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.MoreObjects.firstNonNull;
 
 import com.google.api.client.util.DateTime;
+import com.google.api.services.bigquery.model.TableRow;
 import com.google.api.services.storage.model.Objects;
 import com.google.api.services.storage.model.StorageObject;
 import com.google.cloud.teleport.v2.coders.FailsafeElementCoder;
 import com.google.cloud.teleport.v2.datastream.transforms.FormatDatastreamJsonToJson;
 import com.google.cloud.teleport.v2.datastream.transforms.FormatDatastreamRecordToJson;
+import com.google.cloud.teleport.v2.datastream.transforms.FormatDatastreamRecordToTableRow;
 import com.google.cloud.teleport.v2.values.FailsafeElement;
 import com.google.common.base.Strings;
 import java.io.FileNotFoundException;
@@ -44,6 +46,7 @@ import org.apache.beam.sdk.io.FileIO.ReadableFile;
 import org.apache.beam.sdk.io.FileSystems;
 import org.apache.beam.sdk.io.TextIO;
 import org.apache.beam.sdk.io.fs.MatchResult.Metadata;
+import org.apache.beam.sdk.io.gcp.bigquery.TableRowJsonCoder;
 import org.apache.beam.sdk.io.gcp.pubsub.PubsubIO;
 import org.apache.beam.sdk.io.gcp.pubsub.PubsubMessage;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
@@ -219,31 +222,73 @@ public class DataStreamIO extends PTransform<PBegin, PCollection<FailsafeElement
                   "ParseAvroRows",
                   ParDo.of(
                       new ReadFileRangesFn<FailsafeElement<String, String>>(
-                          new CreateParseSourceFn(parseFn, coder),
+                          new CreateParseSourceFn<>(parseFn, coder),
                           new ReadFileRangesFn.ReadFileRangesFnExceptionHandler())))
               .setCoder(coder);
     }
     return datastreamRecords.apply("Reshuffle", Reshuffle.viaRandomKey());
   }
 
-  private static class CreateParseSourceFn
-      implements SerializableFunction<String, FileBasedSource<FailsafeElement<String, String>>> {
-    private final SerializableFunction<GenericRecord, FailsafeElement<String, String>> parseFn;
-    private final Coder<FailsafeElement<String, String>> coder;
+  /**
+   * Returns a transform which reads Datastream Avro files straight into {@link TableRow}s, skipping
+   * the JSON strings produced by this transform. See {@link FormatDatastreamRecordToTableRow}.
+   *
+   * <p>Records are not reshuffled after they are read, so the caller is expected to redistribute
+   * them, e.g. with a keyed or reshuffling step, before expensive processing.
+   */
+  public PTransform<PBegin, PCollection<TableRow>> readTableRows() {
+    if (!this.fileType.equals(AVRO_SUFFIX)) {
+      throw new IllegalArgumentException(
+          "Reading TableRows requires the avro input file format - found " + fileType);
+    }
+    return new DataStreamTableRowIO();
+  }
 
-    CreateParseSourceFn(
-        SerializableFunction<GenericRecord, FailsafeElement<String, String>> parseFn,
-        Coder<FailsafeElement<String, String>> coder) {
+  public PCollection<TableRow> expandDataStreamTableRows(
+      PCollection<ReadableFile> datastreamFiles) {
+    SerializableFunction<GenericRecord, TableRow> parseFn =
+        FormatDatastreamRecordToTableRow.create()
+            .withStreamName(this.streamName)
+            .withRenameColumnValues(this.renameColumns)
+            .withHashRowId(this.hashRowId)
+            .withLowercaseSourceColumns(this.lowercaseSourceColumns);
+    return datastreamFiles
+        .apply("ReshuffleFiles", Reshuffle.<ReadableFile>viaRandomKey())
+        .apply(
+            "ParseAvroRows",
+            ParDo.of(
+                new ReadFileRangesFn<TableRow>(
+                    new CreateParseSourceFn<TableRow>(parseFn, TableRowJsonCoder.of()),
+                    new ReadFileRangesFn.ReadFileRangesFnExceptionHandler())))
+        .setCoder(TableRowJsonCoder.of());
+  }
+
+  private static class CreateParseSourceFn<T>
+      implements SerializableFunction<String, FileBasedSource<T>> {
+    private final SerializableFunction<GenericRecord, T> parseFn;
+    private final Coder<T> coder;
+
+    CreateParseSourceFn(SerializableFunction<GenericRecord, T> parseFn, Coder<T> coder) {
       this.parseFn = parseFn;
       this.coder = coder;
     }
 
     @Override
-    public FileBasedSource<FailsafeElement<String, String>> apply(String input) {
+    public FileBasedSource<T> apply(String input) {
       return AvroSource.from(input).withParseFn(parseFn, coder);
     }
   }
 
+  class DataStreamTableRowIO extends PTransform<PBegin, PCollection<TableRow>> {
+
+    @Override
+    public PCollection<TableRow> expand(PBegin input) {
+      PCollection<ReadableFile> datastreamFiles =
+          input.apply("Read Datastream Files", new DataStreamFileIO());
+      return expandDataStreamTableRows(datastreamFiles);
+    }
+  }
+
   class DataStreamFileIO extends PTransform<PBegin, PCollection<ReadableFile>> {
 
     @Override
@@ -65,6 +65,8 @@ public class FormatDatastreamRecordToJson
       DateTimeFormatter.ISO_OFFSET_DATE_TIME;
   static final DecimalConversion DECIMAL_CONVERSION = new DecimalConversion();
   static final DateConversion DATE_CONVERSION = new DateConversion();
+  // ObjectMapper is thread-safe once configured, so it is shared rather than created per record.
+  static final ObjectMapper MAPPER = new ObjectMapper();
   private String streamName;
   private boolean lowercaseSourceColumns = false;
   private String rowIdColumnName;
@@ -105,8 +107,13 @@ public class FormatDatastreamRecordToJson
 
   @Override
   public FailsafeElement<String, String> apply(GenericRecord record) {
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectNode outputObject = mapper.createObjectNode();
+    String json = formatRecord(record).toString();
+    return FailsafeElement.of(json, json);
+  }
+
+  /** Builds the full record, payload and metadata columns, as a JSON tree. */
+  ObjectNode formatRecord(GenericRecord record) {
+    ObjectNode outputObject = MAPPER.createObjectNode();
     UnifiedTypesFormatter.payloadToJson(getPayload(record), outputObject);
     if (this.lowercaseSourceColumns) {
       outputObject = getLowerCaseObject(outputObject);
@@ -125,7 +132,8 @@ public class FormatDatastreamRecordToJson
     outputObject.put("_metadata_deleted", getMetadataIsDeleted(record));
     outputObject.put("_metadata_table", getMetadataTable(record));
     outputObject.put("_metadata_change_type", getMetadataChangeType(record));
-    outputObject.put("_metadata_primary_keys", getPrimaryKeys(record));
+    JsonNode sourceMetadataJson = getSourceMetadataJson(record);
+    outputObject.put("_metadata_primary_keys", getPrimaryKeys(record, sourceMetadataJson));
     outputObject.put("_metadata_uuid", getUUID());
 
     if (sourceType.equals("mysql")) {
@@ -153,9 +161,9 @@ public class FormatDatastreamRecordToJson
     FormatDatastreamRecord.applyRenameColumns(outputObject, this.renameColumns);
 
     // All Raw Metadata
-    outputObject.put("_metadata_source", getSourceMetadataJson(record));
+    outputObject.put("_metadata_source", sourceMetadataJson);
 
-    return FailsafeElement.of(outputObject.toString(), outputObject.toString());
+    return outputObject;
   }
 
   private GenericRecord getPayload(GenericRecord record) {
@@ -163,8 +171,7 @@ public class FormatDatastreamRecordToJson
   }
 
   private ObjectNode getLowerCaseObject(ObjectNode outputObject) {
-    ObjectMapper mapper = new ObjectMapper();
-    ObjectNode loweredOutputObject = mapper.createObjectNode();
+    ObjectNode loweredOutputObject = MAPPER.createObjectNode();
 
     for (Iterator<String> fieldNames = outputObject.fieldNames(); fieldNames.hasNext(); ) {
       String fieldName = fieldNames.next();
@@ -175,10 +182,9 @@ public class FormatDatastreamRecordToJson
   }
 
   private JsonNode getSourceMetadataJson(GenericRecord record) {
-    ObjectMapper mapper = new ObjectMapper();
     JsonNode dataInput;
     try {
-      dataInput = mapper.readTree(record.get("source_metadata").toString());
+      dataInput = MAPPER.readTree(record.get("source_metadata").toString());
     } catch (IOException e) {
       LOG.error("Issue parsing JSON record. Unable to continue.", e);
       throw new RuntimeException(e);
@@ -242,15 +248,14 @@ public class FormatDatastreamRecordToJson
     return null;
   }
 
-  private JsonNode getPrimaryKeys(GenericRecord record) {
+  private JsonNode getPrimaryKeys(GenericRecord record, JsonNode sourceMetadataJson) {
     GenericRecord sourceMetadata = (GenericRecord) record.get("source_metadata");
     if (sourceMetadata.getSchema().getField("primary_keys") == null
         || sourceMetadata.get("primary_keys") == null) {
       return null;
     }
 
-    JsonNode dataInput = getSourceMetadataJson(record);
-    return dataInput.get("primary_keys");
+    return sourceMetadataJson.get("primary_keys");
   }
 
   private String getUUID() {
@@ -516,10 +521,9 @@ public class FormatDatastreamRecordToJson
         default:
           LOG.warn(
               "Unknown field type {} for field {} in record {}.", fieldSchema, fieldName, element);
-          ObjectMapper mapper = new ObjectMapper();
           JsonNode dataInput;
           try {
-            dataInput = mapper.readTree(element.toString());
+            dataInput = MAPPER.readTree(element.toString());
             jsonObject.put(fieldName, dataInput);
           } catch (IOException e) {
             LOG.error("Issue parsing JSON record. Unable to continue.", e);
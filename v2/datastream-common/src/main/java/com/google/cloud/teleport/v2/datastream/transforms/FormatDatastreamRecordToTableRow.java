@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.datastream.transforms;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.api.services.bigquery.model.TableRow;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+
+/**
+ * Formats a Datastream Avro record straight into the {@link TableRow} that we will use downstream.
+ *
+ * <p>The row holds the same columns, metadata included, as the JSON record built by {@link
+ * FormatDatastreamRecordToJson}, and the same values as if that JSON was parsed into a {@link
+ * TableRow}, without writing and parsing the JSON text. It is meant for pipelines which do not
+ * apply a UDF to the JSON records.
+ */
+public class FormatDatastreamRecordToTableRow
+    implements SerializableFunction<GenericRecord, TableRow> {
+
+  private final FormatDatastreamRecordToJson formatter = FormatDatastreamRecordToJson.create();
+
+  private FormatDatastreamRecordToTableRow() {}
+
+  public static FormatDatastreamRecordToTableRow create() {
+    return new FormatDatastreamRecordToTableRow();
+  }
+
+  public FormatDatastreamRecordToTableRow withStreamName(String streamName) {
+    formatter.withStreamName(streamName);
+    return this;
+  }
+
+  public FormatDatastreamRecordToTableRow withLowercaseSourceColumns(
+      Boolean lowercaseSourceColumns) {
+    formatter.withLowercaseSourceColumns(lowercaseSourceColumns);
+    return this;
+  }
+
+  /**
+   * Set the map of columns values to rename/copy.
+   *
+   * @param renameColumns The map of columns to new columns to rename/copy.
+   */
+  public FormatDatastreamRecordToTableRow withRenameColumnValues(
+      Map<String, String> renameColumns) {
+    formatter.withRenameColumnValues(renameColumns);
+    return this;
+  }
+
+  /** Set the reader to hash Oracle ROWID values into int. */
+  public FormatDatastreamRecordToTableRow withHashRowId(Boolean hashRowId) {
+    formatter.withHashRowId(hashRowId);
+    return this;
+  }
+
+  @Override
+  public TableRow apply(GenericRecord record) {
+    ObjectNode outputObject = formatter.formatRecord(record);
+    TableRow row = new TableRow();
+    for (Iterator<Map.Entry<String, JsonNode>> fields = outputObject.fields(); fields.hasNext(); ) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      row.set(field.getKey(), toTableRowValue(field.getValue()));
+    }
+    return row;
+  }
+
+  /**
+   * Converts a JSON value to the Java value {@link
+   * org.apache.beam.sdk.io.gcp.bigquery.TableRowJsonCoder} decodes from its text: nested objects
+   * become maps, integers the narrowest of int, long or big integer, and binary values base64
+   * strings.
+   */
+  static Object toTableRowValue(JsonNode value) {
+    if (value == null || value.isNull()) {
+      return null;
+    } else if (value.isObject()) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (Iterator<Map.Entry<String, JsonNode>> fields = value.fields(); fields.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        map.put(field.getKey(), toTableRowValue(field.getValue()));
+      }
+      return map;
+    } else if (value.isArray()) {
+      List<Object> list = new ArrayList<>(value.size());
+      for (JsonNode element : value) {
+        list.add(toTableRowValue(element));
+      }
+      return list;
+    } else if (value.isIntegralNumber()) {
+      if (value.canConvertToInt()) {
+        return value.intValue();
+      }
+      return value.canConvertToLong() ? (Object) value.longValue() : value.bigIntegerValue();
+    } else if (value.isNumber()) {
+      return value.doubleValue();
+    } else if (value.isBoolean()) {
+      return value.booleanValue();
+    }
+    // Text, and binary values which are written as base64 text.
+    return value.asText();
+  }
+}
@@ -18,6 +18,7 @@ package com.google.cloud.teleport.v2.datastream.values;
 import com.google.auto.value.AutoValue;
 import java.io.Serializable;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.beam.sdk.schemas.AutoValueSchema;
 import org.apache.beam.sdk.schemas.annotations.DefaultSchema;
 import org.apache.beam.sdk.schemas.annotations.SchemaCreate;
@@ -43,7 +44,13 @@ public abstract class DmlInfo implements Serializable {
 
   public abstract List<String> getOrderByValues();
 
-  @SchemaCreate
+  /**
+   * The values of the {@code ?} parameters of {@link #getDmlSql()}, in order, or null when the DML
+   * holds its values as SQL literals. Null values are written as {@code NULL} literals in the SQL.
+   */
+  @Nullable
+  public abstract List<String> getDmlValues();
+
   public static DmlInfo of(
       String failsafeValue,
       String dmlSql,
@@ -53,6 +60,29 @@ public abstract class DmlInfo implements Serializable {
       List<String> orderByFields,
       List<String> primaryKeyValues,
       List<String> orderByValues) {
+    return of(
+        failsafeValue,
+        dmlSql,
+        schemaName,
+        tableName,
+        allPkFields,
+        orderByFields,
+        primaryKeyValues,
+        orderByValues,
+        null);
+  }
+
+  @SchemaCreate
+  public static DmlInfo of(
+      String failsafeValue,
+      String dmlSql,
+      String schemaName,
+      String tableName,
+      List<String> allPkFields,
+      List<String> orderByFields,
+      List<String> primaryKeyValues,
+      List<String> orderByValues,
+      @Nullable List<String> dmlValues) {
     return new AutoValue_DmlInfo(
         failsafeValue,
         dmlSql,
@@ -61,7 +91,8 @@ public abstract class DmlInfo implements Serializable {
         allPkFields,
         orderByFields,
         primaryKeyValues,
-        orderByValues);
+        orderByValues,
+        dmlValues);
   }
 
   public String getStateWindowKey() {
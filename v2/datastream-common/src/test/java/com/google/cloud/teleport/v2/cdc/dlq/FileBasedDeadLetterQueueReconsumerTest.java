@@ -17,7 +17,9 @@ package com.google.cloud.teleport.v2.cdc.dlq;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableSet;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -26,17 +28,31 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.io.FileIO;
 import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.fs.EmptyMatchTreatment;
 import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.io.range.OffsetRange;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.testing.TestStream;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -64,6 +80,11 @@ public class FileBasedDeadLetterQueueReconsumerTest {
         + "\"_metadata_retry_count\":1}"
   };
 
+  private static final KvCoder<KV<String, Long>, KV<Integer, Integer>> COMPLETED_RANGE_CODER =
+      KvCoder.of(
+          KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of()),
+          KvCoder.of(VarIntCoder.of(), VarIntCoder.of()));
+
   static final Logger LOG = LoggerFactory.getLogger(FileBasedDeadLetterQueueReconsumerTest.class);
 
   @Rule public TemporaryFolder folder = new TemporaryFolder();
@@ -137,4 +158,128 @@ public class FileBasedDeadLetterQueueReconsumerTest {
 
     assertThat(text).isEqualTo(expected);
   }
+
+  @Test
+  public void testLargeFilesAreSplitIntoRanges() throws IOException {
+    String fileName = createJsonFile("dlqFile1.json", JSON_FILE_CONTENTS_1);
+
+    String folderPath = Paths.get(folder.getRoot().getAbsolutePath()).resolve("*").toString();
+    PCollection<String> jsonData =
+        p.apply(FileIO.match().filepattern(folderPath))
+            .apply(
+                FileBasedDeadLetterQueueReconsumer.moveAndConsumeMatches(
+                    50, Duration.ZERO, Duration.ZERO));
+    PAssert.that(jsonData).containsInAnyOrder(JSON_RESULTS_1);
+    p.run().waitUntilFinish();
+
+    assertFalse(new File(fileName).exists());
+  }
+
+  @Test
+  public void testReadLinesYieldsEachLineOnce() throws IOException {
+    String jsonPath = createJsonFile("dlqFile1.json", JSON_FILE_CONTENTS_1);
+    ResourceId resourceId = FileSystems.matchNewResource(jsonPath, false);
+    long size = new File(jsonPath).length();
+
+    for (long split = 1; split <= size; split += 7) {
+      List<String> lines = new ArrayList<>();
+      int ranges = FileBasedDeadLetterQueueReconsumer.numRanges(size, split);
+      for (int i = 0; i < ranges; i++) {
+        long end = i == ranges - 1 ? size : (i + 1) * split;
+        FileBasedDeadLetterQueueReconsumer.readLines(
+            resourceId, new OffsetRange(i * split, end), lines::add);
+      }
+      assertThat(lines).containsExactlyElementsIn(JSON_FILE_CONTENTS_1).inOrder();
+    }
+  }
+
+  @Test
+  public void testOverlappingMatchesOfOneFileAreAllReadBeforeDeletion() throws IOException {
+    String fileName = createJsonFile("dlqFile1.json", JSON_FILE_CONTENTS_1);
+    TestStream<String> inputFiles =
+        TestStream.create(StringUtf8Coder.of())
+            .addElements(fileName)
+            .addElements(fileName)
+            .advanceWatermarkToInfinity();
+
+    PCollection<String> jsonData =
+        p.apply(inputFiles)
+            .apply(FileIO.matchAll().withEmptyMatchTreatment(EmptyMatchTreatment.ALLOW))
+            .apply(
+                FileBasedDeadLetterQueueReconsumer.moveAndConsumeMatches(
+                    50, Duration.ZERO, Duration.ZERO));
+
+    // The second match may find the file already deleted, but every line is read at least once.
+    PAssert.that(jsonData)
+        .satisfies(
+            lines -> {
+              assertThat(ImmutableSet.copyOf(lines)).containsExactlyElementsIn(JSON_RESULTS_1);
+              return null;
+            });
+    p.run().waitUntilFinish();
+
+    assertFalse(new File(fileName).exists());
+  }
+
+  @Test
+  public void testFileIsKeptUntilEveryRangeIsRead() throws IOException {
+    String fileName = createJsonFile("dlqFile1.json", JSON_FILE_CONTENTS_1);
+    KV<String, Long> file = KV.of(fileName, 1L);
+
+    // Range 0 is reported by two overlapping matches, range 2 is still being read.
+    p.apply(
+            Create.of(KV.of(file, KV.of(0, 3)), KV.of(file, KV.of(0, 3)), KV.of(file, KV.of(1, 3)))
+                .withCoder(COMPLETED_RANGE_CODER))
+        .apply(ParDo.of(new FileBasedDeadLetterQueueReconsumer.RemoveFiles()));
+    p.run().waitUntilFinish();
+
+    assertTrue(new File(fileName).exists());
+  }
+
+  @Test
+  public void testFileIsDeletedOnceEveryRangeIsRead() throws IOException {
+    String fileName = createJsonFile("dlqFile1.json", JSON_FILE_CONTENTS_1);
+    KV<String, Long> file = KV.of(fileName, 1L);
+
+    p.apply(
+            Create.of(KV.of(file, KV.of(1, 3)), KV.of(file, KV.of(0, 3)), KV.of(file, KV.of(2, 3)))
+                .withCoder(COMPLETED_RANGE_CODER))
+        .apply(ParDo.of(new FileBasedDeadLetterQueueReconsumer.RemoveFiles()));
+    p.run().waitUntilFinish();
+
+    assertFalse(new File(fileName).exists());
+  }
+
+  @Test
+  public void testFilePatternsForRecheck() {
+    Instant now = Instant.parse("2024-03-01T10:05:30Z");
+
+    assertThat(
+            FileBasedDeadLetterQueueReconsumer.filePatternsForRecheck(
+                "/dlq/",
+                FileBasedDeadLetterQueueReconsumer.DEFAULT_PARTITION_LAYOUT,
+                Duration.standardMinutes(5),
+                12,
+                24,
+                now))
+        .containsExactly("/dlq/**");
+    assertThat(
+            FileBasedDeadLetterQueueReconsumer.filePatternsForRecheck(
+                "/dlq/", null, Duration.standardMinutes(5), 12, 25, now))
+        .containsExactly("/dlq/**");
+
+    // Partitions are resolved like the writers resolve them, so the literal DD is kept.
+    DateTimeFormatter partition = DateTimeFormat.forPattern("yyyy/MM/'DD'/HH/mm/");
+    List<String> expected = new ArrayList<>();
+    for (Instant end = Instant.parse("2024-03-01T09:45:00Z");
+        !end.isAfter(Instant.parse("2024-03-01T10:06:00Z"));
+        end = end.plus(Duration.standardMinutes(1))) {
+      expected.add("/dlq/" + partition.print(end) + "**");
+    }
+    assertThat(
+            FileBasedDeadLetterQueueReconsumer.filePatternsForRecheck(
+                "/dlq/", "YYYY/MM/DD/HH/mm/", Duration.standardMinutes(5), 12, 25, now))
+        .containsExactlyElementsIn(expected)
+        .inOrder();
+  }
 }
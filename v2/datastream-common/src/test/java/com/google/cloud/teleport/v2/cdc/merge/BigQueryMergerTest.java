@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.cdc.merge;
+
+import com.google.cloud.teleport.v2.cdc.merge.BigQueryMerger.TriggerPerKeyOnChangeVolume;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.testing.TestStream;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test cases for the triggers of {@link BigQueryMerger}. */
+@RunWith(JUnit4.class)
+public class BigQueryMergerTest {
+
+  private static final Duration MAX_INTERVAL = Duration.standardMinutes(10);
+  private static final Duration MIN_INTERVAL = Duration.standardMinutes(5);
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  /**
+   * Tests that a key reaching the row threshold is emitted right away and once more after the
+   * maximum interval for its trailing changes, while a key below the threshold is only emitted
+   * after the maximum interval, with its latest value.
+   */
+  @Test
+  public void testTriggerPerKeyOnChangeVolumeRowThreshold() {
+    TestStream<KV<String, String>> changes =
+        TestStream.create(KvCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()))
+            .addElements(KV.of("t1", "a"), KV.of("t1", "a"), KV.of("t1", "a"), KV.of("t2", "b1"))
+            .advanceProcessingTime(Duration.standardMinutes(1))
+            .addElements(KV.of("t2", "b2"))
+            // t2 is emitted 10 minutes after its first change, and t1 for its trailing changes
+            .advanceProcessingTime(Duration.standardMinutes(10))
+            .advanceProcessingTime(Duration.standardMinutes(20))
+            .advanceWatermarkToInfinity();
+
+    PCollection<KV<String, String>> merges =
+        pipeline
+            .apply(changes)
+            .apply(new TriggerPerKeyOnChangeVolume<>(MAX_INTERVAL, MIN_INTERVAL, 3));
+
+    // Without the threshold t1 would only be emitted once, 10 minutes after its changes.
+    PAssert.that(merges).containsInAnyOrder(KV.of("t1", "a"), KV.of("t1", "a"), KV.of("t2", "b2"));
+    pipeline.run();
+  }
+
+  /**
+   * Tests that a key reaching the row threshold again is not emitted until the minimum interval
+   * since its last emission has passed, and then with the changes received in the meantime.
+   */
+  @Test
+  public void testTriggerPerKeyOnChangeVolumeMinInterval() {
+    TestStream<KV<String, String>> changes =
+        TestStream.create(KvCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()))
+            .addElements(KV.of("t1", "a"), KV.of("t1", "a"))
+            .advanceProcessingTime(Duration.standardMinutes(1))
+            .addElements(KV.of("t1", "b"), KV.of("t1", "b"))
+            .advanceProcessingTime(Duration.standardMinutes(2))
+            .addElements(KV.of("t1", "c"))
+            // the second emission is held back until 5 minutes after the first
+            .advanceProcessingTime(Duration.standardMinutes(4))
+            // and followed by one for the trailing changes, 10 minutes later
+            .advanceProcessingTime(Duration.standardMinutes(11))
+            .advanceProcessingTime(Duration.standardMinutes(20))
+            .advanceWatermarkToInfinity();
+
+    PCollection<KV<String, String>> merges =
+        pipeline
+            .apply(changes)
+            .apply(new TriggerPerKeyOnChangeVolume<>(MAX_INTERVAL, MIN_INTERVAL, 2));
+
+    // Without the minimum interval, "b" would have been emitted as soon as it reached the
+    // threshold.
+    PAssert.that(merges).containsInAnyOrder(KV.of("t1", "a"), KV.of("t1", "c"), KV.of("t1", "c"));
+    pipeline.run();
+  }
+
+  /** Tests that a key is not emitted again once its changes have been merged. */
+  @Test
+  public void testTriggerPerKeyOnChangeVolumeQuietKey() {
+    TestStream<KV<String, String>> changes =
+        TestStream.create(KvCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()))
+            .addElements(KV.of("t1", "a"))
+            .advanceProcessingTime(Duration.standardMinutes(11))
+            .advanceProcessingTime(Duration.standardMinutes(30))
+            .advanceProcessingTime(Duration.standardMinutes(30))
+            .advanceWatermarkToInfinity();
+
+    PCollection<KV<String, String>> merges =
+        pipeline
+            .apply(changes)
+            .apply(new TriggerPerKeyOnChangeVolume<>(MAX_INTERVAL, MIN_INTERVAL, 100));
+
+    PAssert.that(merges).containsInAnyOrder(KV.of("t1", "a"));
+    pipeline.run();
+  }
+}
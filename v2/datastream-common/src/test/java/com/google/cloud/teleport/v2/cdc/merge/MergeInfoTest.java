@@ -24,9 +24,11 @@ import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.Field;
 import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.google.cloud.bigquery.StandardTableDefinition;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableDefinition;
 import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
 import com.google.cloud.teleport.v2.utils.BigQueryTableCache;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
@@ -155,6 +157,68 @@ public final class MergeInfoTest {
     assertThat(mergeInfo.buildMergeStatement(cfg)).isEqualTo(MERGE_SQL);
   }
 
+  @Test
+  public void buildMergeStatement_changedPartitionsOnly() {
+    List<String> mergeFields = ImmutableList.of("id", "timestamp", "other");
+    TableId stagingTable = TableId.of("projectId", "dataset", "staging_table");
+    TableId replicaTable = TableId.of("projectId", "dataset", "table");
+    MergeConfiguration cfg =
+        MergeConfiguration.bigQueryConfiguration().withMergeChangedPartitionsOnly(true).toBuilder()
+            .setSupportPartitionedTables(false)
+            .build();
+    MergeInfo mergeInfo =
+        MergeInfo.create(
+            "projectId",
+            ImmutableList.of("id"),
+            ImmutableList.of("timestamp"),
+            "metadata_deleteField",
+            stagingTable,
+            replicaTable,
+            mergeFields,
+            "job-id-dataset-table");
+
+    when(bigQuery.getTable(eq(replicaTable))).thenReturn(table);
+    when(table.getDefinition())
+        .thenReturn(
+            StandardTableDefinition.newBuilder()
+                .setTimePartitioning(
+                    TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                        .setField("timestamp")
+                        .build())
+                .build());
+    MergeInfo.setTableCache(new BigQueryTableCache(bigQuery));
+
+    String statement = mergeInfo.buildMergeStatement(cfg);
+    assertThat(statement)
+        .startsWith(
+            "BEGIN DECLARE _merge_min_partition DEFAULT (SELECT MIN(`timestamp`) FROM"
+                + " `projectId.dataset.staging_table` ); DECLARE _merge_max_partition DEFAULT"
+                + " (SELECT MAX(`timestamp`) FROM `projectId.dataset.staging_table` ); BEGIN"
+                + " TRANSACTION; MERGE");
+    assertThat(statement)
+        .contains(
+            "ON replica.id = staging.id AND (replica.`timestamp` BETWEEN _merge_min_partition AND"
+                + " _merge_max_partition OR replica.`timestamp` IS NULL) WHEN MATCHED");
+  }
+
+  @Test
+  public void buildMergeStatement_changedPartitionsOnlyIgnoresIngestionTimePartitioning() {
+    MergeInfo mergeInfo = buildSampleMergeInfo();
+    MergeConfiguration cfg =
+        MergeConfiguration.bigQueryConfiguration().withMergeChangedPartitionsOnly(true);
+
+    when(bigQuery.getTable(eq(mergeInfo.getReplicaTable()))).thenReturn(table);
+    when(table.getDefinition())
+        .thenReturn(
+            StandardTableDefinition.newBuilder()
+                .setSchema(Schema.of(Field.of("id", StandardSQLTypeName.STRING)))
+                .setTimePartitioning(TimePartitioning.of(TimePartitioning.Type.DAY))
+                .build());
+    MergeInfo.setTableCache(new BigQueryTableCache(bigQuery));
+
+    assertThat(mergeInfo.buildMergeStatement(cfg)).startsWith("BEGIN BEGIN TRANSACTION; MERGE");
+  }
+
   @Test
   public void getMergeFields_expectedResult() {
     MergeInfo mergeInfo = buildSampleMergeInfo();
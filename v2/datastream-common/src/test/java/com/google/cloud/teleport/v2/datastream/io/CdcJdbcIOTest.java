@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.datastream.io;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.teleport.v2.datastream.io.CdcJdbcIO.PreparedStatementFormatter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import javax.sql.DataSource;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.FlatMapElements;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test cases for the prepared statement writes of {@link CdcJdbcIO}. */
+@RunWith(JUnit4.class)
+public class CdcJdbcIOTest {
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  // The database of the running test; the write reaches it through a static provider function.
+  private static FakeDatabase database;
+
+  @Before
+  public void setUp() throws SQLException {
+    database = new FakeDatabase();
+  }
+
+  /** Tests that statements with the same SQL are sent as one batch, in order of first use. */
+  @Test
+  public void testPreparedStatementsAreGroupedBySql() {
+    write("INSERT a", "INSERT b", "UPDATE c", "INSERT d");
+
+    assertThat(database.executed)
+        .containsExactly("INSERT [INSERT a, INSERT b, INSERT d]", "UPDATE [UPDATE c]")
+        .inOrder();
+    assertThat(database.committed).containsExactly("INSERT a", "INSERT b", "INSERT d", "UPDATE c");
+    assertThat(database.rollbacks).isEqualTo(0);
+  }
+
+  /**
+   * Tests that the pending batches are flushed before a row is changed by another SQL, so that the
+   * changes to a row are applied in order.
+   */
+  @Test
+  public void testChangesToARowAreAppliedInOrder() {
+    write("INSERT a", "UPDATE a", "INSERT b", "DELETE a");
+
+    assertThat(database.executed)
+        .containsExactly(
+            "INSERT [INSERT a]", "INSERT [INSERT b]", "UPDATE [UPDATE a]", "DELETE [DELETE a]")
+        .inOrder();
+  }
+
+  /** Tests that a batch failing on a data error is split until the failing statement is skipped. */
+  @Test
+  public void testFailingStatementIsIsolatedAndSkipped() {
+    database.failWhen(
+        batch -> batch.contains("INSERT c") ? new SQLException("duplicate key", "23505") : null);
+
+    write("INSERT a", "INSERT b", "INSERT c", "INSERT d");
+
+    assertThat(database.executed)
+        .containsExactly("INSERT [INSERT a, INSERT b]", "INSERT [INSERT d]")
+        .inOrder();
+    assertThat(database.committed).containsExactly("INSERT a", "INSERT b", "INSERT d").inOrder();
+    // the whole batch, its second half and the failing statement on its own
+    assertThat(database.rollbacks).isEqualTo(3);
+  }
+
+  /** Tests that a batch failing on a transient error is retried as a whole. */
+  @Test
+  public void testTransientFailureIsRetried() {
+    List<Integer> attempts = new ArrayList<>();
+    database.failWhen(
+        batch -> {
+          attempts.add(batch.size());
+          return attempts.size() == 1
+              ? new SQLTransientConnectionException("connection reset")
+              : null;
+        });
+
+    write("INSERT a", "INSERT b");
+
+    assertThat(attempts).containsExactly(2, 2);
+    assertThat(database.committed).containsExactly("INSERT a", "INSERT b").inOrder();
+    assertThat(database.rollbacks).isEqualTo(1);
+  }
+
+  /** Tests that an error matching the retry strategy is retried rather than split. */
+  @Test
+  public void testRetryStrategyErrorIsRetried() {
+    List<Integer> attempts = new ArrayList<>();
+    database.failWhen(
+        batch -> {
+          attempts.add(batch.size());
+          return attempts.size() == 1 ? new SQLException("deadlock", "40001") : null;
+        });
+
+    write("INSERT a", "INSERT b");
+
+    assertThat(attempts).containsExactly(2, 2);
+    assertThat(database.committed).containsExactly("INSERT a", "INSERT b").inOrder();
+  }
+
+  /** Writes the statements in a single bundle, so that they form a single batch. */
+  private void write(String... statements) {
+    pipeline
+        .apply(Create.of(Collections.singletonList(Arrays.asList(statements))))
+        .apply(FlatMapElements.into(TypeDescriptors.strings()).via((List<String> list) -> list))
+        .apply(
+            CdcJdbcIO.<String>write()
+                .withDataSourceProviderFn(unused -> database.dataSource)
+                .withPreparedStatementFormatter(new FakeFormatter())
+                .withBatchSize(100));
+    pipeline.run();
+  }
+
+  /**
+   * Formats a statement "OPERATION row" as the SQL of its operation, with the statement itself as
+   * the only parameter.
+   */
+  private static class FakeFormatter implements PreparedStatementFormatter<String> {
+    @Override
+    public String formatPreparedStatement(String element) {
+      return element.split(" ")[0];
+    }
+
+    @Override
+    public void setParameters(String element, PreparedStatement preparedStatement)
+        throws SQLException {
+      preparedStatement.setString(1, element);
+    }
+
+    @Override
+    public String getRowKey(String element) {
+      return element.split(" ")[1];
+    }
+  }
+
+  /**
+   * A database of mocked JDBC objects which records the batches executed on its prepared
+   * statements, and the statements of the batches which were committed.
+   */
+  private static class FakeDatabase {
+    final DataSource dataSource = mock(DataSource.class);
+    // the committed batches, as their SQL followed by their statements
+    final List<String> executed = new ArrayList<>();
+    final List<String> committed = new ArrayList<>();
+    int rollbacks;
+
+    private final List<String> uncommittedBatches = new ArrayList<>();
+    private final List<String> uncommitted = new ArrayList<>();
+    private Function<List<String>, SQLException> failure = batch -> null;
+
+    FakeDatabase() throws SQLException {
+      Connection connection = mock(Connection.class);
+      when(dataSource.getConnection()).thenReturn(connection);
+      when(connection.createStatement()).thenReturn(mock(Statement.class));
+      when(connection.prepareStatement(anyString()))
+          .thenAnswer(invocation -> prepareStatement(invocation.getArgument(0)));
+      doAnswer(
+              invocation -> {
+                executed.addAll(uncommittedBatches);
+                committed.addAll(uncommitted);
+                uncommittedBatches.clear();
+                uncommitted.clear();
+                return null;
+              })
+          .when(connection)
+          .commit();
+      doAnswer(
+              invocation -> {
+                rollbacks++;
+                uncommittedBatches.clear();
+                uncommitted.clear();
+                return null;
+              })
+          .when(connection)
+          .rollback();
+    }
+
+    /** Fails the batches for which {@code failure} returns an exception. */
+    void failWhen(Function<List<String>, SQLException> failure) {
+      this.failure = failure;
+    }
+
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+      PreparedStatement preparedStatement = mock(PreparedStatement.class);
+      List<String> parameters = new ArrayList<>();
+      List<String> batch = new ArrayList<>();
+      doAnswer(
+              invocation -> {
+                parameters.add(invocation.getArgument(1));
+                return null;
+              })
+          .when(preparedStatement)
+          .setString(anyInt(), anyString());
+      doAnswer(
+              invocation -> {
+                batch.addAll(parameters);
+                parameters.clear();
+                return null;
+              })
+          .when(preparedStatement)
+          .addBatch();
+      when(preparedStatement.executeBatch())
+          .thenAnswer(
+              invocation -> {
+                List<String> statements = new ArrayList<>(batch);
+                batch.clear();
+                if (statements.isEmpty()) {
+                  return new int[0];
+                }
+                SQLException exception = failure.apply(statements);
+                if (exception != null) {
+                  throw exception;
+                }
+                uncommittedBatches.add(sql + " " + statements);
+                uncommitted.addAll(statements);
+                return new int[statements.size()];
+              });
+      return preparedStatement;
+    }
+  }
+}
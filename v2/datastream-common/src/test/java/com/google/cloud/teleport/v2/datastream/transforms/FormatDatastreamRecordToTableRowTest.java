@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.datastream.transforms;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.cloud.teleport.v2.transforms.BigQueryConverters;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for FormatDatastreamRecordToTableRow function. */
+@RunWith(JUnit4.class)
+public class FormatDatastreamRecordToTableRowTest {
+
+  private static final String EVENT_UUID_KEY = "_metadata_uuid";
+
+  @Test
+  public void testMatchesParsedJsonRecords() throws IOException, URISyntaxException {
+    assertMatchesParsedJsonRecords("avro_file_ut.avro");
+    assertMatchesParsedJsonRecords("mysql_numbers_test.avro");
+    assertMatchesParsedJsonRecords("mysql_people_test.avro");
+  }
+
+  @Test
+  public void testMatchesParsedJsonRecordsWithOptions() throws IOException, URISyntaxException {
+    FormatDatastreamRecordToJson jsonFormatter =
+        FormatDatastreamRecordToJson.create()
+            .withStreamName("my-stream")
+            .withLowercaseSourceColumns(true)
+            .withHashRowId(true);
+    FormatDatastreamRecordToTableRow tableRowFormatter =
+        FormatDatastreamRecordToTableRow.create()
+            .withStreamName("my-stream")
+            .withLowercaseSourceColumns(true)
+            .withHashRowId(true);
+
+    for (GenericRecord record : readRecords("avro_file_ut.avro")) {
+      TableRow expected =
+          BigQueryConverters.convertJsonToTableRow(jsonFormatter.apply(record).getPayload());
+      TableRow actual = tableRowFormatter.apply(record);
+      expected.remove(EVENT_UUID_KEY);
+      actual.remove(EVENT_UUID_KEY);
+      assertEquals(expected, actual);
+    }
+  }
+
+  private void assertMatchesParsedJsonRecords(String fileName)
+      throws IOException, URISyntaxException {
+    for (GenericRecord record : readRecords(fileName)) {
+      TableRow expected =
+          BigQueryConverters.convertJsonToTableRow(
+              FormatDatastreamRecordToJson.create().apply(record).getPayload());
+      TableRow actual = FormatDatastreamRecordToTableRow.create().apply(record);
+      expected.remove(EVENT_UUID_KEY);
+      actual.remove(EVENT_UUID_KEY);
+      assertEquals(expected, actual);
+    }
+  }
+
+  private DataFileReader<GenericRecord> readRecords(String fileName)
+      throws IOException, URISyntaxException {
+    URL resource =
+        getClass().getClassLoader().getResource("FormatDatastreamRecordToJsonTest/" + fileName);
+    return new DataFileReader<>(new File(resource.toURI()), new GenericDatumReader<>());
+  }
+}
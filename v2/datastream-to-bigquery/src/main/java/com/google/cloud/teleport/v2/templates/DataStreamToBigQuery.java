@@ -43,6 +43,7 @@ import com.google.cloud.teleport.v2.transforms.UDFTextTransformer.InputUDFToTabl
 import com.google.cloud.teleport.v2.utils.BigQueryIOUtils;
 import com.google.cloud.teleport.v2.values.FailsafeElement;
 import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -373,6 +374,71 @@ public class DataStreamToBigQuery {
     Boolean getUseStorageWriteApiAtLeastOnce();
 
     void setUseStorageWriteApiAtLeastOnce(Boolean value);
+
+    @TemplateParameter.Integer(
+        order = 21,
+        optional = true,
+        description = "Changed rows which trigger a merge.",
+        helpText =
+            "The number of changed rows after which a table is merged before mergeFrequencyMinutes"
+                + " elapses, no more often than every minMergeFrequencyMinutes. Tables without"
+                + " changes are not merged. Default is 0, which merges every table every"
+                + " mergeFrequencyMinutes.")
+    @Default.Integer(0)
+    Integer getMergeRowThreshold();
+
+    void setMergeRowThreshold(Integer value);
+
+    @TemplateParameter.Integer(
+        order = 22,
+        optional = true,
+        description = "The minimum number of minutes between merges for a given table",
+        helpText =
+            "The minimum number of minutes between merges for a given table. Only effective when"
+                + " mergeRowThreshold is set. Default is 5.")
+    @Default.Integer(5)
+    Integer getMinMergeFrequencyMinutes();
+
+    void setMinMergeFrequencyMinutes(Integer value);
+
+    @TemplateParameter.Boolean(
+        order = 23,
+        optional = true,
+        description = "Merge changed partitions only.",
+        helpText =
+            "Only scan the replica table partitions between the lowest and highest partitioning"
+                + " column values in the staging table when merging. Only use it when the"
+                + " partitioning column of a row never changes. Default is false.")
+    @Default.Boolean(false)
+    Boolean getMergeChangedPartitionsOnly();
+
+    void setMergeChangedPartitionsOnly(Boolean value);
+
+    @TemplateParameter.Integer(
+        order = 24,
+        optional = true,
+        description = "Initial DLQ retry backoff in minutes.",
+        helpText =
+            "The number of minutes a record read back from the retry DLQ is held after its DLQ"
+                + " file was written, doubled for each earlier retry of the record, so records"
+                + " that keep failing do not crowd out fresh ones. Default is 0, which retries"
+                + " records as soon as they are read.")
+    @Default.Integer(0)
+    Integer getDlqRetryBackoffMinutes();
+
+    void setDlqRetryBackoffMinutes(Integer value);
+
+    @TemplateParameter.Integer(
+        order = 25,
+        optional = true,
+        description = "Maximum DLQ retry backoff in minutes.",
+        helpText =
+            "The maximum number of minutes a retried record is held. Only effective when"
+                + " dlqRetryBackoffMinutes is set. Default is 60.")
+    @Default.Integer(60)
+    Integer getDlqMaxRetryBackoffMinutes();
+
+    void setDlqMaxRetryBackoffMinutes(Integer value);
   }
 
   /**
@@ -442,13 +508,15 @@ public class DataStreamToBigQuery {
 
     InputUDFToTableRow<String> failsafeTableRowTransformer =
         new InputUDFToTableRow<String>(
-            options.getJavascriptTextTransformGcsPath(),
-            options.getJavascriptTextTransformFunctionName(),
-            options.getJavascriptTextTransformReloadIntervalMinutes(),
-            options.getPythonTextTransformGcsPath(),
-            options.getPythonTextTransformFunctionName(),
-            options.getRuntimeRetries(),
-            FAILSAFE_ELEMENT_CODER);
+                options.getJavascriptTextTransformGcsPath(),
+                options.getJavascriptTextTransformFunctionName(),
+                options.getJavascriptTextTransformReloadIntervalMinutes(),
+                options.getPythonTextTransformGcsPath(),
+                options.getPythonTextTransformFunctionName(),
+                options.getRuntimeRetries(),
+                FAILSAFE_ELEMENT_CODER)
+            .withJavascriptTransformBatchSize(options.getJavascriptTextTransformBatchSize())
+            .withPythonTransformTimeoutSeconds(options.getPythonTextTransformTimeoutSeconds());
 
     StatefulRowCleaner statefulCleaner = StatefulRowCleaner.of();
 
@@ -458,23 +526,34 @@ public class DataStreamToBigQuery {
      *   b) Reconsume Dead Letter Queue data from GCS into JSON String FailsafeElements
      *     (dlqJsonRecords)
      *   c) Flatten DataStream and DLQ Streams (jsonRecords)
+     *
+     *   Without a UDF, Avro DataStream data is read straight into TableRows instead
+     *   (datastreamTableRows), and only DLQ data goes through JSON Strings.
      */
-    PCollection<FailsafeElement<String, String>> datastreamJsonRecords =
-        pipeline.apply(
-            new DataStreamIO(
-                    options.getStreamName(),
-                    options.getInputFilePattern(),
-                    options.getInputFileFormat(),
-                    options.getGcsPubSubSubscription(),
-                    options.getRfcStartDateTime())
-                .withFileReadConcurrency(options.getFileReadConcurrency()));
+    boolean readTableRows =
+        options.getInputFileFormat().equals(AVRO_SUFFIX)
+            && Strings.isNullOrEmpty(options.getJavascriptTextTransformGcsPath())
+            && Strings.isNullOrEmpty(options.getPythonTextTransformGcsPath());
+    DataStreamIO dataStreamIO =
+        new DataStreamIO(
+                options.getStreamName(),
+                options.getInputFilePattern(),
+                options.getInputFileFormat(),
+                options.getGcsPubSubSubscription(),
+                options.getRfcStartDateTime())
+            .withFileReadConcurrency(options.getFileReadConcurrency());
 
     // Elements sent to the Dead Letter Queue are to be reconsumed.
     // A DLQManager is to be created using PipelineOptions, and it is in charge
     // of building pieces of the DLQ.
     PCollection<FailsafeElement<String, String>> dlqJsonRecords =
         pipeline
-            .apply("DLQ Consumer/reader", dlqManager.dlqReconsumer(options.getDlqRetryMinutes()))
+            .apply(
+                "DLQ Consumer/reader",
+                dlqManager.dlqReconsumer(
+                    options.getDlqRetryMinutes(),
+                    options.getDlqRetryBackoffMinutes(),
+                    options.getDlqMaxRetryBackoffMinutes()))
             .apply(
                 "DLQ Consumer/cleaner",
                 ParDo.of(
@@ -488,10 +567,19 @@ public class DataStreamToBigQuery {
                     }))
             .setCoder(FAILSAFE_ELEMENT_CODER);
 
-    PCollection<FailsafeElement<String, String>> jsonRecords =
-        PCollectionList.of(datastreamJsonRecords)
-            .and(dlqJsonRecords)
-            .apply("Merge Datastream & DLQ", Flatten.pCollections());
+    PCollection<FailsafeElement<String, String>> jsonRecords;
+    PCollection<TableRow> datastreamTableRows = null;
+    if (readTableRows) {
+      jsonRecords = dlqJsonRecords;
+      datastreamTableRows = pipeline.apply(dataStreamIO.readTableRows());
+    } else {
+      PCollection<FailsafeElement<String, String>> datastreamJsonRecords =
+          pipeline.apply(dataStreamIO);
+      jsonRecords =
+          PCollectionList.of(datastreamJsonRecords)
+              .and(dlqJsonRecords)
+              .apply("Merge Datastream & DLQ", Flatten.pCollections());
+    }
 
     /*
      * Stage 2: Write JSON Strings to TableRow PCollectionTuple
@@ -501,10 +589,16 @@ public class DataStreamToBigQuery {
     PCollectionTuple tableRowRecords =
         jsonRecords.apply("UDF to TableRow/udf", failsafeTableRowTransformer);
 
+    PCollection<TableRow> tableRows = tableRowRecords.get(failsafeTableRowTransformer.transformOut);
+    if (readTableRows) {
+      tableRows =
+          PCollectionList.of(datastreamTableRows)
+              .and(tableRows)
+              .apply("Merge Datastream & DLQ", Flatten.pCollections());
+    }
+
     PCollectionTuple cleanedRows =
-        tableRowRecords
-            .get(failsafeTableRowTransformer.transformOut)
-            .apply("UDF to TableRow/Oracle Cleaner", statefulCleaner);
+        tableRows.apply("UDF to TableRow/Oracle Cleaner", statefulCleaner);
 
     PCollection<TableRow> shuffledTableRows =
         cleanedRows
@@ -578,7 +672,11 @@ public class DataStreamToBigQuery {
                       .withMergeWindowDuration(
                           Duration.standardMinutes(options.getMergeFrequencyMinutes()))
                       .withMergeConcurrency(options.getMergeConcurrency())
-                      .withPartitionRetention(options.getPartitionRetentionDays())));
+                      .withPartitionRetention(options.getPartitionRetentionDays())
+                      .withMergeRowThreshold(options.getMergeRowThreshold())
+                      .withMinMergeInterval(
+                          Duration.standardMinutes(options.getMinMergeFrequencyMinutes()))
+                      .withMergeChangedPartitionsOnly(options.getMergeChangedPartitionsOnly())));
     }
 
     /*
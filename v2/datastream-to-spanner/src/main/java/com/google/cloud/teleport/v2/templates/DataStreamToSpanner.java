@@ -407,6 +407,36 @@ public class DataStreamToSpanner {
     String getDlqGcsPubSubSubscription();
 
     void setDlqGcsPubSubSubscription(String value);
+
+    @TemplateParameter.Integer(
+        order = 25,
+        optional = true,
+        description = "Transaction batch size",
+        helpText =
+            "The maximum number of change events written to Cloud Spanner in one transaction. With"
+                + " values greater than 1, the shadow table rows of a batch are read together and"
+                + " the data and shadow table mutations are committed in a single transaction."
+                + " Defaults to 1.")
+    @Default.Integer(1)
+    Integer getTransactionBatchSize();
+
+    void setTransactionBatchSize(Integer value);
+
+    @TemplateParameter.Integer(
+        order = 26,
+        optional = true,
+        description = "Shadow sequence cache size",
+        helpText =
+            "The maximum number of primary keys per worker whose last written change event"
+                + " sequence is cached. When greater than 0, change events are reshuffled by"
+                + " primary key instead of randomly, and events older than the cached sequence are"
+                + " skipped without reading the shadow table. This saves a transaction for every"
+                + " event delivered more than once, e.g. when files are replayed or the retry DLQ"
+                + " is reconsumed. Defaults to 0, which disables the cache.")
+    @Default.Integer(0)
+    Integer getShadowSequenceCacheSize();
+
+    void setShadowSequenceCacheSize(Integer value);
   }
 
   private static void validateSourceType(Options options) {
@@ -559,14 +589,14 @@ public class DataStreamToSpanner {
       jsonRecords =
           PCollectionList.of(datastreamJsonRecords)
               .and(dlqJsonRecords)
-              .apply(Flatten.pCollections())
-              .apply("Reshuffle", Reshuffle.viaRandomKey());
+              .apply(Flatten.pCollections());
     } else {
       LOG.info("DLQ retry flow");
-      jsonRecords =
-          PCollectionList.of(dlqJsonRecords)
-              .apply(Flatten.pCollections())
-              .apply("Reshuffle", Reshuffle.viaRandomKey());
+      jsonRecords = PCollectionList.of(dlqJsonRecords).apply(Flatten.pCollections());
+    }
+    if (options.getShadowSequenceCacheSize() == null || options.getShadowSequenceCacheSize() <= 0) {
+      // With the shadow sequence cache, the writer reshuffles the records by primary key instead.
+      jsonRecords = jsonRecords.apply("Reshuffle", Reshuffle.viaRandomKey());
     }
     /*
      * Stage 2: Write records to Cloud Spanner
@@ -586,7 +616,9 @@ public class DataStreamToSpanner {
                 options.getShadowTablePrefix(),
                 options.getDatastreamSourceType(),
                 options.getRoundJsonDecimals(),
-                isRegularMode));
+                isRegularMode,
+                options.getTransactionBatchSize(),
+                options.getShadowSequenceCacheSize()));
     /*
      * Stage 3: Write failures to GCS Dead Letter Queue
      * a) Retryable errors are written to retry GCS Dead letter queue
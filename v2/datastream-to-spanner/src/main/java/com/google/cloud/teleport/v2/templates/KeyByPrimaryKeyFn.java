@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates;
+
+import static com.google.cloud.teleport.v2.templates.datastream.DatastreamConstants.EVENT_SCHEMA_KEY;
+import static com.google.cloud.teleport.v2.templates.datastream.DatastreamConstants.EVENT_TABLE_NAME_KEY;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.teleport.v2.spanner.ddl.Ddl;
+import com.google.cloud.teleport.v2.spanner.ddl.IndexColumn;
+import com.google.cloud.teleport.v2.spanner.ddl.Table;
+import com.google.cloud.teleport.v2.spanner.migrations.schema.NameAndCols;
+import com.google.cloud.teleport.v2.spanner.migrations.schema.Schema;
+import com.google.cloud.teleport.v2.spanner.migrations.schema.SourceTable;
+import com.google.cloud.teleport.v2.values.FailsafeElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollectionView;
+
+/**
+ * Keys change events by their source schema, table and primary key values, so that a reshuffle
+ * sends every event of a primary key to the same worker.
+ *
+ * <p>The key is only used for routing. Events whose primary key cannot be determined, e.g. tables
+ * with synthetic primary keys, are keyed by their payload.
+ */
+class KeyByPrimaryKeyFn
+    extends DoFn<FailsafeElement<String, String>, KV<String, FailsafeElement<String, String>>> {
+
+  private final PCollectionView<Ddl> ddlView;
+
+  // The mapping information read from the session file generated by HarbourBridge.
+  private final Schema schema;
+
+  // Jackson Object mapper.
+  private transient ObjectMapper mapper;
+
+  KeyByPrimaryKeyFn(PCollectionView<Ddl> ddlView, Schema schema) {
+    this.ddlView = ddlView;
+    this.schema = schema;
+  }
+
+  @Setup
+  public void setup() {
+    mapper = new ObjectMapper();
+  }
+
+  @ProcessElement
+  public void processElement(ProcessContext c) {
+    FailsafeElement<String, String> msg = c.element();
+    String key;
+    try {
+      key = getPrimaryKey(mapper.readTree(msg.getPayload()), c.sideInput(ddlView));
+    } catch (Exception e) {
+      // Invalid events are reported by the writer.
+      key = null;
+    }
+    if (key == null) {
+      key = Integer.toHexString(msg.getPayload().hashCode());
+    }
+    c.output(KV.of(key, msg));
+  }
+
+  String getPrimaryKey(JsonNode changeEvent, Ddl ddl) {
+    String tableName = changeEvent.get(EVENT_TABLE_NAME_KEY).asText();
+    List<String> keyColumns = getKeyColumns(tableName, ddl);
+    if (keyColumns.isEmpty()) {
+      return null;
+    }
+
+    StringBuilder key = new StringBuilder();
+    JsonNode schemaName = changeEvent.get(EVENT_SCHEMA_KEY);
+    key.append(schemaName == null ? "" : schemaName.asText()).append('.').append(tableName);
+    for (String keyColumn : keyColumns) {
+      JsonNode value = getField(changeEvent, keyColumn);
+      if (value == null) {
+        return null;
+      }
+      key.append('/').append(value.toString());
+    }
+    return key.toString();
+  }
+
+  private static JsonNode getField(JsonNode changeEvent, String fieldName) {
+    JsonNode value = changeEvent.get(fieldName);
+    if (value != null) {
+      return value;
+    }
+    // Change event field names are matched case-insensitively, as in ChangeEventConvertor.
+    Iterator<String> fieldNames = changeEvent.fieldNames();
+    while (fieldNames.hasNext()) {
+      String name = fieldNames.next();
+      if (name.equalsIgnoreCase(fieldName)) {
+        return changeEvent.get(name);
+      }
+    }
+    return null;
+  }
+
+  /** Returns the source primary key columns of a table, as named in change events. */
+  private List<String> getKeyColumns(String tableName, Ddl ddl) {
+    List<String> keyColumns = new ArrayList<>();
+    if (schema != null && !schema.isEmpty()) {
+      NameAndCols tableId = schema.getSrcToID().get(tableName);
+      SourceTable sourceTable =
+          tableId == null ? null : schema.getSrcSchema().get(tableId.getName());
+      if (sourceTable != null) {
+        keyColumns.addAll(sourceTable.getPrimaryKeySet());
+        Collections.sort(keyColumns);
+      }
+      return keyColumns;
+    }
+
+    Table table = ddl.table(tableName);
+    if (table != null) {
+      for (IndexColumn keyColumn : table.primaryKeys()) {
+        keyColumns.add(keyColumn.name().toLowerCase());
+      }
+    }
+    return keyColumns;
+  }
+}
@@ -26,9 +26,13 @@ import com.google.common.collect.ImmutableMap;
 import java.util.Arrays;
 import java.util.Map;
 import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.Reshuffle;
+import org.apache.beam.sdk.transforms.Values;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionTuple;
 import org.apache.beam.sdk.values.PCollectionView;
@@ -87,6 +91,12 @@ public class SpannerTransactionWriter
   /* The run mode, whether it is regular or retry. */
   private final Boolean isRegularRunMode;
 
+  /* The maximum number of change events written in one transaction. */
+  private final Integer transactionBatchSize;
+
+  /* The maximum number of primary keys in the shadow sequence cache, 0 to disable it. */
+  private final Integer shadowSequenceCacheSize;
+
   public SpannerTransactionWriter(
       SpannerConfig spannerConfig,
       PCollectionView<Ddl> ddlView,
@@ -95,7 +105,9 @@ public class SpannerTransactionWriter
       String shadowTablePrefix,
       String sourceType,
       Boolean roundJsonDecimals,
-      Boolean isRegularRunMode) {
+      Boolean isRegularRunMode,
+      Integer transactionBatchSize,
+      Integer shadowSequenceCacheSize) {
     Preconditions.checkNotNull(spannerConfig);
     this.spannerConfig = spannerConfig;
     this.ddlView = ddlView;
@@ -105,13 +117,28 @@ public class SpannerTransactionWriter
     this.sourceType = sourceType;
     this.roundJsonDecimals = roundJsonDecimals;
     this.isRegularRunMode = isRegularRunMode;
+    this.transactionBatchSize = transactionBatchSize;
+    this.shadowSequenceCacheSize = shadowSequenceCacheSize;
   }
 
   @Override
   public SpannerTransactionWriter.Result expand(
       PCollection<FailsafeElement<String, String>> input) {
+    PCollection<FailsafeElement<String, String>> changeEvents = input;
+    if (shadowSequenceCacheSize != null && shadowSequenceCacheSize > 0) {
+      // Send the events of a primary key to the same worker, so its sequence cache is hit.
+      changeEvents =
+          input
+              .apply(
+                  "Key by primary key",
+                  ParDo.of(new KeyByPrimaryKeyFn(ddlView, schema)).withSideInputs(ddlView))
+              .setCoder(KvCoder.of(StringUtf8Coder.of(), input.getCoder()))
+              .apply("Reshuffle by primary key", Reshuffle.of())
+              .apply("Drop primary key", Values.create());
+    }
+
     PCollectionTuple spannerWriteResults =
-        input.apply(
+        changeEvents.apply(
             "Write Mutations",
             ParDo.of(
                     new SpannerTransactionWriterDoFn(
@@ -122,7 +149,9 @@ public class SpannerTransactionWriter
                         shadowTablePrefix,
                         sourceType,
                         roundJsonDecimals,
-                        isRegularRunMode))
+                        isRegularRunMode,
+                        transactionBatchSize,
+                        shadowSequenceCacheSize))
                 .withSideInputs(ddlView)
                 .withOutputTags(
                     SUCCESSFUL_EVENT_TAG,
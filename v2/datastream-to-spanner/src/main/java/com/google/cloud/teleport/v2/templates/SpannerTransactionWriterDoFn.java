@@ -25,12 +25,15 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.Options;
 import com.google.cloud.spanner.ResultSet;
 import com.google.cloud.spanner.SpannerException;
+import com.google.cloud.spanner.SpannerExceptionFactory;
 import com.google.cloud.spanner.Statement;
+import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
 import com.google.cloud.teleport.v2.spanner.ddl.Ddl;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.NameAndCols;
@@ -50,13 +53,21 @@ import com.google.cloud.teleport.v2.templates.datastream.ChangeEventSequenceFact
 import com.google.cloud.teleport.v2.templates.datastream.ChangeEventTypeConvertor;
 import com.google.cloud.teleport.v2.templates.datastream.InvalidChangeEventException;
 import com.google.cloud.teleport.v2.values.FailsafeElement;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.apache.beam.runners.dataflow.options.DataflowWorkerHarnessOptions;
@@ -65,9 +76,13 @@ import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.values.PCollectionView;
 import org.apache.beam.sdk.values.TupleTag;
+import org.apache.commons.lang3.tuple.Pair;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,6 +93,23 @@ import org.slf4j.LoggerFactory;
  * specifies the commit order) for each primary key. Shadow tables are consulted before actual
  * writes to Cloud Spanner to preserve the correctness and consistency of data.
  *
+ * <p>When the transaction batch size is greater than 1, change events of a bundle are instead
+ * written in batches: a single transaction reads the shadow rows of every primary key in the batch,
+ * skips stale events and commits the remaining mutations together. Only the latest event of each
+ * primary key in a batch is applied. If the batched transaction fails, its events are written one
+ * transaction at a time so that errors are attributed to the right events. Outputs of batched
+ * events are emitted when the bundle finishes.
+ *
+ * <p>When the shadow sequence cache is enabled, the last sequence known to be recorded in the
+ * shadow table is cached per primary key. Events no more recent than the cached sequence are
+ * skipped without reading the shadow table. As shadow table sequences only increase, a cached
+ * sequence is a lower bound of the recorded one, so other events still read the shadow table. The
+ * cache saves a transaction for every stale event, which is worthwhile when the same events are
+ * delivered more than once, e.g. when Datastream replays files, backfill and change data capture
+ * overlap, or the retry DLQ is reconsumed; it saves nothing when events arrive in order exactly
+ * once. A cache is shared by the instances of this DoFn on a worker which write to the same
+ * database with the same cache size.
+ *
  * <p>Change events written successfully will be pushed onto the primary output with their commit
  * timestamps.
  *
@@ -140,6 +172,82 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
   /* The run mode, whether it is regular or retry. */
   private final Boolean isRegularRunMode;
 
+  /* The maximum number of change events written in one transaction. */
+  private final Integer transactionBatchSize;
+
+  private final Counter batchFallbacks =
+      Metrics.counter(SpannerTransactionWriterDoFn.class, "Batched transaction fallbacks");
+
+  /* The maximum number of primary keys in the shadow sequence cache, 0 to disable it. */
+  private final Integer shadowSequenceCacheSize;
+
+  private final Counter shadowSequenceCacheHits =
+      Metrics.counter(SpannerTransactionWriterDoFn.class, "Stale events skipped by sequence cache");
+
+  // The shadow sequence caches of a worker, by database and cache size.
+  private static final ConcurrentMap<
+          String, Cache<Pair<String, com.google.cloud.spanner.Key>, ChangeEventSequence>>
+      SHADOW_SEQUENCE_CACHES = new ConcurrentHashMap<>();
+
+  private transient Cache<Pair<String, com.google.cloud.spanner.Key>, ChangeEventSequence>
+      shadowSequenceCache;
+
+  // Change events waiting to be written in a batched transaction.
+  private transient List<BufferedChangeEvent> batch;
+
+  // Outputs of batched change events, emitted when the bundle finishes.
+  private transient List<BufferedOutput<?>> bufferedOutputs;
+
+  private transient String bundleTxnTag;
+
+  /** A converted change event waiting to be written in a batched transaction. */
+  private static class BufferedChangeEvent {
+    private final FailsafeElement<String, String> msg;
+    private final ChangeEventContext changeEventContext;
+    private final ChangeEventSequence changeEventSequence;
+    private final boolean isRetryRecord;
+    private final Instant timestamp;
+    private final BoundedWindow window;
+
+    BufferedChangeEvent(
+        FailsafeElement<String, String> msg,
+        ChangeEventContext changeEventContext,
+        ChangeEventSequence changeEventSequence,
+        boolean isRetryRecord,
+        Instant timestamp,
+        BoundedWindow window) {
+      this.msg = msg;
+      this.changeEventContext = changeEventContext;
+      this.changeEventSequence = changeEventSequence;
+      this.isRetryRecord = isRetryRecord;
+      this.timestamp = timestamp;
+      this.window = window;
+    }
+
+    Pair<String, com.google.cloud.spanner.Key> shadowKey() {
+      return SpannerTransactionWriterDoFn.shadowKey(changeEventContext);
+    }
+  }
+
+  /** An output of a batched change event, with the timestamp and window of the event. */
+  private static class BufferedOutput<T> {
+    private final TupleTag<T> tag;
+    private final T value;
+    private final Instant timestamp;
+    private final BoundedWindow window;
+
+    BufferedOutput(TupleTag<T> tag, T value, Instant timestamp, BoundedWindow window) {
+      this.tag = tag;
+      this.value = value;
+      this.timestamp = timestamp;
+      this.window = window;
+    }
+
+    void output(FinishBundleContext context) {
+      context.output(tag, value, timestamp, window);
+    }
+  }
+
   SpannerTransactionWriterDoFn(
       SpannerConfig spannerConfig,
       PCollectionView<Ddl> ddlView,
@@ -148,7 +256,9 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
       String shadowTablePrefix,
       String sourceType,
       Boolean roundJsonDecimals,
-      Boolean isRegularRunMode) {
+      Boolean isRegularRunMode,
+      Integer transactionBatchSize,
+      Integer shadowSequenceCacheSize) {
     Preconditions.checkNotNull(spannerConfig);
     this.spannerConfig = spannerConfig;
     this.ddlView = ddlView;
@@ -159,6 +269,8 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
     this.sourceType = sourceType;
     this.roundJsonDecimals = roundJsonDecimals;
     this.isRegularRunMode = isRegularRunMode;
+    this.transactionBatchSize = transactionBatchSize;
+    this.shadowSequenceCacheSize = shadowSequenceCacheSize;
   }
 
   /** Setup function connects to Cloud Spanner. */
@@ -167,6 +279,33 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
     spannerAccessor = SpannerAccessor.getOrCreate(spannerConfig);
     mapper = new ObjectMapper();
     mapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    if (shadowSequenceCacheSize != null && shadowSequenceCacheSize > 0) {
+      shadowSequenceCache = getShadowSequenceCache(spannerConfig, shadowSequenceCacheSize);
+    }
+  }
+
+  /**
+   * Returns the shadow sequence cache of the worker for the database of {@code spannerConfig},
+   * creating it with the given size. Caches are not shared across databases, as the same shadow
+   * table and primary key may exist in several of them.
+   */
+  @VisibleForTesting
+  static Cache<Pair<String, com.google.cloud.spanner.Key>, ChangeEventSequence>
+      getShadowSequenceCache(SpannerConfig spannerConfig, int size) {
+    String cacheId =
+        String.join(
+            "/",
+            valueOf(spannerConfig.getHost()),
+            valueOf(spannerConfig.getProjectId()),
+            valueOf(spannerConfig.getInstanceId()),
+            valueOf(spannerConfig.getDatabaseId()),
+            String.valueOf(size));
+    return SHADOW_SEQUENCE_CACHES.computeIfAbsent(
+        cacheId, id -> CacheBuilder.newBuilder().maximumSize(size).build());
+  }
+
+  private static String valueOf(ValueProvider<String> value) {
+    return value == null ? "" : String.valueOf(value.get());
   }
 
   /** Teardown function disconnects from the Cloud Spanner. */
@@ -175,8 +314,24 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
     spannerAccessor.close();
   }
 
+  @StartBundle
+  public void startBundle(StartBundleContext c) {
+    batch = new ArrayList<>();
+    bufferedOutputs = new ArrayList<>();
+    bundleTxnTag = getTxnTag(c.getPipelineOptions());
+  }
+
+  @FinishBundle
+  public void finishBundle(FinishBundleContext c) {
+    writeBatch();
+    for (BufferedOutput<?> output : bufferedOutputs) {
+      output.output(c);
+    }
+    bufferedOutputs.clear();
+  }
+
   @ProcessElement
-  public void processElement(ProcessContext c) {
+  public void processElement(ProcessContext c, BoundedWindow window) {
     FailsafeElement<String, String> msg = c.element();
     Ddl ddl = c.sideInput(ddlView);
     processedEvents.inc();
@@ -210,33 +365,23 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
           ChangeEventSequenceFactory.createChangeEventSequenceFromChangeEventContext(
               changeEventContext);
 
-      // Start transaction
-      spannerAccessor
-          .getDatabaseClient()
-          .readWriteTransaction(
-              Options.tag(getTxnTag(c.getPipelineOptions())),
-              Options.priority(spannerConfig.getRpcPriority().get()))
-          .run(
-              (TransactionCallable<Void>)
-                  transaction -> {
-
-                    // Sequence information for the last change event.
-                    ChangeEventSequence previousChangeEventSequence =
-                        ChangeEventSequenceFactory.createChangeEventSequenceFromShadowTable(
-                            transaction, changeEventContext);
-
-                    /* There was a previous event recorded with a greater sequence information
-                     * than current. Hence skip the current event.
-                     */
-                    if (previousChangeEventSequence != null
-                        && previousChangeEventSequence.compareTo(currentChangeEventSequence) >= 0) {
-                      return null;
-                    }
+      if (transactionBatchSize != null && transactionBatchSize > 1) {
+        batch.add(
+            new BufferedChangeEvent(
+                msg,
+                changeEventContext,
+                currentChangeEventSequence,
+                isRetryRecord,
+                c.timestamp(),
+                window));
+        if (batch.size() >= transactionBatchSize) {
+          writeBatch();
+        }
+        return;
+      }
 
-                    // Apply shadow and data table mutations.
-                    transaction.buffer(changeEventContext.getMutations());
-                    return null;
-                  });
+      writeChangeEvent(
+          getTxnTag(c.getPipelineOptions()), changeEventContext, currentChangeEventSequence);
       com.google.cloud.Timestamp timestamp = com.google.cloud.Timestamp.now();
       c.output(timestamp);
       successfulEvents.inc();
@@ -283,6 +428,218 @@ class SpannerTransactionWriterDoFn extends DoFn<FailsafeElement<String, String>,
     }
   }
 
+  /** Writes a single change event in its own transaction, unless its shadow row is newer. */
+  private void writeChangeEvent(
+      String txnTag,
+      ChangeEventContext changeEventContext,
+      ChangeEventSequence currentChangeEventSequence) {
+    if (isKnownStale(changeEventContext, currentChangeEventSequence)) {
+      shadowSequenceCacheHits.inc();
+      return;
+    }
+
+    // Start transaction
+    ChangeEventSequence recordedChangeEventSequence =
+        spannerAccessor
+            .getDatabaseClient()
+            .readWriteTransaction(
+                Options.tag(txnTag), Options.priority(spannerConfig.getRpcPriority().get()))
+            .run(
+                (TransactionCallable<ChangeEventSequence>)
+                    transaction -> {
+
+                      // Sequence information for the last change event.
+                      ChangeEventSequence previousChangeEventSequence =
+                          ChangeEventSequenceFactory.createChangeEventSequenceFromShadowTable(
+                              transaction, changeEventContext);
+
+                      /* There was a previous event recorded with a greater sequence information
+                       * than current. Hence skip the current event.
+                       */
+                      if (previousChangeEventSequence != null
+                          && previousChangeEventSequence.compareTo(currentChangeEventSequence)
+                              >= 0) {
+                        return previousChangeEventSequence;
+                      }
+
+                      // Apply shadow and data table mutations.
+                      transaction.buffer(changeEventContext.getMutations());
+                      return currentChangeEventSequence;
+                    });
+    cacheSequence(changeEventContext, recordedChangeEventSequence);
+  }
+
+  /**
+   * Writes the buffered change events in one transaction. Events superseded by a later event for
+   * the same primary key in the batch are not applied, like events older than their shadow row. If
+   * the transaction fails, every event is written again in its own transaction.
+   */
+  private void writeBatch() {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<BufferedChangeEvent> events = batch;
+    batch = new ArrayList<>();
+
+    Map<Pair<String, com.google.cloud.spanner.Key>, BufferedChangeEvent> latestEvents =
+        new LinkedHashMap<>();
+    for (BufferedChangeEvent event : events) {
+      latestEvents.merge(
+          event.shadowKey(),
+          event,
+          (previous, current) ->
+              current.changeEventSequence.compareTo(previous.changeEventSequence) > 0
+                  ? current
+                  : previous);
+    }
+    List<BufferedChangeEvent> eventsToApply = new ArrayList<>();
+    for (BufferedChangeEvent event : latestEvents.values()) {
+      if (isKnownStale(event.changeEventContext, event.changeEventSequence)) {
+        shadowSequenceCacheHits.inc();
+      } else {
+        eventsToApply.add(event);
+      }
+    }
+    // Sequence recorded in the shadow table for each event to apply, once committed.
+    ChangeEventSequence[] recordedSequences = new ChangeEventSequence[eventsToApply.size()];
+
+    try {
+      if (!eventsToApply.isEmpty()) {
+        spannerAccessor
+            .getDatabaseClient()
+            .readWriteTransaction(
+                Options.tag(bundleTxnTag), Options.priority(spannerConfig.getRpcPriority().get()))
+            .run(
+                (TransactionCallable<Void>)
+                    transaction -> {
+                      // Read all shadow rows concurrently before comparing sequences.
+                      List<ApiFuture<Struct>> shadowRows = new ArrayList<>(eventsToApply.size());
+                      for (BufferedChangeEvent event : eventsToApply) {
+                        shadowRows.add(
+                            ChangeEventSequenceFactory.readShadowTableRowAsync(
+                                transaction, event.changeEventContext));
+                      }
+
+                      for (int i = 0; i < eventsToApply.size(); i++) {
+                        BufferedChangeEvent event = eventsToApply.get(i);
+                        ChangeEventSequence previousChangeEventSequence =
+                            ChangeEventSequenceFactory.createChangeEventSequenceFromShadowRow(
+                                event.changeEventContext, getShadowRow(shadowRows.get(i)));
+
+                        // Skip events older than the last event recorded for their primary key.
+                        if (previousChangeEventSequence != null
+                            && previousChangeEventSequence.compareTo(event.changeEventSequence)
+                                >= 0) {
+                          recordedSequences[i] = previousChangeEventSequence;
+                          continue;
+                        }
+                        transaction.buffer(event.changeEventContext.getMutations());
+                        recordedSequences[i] = event.changeEventSequence;
+                      }
+                      return null;
+                    });
+        for (int i = 0; i < eventsToApply.size(); i++) {
+          cacheSequence(eventsToApply.get(i).changeEventContext, recordedSequences[i]);
+        }
+      }
+      com.google.cloud.Timestamp timestamp = com.google.cloud.Timestamp.now();
+      for (BufferedChangeEvent event : events) {
+        bufferSuccess(event, timestamp);
+      }
+    } catch (SpannerException | IllegalStateException ex) {
+      LOG.warn(
+          "Batched transaction of {} change events failed, writing them one at a time.",
+          events.size(),
+          ex);
+      batchFallbacks.inc();
+      for (BufferedChangeEvent event : events) {
+        writeBufferedChangeEvent(event);
+      }
+    }
+  }
+
+  private static Pair<String, com.google.cloud.spanner.Key> shadowKey(
+      ChangeEventContext changeEventContext) {
+    return Pair.of(changeEventContext.getShadowTable(), changeEventContext.getPrimaryKey());
+  }
+
+  /** Whether the shadow table is known to record a sequence at least as recent as the event's. */
+  private boolean isKnownStale(
+      ChangeEventContext changeEventContext, ChangeEventSequence changeEventSequence) {
+    if (shadowSequenceCache == null) {
+      return false;
+    }
+    ChangeEventSequence cachedSequence =
+        shadowSequenceCache.getIfPresent(shadowKey(changeEventContext));
+    return cachedSequence != null && cachedSequence.compareTo(changeEventSequence) >= 0;
+  }
+
+  /** Caches a sequence committed to the shadow table, unless a more recent one is cached. */
+  private void cacheSequence(
+      ChangeEventContext changeEventContext, ChangeEventSequence recordedSequence) {
+    if (shadowSequenceCache == null || recordedSequence == null) {
+      return;
+    }
+    shadowSequenceCache
+        .asMap()
+        .merge(
+            shadowKey(changeEventContext),
+            recordedSequence,
+            (cached, recorded) -> recorded.compareTo(cached) > 0 ? recorded : cached);
+  }
+
+  private static Struct getShadowRow(ApiFuture<Struct> shadowRow) {
+    try {
+      return shadowRow.get();
+    } catch (ExecutionException e) {
+      throw SpannerExceptionFactory.asSpannerException(e.getCause());
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+  }
+
+  /** Writes a buffered change event in its own transaction, as when batching is disabled. */
+  private void writeBufferedChangeEvent(BufferedChangeEvent event) {
+    try {
+      writeChangeEvent(bundleTxnTag, event.changeEventContext, event.changeEventSequence);
+      bufferSuccess(event, com.google.cloud.Timestamp.now());
+    } catch (SpannerException | IllegalStateException ex) {
+      // Errors when writing to Cloud Spanner are retryable, see processElement.
+      bufferError(event, ex, SpannerTransactionWriter.RETRYABLE_ERROR_TAG);
+      // do not increment the retry error count if this was retry attempt
+      if (!event.isRetryRecord) {
+        retryableErrors.inc();
+      }
+    } catch (Exception e) {
+      // Any other errors are considered severe and not retryable.
+      bufferError(event, e, SpannerTransactionWriter.PERMANENT_ERROR_TAG);
+      failedEvents.inc();
+    }
+  }
+
+  private void bufferSuccess(BufferedChangeEvent event, com.google.cloud.Timestamp timestamp) {
+    bufferedOutputs.add(
+        new BufferedOutput<>(
+            SpannerTransactionWriter.SUCCESSFUL_EVENT_TAG,
+            timestamp,
+            event.timestamp,
+            event.window));
+    successfulEvents.inc();
+
+    // decrement the retry error count if this was retry attempt
+    if (isRegularRunMode && event.isRetryRecord) {
+      retryableErrors.dec();
+    }
+  }
+
+  private void bufferError(
+      BufferedChangeEvent event, Exception e, TupleTag<FailsafeElement<String, String>> errorTag) {
+    // Making a copy, as the input must not be mutated.
+    FailsafeElement<String, String> output = FailsafeElement.of(event.msg);
+    output.setErrorMessage(e.getMessage());
+    bufferedOutputs.add(new BufferedOutput<>(errorTag, output, event.timestamp, event.window));
+  }
+
   void verifyTableInSession(String tableName)
       throws IllegalArgumentException, DroppedTableException {
     if (!schema.getSrcToID().containsKey(tableName)) {
@@ -16,7 +16,10 @@
 package com.google.cloud.teleport.v2.templates.datastream;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.TransactionContext;
+import java.util.List;
 
 /**
  * Factory classes for ChangeEventSequence classes which provides methods for 1) creating
@@ -83,4 +86,53 @@ public class ChangeEventSequenceFactory {
     }
     throw new InvalidChangeEventException("Unsupported source database: " + sourceType);
   }
+
+  /*
+   * Starts reading the shadow table row for the primary key of a change event, without waiting
+   * for the result. Several rows can be read this way within one transaction.
+   */
+  public static ApiFuture<Struct> readShadowTableRowAsync(
+      final TransactionContext transactionContext, final ChangeEventContext changeEventContext)
+      throws InvalidChangeEventException {
+    return transactionContext.readRowAsync(
+        changeEventContext.getShadowTable(),
+        changeEventContext.getPrimaryKey(),
+        getShadowTableColumns(getSourceType(changeEventContext.getChangeEvent())));
+  }
+
+  /*
+   * Create a ChangeEventSequence object for an earlier event from a shadow table row read with
+   * readShadowTableRowAsync.
+   */
+  public static ChangeEventSequence createChangeEventSequenceFromShadowRow(
+      final ChangeEventContext changeEventContext, final Struct row)
+      throws ChangeEventSequenceCreationException, InvalidChangeEventException {
+
+    String sourceType = getSourceType(changeEventContext.getChangeEvent());
+
+    try {
+      if (DatastreamConstants.MYSQL_SOURCE_TYPE.equals(sourceType)) {
+        return MySqlChangeEventSequence.createFromShadowRow(row);
+      } else if (DatastreamConstants.ORACLE_SOURCE_TYPE.equals(sourceType)) {
+        return OracleChangeEventSequence.createFromShadowRow(row);
+      } else if (DatastreamConstants.POSTGRES_SOURCE_TYPE.equals(sourceType)) {
+        return PostgresChangeEventSequence.createFromShadowRow(row);
+      }
+    } catch (Exception e) {
+      throw new ChangeEventSequenceCreationException(e);
+    }
+    throw new InvalidChangeEventException("Unsupported source database: " + sourceType);
+  }
+
+  private static List<String> getShadowTableColumns(String sourceType)
+      throws InvalidChangeEventException {
+    if (DatastreamConstants.MYSQL_SOURCE_TYPE.equals(sourceType)) {
+      return MySqlChangeEventSequence.getShadowTableColumns();
+    } else if (DatastreamConstants.ORACLE_SOURCE_TYPE.equals(sourceType)) {
+      return OracleChangeEventSequence.getShadowTableColumns();
+    } else if (DatastreamConstants.POSTGRES_SOURCE_TYPE.equals(sourceType)) {
+      return PostgresChangeEventSequence.getShadowTableColumns();
+    }
+    throw new InvalidChangeEventException("Unsupported source database: " + sourceType);
+  }
 }
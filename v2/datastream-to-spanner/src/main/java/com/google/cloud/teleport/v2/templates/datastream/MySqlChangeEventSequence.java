@@ -93,27 +93,38 @@ class MySqlChangeEventSequence extends ChangeEventSequence {
       throws ChangeEventSequenceCreationException {
 
     try {
-      // Read columns from shadow table
-      List<String> readColumnList =
-          DatastreamConstants.MYSQL_SORT_ORDER.values().stream()
-              .map(p -> p.getLeft())
-              .collect(Collectors.toList());
-      Struct row = transactionContext.readRow(shadowTable, primaryKey, readColumnList);
-
-      // This is the first event for the primary key and hence the latest event.
-      if (row == null) {
-        return null;
-      }
-
-      return new MySqlChangeEventSequence(
-          row.getLong(readColumnList.get(0)),
-          row.getString(readColumnList.get(1)),
-          row.getLong(readColumnList.get(2)));
+      Struct row = transactionContext.readRow(shadowTable, primaryKey, getShadowTableColumns());
+      return createFromShadowRow(row);
     } catch (Exception e) {
       throw new ChangeEventSequenceCreationException(e);
     }
   }
 
+  /*
+   * Returns the shadow table columns holding the sequence information.
+   */
+  static List<String> getShadowTableColumns() {
+    return DatastreamConstants.MYSQL_SORT_ORDER.values().stream()
+        .map(p -> p.getLeft())
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * Creates a MySqlChangeEventSequence from a row read from a shadow table.
+   */
+  static MySqlChangeEventSequence createFromShadowRow(Struct row) {
+    // This is the first event for the primary key and hence the latest event.
+    if (row == null) {
+      return null;
+    }
+
+    List<String> readColumnList = getShadowTableColumns();
+    return new MySqlChangeEventSequence(
+        row.getLong(readColumnList.get(0)),
+        row.getString(readColumnList.get(1)),
+        row.getLong(readColumnList.get(2)));
+  }
+
   Long getTimestamp() {
     return timestamp;
   }
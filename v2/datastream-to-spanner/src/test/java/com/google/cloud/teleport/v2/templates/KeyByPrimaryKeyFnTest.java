@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates;
+
+import static com.google.cloud.teleport.v2.templates.SpannerTransactionWriterDoFnTest.getShardedSchemaObject;
+import static com.google.cloud.teleport.v2.templates.SpannerTransactionWriterDoFnTest.parseChangeEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.cloud.teleport.v2.spanner.ddl.Ddl;
+import com.google.cloud.teleport.v2.spanner.migrations.schema.Schema;
+import com.google.cloud.teleport.v2.templates.datastream.DatastreamConstants;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/** Unit tests for {@link KeyByPrimaryKeyFn}. */
+public class KeyByPrimaryKeyFnTest {
+
+  private static Ddl getTestDdl() {
+    return Ddl.builder()
+        .createTable("Users")
+        .column("id")
+        .int64()
+        .endColumn()
+        .column("name")
+        .string()
+        .max()
+        .endColumn()
+        .primaryKey()
+        .asc("id")
+        .end()
+        .endTable()
+        .build();
+  }
+
+  @Test
+  public void keysEventsOfTheSamePrimaryKeyTogether() {
+    KeyByPrimaryKeyFn keyByPrimaryKeyFn = new KeyByPrimaryKeyFn(null, new Schema());
+    JSONObject changeEvent = new JSONObject();
+    changeEvent.put(DatastreamConstants.EVENT_TABLE_NAME_KEY, "Users");
+    changeEvent.put(DatastreamConstants.EVENT_SCHEMA_KEY, "db");
+    changeEvent.put("ID", 1);
+    changeEvent.put("name", "A");
+    String key =
+        keyByPrimaryKeyFn.getPrimaryKey(parseChangeEvent(changeEvent.toString()), getTestDdl());
+
+    changeEvent.put("name", "B");
+    assertEquals(
+        key,
+        keyByPrimaryKeyFn.getPrimaryKey(parseChangeEvent(changeEvent.toString()), getTestDdl()));
+
+    changeEvent.put("ID", 2);
+    assertNotEquals(
+        key,
+        keyByPrimaryKeyFn.getPrimaryKey(parseChangeEvent(changeEvent.toString()), getTestDdl()));
+  }
+
+  @Test
+  public void keysEventsBySourcePrimaryKeyWithSessionFile() {
+    KeyByPrimaryKeyFn keyByPrimaryKeyFn = new KeyByPrimaryKeyFn(null, getShardedSchemaObject());
+    JSONObject changeEvent = new JSONObject();
+    changeEvent.put(DatastreamConstants.EVENT_TABLE_NAME_KEY, "cart");
+    changeEvent.put(DatastreamConstants.EVENT_SCHEMA_KEY, "db_01");
+    changeEvent.put("product_id", "A");
+    changeEvent.put("user_id", "B");
+    changeEvent.put("quantity", 1);
+
+    assertEquals(
+        "db_01.cart/\"A\"/\"B\"",
+        keyByPrimaryKeyFn.getPrimaryKey(parseChangeEvent(changeEvent.toString()), null));
+  }
+
+  @Test
+  public void cannotKeyEventsWithoutPrimaryKey() {
+    KeyByPrimaryKeyFn keyByPrimaryKeyFn = new KeyByPrimaryKeyFn(null, getShardedSchemaObject());
+    JSONObject changeEvent = new JSONObject();
+    changeEvent.put(DatastreamConstants.EVENT_TABLE_NAME_KEY, "people");
+    changeEvent.put("name", "A");
+
+    assertNull(keyByPrimaryKeyFn.getPrimaryKey(parseChangeEvent(changeEvent.toString()), null));
+  }
+}
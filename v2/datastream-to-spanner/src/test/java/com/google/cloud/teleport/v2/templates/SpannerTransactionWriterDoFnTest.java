@@ -16,6 +16,9 @@
 package com.google.cloud.teleport.v2.templates;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -24,6 +27,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.spanner.DatabaseClient;
+import com.google.cloud.spanner.Key;
 import com.google.cloud.spanner.ReadContext;
 import com.google.cloud.spanner.ResultSet;
 import com.google.cloud.spanner.Statement;
@@ -39,11 +43,14 @@ import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerColumnType;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerTable;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SyntheticPKey;
 import com.google.cloud.teleport.v2.spanner.migrations.transformation.TransformationContext;
+import com.google.cloud.teleport.v2.templates.datastream.ChangeEventSequence;
 import com.google.cloud.teleport.v2.templates.datastream.DatastreamConstants;
+import com.google.common.cache.Cache;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
+import org.apache.commons.lang3.tuple.Pair;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
@@ -82,12 +89,49 @@ public class SpannerTransactionWriterDoFnTest {
         .thenReturn("{\"a\": 1.3542, \"b\": {\"c\": 48.198136676310106}}");
   }
 
+  @Test
+  public void shadowSequenceCacheIsSharedPerDatabaseAndSize() {
+    SpannerConfig database1 =
+        SpannerConfig.create()
+            .withProjectId("project")
+            .withInstanceId("instance")
+            .withDatabaseId("database1");
+    SpannerConfig database2 = database1.withDatabaseId("database2");
+
+    assertSame(
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(database1, 10),
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(
+            database1.withDatabaseId("database1"), 10));
+    assertNotSame(
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(database1, 10),
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(database2, 10));
+    assertNotSame(
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(database1, 10),
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(database1, 20));
+
+    Cache<Pair<String, Key>, ChangeEventSequence> cache =
+        SpannerTransactionWriterDoFn.getShadowSequenceCache(database2, 2);
+    for (int i = 0; i < 10; i++) {
+      cache.put(Pair.of("shadow_t1", Key.of(i)), mock(ChangeEventSequence.class));
+    }
+    assertTrue(cache.size() <= 2);
+  }
+
   @Test
   public void transformChangeEventViaSessionFileNamesTest() {
     Schema schema = getSchemaObject();
     SpannerTransactionWriterDoFn spannerTransactionWriterDoFn =
         new SpannerTransactionWriterDoFn(
-            SpannerConfig.create(), null, schema, new TransformationContext(), "", "", false, true);
+            SpannerConfig.create(),
+            null,
+            schema,
+            new TransformationContext(),
+            "",
+            "",
+            false,
+            true,
+            1,
+            0);
     JSONObject changeEvent = new JSONObject();
     changeEvent.put("product_id", "A");
     changeEvent.put("quantity", 1);
@@ -111,7 +155,16 @@ public class SpannerTransactionWriterDoFnTest {
     Schema schema = getSchemaObject();
     SpannerTransactionWriterDoFn spannerTransactionWriterDoFn =
         new SpannerTransactionWriterDoFn(
-            SpannerConfig.create(), null, schema, new TransformationContext(), "", "", false, true);
+            SpannerConfig.create(),
+            null,
+            schema,
+            new TransformationContext(),
+            "",
+            "",
+            false,
+            true,
+            1,
+            0);
     JSONObject changeEvent = new JSONObject();
     changeEvent.put("name", "A");
     changeEvent.put(DatastreamConstants.EVENT_TABLE_NAME_KEY, "people");
@@ -133,7 +186,16 @@ public class SpannerTransactionWriterDoFnTest {
   public void transformChangeEventDataTest() throws Exception {
     SpannerTransactionWriterDoFn spannerTransactionWriterDoFn =
         new SpannerTransactionWriterDoFn(
-            SpannerConfig.create(), null, null, new TransformationContext(), "", "", true, true);
+            SpannerConfig.create(),
+            null,
+            null,
+            new TransformationContext(),
+            "",
+            "",
+            true,
+            true,
+            1,
+            0);
     JSONObject changeEvent = new JSONObject();
     changeEvent.put("first_name", "A");
     changeEvent.put("last_name", "{\"a\": 1.3542, \"b\": {\"c\": 48.19813667631011}}");
@@ -302,7 +364,7 @@ public class SpannerTransactionWriterDoFnTest {
     TransformationContext transformationContext = getTransformationContext();
     SpannerTransactionWriterDoFn spannerTransactionWriterDoFn =
         new SpannerTransactionWriterDoFn(
-            SpannerConfig.create(), null, null, transformationContext, "", "", true, true);
+            SpannerConfig.create(), null, null, transformationContext, "", "", true, true, 1, 0);
     JSONObject changeEvent = new JSONObject();
     changeEvent.put("first_name", "A");
     changeEvent.put("last_name", "{\"a\": 1.3542, \"b\": {\"c\": 48.19813667631011}}");
@@ -327,7 +389,16 @@ public class SpannerTransactionWriterDoFnTest {
     TransformationContext transformationContext = getTransformationContext();
     SpannerTransactionWriterDoFn spannerTransactionWriterDoFn =
         new SpannerTransactionWriterDoFn(
-            SpannerConfig.create(), null, schema, transformationContext, "", "mysql", false, true);
+            SpannerConfig.create(),
+            null,
+            schema,
+            transformationContext,
+            "",
+            "mysql",
+            false,
+            true,
+            1,
+            0);
     JSONObject changeEvent = new JSONObject();
     changeEvent.put("name", "A");
     changeEvent.put(DatastreamConstants.EVENT_SCHEMA_KEY, "db_01");
@@ -20,12 +20,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.spanner.Key;
 import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.TransactionContext;
@@ -502,4 +505,45 @@ public final class ChangeEventSequenceFactoryTest {
 
     assertNull(postgresChangeEventSequence);
   }
+
+  @Test
+  public void canCreateMySqlChangeEventSequenceFromShadowRowReadAsync() throws Exception {
+
+    long previousEventTimestamp = 1615159727L;
+
+    ChangeEventContext mockContext =
+        getMockMySqlChangeEventContext(/* addMysqlPositionFields= */ true, /* cdcEvent= */ true);
+
+    // Mock transaction which can read a row from shadow table without blocking.
+    TransactionContext mockTransaction = mock(TransactionContext.class);
+    Struct mockRow = mock(Struct.class);
+    when(mockRow.getLong(any(String.class))).thenReturn(previousEventTimestamp, 1L);
+    when(mockRow.getString(any(String.class))).thenReturn("oldlogfile.log");
+    when(mockTransaction.readRowAsync(
+            eq("test"), eq(Key.of("test")), eq(MySqlChangeEventSequence.getShadowTableColumns())))
+        .thenReturn(ApiFutures.immediateFuture(mockRow));
+
+    ApiFuture<Struct> shadowRow =
+        ChangeEventSequenceFactory.readShadowTableRowAsync(mockTransaction, mockContext);
+    ChangeEventSequence changeEventSequence =
+        ChangeEventSequenceFactory.createChangeEventSequenceFromShadowRow(
+            mockContext, shadowRow.get());
+
+    assertThat(changeEventSequence, instanceOf(MySqlChangeEventSequence.class));
+    MySqlChangeEventSequence mysqlChangeEventSequence =
+        (MySqlChangeEventSequence) changeEventSequence;
+    assertEquals(mysqlChangeEventSequence.getTimestamp(), new Long(previousEventTimestamp));
+    assertEquals(mysqlChangeEventSequence.getLogFile(), "oldlogfile.log");
+    assertEquals(mysqlChangeEventSequence.getLogPosition(), new Long(1));
+  }
+
+  @Test
+  public void cannotCreateChangeEventSequenceFromMissingShadowRow() throws Exception {
+
+    ChangeEventContext mockContext =
+        getMockOracleChangeEventContext(/* addOraclePositionFields= */ true, /* cdcEvent= */ true);
+
+    assertNull(
+        ChangeEventSequenceFactory.createChangeEventSequenceFromShadowRow(mockContext, null));
+  }
 }
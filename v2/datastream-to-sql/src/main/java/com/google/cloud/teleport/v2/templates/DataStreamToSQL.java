@@ -28,8 +28,11 @@ import com.google.cloud.teleport.v2.transforms.CreateDml;
 import com.google.cloud.teleport.v2.transforms.ProcessDml;
 import com.google.cloud.teleport.v2.values.FailsafeElement;
 import com.google.common.base.Splitter;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult;
@@ -245,6 +248,18 @@ public class DataStreamToSQL {
     String getCustomConnectionString();
 
     void setCustomConnectionString(String value);
+
+    @TemplateParameter.Boolean(
+        order = 15,
+        optional = true,
+        description = "Use prepared statements.",
+        helpText =
+            "Whether to apply DML as prepared statements, batched per table and kind of change,"
+                + " rather than as SQL statements with literal values. Defaults to: false.")
+    @Default.Boolean(false)
+    Boolean getUsePreparedStatements();
+
+    void setUsePreparedStatements(Boolean value);
   }
 
   /**
@@ -343,7 +358,7 @@ public class DataStreamToSQL {
      * Stages:
      *   1) Ingest and Normalize Data to FailsafeElement with JSON Strings
      *   2) Write JSON Strings to SQL DML Objects
-     *   3) Filter stale rows using stateful PK transform
+     *   3) Filter stale rows using stateful PK transform, and compact DML per PK
      *   4) Write DML statements to SQL Database via jdbc
      */
 
@@ -372,18 +387,21 @@ public class DataStreamToSQL {
     /*
      * Stage 2: Write JSON Strings to SQL Insert Strings
      *   a) Convert JSON String FailsafeElements to TableRow's (tableRowRecords)
-     * Stage 3) Filter stale rows using stateful PK transform
+     * Stage 3) Filter stale rows using stateful PK transform, and compact DML per PK
      */
     PCollection<KV<String, DmlInfo>> dmlStatements =
         datastreamJsonRecords
-            .apply("Format to DML", CreateDml.of(dataSourceConfiguration).withSchemaMap(schemaMap))
+            .apply(
+                "Format to DML",
+                CreateDml.of(dataSourceConfiguration)
+                    .withSchemaMap(schemaMap)
+                    .withPreparedStatements(options.getUsePreparedStatements()))
             .apply("DML Stateful Processing", ProcessDml.statefulOrderByPK());
 
     /*
      * Stage 4: Write Inserts to CloudSQL
      */
-    dmlStatements.apply(
-        "Write to SQL",
+    CdcJdbcIO.Write<KV<String, DmlInfo>> write =
         CdcJdbcIO.<KV<String, DmlInfo>>write()
             .withDataSourceConfiguration(dataSourceConfiguration)
             .withStatementFormatter(
@@ -392,9 +410,55 @@ public class DataStreamToSQL {
                     LOG.debug("Executing SQL: {}", element.getValue().getDmlSql());
                     return element.getValue().getDmlSql();
                   }
-                }));
+                });
+    if (options.getUsePreparedStatements()) {
+      write =
+          write.withPreparedStatementFormatter(
+              new PreparedDmlFormatter(getParameterSqlType(options)));
+    }
+    dmlStatements.apply("Write to SQL", write);
 
     // Execute the pipeline and return the result.
     return pipeline.run();
   }
+
+  /**
+   * Returns the SQL type to bind the text values of prepared statement parameters with. Postgres
+   * infers the type of untyped parameters from the statement, as it does for literals, while MySQL
+   * converts text values to the column types.
+   */
+  private static int getParameterSqlType(Options options) {
+    return "postgres".equals(options.getDatabaseType()) ? Types.OTHER : Types.VARCHAR;
+  }
+
+  /** Formats {@link DmlInfo} built with prepared statements into statement SQL and parameters. */
+  private static class PreparedDmlFormatter
+      implements CdcJdbcIO.PreparedStatementFormatter<KV<String, DmlInfo>> {
+
+    private final int parameterSqlType;
+
+    PreparedDmlFormatter(int parameterSqlType) {
+      this.parameterSqlType = parameterSqlType;
+    }
+
+    @Override
+    public String formatPreparedStatement(KV<String, DmlInfo> element) {
+      return element.getValue().getDmlSql();
+    }
+
+    @Override
+    public void setParameters(KV<String, DmlInfo> element, PreparedStatement preparedStatement)
+        throws SQLException {
+      List<String> dmlValues = element.getValue().getDmlValues();
+      for (int i = 0; i < dmlValues.size(); i++) {
+        preparedStatement.setObject(i + 1, dmlValues.get(i), parameterSqlType);
+      }
+    }
+
+    @Override
+    public String getRowKey(KV<String, DmlInfo> element) {
+      // Elements are keyed by write shard after ProcessDml, so the row comes from the DML.
+      return element.getValue().getStateWindowKey();
+    }
+  }
 }
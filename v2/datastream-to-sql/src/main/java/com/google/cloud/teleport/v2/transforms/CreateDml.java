@@ -44,6 +44,7 @@ public class CreateDml
   private static final Integer NUM_THREADS = new Integer(100);
   private static DataSourceConfiguration dataSourceConfiguration;
   private static Map<String, String> schemaMap = new HashMap<String, String>();
+  private Boolean usePreparedStatements = false;
 
   private CreateDml(DataSourceConfiguration dataSourceConfiguration) {
     this.dataSourceConfiguration = dataSourceConfiguration;
@@ -58,6 +59,12 @@ public class CreateDml
     return this;
   }
 
+  /** See {@link DatastreamToDML#withPreparedStatements(Boolean)}. */
+  public CreateDml withPreparedStatements(Boolean usePreparedStatements) {
+    this.usePreparedStatements = usePreparedStatements;
+    return this;
+  }
+
   public DatastreamToDML getDatastreamToDML() {
     DatastreamToDML datastreamToDML;
     String driverName = this.dataSourceConfiguration.getDriverClassName().get();
@@ -73,7 +80,7 @@ public class CreateDml
             String.format("Database Driver %s is not supported.", driverName));
     }
 
-    return datastreamToDML.withSchemaMap(schemaMap);
+    return datastreamToDML.withSchemaMap(schemaMap).withPreparedStatements(usePreparedStatements);
   }
 
   @Override
@@ -17,7 +17,10 @@ package com.google.cloud.teleport.v2.transforms;
 
 import com.google.cloud.teleport.v2.datastream.values.DmlInfo;
 import com.google.cloud.teleport.v2.utils.DurationUtils;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.state.StateSpec;
@@ -28,10 +31,12 @@ import org.apache.beam.sdk.transforms.DoFn.StateId;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.Reshuffle;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.FixedWindows;
 import org.apache.beam.sdk.transforms.windowing.Window;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,7 +69,8 @@ public class ProcessDml {
           .apply(
               "Creating " + WINDOW_DURATION + " Window",
               Window.into(FixedWindows.of(DurationUtils.parseDuration(WINDOW_DURATION))))
-          .apply(Reshuffle.of());
+          .apply(Reshuffle.of())
+          .apply("Compact DML", ParDo.of(new CompactDmlFn()));
     }
   }
 
@@ -111,4 +117,66 @@ public class ProcessDml {
       }
     }
   }
+
+  /**
+   * The {@code CompactDmlFn} class collapses the DML of a bundle to its net effect per primary key.
+   * Each DML applies a full row image or deletes the row, so only the DML with the latest sort keys
+   * of a row is output when the bundle finishes. DML of tables without primary keys is output as
+   * is.
+   */
+  public static class CompactDmlFn extends DoFn<KV<String, DmlInfo>, KV<String, DmlInfo>> {
+
+    private final Counter compactedDml = Metrics.counter(CompactDmlFn.class, "compactedDml");
+
+    private transient Map<String, BufferedDml> bufferedDml;
+
+    public CompactDmlFn() {}
+
+    @StartBundle
+    public void startBundle() {
+      bufferedDml = new LinkedHashMap<>();
+    }
+
+    @ProcessElement
+    public void processElement(ProcessContext context, BoundedWindow window) {
+      DmlInfo dmlInfo = context.element().getValue();
+      if (dmlInfo.getAllPkFields().size() == 0) {
+        context.output(context.element());
+        return;
+      }
+
+      String rowKey = dmlInfo.getStateWindowKey();
+      BufferedDml previous = bufferedDml.get(rowKey);
+      if (previous != null) {
+        compactedDml.inc();
+        if (dmlInfo
+                .getOrderByValueString()
+                .compareTo(previous.element.getValue().getOrderByValueString())
+            < 0) {
+          return;
+        }
+      }
+      bufferedDml.put(rowKey, new BufferedDml(context.element(), context.timestamp(), window));
+    }
+
+    @FinishBundle
+    public void finishBundle(FinishBundleContext context) {
+      for (BufferedDml dml : bufferedDml.values()) {
+        context.output(dml.element, dml.timestamp, dml.window);
+      }
+      bufferedDml.clear();
+    }
+
+    private static class BufferedDml {
+      private final KV<String, DmlInfo> element;
+      private final Instant timestamp;
+      private final BoundedWindow window;
+
+      BufferedDml(KV<String, DmlInfo> element, Instant timestamp, BoundedWindow window) {
+        this.element = element;
+        this.timestamp = timestamp;
+        this.window = window;
+      }
+    }
+  }
 }
@@ -34,6 +34,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.sql.DataSource;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.values.KV;
@@ -48,6 +50,8 @@ public abstract class DatastreamToDML
 
   private static final Logger LOG = LoggerFactory.getLogger(DatastreamToDML.class);
 
+  private static final Pattern TEMPLATE_KEY_PATTERN = Pattern.compile("\\{(\\w+)\\}");
+
   private static String rowIdColumnName = "rowid";
   private static List<String> defaultPrimaryKeys;
   private static MappedObjectCache<List<String>, Map<String, String>> tableCache;
@@ -55,6 +59,7 @@ public abstract class DatastreamToDML
   private CdcJdbcIO.DataSourceConfiguration dataSourceConfiguration;
   private DataSource dataSource;
   public String quoteCharacter;
+  private Boolean usePreparedStatements = false;
   private static Map<String, String> schemaMap = new HashMap<String, String>();
 
   public abstract String getDefaultQuoteCharacter();
@@ -93,6 +98,15 @@ public abstract class DatastreamToDML
     return this;
   }
 
+  /**
+   * Set whether DML is built as prepared statements, with {@code ?} parameters for the row values
+   * held in {@link DmlInfo#getDmlValues()}, rather than with SQL literals.
+   */
+  public DatastreamToDML withPreparedStatements(Boolean usePreparedStatements) {
+    this.usePreparedStatements = usePreparedStatements;
+    return this;
+  }
+
   @ProcessElement
   public void processElement(ProcessContext context) {
     FailsafeElement<String, String> element = context.element();
@@ -222,11 +236,27 @@ public abstract class DatastreamToDML
       List<String> orderByValues = getFieldValues(rowObj, orderByFields, tableSchema);
 
       String dmlSqlTemplate = getDmlTemplate(rowObj, primaryKeys);
-      Map<String, String> sqlTemplateValues =
-          getSqlTemplateValues(
-              rowObj, catalogName, schemaName, tableName, primaryKeys, tableSchema);
-
-      String dmlSql = StringSubstitutor.replace(dmlSqlTemplate, sqlTemplateValues, "{", "}");
+      String dmlSql;
+      List<String> dmlValues = null;
+      if (usePreparedStatements) {
+        Map<String, List<String>> sqlTemplateParameters = new HashMap<>();
+        Map<String, String> sqlTemplateValues =
+            getPreparedSqlTemplateValues(
+                rowObj,
+                catalogName,
+                schemaName,
+                tableName,
+                primaryKeys,
+                tableSchema,
+                sqlTemplateParameters);
+        dmlSql = StringSubstitutor.replace(dmlSqlTemplate, sqlTemplateValues, "{", "}");
+        dmlValues = getTemplateParameters(dmlSqlTemplate, sqlTemplateParameters);
+      } else {
+        Map<String, String> sqlTemplateValues =
+            getSqlTemplateValues(
+                rowObj, catalogName, schemaName, tableName, primaryKeys, tableSchema);
+        dmlSql = StringSubstitutor.replace(dmlSqlTemplate, sqlTemplateValues, "{", "}");
+      }
       return DmlInfo.of(
           failsafeValue,
           dmlSql,
@@ -235,7 +265,8 @@ public abstract class DatastreamToDML
           primaryKeys,
           orderByFields,
           primaryKeyValues,
-          orderByValues);
+          orderByValues,
+          dmlValues);
     } catch (DeletedWithoutPrimaryKey e) {
       LOG.error("CDC Error: {} :: {}", rowObj.toString(), e.toString());
       return null;
@@ -282,6 +313,118 @@ public abstract class DatastreamToDML
     return sqlTemplateValues;
   }
 
+  /**
+   * Returns the values to substitute in a DML template for a prepared statement. Each non null
+   * value of the row is a {@code ?} parameter, whose values are added to {@code
+   * sqlTemplateParameters} under their template key.
+   */
+  public Map<String, String> getPreparedSqlTemplateValues(
+      JsonNode rowObj,
+      String catalogName,
+      String schemaName,
+      String tableName,
+      List<String> primaryKeys,
+      Map<String, String> tableSchema,
+      Map<String, List<String>> sqlTemplateParameters) {
+    Map<String, String> sqlTemplateValues = new HashMap<>();
+
+    sqlTemplateValues.put("quoted_catalog_name", quote(catalogName));
+    sqlTemplateValues.put("quoted_schema_name", quote(schemaName));
+    sqlTemplateValues.put("quoted_table_name", quote(tableName));
+    sqlTemplateValues.put("quoted_column_names", getColumnsListSql(rowObj, tableSchema));
+    sqlTemplateValues.put("primary_key_names_sql", String.join(",", primaryKeys));
+
+    List<String> columnValuesSql = new ArrayList<>();
+    List<String> columnsUpdateSql = new ArrayList<>();
+    List<String> columnParameters = new ArrayList<>();
+    for (Iterator<String> fieldNames = rowObj.fieldNames(); fieldNames.hasNext(); ) {
+      String columnName = fieldNames.next();
+      if (!tableSchema.containsKey(columnName)) {
+        continue;
+      }
+
+      String columnValue = getValueParameterSql(rowObj, columnName, tableSchema, columnParameters);
+      columnValuesSql.add(columnValue);
+      columnsUpdateSql.add(quote(columnName) + "=" + columnValue);
+    }
+    sqlTemplateValues.put("column_value_sql", String.join(",", columnValuesSql));
+    sqlTemplateValues.put("column_kv_sql", String.join(",", columnsUpdateSql));
+    sqlTemplateParameters.put("column_value_sql", columnParameters);
+    sqlTemplateParameters.put("column_kv_sql", columnParameters);
+
+    List<String> primaryKeysSql = new ArrayList<>();
+    List<String> primaryKeyParameters = new ArrayList<>();
+    for (String columnName : primaryKeys) {
+      if (!tableSchema.containsKey(columnName)) {
+        continue;
+      }
+
+      primaryKeysSql.add(
+          columnName
+              + "="
+              + getValueParameterSql(rowObj, columnName, tableSchema, primaryKeyParameters));
+    }
+    sqlTemplateValues.put("primary_key_kv_sql", String.join(" AND ", primaryKeysSql));
+    sqlTemplateParameters.put("primary_key_kv_sql", primaryKeyParameters);
+
+    return sqlTemplateValues;
+  }
+
+  /** Returns the parameter values of a prepared DML, in the order of their template keys. */
+  public static List<String> getTemplateParameters(
+      String dmlSqlTemplate, Map<String, List<String>> sqlTemplateParameters) {
+    List<String> parameters = new ArrayList<>();
+    Matcher matcher = TEMPLATE_KEY_PATTERN.matcher(dmlSqlTemplate);
+    while (matcher.find()) {
+      List<String> keyParameters = sqlTemplateParameters.get(matcher.group(1));
+      if (keyParameters != null) {
+        parameters.addAll(keyParameters);
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * Returns the SQL of a column value in a prepared statement: a {@code ?} parameter whose value is
+   * added to {@code parameters}, or a {@code NULL} literal.
+   */
+  public String getValueParameterSql(
+      JsonNode rowObj,
+      String columnName,
+      Map<String, String> tableSchema,
+      List<String> parameters) {
+    JsonNode columnObj = rowObj.get(columnName);
+    if (columnObj == null) {
+      LOG.warn("Missing Required Value: {} in {}", columnName, rowObj.toString());
+      return getNullValueSql();
+    }
+    if (columnObj.isNull()) {
+      return getNullValueSql();
+    }
+
+    String columnValue;
+    if (columnObj.isTextual()) {
+      columnValue = StringUtils.replace(columnObj.textValue(), "\u0000", "");
+    } else {
+      columnValue = columnObj.toString();
+    }
+    columnValue = cleanDataTypeValueParameter(columnValue, columnName, tableSchema);
+    if (columnValue == null) {
+      return getNullValueSql();
+    }
+    parameters.add(columnValue);
+    return "?";
+  }
+
+  /**
+   * Cleans the value of a prepared statement parameter for the column data type, the counterpart of
+   * {@link #cleanDataTypeValueSql(String, String, Map)}. Returns null for a {@code NULL} value.
+   */
+  public String cleanDataTypeValueParameter(
+      String columnValue, String columnName, Map<String, String> tableSchema) {
+    return columnValue;
+  }
+
   public String getValueSql(JsonNode rowObj, String columnName, Map<String, String> tableSchema) {
     String columnValue;
 
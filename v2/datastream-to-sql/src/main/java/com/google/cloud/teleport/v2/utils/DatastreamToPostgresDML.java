@@ -77,9 +77,26 @@ public class DatastreamToPostgresDML extends DatastreamToDML {
   @Override
   public String cleanDataTypeValueSql(
       String columnValue, String columnName, Map<String, String> tableSchema) {
+    if (isNumericColumn(columnName, tableSchema)
+        && (columnValue.equals("") || columnValue.equals("''"))) {
+      return getNullValueSql();
+    }
+    return columnValue;
+  }
+
+  @Override
+  public String cleanDataTypeValueParameter(
+      String columnValue, String columnName, Map<String, String> tableSchema) {
+    if (isNumericColumn(columnName, tableSchema) && columnValue.equals("")) {
+      return null;
+    }
+    return columnValue;
+  }
+
+  private static boolean isNumericColumn(String columnName, Map<String, String> tableSchema) {
     String dataType = tableSchema.get(columnName);
     if (dataType == null) {
-      return columnValue;
+      return false;
     }
     switch (dataType.toUpperCase()) {
       case "INT2":
@@ -97,11 +114,9 @@ public class DatastreamToPostgresDML extends DatastreamToDML {
       case "SMALLSERIAL":
       case "SERIAL":
       case "BIGSERIAL":
-        if (columnValue.equals("") || columnValue.equals("''")) {
-          return getNullValueSql();
-        }
-        break;
+        return true;
+      default:
+        return false;
     }
-    return columnValue;
   }
 }
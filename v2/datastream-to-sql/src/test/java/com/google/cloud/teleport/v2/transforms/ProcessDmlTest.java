@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.transforms;
+
+import com.google.cloud.teleport.v2.datastream.values.DmlInfo;
+import com.google.cloud.teleport.v2.transforms.ProcessDml.CompactDmlFn;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.FlatMapElements;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test cases for the {@link ProcessDml} class. */
+@RunWith(JUnit4.class)
+public class ProcessDmlTest {
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  /** Tests that only the DML with the latest sort keys of a row is kept. */
+  @Test
+  public void testCompactDmlKeepsLatestDmlPerRow() {
+    PCollection<String> compacted =
+        compact(
+            dml("UPDATE a 2", "a", "2"),
+            dml("UPDATE b 1", "b", "1"),
+            dml("UPDATE a 3", "a", "3"),
+            dml("UPDATE a 1", "a", "1"),
+            dml("DELETE b 2", "b", "2"));
+
+    PAssert.that(compacted).containsInAnyOrder("UPDATE a 3", "DELETE b 2");
+    pipeline.run();
+  }
+
+  /** Tests that the DML received last is kept when the sort keys of a row are equal. */
+  @Test
+  public void testCompactDmlKeepsLastDmlOnEqualSortKeys() {
+    PCollection<String> compacted =
+        compact(
+            dml("INSERT a 1", "a", "1"), dml("UPDATE a 1", "a", "1"), dml("DELETE a 1", "a", "1"));
+
+    PAssert.that(compacted).containsInAnyOrder("DELETE a 1");
+    pipeline.run();
+  }
+
+  /** Tests that the DML of tables without primary keys is not compacted. */
+  @Test
+  public void testCompactDmlOutputsDmlWithoutPrimaryKeys() {
+    PCollection<String> compacted =
+        compact(
+            dml("INSERT 1", null, "1"), dml("INSERT 2", null, "1"), dml("UPDATE a 1", "a", "1"));
+
+    PAssert.that(compacted).containsInAnyOrder("INSERT 1", "INSERT 2", "UPDATE a 1");
+    pipeline.run();
+  }
+
+  /** Compacts the DML in a single bundle, and returns the SQL of the DML which was output. */
+  private PCollection<String> compact(DmlInfo... dmls) {
+    return pipeline
+        .apply(Create.of(Collections.singletonList(Arrays.asList(dmls))))
+        .apply(
+            FlatMapElements.into(
+                    TypeDescriptors.kvs(
+                        TypeDescriptors.strings(), TypeDescriptor.of(DmlInfo.class)))
+                .via(
+                    (List<DmlInfo> list) ->
+                        list.stream().map(dml -> KV.of("0", dml)).collect(Collectors.toList())))
+        .setCoder(KvCoder.of(StringUtf8Coder.of(), SerializableCoder.of(DmlInfo.class)))
+        .apply(ParDo.of(new CompactDmlFn()))
+        .setCoder(KvCoder.of(StringUtf8Coder.of(), SerializableCoder.of(DmlInfo.class)))
+        .apply(
+            MapElements.into(TypeDescriptors.strings())
+                .via((KV<String, DmlInfo> dml) -> dml.getValue().getDmlSql()));
+  }
+
+  /** Returns a DML of the row with the given primary key value, or of a table without one. */
+  private static DmlInfo dml(String sql, String primaryKey, String sortKey) {
+    List<String> pkFields =
+        primaryKey == null ? Collections.emptyList() : Collections.singletonList("id");
+    List<String> pkValues =
+        primaryKey == null ? Collections.emptyList() : Collections.singletonList(primaryKey);
+    return DmlInfo.of(
+        sql,
+        sql,
+        "schema",
+        "table",
+        pkFields,
+        Collections.singletonList("_metadata_timestamp"),
+        pkValues,
+        Collections.singletonList(sortKey));
+  }
+}
@@ -23,8 +23,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.teleport.v2.datastream.values.DatastreamRow;
 import com.google.cloud.teleport.v2.templates.DataStreamToSQL;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.commons.text.StringSubstitutor;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,6 +85,46 @@ public class DatastreamToDMLTest {
     assertEquals(expectedNullByteTextContent, testNullByteSqlContent);
   }
 
+  /**
+   * Test whether {@link DatastreamToPostgresDML#getPreparedSqlTemplateValues} builds an upsert with
+   * parameters for the row values, in the order of the template.
+   */
+  @Test
+  public void testGetPreparedSqlTemplateValues() throws IOException {
+    DatastreamToDML datastreamToDML = DatastreamToPostgresDML.of(null);
+    JsonNode rowObj =
+        new ObjectMapper()
+            .readTree(
+                "{\"id\":1,\"name\":\"It's\\u0000\",\"amount\":\"\",\"note\":null,"
+                    + "\"_metadata_schema\":\"MY_SCHEMA\"}");
+    Map<String, String> tableSchema = new HashMap<>();
+    tableSchema.put("id", "int4");
+    tableSchema.put("name", "varchar");
+    tableSchema.put("amount", "numeric");
+    tableSchema.put("note", "text");
+
+    Map<String, List<String>> sqlTemplateParameters = new HashMap<>();
+    Map<String, String> sqlTemplateValues =
+        datastreamToDML.getPreparedSqlTemplateValues(
+            rowObj,
+            "",
+            "my_schema",
+            "my_table",
+            Arrays.asList("id"),
+            tableSchema,
+            sqlTemplateParameters);
+    String dmlSqlTemplate = datastreamToDML.getUpsertDmlStatement();
+
+    assertEquals(
+        "INSERT INTO \"my_schema\".\"my_table\" (\"id\",\"name\",\"amount\",\"note\")"
+            + " VALUES (?,?,NULL,NULL) ON CONFLICT (id) DO UPDATE SET"
+            + " \"id\"=?,\"name\"=?,\"amount\"=NULL,\"note\"=NULL;",
+        StringSubstitutor.replace(dmlSqlTemplate, sqlTemplateValues, "{", "}"));
+    assertEquals(
+        Arrays.asList("1", "It's", "1", "It's"),
+        DatastreamToDML.getTemplateParameters(dmlSqlTemplate, sqlTemplateParameters));
+  }
+
   /**
    * Test whether {@link DatastreamToDML#getTargetSchemaName} converts the Oracle schema into the
    * correct Postgres schema.
@@ -311,4 +311,17 @@ public interface ElasticsearchWriteOptions extends PipelineOptions {
   String getApiKeySource();
 
   void setApiKeySource(String apiKeySource);
+
+  @TemplateParameter.Integer(
+      order = 27,
+      optional = true,
+      description = "Maximum concurrent bulk requests",
+      helpText =
+          "Maximum number of bulk requests each worker thread keeps in flight to Elasticsearch. "
+              + "Higher values overlap building batches with waiting for responses, and use up to "
+              + "this many times batchSizeBytes of memory. Default: 1")
+  @Default.Integer(1)
+  Integer getMaxConcurrentBulkRequests();
+
+  void setMaxConcurrentBulkRequests(Integer maxConcurrentBulkRequests);
 }
@@ -156,6 +156,12 @@ public abstract class WriteToElasticsearch extends PTransform<PCollection<String
             .withMaxBatchSize(options().getBatchSize())
             .withMaxBatchSizeBytes(options().getBatchSizeBytes());
 
+    if (options().getMaxConcurrentBulkRequests() != null) {
+      elasticsearchWriter =
+          elasticsearchWriter.withMaxConcurrentBulkRequests(
+              options().getMaxConcurrentBulkRequests());
+    }
+
     if (options().getPropertyAsId() != null) {
       StringFieldValueExtractFn idFn =
           StringFieldValueExtractFn.newBuilder()
@@ -23,9 +23,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.google.auto.value.AutoValue;
+import com.google.cloud.teleport.v2.coders.FailsafeElementCoder;
 import com.google.cloud.teleport.v2.elasticsearch.utils.BulkInsertMethod.BulkInsertMethodOptions;
+import com.google.cloud.teleport.v2.values.FailsafeElement;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -36,15 +40,21 @@ import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 import javax.annotation.Nonnull;
 import javax.net.ssl.SSLContext;
@@ -57,6 +67,7 @@ import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.BackOff;
 import org.apache.beam.sdk.util.BackOffUtils;
 import org.apache.beam.sdk.util.FluentBackoff;
@@ -64,6 +75,8 @@ import org.apache.beam.sdk.util.Sleeper;
 import org.apache.beam.sdk.values.PBegin;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.TupleTagList;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Strings;
 import org.apache.http.ConnectionClosedException;
@@ -82,15 +95,19 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.elasticsearch.client.Request;
 import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.joda.time.Duration;
+import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -167,10 +184,14 @@ public class ElasticsearchIO {
     // default scrollKeepalive = 5m as a majorant for un-predictable time between 2 start/read calls
     // default batchSize to 100 as recommended by ES dev team as a safe value when dealing
     // with big documents and still a good compromise for performances
+    // default pointInTimeKeepalive = 1h as the point in time is opened when the source is split,
+    // and must outlive the wait of the last slice for a worker
     return new AutoValue_ElasticsearchIO_Read.Builder()
         .setWithMetadata(false)
         .setScrollKeepalive("5m")
         .setBatchSize(100L)
+        .setUsePointInTime(false)
+        .setPointInTimeKeepalive("1h")
         .build();
   }
 
@@ -180,6 +201,8 @@ public class ElasticsearchIO {
         .setMaxBatchSize(1000L)
         // advised default starting batch size in ES docs
         .setMaxBatchSizeBytes(5L * 1024L * 1024L)
+        // one bulk request at a time, sent from the processing thread
+        .setMaxConcurrentBulkRequests(1)
         .setUsePartialUpdate(false) // default is document upsert
         .setBulkInsertMethod(
             BulkInsertMethodOptions.CREATE) // default to create (error on duplicate _id)
@@ -195,49 +218,21 @@ public class ElasticsearchIO {
     return mapper.readValue(responseEntity.getContent(), JsonNode.class);
   }
 
-  static void checkForErrors(HttpEntity responseEntity, int backendVersion, boolean partialUpdate)
-      throws IOException {
-    JsonNode searchResult = parseResponse(responseEntity);
-    boolean errors = searchResult.path("errors").asBoolean();
-    if (errors) {
-      StringBuilder errorMessages =
-          new StringBuilder("Error writing to Elasticsearch, some elements could not be inserted:");
-      JsonNode items = searchResult.path("items");
-      // some items present in bulk might have errors, concatenate error messages
-      for (JsonNode item : items) {
-
-        String errorRootName = "";
-        // when use partial update, the response items includes all the update.
-        if (partialUpdate) {
-          errorRootName = "update";
-        } else {
-          // look for error object key dynamically
-          for (String name : new String[] {"create", "index"}) {
-            JsonNode root = item.path(name);
-            if (root != null && !root.isMissingNode()) {
-              errorRootName = name;
-              break;
-            }
-          }
-        }
-
-        JsonNode errorRoot = item.path(errorRootName);
-        JsonNode error = errorRoot.get("error");
-        if (error != null) {
-          String type = error.path("type").asText();
-          String reason = error.path("reason").asText();
-          String docId = errorRoot.path("_id").asText();
-          errorMessages.append(String.format("%nDocument id %s: %s (%s)", docId, reason, type));
-          JsonNode causedBy = error.get("caused_by");
-          if (causedBy != null) {
-            String cbReason = causedBy.path("reason").asText();
-            String cbType = causedBy.path("type").asText();
-            errorMessages.append(String.format("%nCaused by: %s (%s)", cbReason, cbType));
-          }
-        }
-      }
-      throw new IOException(errorMessages.toString());
+  /** Describes the error reported for one item of a bulk response. */
+  static String describeItemError(JsonNode errorRoot) {
+    JsonNode error = errorRoot.path("error");
+    String type = error.path("type").asText();
+    String reason = error.path("reason").asText();
+    String docId = errorRoot.path("_id").asText();
+    StringBuilder message =
+        new StringBuilder(String.format("%nDocument id %s: %s (%s)", docId, reason, type));
+    JsonNode causedBy = error.get("caused_by");
+    if (causedBy != null) {
+      String cbReason = causedBy.path("reason").asText();
+      String cbType = causedBy.path("type").asText();
+      message.append(String.format("%nCaused by: %s (%s)", cbReason, cbType));
     }
+    return message.toString();
   }
 
   /** A POJO describing a connection configuration to Elasticsearch. */
@@ -561,6 +556,10 @@ public class ElasticsearchIO {
 
     abstract long getBatchSize();
 
+    abstract boolean isUsePointInTime();
+
+    abstract String getPointInTimeKeepalive();
+
     abstract Builder builder();
 
     @AutoValue.Builder
@@ -569,6 +568,10 @@ public class ElasticsearchIO {
 
       abstract Builder setQuery(String query);
 
+      abstract Builder setUsePointInTime(boolean usePointInTime);
+
+      abstract Builder setPointInTimeKeepalive(String pointInTimeKeepalive);
+
       abstract Builder setWithMetadata(boolean withMetadata);
 
       abstract Builder setScrollKeepalive(String scrollKeepalive);
@@ -646,12 +649,45 @@ public class ElasticsearchIO {
       return builder().setBatchSize(batchSize).build();
     }
 
+    /**
+     * Read through a <a
+     * href="https://www.elastic.co/guide/en/elasticsearch/reference/current/point-in-time-api.html">point
+     * in time</a> paginated with {@code search_after} instead of the scroll API. The index is split
+     * into as many slices of the point in time as the desired bundle size calls for, regardless of
+     * the number of shards, and no scroll context is held while reading. A failed page request is
+     * retried from the sort values of the last document read. Requires Elasticsearch 7.12 or later.
+     * The point in time is opened when the source is split and shared by all its slices; it is
+     * released when its keepalive, see {@link #withPointInTimeKeepalive(String)}, expires.
+     *
+     * @return a {@link PTransform} reading data from Elasticsearch.
+     */
+    public Read withPointInTime() {
+      return builder().setUsePointInTime(true).build();
+    }
+
+    /**
+     * Provide the keepalive of the point in time read by {@link #withPointInTime()}. Default is
+     * "1h". Every page read extends the point in time by this duration, but a slice which only
+     * starts once the point in time has expired fails, so the keepalive must cover the time from
+     * the split of the source to the start of its last slice, e.g. when there are many more slices
+     * than workers.
+     *
+     * @param pointInTimeKeepalive keepalive duration of the point in time
+     * @return a {@link PTransform} reading data from Elasticsearch.
+     */
+    public Read withPointInTimeKeepalive(String pointInTimeKeepalive) {
+      checkArgument(pointInTimeKeepalive != null, "pointInTimeKeepalive can not be null");
+      checkArgument(!"0m".equals(pointInTimeKeepalive), "pointInTimeKeepalive can not be 0m");
+      return builder().setPointInTimeKeepalive(pointInTimeKeepalive).build();
+    }
+
     @Override
     public PCollection<String> expand(PBegin input) {
       ConnectionConfiguration connectionConfiguration = getConnectionConfiguration();
       checkState(connectionConfiguration != null, "withConnectionConfiguration() is required");
       return input.apply(
-          org.apache.beam.sdk.io.Read.from(new BoundedElasticsearchSource(this, null, null, null)));
+          org.apache.beam.sdk.io.Read.from(
+              new BoundedElasticsearchSource(this, null, null, null, null)));
     }
 
     @Override
@@ -661,6 +697,10 @@ public class ElasticsearchIO {
       builder.addIfNotNull(DisplayData.item("withMetadata", isWithMetadata()));
       builder.addIfNotNull(DisplayData.item("batchSize", getBatchSize()));
       builder.addIfNotNull(DisplayData.item("scrollKeepalive", getScrollKeepalive()));
+      builder.addIfNotNull(DisplayData.item("usePointInTime", isUsePointInTime()));
+      if (isUsePointInTime()) {
+        builder.addIfNotNull(DisplayData.item("pointInTimeKeepalive", getPointInTimeKeepalive()));
+      }
       getConnectionConfiguration().populateDisplayData(builder);
     }
   }
@@ -676,6 +716,8 @@ public class ElasticsearchIO {
     private final @Nullable String shardPreference;
     private final @Nullable Integer numSlices;
     private final @Nullable Integer sliceId;
+    // pointInTimeId is the point in time read by all the slices when reading with withPointInTime
+    private final @Nullable String pointInTimeId;
     private @Nullable Long estimatedByteSize;
 
     // constructor used in split() when we know the backend version
@@ -684,6 +726,7 @@ public class ElasticsearchIO {
         @Nullable String shardPreference,
         @Nullable Integer numSlices,
         @Nullable Integer sliceId,
+        @Nullable String pointInTimeId,
         @Nullable Long estimatedByteSize,
         int backendVersion) {
       this.backendVersion = backendVersion;
@@ -692,6 +735,7 @@ public class ElasticsearchIO {
       this.numSlices = numSlices;
       this.estimatedByteSize = estimatedByteSize;
       this.sliceId = sliceId;
+      this.pointInTimeId = pointInTimeId;
     }
 
     @VisibleForTesting
@@ -699,11 +743,13 @@ public class ElasticsearchIO {
         Read spec,
         @Nullable String shardPreference,
         @Nullable Integer numSlices,
-        @Nullable Integer sliceId) {
+        @Nullable Integer sliceId,
+        @Nullable String pointInTimeId) {
       this.spec = spec;
       this.shardPreference = shardPreference;
       this.numSlices = numSlices;
       this.sliceId = sliceId;
+      this.pointInTimeId = pointInTimeId;
     }
 
     @Override
@@ -711,6 +757,13 @@ public class ElasticsearchIO {
         long desiredBundleSizeBytes, PipelineOptions options) throws Exception {
       ConnectionConfiguration connectionConfiguration = spec.getConnectionConfiguration();
       this.backendVersion = getBackendVersion(connectionConfiguration);
+      if (spec.isUsePointInTime()) {
+        String versionNumber = getBackendVersionNumber(connectionConfiguration);
+        checkArgument(
+            supportsPointInTime(versionNumber),
+            "Reading with a point in time requires Elasticsearch 7.12 or later, but was %s",
+            versionNumber);
+      }
       List<BoundedElasticsearchSource> sources = new ArrayList<>();
       if (backendVersion == 2) {
         // 1. We split per shard :
@@ -730,7 +783,8 @@ public class ElasticsearchIO {
           Map.Entry<String, JsonNode> shardJson = shards.next();
           String shardId = shardJson.getKey();
           sources.add(
-              new BoundedElasticsearchSource(spec, shardId, null, null, null, backendVersion));
+              new BoundedElasticsearchSource(
+                  spec, shardId, null, null, null, null, backendVersion));
         }
         checkArgument(!sources.isEmpty(), "No shard found");
       } else if (backendVersion >= 5) {
@@ -746,11 +800,15 @@ public class ElasticsearchIO {
         // (see https://goo.gl/MhtSWz)
         // the slice API allows to split the ES shards
         // to have bundles closer to desiredBundleSizeBytes
+        // With a point in time, every slice reads the same snapshot of the index, so a single
+        // shard can be read by any number of independent readers.
+        String pitId =
+            spec.isUsePointInTime() ? openPointInTime(connectionConfiguration, spec) : null;
         for (int i = 0; i < nbBundles; i++) {
           long estimatedByteSizeForBundle = getEstimatedSizeBytes(options) / nbBundles;
           sources.add(
               new BoundedElasticsearchSource(
-                  spec, null, nbBundles, i, estimatedByteSizeForBundle, backendVersion));
+                  spec, null, nbBundles, i, pitId, estimatedByteSizeForBundle, backendVersion));
         }
       }
       return sources;
@@ -842,9 +900,23 @@ public class ElasticsearchIO {
 
     @Override
     public BoundedReader<String> createReader(PipelineOptions options) {
+      if (spec.isUsePointInTime()) {
+        return new PointInTimeElasticsearchReader(this);
+      }
       return new BoundedElasticsearchReader(this);
     }
 
+    /** Opens a point in time on the index and returns its id. */
+    private static String openPointInTime(
+        ConnectionConfiguration connectionConfiguration, Read spec) throws IOException {
+      try (RestClient restClient = connectionConfiguration.createClient()) {
+        Request request =
+            new Request("POST", String.format("/%s/_pit", connectionConfiguration.getIndex()));
+        request.addParameter("keep_alive", spec.getPointInTimeKeepalive());
+        return parseResponse(restClient.performRequest(request).getEntity()).path("id").asText();
+      }
+    }
+
     @Override
     public void validate() {
       spec.validate(null);
@@ -1007,6 +1079,159 @@ public class ElasticsearchIO {
     }
   }
 
+  /**
+   * A reader paging through one slice of a point in time with {@code search_after}. The sort values
+   * of the last document read are kept, so a failed page request is retried from where the reader
+   * left off.
+   */
+  private static class PointInTimeElasticsearchReader extends BoundedSource.BoundedReader<String> {
+
+    private static final FluentBackoff PAGE_RETRY_BACKOFF =
+        FluentBackoff.DEFAULT.withMaxRetries(3).withInitialBackoff(Duration.standardSeconds(1));
+
+    private final BoundedElasticsearchSource source;
+
+    private RestClient restClient;
+    private String current;
+    private String pointInTimeId;
+    // whether the point in time was opened by this reader, and must be closed by it
+    private boolean ownsPointInTime;
+    private JsonNode searchAfter;
+    private ListIterator<String> batchIterator;
+
+    private PointInTimeElasticsearchReader(BoundedElasticsearchSource source) {
+      this.source = source;
+    }
+
+    @Override
+    public boolean start() throws IOException {
+      restClient = source.spec.getConnectionConfiguration().createClient();
+      pointInTimeId = source.pointInTimeId;
+      if (pointInTimeId == null) {
+        pointInTimeId =
+            BoundedElasticsearchSource.openPointInTime(
+                source.spec.getConnectionConfiguration(), source.spec);
+        ownsPointInTime = true;
+      }
+      return readNextPage();
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+      if (batchIterator.hasNext()) {
+        current = batchIterator.next();
+        return true;
+      }
+      return readNextPage();
+    }
+
+    private boolean readNextPage() throws IOException {
+      String query = source.spec.getQuery();
+      if (query == null) {
+        query = "{\"query\": { \"match_all\": {} }}";
+      }
+      ObjectNode body = (ObjectNode) mapper.readTree(query);
+      body.put("size", source.spec.getBatchSize());
+      body.put("track_total_hits", false);
+      body.putObject("pit")
+          .put("id", pointInTimeId)
+          .put("keep_alive", source.spec.getPointInTimeKeepalive());
+      body.putArray("sort").addObject().put("_shard_doc", "asc");
+      if (source.numSlices != null && source.numSlices > 1) {
+        body.putObject("slice").put("id", source.sliceId).put("max", source.numSlices);
+      }
+      if (searchAfter != null) {
+        body.set("search_after", searchAfter);
+      }
+
+      JsonNode searchResult = search(mapper.writeValueAsString(body));
+      // the point in time id may change between requests, and the latest one must be used
+      if (searchResult.hasNonNull("pit_id")) {
+        pointInTimeId = searchResult.path("pit_id").asText();
+      }
+      JsonNode hits = searchResult.path("hits").path("hits");
+      if (hits.size() == 0) {
+        current = null;
+        batchIterator = null;
+        return false;
+      }
+      List<String> batch = new ArrayList<>();
+      boolean withMetadata = source.spec.isWithMetadata();
+      for (JsonNode hit : hits) {
+        if (withMetadata) {
+          batch.add(hit.toString());
+        } else {
+          batch.add(hit.path("_source").toString());
+        }
+      }
+      searchAfter = hits.get(hits.size() - 1).path("sort");
+      batchIterator = batch.listIterator();
+      current = batchIterator.next();
+      return true;
+    }
+
+    private JsonNode search(String body) throws IOException {
+      BackOff backoff = PAGE_RETRY_BACKOFF.backoff();
+      while (true) {
+        try {
+          // searches on a point in time must not name the index
+          Request request = new Request("POST", "/_search");
+          request.setEntity(new NStringEntity(body, ContentType.APPLICATION_JSON));
+          return parseResponse(restClient.performRequest(request).getEntity());
+        } catch (IOException e) {
+          if (e instanceof ResponseException
+              && ((ResponseException) e).getResponse().getStatusLine().getStatusCode() == 404) {
+            // retrying cannot bring back a point in time which has expired
+            throw new IOException(
+                "The point in time could not be found, it may have expired before this slice was"
+                    + " read. Consider increasing it with withPointInTimeKeepalive.",
+                e);
+          }
+          try {
+            if (!BackOffUtils.next(Sleeper.DEFAULT, backoff)) {
+              throw e;
+            }
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw e;
+          }
+          LOG.warn("Error reading a page from Elasticsearch, retrying.", e);
+        }
+      }
+    }
+
+    @Override
+    public String getCurrent() throws NoSuchElementException {
+      if (current == null) {
+        throw new NoSuchElementException();
+      }
+      return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        // a point in time shared by the slices of a split is left to expire, as no reader knows
+        // when the others are done with it
+        if (ownsPointInTime && pointInTimeId != null) {
+          String requestBody = String.format("{\"id\" : \"%s\"}", pointInTimeId);
+          Request request = new Request("DELETE", "/_pit");
+          request.setEntity(new NStringEntity(requestBody, ContentType.APPLICATION_JSON));
+          restClient.performRequest(request);
+        }
+      } finally {
+        if (restClient != null) {
+          restClient.close();
+        }
+      }
+    }
+
+    @Override
+    public BoundedSource<String> getCurrentSource() {
+      return source;
+    }
+  }
+
   /**
    * A POJO encapsulating a configuration for retry behavior when issuing requests to ES. A retry
    * will be attempted until the maxAttempts or maxDuration is exceeded, whichever comes first, for
@@ -1135,6 +1360,8 @@ public class ElasticsearchIO {
 
     abstract long getMaxBatchSizeBytes();
 
+    abstract int getMaxConcurrentBulkRequests();
+
     abstract @Nullable FieldValueExtractFn getIdFn();
 
     abstract @Nullable FieldValueExtractFn getIndexFn();
@@ -1159,6 +1386,8 @@ public class ElasticsearchIO {
 
       abstract Builder setMaxBatchSizeBytes(long maxBatchSizeBytes);
 
+      abstract Builder setMaxConcurrentBulkRequests(int maxConcurrentBulkRequests);
+
       abstract Builder setIdFn(FieldValueExtractFn idFunction);
 
       abstract Builder setIndexFn(FieldValueExtractFn indexFn);
@@ -1219,6 +1448,26 @@ public class ElasticsearchIO {
       return builder().setMaxBatchSizeBytes(batchSizeBytes).build();
     }
 
+    /**
+     * Provide the maximum number of bulk requests each worker thread keeps in flight. Default is 1,
+     * which waits for each bulk request to complete before building the next one. Higher values
+     * send bulk requests asynchronously so that building the next batch overlaps with the round
+     * trip of the previous ones; memory use grows to about {@code maxConcurrentBulkRequests} times
+     * {@link #withMaxBatchSizeBytes(long)}. When {@link #withIdFn(FieldValueExtractFn)} is set, a
+     * batch holding a document id which is still in flight waits for that request to complete, so
+     * operations on the same document are applied in order.
+     *
+     * @param maxConcurrentBulkRequests maximum number of bulk requests in flight
+     * @return the {@link Write} with the number of concurrent bulk requests set
+     */
+    public Write withMaxConcurrentBulkRequests(int maxConcurrentBulkRequests) {
+      checkArgument(
+          maxConcurrentBulkRequests > 0,
+          "maxConcurrentBulkRequests must be > 0, but was %s",
+          maxConcurrentBulkRequests);
+      return builder().setMaxConcurrentBulkRequests(maxConcurrentBulkRequests).build();
+    }
+
     /**
      * Provide a function to extract the id from the document. This id will be used as the document
      * id in Elasticsearch. Should the function throw an Exception then the batch will fail and the
@@ -1334,10 +1583,54 @@ public class ElasticsearchIO {
       checkArgument(
           isDeleteFn == null || idFn != null,
           "Id needs to be specified by withIdFn for delete operation");
-      input.apply(ParDo.of(new WriteFn(this)));
+      input.apply(ParDo.of(new WriteFn(this, null)));
       return PDone.in(input.getPipeline());
     }
 
+    /**
+     * Returns a transform which emits the documents Elasticsearch permanently rejected, with the
+     * reason as their error message, instead of failing the bundle. Documents rejected with a
+     * retryable status are retried first when {@link #withRetryConfiguration(RetryConfiguration)}
+     * is set, and are emitted once retries are exhausted.
+     *
+     * @return the {@link WriteWithDeadLetter} transform for this configuration
+     */
+    public WriteWithDeadLetter withDeadLetterOutput() {
+      return new WriteWithDeadLetter(this);
+    }
+
+    /**
+     * A {@link Write} which outputs the documents that could not be written as {@link
+     * FailsafeElement}s.
+     */
+    public static class WriteWithDeadLetter
+        extends PTransform<PCollection<String>, PCollection<FailsafeElement<String, String>>> {
+
+      private final Write spec;
+
+      private WriteWithDeadLetter(Write spec) {
+        this.spec = spec;
+      }
+
+      @Override
+      public PCollection<FailsafeElement<String, String>> expand(PCollection<String> input) {
+        checkState(
+            spec.getConnectionConfiguration() != null, "withConnectionConfiguration() is required");
+        checkArgument(
+            spec.getIsDeleteFn() == null || spec.getIdFn() != null,
+            "Id needs to be specified by withIdFn for delete operation");
+        TupleTag<Void> writtenTag = new TupleTag<Void>() {};
+        TupleTag<FailsafeElement<String, String>> failedTag =
+            new TupleTag<FailsafeElement<String, String>>() {};
+        return input
+            .apply(
+                ParDo.of(new WriteFn(spec, failedTag))
+                    .withOutputTags(writtenTag, TupleTagList.of(failedTag)))
+            .get(failedTag)
+            .setCoder(FailsafeElementCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()));
+      }
+    }
+
     /** {@link DoFn} to for the {@link Write} transform. */
     @VisibleForTesting
     static class WriteFn extends DoFn<String, Void> {
@@ -1346,6 +1639,9 @@ public class ElasticsearchIO {
 
       private static final Duration RETRY_INITIAL_BACKOFF = Duration.standardSeconds(5);
 
+      // status of bulk items (or whole requests) rejected while the cluster is under pressure
+      private static final int TOO_MANY_REQUESTS = 429;
+
       @VisibleForTesting
       static final String RETRY_ATTEMPT_LOG = "Error writing to Elasticsearch. Retry attempt[%d]";
 
@@ -1357,9 +1653,72 @@ public class ElasticsearchIO {
 
       private int backendVersion;
       private final Write spec;
+      private final @Nullable TupleTag<FailsafeElement<String, String>> failedDocuments;
       private transient RestClient restClient;
-      private ArrayList<String> batch;
+      private transient BulkBuffer batch;
+      private transient Set<String> batchIds;
+      private transient List<BulkItem> batchItems;
       private long currentBatchSizeBytes;
+      private transient Deque<InFlightBulk> inFlight;
+      private transient Deque<BulkBuffer> freeBuffers;
+      private transient List<BulkItem> rejectedItems;
+
+      /** A growable buffer holding a bulk request body, reused once its request completes. */
+      private static class BulkBuffer extends ByteArrayOutputStream {
+        void append(String value) {
+          append(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void append(byte[] value) {
+          write(value, 0, value.length);
+        }
+
+        HttpEntity toEntity() {
+          return new NByteArrayEntity(buf, 0, count, ContentType.APPLICATION_JSON);
+        }
+
+        /** Returns a body holding only the operations of the given items. */
+        HttpEntity toEntity(List<BulkItem> items) {
+          ByteArrayOutputStream subset = new ByteArrayOutputStream();
+          for (BulkItem item : items) {
+            subset.write(buf, item.start, item.end - item.start);
+          }
+          return new NByteArrayEntity(subset.toByteArray(), ContentType.APPLICATION_JSON);
+        }
+      }
+
+      /** One operation of a bulk request, and where it lies in the request body. */
+      private static class BulkItem {
+        final String document;
+        final Instant timestamp;
+        final BoundedWindow window;
+        final int start;
+        int end;
+        String error;
+
+        BulkItem(String document, Instant timestamp, BoundedWindow window, int start) {
+          this.document = document;
+          this.timestamp = timestamp;
+          this.window = window;
+          this.start = start;
+        }
+      }
+
+      /** A bulk request which has been sent and whose response has not been checked yet. */
+      private static class InFlightBulk {
+        final BulkBuffer body;
+        final HttpEntity requestBody;
+        final Set<String> ids;
+        final List<BulkItem> items;
+        final CompletableFuture<Response> response = new CompletableFuture<>();
+
+        InFlightBulk(BulkBuffer body, Set<String> ids, List<BulkItem> items) {
+          this.body = body;
+          this.requestBody = body.toEntity();
+          this.ids = ids;
+          this.items = items;
+        }
+      }
 
       // Encapsulates the elements which form the metadata for an Elasticsearch bulk operation
       private static class DocumentMetadata implements Serializable {
@@ -1377,8 +1736,9 @@ public class ElasticsearchIO {
       }
 
       @VisibleForTesting
-      WriteFn(Write spec) {
+      WriteFn(Write spec, @Nullable TupleTag<FailsafeElement<String, String>> failedDocuments) {
         this.spec = spec;
+        this.failedDocuments = failedDocuments;
       }
 
       @Setup
@@ -1403,12 +1763,23 @@ public class ElasticsearchIO {
         module.addSerializer(
             DocumentMetadata.class, new DocumentMetadataSerializer((backendVersion >= 7)));
         OBJECT_MAPPER.registerModule(module);
+        freeBuffers = new ArrayDeque<>();
       }
 
       @StartBundle
       public void startBundle(StartBundleContext context) {
-        batch = new ArrayList<>();
+        // Requests left in flight by a failed bundle are abandoned along with their buffers.
+        inFlight = new ArrayDeque<>();
+        batch = newBuffer();
+        batchIds = new HashSet<>();
+        batchItems = new ArrayList<>();
         currentBatchSizeBytes = 0;
+        rejectedItems = new ArrayList<>();
+      }
+
+      private BulkBuffer newBuffer() {
+        BulkBuffer buffer = freeBuffers.pollFirst();
+        return buffer != null ? buffer : new BulkBuffer();
       }
 
       private class DocumentMetadataSerializer extends StdSerializer<DocumentMetadata> {
@@ -1470,7 +1841,7 @@ public class ElasticsearchIO {
       }
 
       @ProcessElement
-      public void processElement(ProcessContext context) throws Exception {
+      public void processElement(ProcessContext context, BoundedWindow window) throws Exception {
         String document = context.element(); // use configuration and auto-generated document IDs
         String documentMetadata = "{}";
         boolean isDelete = false;
@@ -1482,36 +1853,51 @@ public class ElasticsearchIO {
             isDelete = spec.getIsDeleteFn().apply(parsedDocument);
           }
         }
-        long docSizeBytes = document.getBytes(StandardCharsets.UTF_8).length;
+        byte[] documentBytes = document.getBytes(StandardCharsets.UTF_8);
+        long docSizeBytes = documentBytes.length;
         long newBatchSizeBytes = currentBatchSizeBytes + docSizeBytes;
         if (newBatchSizeBytes > spec.getMaxBatchSizeBytes()) {
           flushBatch();
         }
 
+        BulkItem item = new BulkItem(document, context.timestamp(), window, batch.size());
         if (isDelete) {
           // delete request used for deleting a document.
-          batch.add(String.format("{ \"delete\" : %s }%n", documentMetadata));
+          batch.append("{ \"delete\" : ");
+          batch.append(documentMetadata);
+          batch.append(" }\n");
         } else {
           // index is an insert/upsert and update is a partial update (or insert if not existing)
           if (spec.getUsePartialUpdate()) {
-            batch.add(
-                String.format(
-                    "{ \"update\" : %s }%n{ \"doc\" : %s, \"doc_as_upsert\" : true }%n",
-                    documentMetadata, document));
+            batch.append("{ \"update\" : ");
+            batch.append(documentMetadata);
+            batch.append(" }\n{ \"doc\" : ");
+            batch.append(documentBytes);
+            batch.append(", \"doc_as_upsert\" : true }\n");
           } else {
             if (spec.getBulkInsertMethod() == BulkInsertMethodOptions.INDEX) {
               // index allows upsert of document with same _id as existing document
-              batch.add(String.format("{ \"index\" : %s }%n%s%n", documentMetadata, document));
+              batch.append("{ \"index\" : ");
             } else {
               // create will error if document with same _id already exists
-              batch.add(String.format("{ \"create\" : %s }%n%s%n", documentMetadata, document));
+              batch.append("{ \"create\" : ");
             }
+            batch.append(documentMetadata);
+            batch.append(" }\n");
+            batch.append(documentBytes);
+            batch.append("\n");
           }
         }
+        if (spec.getIdFn() != null) {
+          // the metadata holds the index, type and id which together address the document
+          batchIds.add(documentMetadata);
+        }
 
+        item.end = batch.size();
+        batchItems.add(item);
         currentBatchSizeBytes += docSizeBytes;
 
-        if (batch.size() >= spec.getMaxBatchSize()
+        if (batchItems.size() >= spec.getMaxBatchSize()
             || currentBatchSizeBytes >= spec.getMaxBatchSizeBytes()) {
           flushBatch();
         }
@@ -1521,103 +1907,230 @@ public class ElasticsearchIO {
       public void finishBundle(FinishBundleContext context)
           throws IOException, InterruptedException {
         flushBatch();
+        while (!inFlight.isEmpty()) {
+          completeOldestBulk();
+        }
+        for (BulkItem item : rejectedItems) {
+          context.output(
+              failedDocuments,
+              FailsafeElement.of(item.document, item.document).setErrorMessage(item.error),
+              item.timestamp,
+              item.window);
+        }
+        rejectedItems.clear();
       }
 
       private boolean isRetryableClientException(Throwable t) {
         // RestClient#performRequest only throws wrapped IOException so we must inspect the
         // exception cause to determine if the exception is likely transient i.e. retryable or
-        // not.
-        return t.getCause() instanceof ConnectTimeoutException
-            || t.getCause() instanceof SocketTimeoutException
-            || t.getCause() instanceof ConnectionClosedException
-            || t.getCause() instanceof ConnectException;
+        // not. RestClient#performRequestAsync reports the exception itself.
+        return isTransient(t) || isTransient(t.getCause());
+      }
+
+      private static boolean isTransient(Throwable t) {
+        return t instanceof ConnectTimeoutException
+            || t instanceof SocketTimeoutException
+            || t instanceof ConnectionClosedException
+            || t instanceof ConnectException;
       }
 
       private void flushBatch() throws IOException, InterruptedException {
-        if (batch.isEmpty()) {
+        if (batchItems.isEmpty()) {
           return;
         }
-        StringBuilder bulkRequest = new StringBuilder();
-        for (String json : batch) {
-          bulkRequest.append(json);
+        // Operations on the same document must reach Elasticsearch in order, so wait for earlier
+        // requests holding any of this batch's documents.
+        while (inFlight.stream().anyMatch(bulk -> !Collections.disjoint(bulk.ids, batchIds))) {
+          completeOldestBulk();
         }
-        batch.clear();
+        InFlightBulk bulk = new InFlightBulk(batch, batchIds, batchItems);
+        batch = newBuffer();
+        batchIds = new HashSet<>();
+        batchItems = new ArrayList<>();
         currentBatchSizeBytes = 0;
-        Response response = null;
-        HttpEntity responseEntity = null;
+
+        Request request = new Request("POST", getBulkEndpoint());
+        request.addParameters(Collections.emptyMap());
+        request.setEntity(bulk.requestBody);
+        inFlight.addLast(bulk);
+        restClient.performRequestAsync(
+            request,
+            new ResponseListener() {
+              @Override
+              public void onSuccess(Response response) {
+                bulk.response.complete(response);
+              }
+
+              @Override
+              public void onFailure(Exception exception) {
+                bulk.response.completeExceptionally(exception);
+              }
+            });
+        while (inFlight.size() >= spec.getMaxConcurrentBulkRequests()) {
+          completeOldestBulk();
+        }
+      }
+
+      private String getBulkEndpoint() {
         // Elasticsearch will default to the index/type provided here if none are set in the
         // document meta (i.e. using ElasticsearchIO$Write#withIndexFn and
         // ElasticsearchIO$Write#withTypeFn options)
-        String endPoint;
         if (backendVersion < 7) {
-          endPoint =
-              String.format(
-                  "/%s/%s/_bulk",
-                  spec.getConnectionConfiguration().getIndex(),
-                  spec.getConnectionConfiguration().getType());
-        } else {
-          endPoint = String.format("/%s/_bulk", spec.getConnectionConfiguration().getIndex());
+          return String.format(
+              "/%s/%s/_bulk",
+              spec.getConnectionConfiguration().getIndex(),
+              spec.getConnectionConfiguration().getType());
+        }
+        return String.format("/%s/_bulk", spec.getConnectionConfiguration().getIndex());
+      }
+
+      /**
+       * Waits for the oldest bulk request in flight and checks the result of each of its items.
+       * Items rejected with a retryable status are sent again, on their own, until the retry
+       * configuration is exhausted; items which still fail are rejected.
+       */
+      private void completeOldestBulk() throws IOException, InterruptedException {
+        InFlightBulk bulk = inFlight.pollFirst();
+        List<BulkItem> items = bulk.items;
+        List<BulkItem> rejected = new ArrayList<>();
+        BackOff backoff = retryBackoff.backoff();
+        int attempt = 0;
+        while (true) {
+          HttpEntity responseEntity;
+          try {
+            responseEntity =
+                attempt == 0 ? awaitResponse(bulk) : performBulk(bulk.body.toEntity(items));
+          } catch (ResponseException e) {
+            // the whole request was refused, e.g. because it was malformed or too large
+            if (failedDocuments == null) {
+              throw e;
+            }
+            for (BulkItem item : items) {
+              item.error = e.getMessage();
+            }
+            rejected.addAll(items);
+            break;
+          }
+
+          List<BulkItem> retryable = items;
+          if (responseEntity != null) {
+            retryable = new ArrayList<>();
+            collectItemErrors(responseEntity, items, retryable, rejected);
+          }
+          if (retryable.isEmpty()) {
+            break;
+          }
+          if (!BackOffUtils.next(Sleeper.DEFAULT, backoff)) {
+            if (failedDocuments == null) {
+              throw new IOException(String.format(RETRY_FAILED_LOG, attempt));
+            }
+            for (BulkItem item : retryable) {
+              if (item.error == null) {
+                item.error = String.format(RETRY_FAILED_LOG, attempt);
+              }
+            }
+            rejected.addAll(retryable);
+            break;
+          }
+          LOG.warn(String.format(RETRY_ATTEMPT_LOG, ++attempt));
+          LOG.warn("Resending {} of {} bulk operations.", retryable.size(), bulk.items.size());
+          items = retryable;
+        }
+        bulk.body.reset();
+        freeBuffers.addLast(bulk.body);
+
+        if (!rejected.isEmpty()) {
+          if (failedDocuments == null) {
+            StringBuilder errorMessages =
+                new StringBuilder(
+                    "Error writing to Elasticsearch, some elements could not be inserted:");
+            rejected.forEach(item -> errorMessages.append(item.error));
+            throw new IOException(errorMessages.toString());
+          }
+          rejectedItems.addAll(rejected);
+        }
+      }
+
+      /**
+       * Returns the response to an asynchronously sent bulk request, or null if it failed in a way
+       * which should be retried.
+       */
+      private HttpEntity awaitResponse(InFlightBulk bulk) throws IOException, InterruptedException {
+        try {
+          return new BufferedHttpEntity(bulk.response.get().getEntity());
+        } catch (ExecutionException e) {
+          IOException ex =
+              e.getCause() instanceof IOException
+                  ? (IOException) e.getCause()
+                  : new IOException(e.getCause());
+          return handleRequestFailure(ex);
         }
-        HttpEntity requestBody =
-            new NStringEntity(bulkRequest.toString(), ContentType.APPLICATION_JSON);
+      }
+
+      /** Sends a bulk request, returning null if it failed in a way which should be retried. */
+      private HttpEntity performBulk(HttpEntity requestBody) throws IOException {
         try {
-          Request request = new Request("POST", endPoint);
+          Request request = new Request("POST", getBulkEndpoint());
           request.addParameters(Collections.emptyMap());
           request.setEntity(requestBody);
-          response = restClient.performRequest(request);
-          responseEntity = new BufferedHttpEntity(response.getEntity());
-        } catch (java.io.IOException ex) {
-          if (spec.getRetryConfiguration() == null || !isRetryableClientException(ex)) {
-            throw ex;
-          }
+          return new BufferedHttpEntity(restClient.performRequest(request).getEntity());
+        } catch (IOException ex) {
+          return handleRequestFailure(ex);
+        }
+      }
+
+      private HttpEntity handleRequestFailure(IOException ex) throws IOException {
+        if (spec.getRetryConfiguration() == null) {
+          throw ex;
+        }
+        if (isRetryableClientException(ex)) {
           LOG.error("Caught ES timeout, retrying", ex);
+          return null;
         }
-        if (spec.getRetryConfiguration() != null
-            && (response == null
-                || responseEntity == null
-                || spec.getRetryConfiguration().getRetryPredicate().test(responseEntity))) {
-          if (responseEntity != null
-              && spec.getRetryConfiguration().getRetryPredicate().test(responseEntity)) {
-            LOG.warn("ES Cluster is responding with HTP 429 - TOO_MANY_REQUESTS.");
-          }
-          responseEntity = handleRetry("POST", endPoint, Collections.emptyMap(), requestBody);
+        if (ex instanceof ResponseException
+            && ((ResponseException) ex).getResponse().getStatusLine().getStatusCode()
+                == TOO_MANY_REQUESTS) {
+          LOG.warn("ES Cluster is responding with HTP 429 - TOO_MANY_REQUESTS.");
+          return null;
         }
-        checkForErrors(responseEntity, backendVersion, spec.getUsePartialUpdate());
+        throw ex;
       }
 
-      /** retry request based on retry configuration policy. */
-      private HttpEntity handleRetry(
-          String method, String endpoint, Map<String, String> params, HttpEntity requestBody)
-          throws IOException, InterruptedException {
-        Response response;
-        HttpEntity responseEntity = null;
-        Sleeper sleeper = Sleeper.DEFAULT;
-        BackOff backoff = retryBackoff.backoff();
-        int attempt = 0;
-        // while retry policy exists
-        while (BackOffUtils.next(sleeper, backoff)) {
-          LOG.warn(String.format(RETRY_ATTEMPT_LOG, ++attempt));
-          try {
-            Request request = new Request(method, endpoint);
-            request.addParameters(params);
-            request.setEntity(requestBody);
-            response = restClient.performRequest(request);
-            responseEntity = new BufferedHttpEntity(response.getEntity());
-          } catch (java.io.IOException ex) {
-            if (isRetryableClientException(ex)) {
-              LOG.error("Caught ES timeout, retrying", ex);
-              continue;
-            }
+      /**
+       * Splits the failed items of a bulk response into those which may succeed if sent again and
+       * those which were permanently rejected, recording the reason on each.
+       */
+      private void collectItemErrors(
+          HttpEntity responseEntity,
+          List<BulkItem> items,
+          List<BulkItem> retryable,
+          List<BulkItem> rejected)
+          throws IOException {
+        JsonNode result = parseResponse(responseEntity);
+        if (!result.path("errors").asBoolean()) {
+          return;
+        }
+        boolean retry =
+            spec.getRetryConfiguration() != null
+                && spec.getRetryConfiguration().getRetryPredicate().test(responseEntity);
+        if (retry) {
+          LOG.warn("ES Cluster is responding with HTP 429 - TOO_MANY_REQUESTS.");
+        }
+        JsonNode results = result.path("items");
+        for (int i = 0; i < items.size() && i < results.size(); i++) {
+          // each item holds a single field named after its operation, e.g. "index" or "delete"
+          JsonNode itemResult = results.get(i).elements().next();
+          if (itemResult.get("error") == null) {
+            continue;
           }
-          // if response has no 429 errors
-          if (spec.getRetryConfiguration() != null
-              && spec.getRetryConfiguration().getRetryPredicate().test(responseEntity)) {
-            return responseEntity;
+          BulkItem item = items.get(i);
+          item.error = describeItemError(itemResult);
+          if (retry && itemResult.path("status").asInt() == TOO_MANY_REQUESTS) {
+            retryable.add(item);
           } else {
-            LOG.warn("ES Cluster is responding with HTP 429 - TOO_MANY_REQUESTS.");
+            rejected.add(item);
           }
         }
-        throw new IOException(String.format(RETRY_FAILED_LOG, attempt));
       }
 
       @Teardown
@@ -1630,26 +2143,39 @@ public class ElasticsearchIO {
   }
 
   static int getBackendVersion(ConnectionConfiguration connectionConfiguration) {
+    int backendVersion =
+        Integer.parseInt(getBackendVersionNumber(connectionConfiguration).substring(0, 1));
+    checkArgument(
+        (backendVersion == 2
+            || backendVersion == 5
+            || backendVersion == 6
+            || backendVersion == 7
+            || backendVersion == 8),
+        "The Elasticsearch version to connect to is %s.x. "
+            + "This version of the ElasticsearchIO is only compatible with "
+            + "Elasticsearch v8.x, v7.x, v6.x, v5.x and v2.x",
+        backendVersion);
+    return backendVersion;
+  }
+
+  /** Returns the full version number of the Elasticsearch cluster, e.g. "7.17.0". */
+  static String getBackendVersionNumber(ConnectionConfiguration connectionConfiguration) {
     try (RestClient restClient = connectionConfiguration.createClient()) {
       Request request = new Request("GET", "");
       Response response = restClient.performRequest(request);
       JsonNode jsonNode = parseResponse(response.getEntity());
-      int backendVersion =
-          Integer.parseInt(jsonNode.path("version").path("number").asText().substring(0, 1));
-      checkArgument(
-          (backendVersion == 2
-              || backendVersion == 5
-              || backendVersion == 6
-              || backendVersion == 7
-              || backendVersion == 8),
-          "The Elasticsearch version to connect to is %s.x. "
-              + "This version of the ElasticsearchIO is only compatible with "
-              + "Elasticsearch v8.x, v7.x, v6.x, v5.x and v2.x",
-          backendVersion);
-      return backendVersion;
-
+      return jsonNode.path("version").path("number").asText();
     } catch (IOException e) {
       throw new IllegalArgumentException("Cannot get Elasticsearch version", e);
     }
   }
+
+  /** Returns whether the given Elasticsearch version, e.g. "7.17.0", supports points in time. */
+  @VisibleForTesting
+  static boolean supportsPointInTime(String versionNumber) {
+    String[] parts = versionNumber.split("\\.");
+    int major = Integer.parseInt(parts[0]);
+    int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+    return major > 7 || (major == 7 && minor >= 12);
+  }
 }
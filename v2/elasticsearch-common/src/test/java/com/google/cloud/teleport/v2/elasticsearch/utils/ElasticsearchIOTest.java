@@ -0,0 +1,498 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.elasticsearch.utils;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.teleport.v2.elasticsearch.utils.ElasticsearchIO.BoundedElasticsearchSource;
+import com.google.cloud.teleport.v2.values.FailsafeElement;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.apache.beam.sdk.Pipeline.PipelineExecutionException;
+import org.apache.beam.sdk.io.BoundedSource;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.SourceTestUtils;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.FlatMapElements;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Test cases for the {@link ElasticsearchIO} class, against a fake Elasticsearch server. */
+public class ElasticsearchIOTest {
+
+  private static final String INDEX = "test-index";
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  private FakeElasticsearch server;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new FakeElasticsearch();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  /** Tests that bulk requests are sent without waiting for the previous ones to complete. */
+  @Test
+  public void testWriteSendsConcurrentBulkRequests() {
+    CountDownLatch secondRequest = new CountDownLatch(2);
+    AtomicBoolean overlapped = new AtomicBoolean();
+    server.onBulk(
+        documents -> {
+          secondRequest.countDown();
+          try {
+            // the first request is only answered once another one has been sent
+            overlapped.compareAndSet(false, secondRequest.await(10, TimeUnit.SECONDS));
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return bulkResponse(documents, document -> 201);
+        });
+
+    documents(10)
+        .apply(
+            ElasticsearchIO.write()
+                .withConnectionConfiguration(server.connectionConfiguration())
+                .withMaxBatchSize(2)
+                .withMaxConcurrentBulkRequests(3));
+    pipeline.run();
+
+    assertTrue("bulk requests were not in flight together", overlapped.get());
+    assertEquals(5, server.bulkRequests().size());
+    assertEquals(documentsSent(10), server.documentsReceived());
+  }
+
+  /** Tests that only the items of a bulk request rejected with 429 are sent again. */
+  @Test
+  public void testWriteRetriesRejectedItems() {
+    Set<String> rejectedOnce = Collections.synchronizedSet(new HashSet<>());
+    server.onBulk(
+        documents ->
+            bulkResponse(
+                documents,
+                document -> document.contains("\"2\"") && rejectedOnce.add(document) ? 429 : 201));
+
+    documents(4)
+        .apply(
+            ElasticsearchIO.write()
+                .withConnectionConfiguration(server.connectionConfiguration())
+                .withRetryConfiguration(
+                    ElasticsearchIO.RetryConfiguration.create(3, Duration.standardMinutes(1))));
+    pipeline.run();
+
+    List<List<String>> requests = server.bulkRequests();
+    assertEquals(2, requests.size());
+    assertEquals(documentsSent(4), requests.get(0));
+    assertEquals(Arrays.asList("{\"id\":\"2\"}"), requests.get(1));
+  }
+
+  /** Tests that documents Elasticsearch rejects are output with the reason they were rejected. */
+  @Test
+  public void testWriteWithDeadLetterOutputsRejectedDocuments() {
+    server.onBulk(
+        documents -> bulkResponse(documents, document -> document.contains("\"3\"") ? 400 : 201));
+
+    PCollection<String> failed =
+        documents(5)
+            .apply(
+                ElasticsearchIO.write()
+                    .withConnectionConfiguration(server.connectionConfiguration())
+                    .withMaxBatchSize(2)
+                    .withDeadLetterOutput())
+            .apply(
+                MapElements.into(TypeDescriptors.strings())
+                    .via(
+                        (FailsafeElement<String, String> element) ->
+                            element.getPayload() + " " + element.getErrorMessage()));
+
+    PAssert.that(failed)
+        .satisfies(
+            elements -> {
+              List<String> messages = new ArrayList<>();
+              elements.forEach(messages::add);
+              assertEquals(1, messages.size());
+              assertThat(messages.get(0), containsString("{\"id\":\"3\"}"));
+              assertThat(
+                  messages.get(0), containsString("failed to parse (mapper_parsing_exception)"));
+              return null;
+            });
+    pipeline.run();
+
+    assertEquals(documentsSent(5), server.documentsReceived());
+  }
+
+  /** Tests that a rejected document fails the bundle when there is no dead letter output. */
+  @Test
+  public void testWriteFailsOnRejectedDocumentWithoutDeadLetter() {
+    server.onBulk(
+        documents -> bulkResponse(documents, document -> document.contains("\"1\"") ? 400 : 201));
+
+    documents(2)
+        .apply(
+            ElasticsearchIO.write().withConnectionConfiguration(server.connectionConfiguration()));
+    try {
+      pipeline.run();
+      fail("Expected the rejected document to fail the pipeline");
+    } catch (PipelineExecutionException e) {
+      assertThat(e.getMessage(), containsString("some elements could not be inserted"));
+      assertThat(e.getMessage(), containsString("failed to parse"));
+    }
+  }
+
+  /** Tests that the slices of a split source all read the one point in time opened by the split. */
+  @Test
+  public void testPointInTimeSlicesShareOnePointInTime() throws Exception {
+    server.setIndexSizeBytes(300);
+    server.onSearch(ElasticsearchIOTest::slicePage);
+    BoundedElasticsearchSource source =
+        new BoundedElasticsearchSource(pointInTimeRead(), null, null, null, null);
+
+    List<? extends BoundedSource<String>> slices = source.split(100, pipeline.getOptions());
+    assertEquals(3, slices.size());
+    List<RecordedRequest> opened = server.requests("POST", "/_pit");
+    assertEquals(1, opened.size());
+    assertEquals("/" + INDEX + "/_pit", opened.get(0).path);
+    assertEquals("keep_alive=1h", opened.get(0).query);
+
+    List<String> documents = new ArrayList<>();
+    for (BoundedSource<String> slice : slices) {
+      documents.addAll(SourceTestUtils.readFromSource(slice, pipeline.getOptions()));
+    }
+    assertThat(
+        documents,
+        containsInAnyOrder(
+            "{\"slice\":0,\"n\":0}",
+            "{\"slice\":0,\"n\":1}",
+            "{\"slice\":1,\"n\":0}",
+            "{\"slice\":1,\"n\":1}",
+            "{\"slice\":2,\"n\":0}",
+            "{\"slice\":2,\"n\":1}"));
+
+    // each slice reads a first page, then an empty page after its last document
+    List<RecordedRequest> searches = server.requests("POST", "/_search");
+    assertEquals(6, searches.size());
+    for (RecordedRequest search : searches) {
+      JsonNode body = new ObjectMapper().readTree(search.body);
+      assertEquals("/_search", search.path);
+      assertEquals("pit-1", body.path("pit").path("id").asText());
+      assertEquals("1h", body.path("pit").path("keep_alive").asText());
+      assertEquals(3, body.path("slice").path("max").asInt());
+    }
+    // the shared point in time is left to expire
+    assertTrue(server.requests("DELETE", "/_pit").isEmpty());
+  }
+
+  /** Tests that the point in time keepalive is used to open and to extend the point in time. */
+  @Test
+  public void testPointInTimeKeepalive() throws Exception {
+    server.onSearch(ElasticsearchIOTest::slicePage);
+    BoundedElasticsearchSource source =
+        new BoundedElasticsearchSource(
+            pointInTimeRead().withPointInTimeKeepalive("3h"), null, null, null, null);
+
+    for (BoundedSource<String> slice : source.split(100, pipeline.getOptions())) {
+      SourceTestUtils.readFromSource(slice, pipeline.getOptions());
+    }
+
+    assertEquals("keep_alive=3h", server.requests("POST", "/_pit").get(0).query);
+    for (RecordedRequest search : server.requests("POST", "/_search")) {
+      assertThat(search.body, containsString("\"keep_alive\":\"3h\""));
+    }
+  }
+
+  /** Tests that a source which is not split opens its own point in time and releases it. */
+  @Test
+  public void testUnsplitPointInTimeReaderReleasesItsPointInTime() throws Exception {
+    server.onSearch(ElasticsearchIOTest::slicePage);
+    BoundedElasticsearchSource source =
+        new BoundedElasticsearchSource(pointInTimeRead(), null, null, null, null);
+
+    List<String> documents = SourceTestUtils.readFromSource(source, pipeline.getOptions());
+
+    assertThat(documents, containsInAnyOrder("{\"slice\":0,\"n\":0}", "{\"slice\":0,\"n\":1}"));
+    for (RecordedRequest search : server.requests("POST", "/_search")) {
+      assertTrue(new ObjectMapper().readTree(search.body).path("slice").isMissingNode());
+    }
+    List<RecordedRequest> released = server.requests("DELETE", "/_pit");
+    assertEquals(1, released.size());
+    assertThat(released.get(0).body, containsString("pit-1"));
+  }
+
+  /** Tests that reading from a point in time which has expired fails without retrying. */
+  @Test
+  public void testExpiredPointInTimeIsNotRetried() throws Exception {
+    server.onSearch(body -> null);
+    BoundedElasticsearchSource source =
+        new BoundedElasticsearchSource(pointInTimeRead(), null, null, null, null);
+
+    try {
+      SourceTestUtils.readFromSource(source, pipeline.getOptions());
+      fail("Expected reading an expired point in time to fail");
+    } catch (IOException e) {
+      assertThat(e.getMessage(), containsString("withPointInTimeKeepalive"));
+    }
+    assertEquals(1, server.requests("POST", "/_search").size());
+  }
+
+  /** Tests that reading with a point in time is refused before Elasticsearch 7.12. */
+  @Test
+  public void testPointInTimeRequiresElasticsearch712() throws Exception {
+    server.setVersion("7.11.2");
+    BoundedElasticsearchSource source =
+        new BoundedElasticsearchSource(pointInTimeRead(), null, null, null, null);
+
+    try {
+      source.split(100, pipeline.getOptions());
+      fail("Expected the split to be refused");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage(), containsString("7.12 or later, but was 7.11.2"));
+    }
+    assertTrue(server.requests("POST", "/_pit").isEmpty());
+  }
+
+  @Test
+  public void testSupportsPointInTime() {
+    assertFalse(ElasticsearchIO.supportsPointInTime("6.8.23"));
+    assertFalse(ElasticsearchIO.supportsPointInTime("7.11.2"));
+    assertTrue(ElasticsearchIO.supportsPointInTime("7.12.0"));
+    assertTrue(ElasticsearchIO.supportsPointInTime("7.17.0"));
+    assertTrue(ElasticsearchIO.supportsPointInTime("8.0.0"));
+  }
+
+  private ElasticsearchIO.Read pointInTimeRead() {
+    return ElasticsearchIO.read()
+        .withConnectionConfiguration(server.connectionConfiguration())
+        .withPointInTime();
+  }
+
+  /**
+   * Answers a point in time search with two documents of the requested slice, and with no documents
+   * once the reader pages past them.
+   */
+  private static String slicePage(JsonNode search) {
+    if (search.has("search_after")) {
+      return "{\"pit_id\":\"pit-1\",\"hits\":{\"hits\":[]}}";
+    }
+    int slice = search.path("slice").path("id").asInt(0);
+    return String.format(
+        "{\"pit_id\":\"pit-1\",\"hits\":{\"hits\":["
+            + "{\"_source\":{\"slice\":%1$d,\"n\":0},\"sort\":[%1$d,0]},"
+            + "{\"_source\":{\"slice\":%1$d,\"n\":1},\"sort\":[%1$d,1]}]}}",
+        slice);
+  }
+
+  /**
+   * Creates documents {"id":"0"} to {"id":"count - 1"}, flattened from a single element so that
+   * they are all written in one bundle.
+   */
+  private PCollection<String> documents(int count) {
+    return pipeline
+        .apply(Create.of(Collections.singletonList(count)))
+        .apply(
+            FlatMapElements.into(TypeDescriptors.strings())
+                .via(ElasticsearchIOTest::documentsSent));
+  }
+
+  private static List<String> documentsSent(int count) {
+    List<String> documents = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      documents.add(String.format("{\"id\":\"%d\"}", i));
+    }
+    return documents;
+  }
+
+  /** Builds a bulk response giving each document the status returned by {@code status}. */
+  private static String bulkResponse(List<String> documents, Function<String, Integer> status) {
+    StringBuilder items = new StringBuilder();
+    boolean errors = false;
+    for (String document : documents) {
+      int code = status.apply(document);
+      items.append(items.length() == 0 ? "" : ",");
+      items.append(
+          String.format("{\"create\":{\"_index\":\"%s\",\"_id\":\"x\",\"status\":%d", INDEX, code));
+      if (code == 429) {
+        errors = true;
+        items.append(
+            ",\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"rejected\"}");
+      } else if (code >= 400) {
+        errors = true;
+        items.append(
+            ",\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed to parse\"}");
+      }
+      items.append("}}");
+    }
+    return String.format("{\"took\":1,\"errors\":%s,\"items\":[%s]}", errors, items);
+  }
+
+  /**
+   * A minimal Elasticsearch 7 server which records the requests it receives, answers bulk and
+   * search requests with a scripted response, and serves a single point in time.
+   */
+  private static class FakeElasticsearch {
+    private final HttpServer httpServer;
+    private final List<List<String>> bulkRequests = Collections.synchronizedList(new ArrayList<>());
+    private final List<RecordedRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile Function<List<String>, String> bulkHandler;
+    private volatile Function<JsonNode, String> searchHandler;
+    private volatile String version = "7.17.0";
+    private volatile long indexSizeBytes = 1;
+
+    FakeElasticsearch() throws IOException {
+      httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      httpServer.createContext("/", this::handle);
+      httpServer.setExecutor(Executors.newCachedThreadPool());
+      httpServer.start();
+    }
+
+    void onBulk(Function<List<String>, String> handler) {
+      bulkHandler = handler;
+    }
+
+    /** Answers searches with the given response, or with a 404 when it returns null. */
+    void onSearch(Function<JsonNode, String> handler) {
+      searchHandler = handler;
+    }
+
+    void setVersion(String version) {
+      this.version = version;
+    }
+
+    void setIndexSizeBytes(long indexSizeBytes) {
+      this.indexSizeBytes = indexSizeBytes;
+    }
+
+    ElasticsearchIO.ConnectionConfiguration connectionConfiguration() {
+      return ElasticsearchIO.ConnectionConfiguration.create(
+          new String[] {"http://localhost:" + httpServer.getAddress().getPort()}, INDEX, "_doc");
+    }
+
+    List<List<String>> bulkRequests() {
+      return new ArrayList<>(bulkRequests);
+    }
+
+    /** Returns the requests received with the given method to paths ending with {@code suffix}. */
+    List<RecordedRequest> requests(String method, String suffix) {
+      List<RecordedRequest> matching = new ArrayList<>();
+      for (RecordedRequest request : new ArrayList<>(requests)) {
+        if (request.method.equals(method) && request.path.endsWith(suffix)) {
+          matching.add(request);
+        }
+      }
+      return matching;
+    }
+
+    /** Returns the documents of every bulk request, in sorted order. */
+    List<String> documentsReceived() {
+      List<String> documents = new ArrayList<>();
+      bulkRequests().forEach(documents::addAll);
+      Collections.sort(documents);
+      return documents;
+    }
+
+    void stop() {
+      httpServer.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+      String method = exchange.getRequestMethod();
+      String path = exchange.getRequestURI().getPath();
+      String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+      requests.add(new RecordedRequest(method, path, exchange.getRequestURI().getQuery(), body));
+      int status = 200;
+      String response;
+      if (path.endsWith("/_bulk")) {
+        List<String> documents = new ArrayList<>();
+        String[] lines = body.split("\n");
+        // each operation is an action line followed by the document
+        for (int i = 1; i < lines.length; i += 2) {
+          documents.add(lines[i]);
+        }
+        bulkRequests.add(documents);
+        response = bulkHandler.apply(documents);
+      } else if (path.endsWith("/_search")) {
+        response = searchHandler.apply(new ObjectMapper().readTree(body));
+        if (response == null) {
+          status = 404;
+          response = "{\"error\":{\"type\":\"search_context_missing_exception\"},\"status\":404}";
+        }
+      } else if (path.endsWith("/_stats")) {
+        response =
+            String.format(
+                "{\"indices\":{\"%s\":{\"primaries\":{\"store\":{\"size_in_bytes\":%d}}}}}",
+                INDEX, indexSizeBytes);
+      } else if (path.endsWith("/_pit")) {
+        response = "POST".equals(method) ? "{\"id\":\"pit-1\"}" : "{\"succeeded\":true}";
+      } else {
+        response = String.format("{\"version\":{\"number\":\"%s\"}}", version);
+      }
+      byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  /** A request received by {@link FakeElasticsearch}. */
+  private static class RecordedRequest {
+    final String method;
+    final String path;
+    final String query;
+    final String body;
+
+    RecordedRequest(String method, String path, String query, String body) {
+      this.method = method;
+      this.path = path;
+      this.query = query;
+      this.body = body;
+    }
+  }
+}
@@ -15,19 +15,26 @@
  */
 package com.google.cloud.teleport.v2.templates.dao;
 
+import com.google.cloud.teleport.v2.templates.processing.dml.DMLStatement;
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.List;
 import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.util.BackOff;
+import org.apache.beam.sdk.util.BackOffUtils;
+import org.apache.beam.sdk.util.FluentBackoff;
+import org.apache.beam.sdk.util.Sleeper;
 import org.apache.commons.dbcp2.ConnectionFactory;
 import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp2.PoolableConnectionFactory;
 import org.apache.commons.dbcp2.PoolingDriver;
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +43,14 @@ public class MySqlDao implements Serializable {
   private static final Logger LOG = LoggerFactory.getLogger(MySqlDao.class);
 
   static final String JDBC_DRIVER = "com.mysql.jdbc.Driver";
+  private static final int MAX_RETRIES = 10;
+  private static final FluentBackoff WRITE_BACKOFF =
+      FluentBackoff.DEFAULT
+          .withMaxRetries(MAX_RETRIES)
+          .withInitialBackoff(Duration.standardSeconds(1))
+          .withMaxBackoff(Duration.standardMinutes(1));
+  // Prepared statements cached per connection, one per table and mod type of the batches.
+  private static final int MAX_OPEN_PREPARED_STATEMENTS = 100;
   private PoolingDriver driver = null;
   private String poolName = "";
   private String fullPoolName = "";
@@ -54,6 +69,8 @@ public class MySqlDao implements Serializable {
 
     PoolableConnectionFactory poolfactory =
         new PoolableConnectionFactory(driverManagerConnectionFactory, null);
+    poolfactory.setPoolStatements(true);
+    poolfactory.setMaxOpenPreparedStatements(MAX_OPEN_PREPARED_STATEMENTS);
     ObjectPool connectionPool = new GenericObjectPool(poolfactory);
 
     poolfactory.setPool(connectionPool);
@@ -73,35 +90,53 @@ public class MySqlDao implements Serializable {
     driver.registerPool(this.poolName, connectionPool);
   }
 
-  // writes to database in a batch
-  public void batchWrite(List<String> batchStatements) throws SQLException {
-    Connection connObj = null;
-    Statement statement = null;
-    boolean status = false;
-    while (!status) {
-      try {
-        connObj = DriverManager.getConnection(this.fullPoolName);
-
-        statement = connObj.createStatement();
-        for (String stmt : batchStatements) {
-          statement.addBatch(stmt);
-        }
-        statement.executeBatch();
-        status = true;
+  /**
+   * Writes the statements to the database in order. Consecutive statements with the same SQL are
+   * sent as one prepared statement batch, which the driver rewrites as multi-row statements.
+   * Connection errors are retried with backoff, up to {@link #MAX_RETRIES} times.
+   */
+  public void batchWrite(List<DMLStatement> batchStatements)
+      throws SQLException, IOException, InterruptedException {
+    long startTimeMillis = System.currentTimeMillis();
+    BackOff backoff = WRITE_BACKOFF.backoff();
+    while (true) {
+      try (Connection connObj = DriverManager.getConnection(this.fullPoolName)) {
+        executeBatches(connObj, batchStatements);
+        break;
       } catch (com.mysql.cj.jdbc.exceptions.CommunicationsException e) {
-        // TODO: retry handling is configurable with retry count
+        if (!BackOffUtils.next(Sleeper.DEFAULT, backoff)) {
+          throw e;
+        }
         LOG.warn("Connection exception while executing SQL, will retry : " + e.getMessage());
         // gives indication that the shard is being retried
         Metrics.counter(MySqlDao.class, "mySQL_retry_" + shardId).inc();
-      } finally {
+      }
+    }
+    Metrics.distribution(shardId, "mySQL_write_latency_ms_" + shardId)
+        .update(System.currentTimeMillis() - startTimeMillis);
+  }
 
-        if (statement != null) {
-          statement.close();
-        }
-        if (connObj != null) {
-          connObj.close();
+  private static void executeBatches(Connection connObj, List<DMLStatement> batchStatements)
+      throws SQLException {
+    int start = 0;
+    while (start < batchStatements.size()) {
+      String sql = batchStatements.get(start).getStatement();
+      int end = start + 1;
+      while (end < batchStatements.size() && batchStatements.get(end).getStatement().equals(sql)) {
+        end++;
+      }
+      // Closing the statement returns it to the statement pool of the connection.
+      try (PreparedStatement statement = connObj.prepareStatement(sql)) {
+        for (DMLStatement dmlStatement : batchStatements.subList(start, end)) {
+          List<Object> values = dmlStatement.getValues();
+          for (int i = 0; i < values.size(); i++) {
+            statement.setObject(i + 1, values.get(i));
+          }
+          statement.addBatch();
         }
+        statement.executeBatch();
       }
+      start = end;
     }
   }
 
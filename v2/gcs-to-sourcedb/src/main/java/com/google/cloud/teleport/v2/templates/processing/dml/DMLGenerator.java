@@ -21,7 +21,10 @@ import com.google.cloud.teleport.v2.spanner.migrations.schema.SourceColumnDefini
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SourceTable;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerColumnDefinition;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerTable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -44,12 +47,58 @@ public class DMLGenerator {
       JSONObject newValuesJson,
       JSONObject keyValuesJson,
       String sourceDbTimezoneOffset) {
+    DMLStatement dmlStatement =
+        getDMLStatement(
+            modType,
+            spannerTableName,
+            schema,
+            newValuesJson,
+            keyValuesJson,
+            sourceDbTimezoneOffset,
+            null);
+    return dmlStatement == null ? "" : dmlStatement.getStatement();
+  }
+
+  /**
+   * Returns the DML statement of a change with a {@code ?} parameter for each non null value, so
+   * that the changes of a table and mod type share their SQL, or null if the change cannot be
+   * replicated.
+   */
+  public static DMLStatement getPreparedDMLStatement(
+      String modType,
+      String spannerTableName,
+      Schema schema,
+      JSONObject newValuesJson,
+      JSONObject keyValuesJson,
+      String sourceDbTimezoneOffset) {
+    return getDMLStatement(
+        modType,
+        spannerTableName,
+        schema,
+        newValuesJson,
+        keyValuesJson,
+        sourceDbTimezoneOffset,
+        new HashMap<>());
+  }
+
+  /**
+   * Returns the DML statement of a change. Values are written as SQL literals, or as parameters
+   * whose values are collected in {@code parameters} by source column name when it is not null.
+   */
+  private static DMLStatement getDMLStatement(
+      String modType,
+      String spannerTableName,
+      Schema schema,
+      JSONObject newValuesJson,
+      JSONObject keyValuesJson,
+      String sourceDbTimezoneOffset,
+      Map<String, Object> parameters) {
 
     if (schema.getSpannerToID().get(spannerTableName) == null) {
       LOG.warn(
           "The spanner table {} was not found in session file, dropping the record",
           spannerTableName);
-      return "";
+      return null;
     }
 
     String spannerTableId = schema.getSpannerToID().get(spannerTableName).getName();
@@ -59,64 +108,82 @@ public class DMLGenerator {
       LOG.warn(
           "The spanner table {} was not found in session file, dropping the record",
           spannerTableName);
-      return "";
+      return null;
     }
 
     SourceTable sourceTable = schema.getSrcSchema().get(spannerTableId);
     if (sourceTable == null) {
       LOG.warn("The table {} was not found in source", spannerTableName);
-      return "";
+      return null;
     }
 
     if (sourceTable.getPrimaryKeys() == null || sourceTable.getPrimaryKeys().length == 0) {
       LOG.warn(
           "Cannot reverse replicate for table {} without primary key, skipping the record",
           sourceTable.getName());
-      return "";
+      return null;
     }
 
     if ("INSERT".equals(modType) || "UPDATE".equals(modType)) {
       Map<String, String> pkcolumnNameValues =
           getPkColumnValues(
-              spannerTable, sourceTable, newValuesJson, keyValuesJson, sourceDbTimezoneOffset);
+              spannerTable,
+              sourceTable,
+              newValuesJson,
+              keyValuesJson,
+              sourceDbTimezoneOffset,
+              parameters);
       if (pkcolumnNameValues == null) {
         LOG.warn(
             "Cannot reverse replicate for table {} without primary key, skipping the record",
             sourceTable.getName());
-        return "";
+        return null;
       }
       Map<String, String> columnNameValues =
           getColumnValues(
-              spannerTable, sourceTable, newValuesJson, keyValuesJson, sourceDbTimezoneOffset);
+              spannerTable,
+              sourceTable,
+              newValuesJson,
+              keyValuesJson,
+              sourceDbTimezoneOffset,
+              parameters);
       return getUpsertStatement(
           sourceTable.getName(),
           sourceTable.getPrimaryKeySet(),
           columnNameValues,
-          pkcolumnNameValues);
+          pkcolumnNameValues,
+          parameters);
     } else if ("DELETE".equals(modType)) {
 
       Map<String, String> pkcolumnNameValues =
           getPkColumnValues(
-              spannerTable, sourceTable, newValuesJson, keyValuesJson, sourceDbTimezoneOffset);
+              spannerTable,
+              sourceTable,
+              newValuesJson,
+              keyValuesJson,
+              sourceDbTimezoneOffset,
+              parameters);
       if (pkcolumnNameValues == null) {
         LOG.warn(
             "Cannot reverse replicate for table {} without primary key, skipping the record",
             sourceTable.getName());
-        return "";
+        return null;
       }
-      return getDeleteStatement(sourceTable.getName(), pkcolumnNameValues);
+      return getDeleteStatement(sourceTable.getName(), pkcolumnNameValues, parameters);
     } else {
       LOG.warn("Unsupported modType: " + modType);
-      return "";
+      return null;
     }
   }
 
-  private static String getUpsertStatement(
+  private static DMLStatement getUpsertStatement(
       String tableName,
       Set<String> primaryKeys,
       Map<String, String> columnNameValues,
-      Map<String, String> pkcolumnNameValues) {
+      Map<String, String> pkcolumnNameValues,
+      Map<String, Object> parameters) {
 
+    List<Object> values = new ArrayList<>();
     String allColumns = "";
     String allValues = "";
     String updateValues = "";
@@ -127,6 +194,7 @@ public class DMLGenerator {
 
       allColumns += colName + ",";
       allValues += colValue + ",";
+      addParameter(values, parameters, colName);
     }
 
     if (columnNameValues.size() == 0) { // if there are only PKs
@@ -136,7 +204,7 @@ public class DMLGenerator {
 
       String returnVal =
           "INSERT INTO " + tableName + "(" + allColumns + ")" + " VALUES (" + allValues + ") ";
-      return returnVal;
+      return new DMLStatement(returnVal, values);
     }
     int index = 0;
 
@@ -145,8 +213,12 @@ public class DMLGenerator {
       String colValue = entry.getValue();
       allColumns += colName;
       allValues += colValue;
+      addParameter(values, parameters, colName);
       if (!primaryKeys.contains(colName)) {
-        updateValues += " " + colName + " = " + colValue;
+        // Prepared upserts update from the inserted values, so that the driver can rewrite their
+        // batches as multi-row inserts.
+        updateValues +=
+            " " + colName + " = " + (parameters == null ? colValue : "VALUES(" + colName + ")");
       }
 
       if (index + 1 < columnNameValues.size()) {
@@ -168,11 +240,12 @@ public class DMLGenerator {
             + "ON DUPLICATE KEY UPDATE "
             + updateValues;
 
-    return returnVal;
+    return new DMLStatement(returnVal, values);
   }
 
-  private static String getDeleteStatement(
-      String tableName, Map<String, String> pkcolumnNameValues) {
+  private static DMLStatement getDeleteStatement(
+      String tableName, Map<String, String> pkcolumnNameValues, Map<String, Object> parameters) {
+    List<Object> values = new ArrayList<>();
     String deleteValues = "";
 
     int index = 0;
@@ -181,14 +254,22 @@ public class DMLGenerator {
       String colValue = entry.getValue();
 
       deleteValues += " " + colName + " = " + colValue;
+      addParameter(values, parameters, colName);
       if (index + 1 < pkcolumnNameValues.size()) {
-        deleteValues += ",";
+        deleteValues += parameters == null ? "," : " AND";
       }
       index++;
     }
     String returnVal = "DELETE FROM " + tableName + " WHERE " + deleteValues;
 
-    return returnVal;
+    return new DMLStatement(returnVal, values);
+  }
+
+  private static void addParameter(
+      List<Object> values, Map<String, Object> parameters, String colName) {
+    if (parameters != null && parameters.containsKey(colName)) {
+      values.add(parameters.get(colName));
+    }
   }
 
   private static Map<String, String> getColumnValues(
@@ -196,7 +277,8 @@ public class DMLGenerator {
       SourceTable sourceTable,
       JSONObject newValuesJson,
       JSONObject keyValuesJson,
-      String sourceDbTimezoneOffset) {
+      String sourceDbTimezoneOffset,
+      Map<String, Object> parameters) {
     Map<String, String> response = new HashMap<>();
 
     /*
@@ -236,7 +318,7 @@ public class DMLGenerator {
         }
         columnValue =
             getMappedColumnValue(
-                spannerColDef, sourceColDef, keyValuesJson, sourceDbTimezoneOffset);
+                spannerColDef, sourceColDef, keyValuesJson, sourceDbTimezoneOffset, parameters);
       } else if (newValuesJson.has(spannerColumnName)) {
         // get the value based on Spanner and Source type
         if (newValuesJson.isNull(spannerColumnName)) {
@@ -245,7 +327,7 @@ public class DMLGenerator {
         }
         columnValue =
             getMappedColumnValue(
-                spannerColDef, sourceColDef, newValuesJson, sourceDbTimezoneOffset);
+                spannerColDef, sourceColDef, newValuesJson, sourceDbTimezoneOffset, parameters);
       } else {
         continue;
       }
@@ -261,7 +343,8 @@ public class DMLGenerator {
       SourceTable sourceTable,
       JSONObject newValuesJson,
       JSONObject keyValuesJson,
-      String sourceDbTimezoneOffset) {
+      String sourceDbTimezoneOffset,
+      Map<String, Object> parameters) {
     Map<String, String> response = new HashMap<>();
     /*
     Get all primary key col ids from source table
@@ -297,7 +380,7 @@ public class DMLGenerator {
         }
         columnValue =
             getMappedColumnValue(
-                spannerColDef, sourceColDef, keyValuesJson, sourceDbTimezoneOffset);
+                spannerColDef, sourceColDef, keyValuesJson, sourceDbTimezoneOffset, parameters);
       } else if (newValuesJson.has(spannerColumnName)) {
         // get the value based on Spanner and Source type
         if (newValuesJson.isNull(spannerColumnName)) {
@@ -306,7 +389,7 @@ public class DMLGenerator {
         }
         columnValue =
             getMappedColumnValue(
-                spannerColDef, sourceColDef, newValuesJson, sourceDbTimezoneOffset);
+                spannerColDef, sourceColDef, newValuesJson, sourceDbTimezoneOffset, parameters);
       } else {
         LOG.warn("The column {} was not found in input record", spannerColumnName);
         return null;
@@ -322,7 +405,8 @@ public class DMLGenerator {
       SpannerColumnDefinition spannerColDef,
       SourceColumnDefinition sourceColDef,
       JSONObject valuesJson,
-      String sourceDbTimezoneOffset) {
+      String sourceDbTimezoneOffset,
+      Map<String, Object> parameters) {
 
     String colInputValue = "";
     String colType = spannerColDef.getType().getName();
@@ -353,12 +437,82 @@ public class DMLGenerator {
     } else {
       colInputValue = valuesJson.getString(colName);
     }
+    if (parameters != null) {
+      return getColumnParameterByType(
+          sourceColDef.getType().getName(),
+          sourceColDef.getName(),
+          colInputValue,
+          sourceDbTimezoneOffset,
+          parameters);
+    }
     String response =
         getColumnValueByType(
             sourceColDef.getType().getName(), colInputValue, sourceDbTimezoneOffset);
     return response;
   }
 
+  /**
+   * Returns the SQL of a column value as a {@code ?} parameter, whose value is put in {@code
+   * parameters}. Values which are neither text, binary nor numbers are written as literals, like
+   * {@link #getColumnValueByType(String, String, String)} does.
+   */
+  private static String getColumnParameterByType(
+      String columnType,
+      String columnName,
+      String colValue,
+      String sourceDbTimezoneOffset,
+      Map<String, Object> parameters) {
+    String cleanedNullBytes = StringUtils.replace(colValue, "\u0000", "");
+    switch (columnType) {
+      case "varchar":
+      case "char":
+      case "text":
+      case "tinytext":
+      case "mediumtext":
+      case "longtext":
+      case "enum":
+      case "date":
+      case "time":
+      case "year":
+      case "set":
+      case "json":
+      case "geometry":
+      case "geometrycollection":
+      case "point":
+      case "multipoint":
+      case "linestring":
+      case "multilinestring":
+      case "polygon":
+      case "multipolygon":
+      case "tinyblob":
+      case "mediumblob":
+      case "blob":
+      case "longblob":
+        parameters.put(columnName, cleanedNullBytes);
+        return "?";
+      case "timestamp":
+      case "datetime":
+        // trim the Z for mysql
+        parameters.put(columnName, cleanedNullBytes.substring(0, cleanedNullBytes.length() - 1));
+        return " CONVERT_TZ(?,'+00:00','" + sourceDbTimezoneOffset + "')";
+      case "binary":
+      case "varbinary":
+        parameters.put(columnName, cleanedNullBytes.getBytes());
+        return "?";
+      default:
+        if ("true".equals(colValue) || "false".equals(colValue)) {
+          parameters.put(columnName, Boolean.valueOf(colValue));
+          return "?";
+        }
+        try {
+          parameters.put(columnName, new BigDecimal(colValue));
+          return "?";
+        } catch (NumberFormatException e) {
+          return colValue;
+        }
+    }
+  }
+
   private static String getColumnValueByType(
       String columnType, String colValue, String sourceDbTimezoneOffset) {
     String response = "";
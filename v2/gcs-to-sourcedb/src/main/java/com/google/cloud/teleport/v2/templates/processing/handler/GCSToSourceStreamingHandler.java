@@ -43,6 +43,8 @@ public class GCSToSourceStreamingHandler {
       Instant readStartTime = Instant.now();
       List<TrimmedShardedDataChangeRecord> records = inputFileReader.getRecords();
       Instant readEndTime = Instant.now();
+      // Read the next file while the records are applied.
+      inputFileReader.prefetchNextRecords();
       LOG.info(
           "Shard "
               + shardId
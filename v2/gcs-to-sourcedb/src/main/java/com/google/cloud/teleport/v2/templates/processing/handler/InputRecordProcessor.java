@@ -19,6 +19,7 @@ import com.google.cloud.teleport.v2.spanner.migrations.schema.Schema;
 import com.google.cloud.teleport.v2.templates.common.TrimmedShardedDataChangeRecord;
 import com.google.cloud.teleport.v2.templates.dao.MySqlDao;
 import com.google.cloud.teleport.v2.templates.processing.dml.DMLGenerator;
+import com.google.cloud.teleport.v2.templates.processing.dml.DMLStatement;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -54,7 +55,7 @@ public class InputRecordProcessor {
       Distribution lagMetric =
           Metrics.distribution(shardId, "replication_lag_in_seconds_" + shardId);
 
-      List<String> dmlBatch = new ArrayList<>();
+      List<DMLStatement> dmlBatch = new ArrayList<>();
       for (TrimmedShardedDataChangeRecord chrec : recordList) {
         String tableName = chrec.getTableName();
         String modType = chrec.getModType().name();
@@ -63,10 +64,10 @@ public class InputRecordProcessor {
         JSONObject newValuesJson = new JSONObject(newValueJsonStr);
         JSONObject keysJson = new JSONObject(keysJsonStr);
 
-        String dmlStatement =
-            DMLGenerator.getDMLStatement(
+        DMLStatement dmlStatement =
+            DMLGenerator.getPreparedDMLStatement(
                 modType, tableName, schema, newValuesJson, keysJson, sourceDbTimezoneOffset);
-        if (!dmlStatement.isEmpty()) {
+        if (dmlStatement != null) {
           dmlBatch.add(dmlStatement);
         }
         if (!capturedlagMetric) {
@@ -20,19 +20,25 @@ import com.google.cloud.teleport.v2.templates.common.ProcessingContext;
 import com.google.cloud.teleport.v2.templates.common.TrimmedShardedDataChangeRecord;
 import com.google.cloud.teleport.v2.templates.dao.SpannerDao;
 import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.beam.sdk.io.FileSystems;
 import org.apache.beam.sdk.metrics.Metrics;
+import org.joda.time.Duration;
 import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,25 +54,61 @@ public class GCSReader {
   private boolean shouldRetryWhenFileNotFound;
   private boolean shouldFailWhenFileNotFound;
 
+  private String gcsPath;
+  private Duration windowDuration;
+
   private static final Logger LOG = LoggerFactory.getLogger(GCSReader.class);
 
+  private static final Gson GSON =
+      new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.IDENTITY).create();
+
+  private static final Comparator<TrimmedShardedDataChangeRecord> RECORD_ORDER =
+      Comparator.comparing(TrimmedShardedDataChangeRecord::getCommitTimestamp)
+          .thenComparing(TrimmedShardedDataChangeRecord::getServerTransactionId)
+          .thenComparing(TrimmedShardedDataChangeRecord::getRecordSequence);
+
+  // The number of shards of a worker for which the file of the next interval is kept prefetched.
+  static final int MAX_PREFETCHED_FILES = 64;
+
+  /*
+  The file of the next interval of each shard, read in the background while the records of the
+  current interval are applied. There is at most one per shard. Beyond MAX_PREFETCHED_FILES, the
+  file prefetched longest ago is dropped, e.g. that of a shard which moved to another worker, so
+  that its records are not held on to.
+   */
+  private static final Map<String, PrefetchedFile> PREFETCHED_FILES =
+      Collections.synchronizedMap(
+          new LinkedHashMap<String, PrefetchedFile>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PrefetchedFile> eldest) {
+              if (size() <= MAX_PREFETCHED_FILES) {
+                return false;
+              }
+              eldest.getValue().records.cancel(true);
+              return true;
+            }
+          });
+
+  private static final ExecutorService PREFETCH_EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "gcs-reader-prefetch");
+            thread.setDaemon(true);
+            return thread;
+          });
+
   public GCSReader(ProcessingContext taskContext, SpannerDao spannerDao) {
 
     String fileStartTime = taskContext.getStartTimestamp();
     com.google.cloud.Timestamp startTs = com.google.cloud.Timestamp.parseTimestamp(fileStartTime);
     Instant startInst = new Instant(startTs.toSqlTimestamp());
     currentIntervalEnd = startInst.plus(taskContext.getWindowDuration());
-    String gcsFileName =
-        taskContext.getGCSPath()
-            + "/"
-            + taskContext.getShard().getLogicalShardId()
-            + "/"
-            + startInst
-            + "-"
-            + currentIntervalEnd
-            + "-pane-0-last-0-of-1.txt";
-
-    this.fileName = gcsFileName;
+    this.gcsPath = taskContext.getGCSPath();
+    this.windowDuration = taskContext.getWindowDuration();
+
+    this.fileName =
+        getFileName(
+            gcsPath, taskContext.getShard().getLogicalShardId(), startInst, currentIntervalEnd);
     this.shardFileCreationTracker =
         new ShardFileCreationTracker(
             spannerDao, taskContext.getShard().getLogicalShardId(), taskContext.getRunId());
@@ -78,35 +120,22 @@ public class GCSReader {
     shouldFailWhenFileNotFound = false;
   }
 
-  public List<TrimmedShardedDataChangeRecord> getRecords() {
-    /*
-    Call TextIO - read the file into PCollection
-    Get a JSON transform of the PCollection
-    Sort the Collection on commitTs,serverTrxId and record sequence
-     */
-    List<TrimmedShardedDataChangeRecord> changeStreamList = new ArrayList<>();
-    LOG.info("Reading from file, {}", fileName);
-    try (InputStream stream =
-        Channels.newInputStream(FileSystems.open(FileSystems.matchNewResource(fileName, false)))) {
-
-      BufferedReader reader =
-          new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
-      while (reader.ready()) {
-        String line = reader.readLine();
-        TrimmedShardedDataChangeRecord chrec =
-            new GsonBuilder()
-                .setFieldNamingPolicy(FieldNamingPolicy.IDENTITY)
-                .create()
-                .fromJson(line, TrimmedShardedDataChangeRecord.class);
+  private static String getFileName(
+      String gcsPath, String shardId, Instant startInst, Instant endInst) {
+    return gcsPath + "/" + shardId + "/" + startInst + "-" + endInst + "-pane-0-last-0-of-1.txt";
+  }
 
-        changeStreamList.add(chrec);
-      }
+  public List<TrimmedShardedDataChangeRecord> getRecords() {
+    List<TrimmedShardedDataChangeRecord> changeStreamList = getPrefetchedRecords();
+    if (changeStreamList != null) {
+      Metrics.counter(shardId, "file_read_" + shardId).inc();
+      return changeStreamList;
+    }
 
-      Collections.sort(
-          changeStreamList,
-          Comparator.comparing(TrimmedShardedDataChangeRecord::getCommitTimestamp)
-              .thenComparing(TrimmedShardedDataChangeRecord::getServerTransactionId)
-              .thenComparing(TrimmedShardedDataChangeRecord::getRecordSequence));
+    changeStreamList = new ArrayList<>();
+    LOG.info("Reading from file, {}", fileName);
+    try {
+      changeStreamList = readRecords(fileName);
 
       Metrics.counter(shardId, "file_read_" + shardId).inc();
 
@@ -133,6 +162,100 @@ public class GCSReader {
     return changeStreamList;
   }
 
+  /**
+   * Starts reading the file of the next interval in the background, to be returned by {@link
+   * #getRecords()} of the next interval. Files which do not exist yet are read again then.
+   */
+  public void prefetchNextRecords() {
+    String nextFileName =
+        getFileName(gcsPath, shardId, currentIntervalEnd, currentIntervalEnd.plus(windowDuration));
+    PrefetchedFile previous =
+        PREFETCHED_FILES.put(
+            shardId,
+            new PrefetchedFile(
+                nextFileName,
+                PREFETCH_EXECUTOR.submit(
+                    () -> {
+                      try {
+                        return readRecords(nextFileName);
+                      } catch (IOException e) {
+                        return null;
+                      }
+                    })));
+    if (previous != null) {
+      previous.records.cancel(true);
+    }
+  }
+
+  /** Returns the records being prefetched for a shard, or null if none are. */
+  static Future<List<TrimmedShardedDataChangeRecord>> getPrefetchedFile(String shardId) {
+    PrefetchedFile prefetchedFile = PREFETCHED_FILES.get(shardId);
+    return prefetchedFile == null ? null : prefetchedFile.records;
+  }
+
+  /** Returns the prefetched records of the current file, or null if it was not prefetched. */
+  private List<TrimmedShardedDataChangeRecord> getPrefetchedRecords() {
+    PrefetchedFile prefetchedFile = PREFETCHED_FILES.remove(shardId);
+    if (prefetchedFile == null || !prefetchedFile.fileName.equals(fileName)) {
+      return null;
+    }
+    try {
+      List<TrimmedShardedDataChangeRecord> changeStreamList = prefetchedFile.records.get();
+      if (changeStreamList != null) {
+        LOG.info("Read prefetched file, {}", fileName);
+      }
+      return changeStreamList;
+    } catch (Exception e) {
+      LOG.warn("Failed to prefetch file {}, reading it again: {}", fileName, e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Reads the records of a file, sorted on commitTs, serverTrxId and record sequence. Files are
+   * written almost in that order, so they are only sorted when a record is out of order, and the
+   * sort is then close to linear on the sorted runs.
+   */
+  static List<TrimmedShardedDataChangeRecord> readRecords(String fileName) throws IOException {
+    List<TrimmedShardedDataChangeRecord> changeStreamList = new ArrayList<>();
+    boolean sorted = true;
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(
+                Channels.newInputStream(
+                    FileSystems.open(FileSystems.matchNewResource(fileName, false))),
+                StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        TrimmedShardedDataChangeRecord chrec =
+            GSON.fromJson(line, TrimmedShardedDataChangeRecord.class);
+        if (sorted
+            && !changeStreamList.isEmpty()
+            && RECORD_ORDER.compare(changeStreamList.get(changeStreamList.size() - 1), chrec) > 0) {
+          sorted = false;
+        }
+        changeStreamList.add(chrec);
+      }
+    }
+    if (!sorted) {
+      changeStreamList.sort(RECORD_ORDER);
+    }
+    return changeStreamList;
+  }
+
+  private static class PrefetchedFile {
+    private final String fileName;
+    private final Future<List<TrimmedShardedDataChangeRecord>> records;
+
+    PrefetchedFile(String fileName, Future<List<TrimmedShardedDataChangeRecord>> records) {
+      this.fileName = fileName;
+      this.records = records;
+    }
+  }
+
   /**
    * We reached here since we did not find the file in GCS for the given interval. This can happen
    * if: 1. There was no data written to Spanner for that interval hence file does not exist in GCS
@@ -16,6 +16,7 @@
 package com.google.cloud.teleport.v2.templates.processing.dml;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -25,8 +26,10 @@ import com.google.cloud.teleport.v2.templates.common.TrimmedShardedDataChangeRec
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.GsonBuilder;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.apache.beam.sdk.io.FileSystems;
 import org.apache.commons.io.IOUtils;
 import org.json.JSONObject;
@@ -321,4 +324,50 @@ public final class DMLGeneratorTest {
     // expected map of column names and values
     assertEquals(sql, sql);
   }
+
+  @Test
+  public void preparedUpsertsShareTheirStatement() {
+    Schema schema = SessionFileReader.read("src/test/resources/allMatchSession.json");
+    String tableName = "Singers";
+
+    DMLStatement insert =
+        DMLGenerator.getPreparedDMLStatement(
+            "INSERT",
+            tableName,
+            schema,
+            new JSONObject("{\"FirstName\":\"kk\",\"LastName\":\"ll\"}"),
+            new JSONObject("{\"SingerId\":\"999\"}"),
+            "+00:00");
+    DMLStatement update =
+        DMLGenerator.getPreparedDMLStatement(
+            "UPDATE",
+            tableName,
+            schema,
+            new JSONObject("{\"FirstName\":\"it's\",\"LastName\":\"mm\"}"),
+            new JSONObject("{\"SingerId\":\"1000\"}"),
+            "+00:00");
+
+    assertEquals(insert.getStatement(), update.getStatement());
+    assertTrue(insert.getStatement().contains("VALUES (?,?,?)"));
+    assertEquals(3, insert.getValues().size());
+    assertTrue(insert.getValues().contains(new BigDecimal("999")));
+    assertTrue(update.getValues().contains("it's"));
+  }
+
+  @Test
+  public void preparedDelete() {
+    Schema schema = SessionFileReader.read("src/test/resources/allMatchSession.json");
+
+    DMLStatement delete =
+        DMLGenerator.getPreparedDMLStatement(
+            "DELETE",
+            "Singers",
+            schema,
+            new JSONObject("{}"),
+            new JSONObject("{\"SingerId\":\"999\"}"),
+            "+00:00");
+
+    assertEquals("DELETE FROM Singers WHERE  SingerId = ?", delete.getStatement());
+    assertEquals(Arrays.asList(new BigDecimal("999")), delete.getValues());
+  }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.teleport.v2.spanner.migrations.shard.Shard;
+import com.google.cloud.teleport.v2.templates.common.ProcessingContext;
+import com.google.cloud.teleport.v2.templates.common.TrimmedShardedDataChangeRecord;
+import com.google.cloud.teleport.v2.templates.dao.SpannerDao;
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.beam.sdk.io.gcp.spanner.changestreams.model.ModType;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Test cases for the {@link GCSReader} class. */
+@RunWith(JUnit4.class)
+public final class GCSReaderTest {
+
+  private static final String START = "2024-01-01T00:00:00Z";
+  private static final Duration WINDOW = Duration.standardSeconds(10);
+
+  @Rule public final MockitoRule mockito = MockitoJUnit.rule();
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+  @Mock private SpannerDao spannerDaoMock;
+
+  @Test
+  public void readRecordsSortsRecordsInCommitOrder() throws IOException {
+    File file = tempFolder.newFile();
+    writeRecords(file, record(2, "b"), record(1, "b"), record(2, "a"), record(1, "a"));
+
+    List<TrimmedShardedDataChangeRecord> records = GCSReader.readRecords(file.getPath());
+
+    assertEquals(
+        Arrays.asList("1a", "1b", "2a", "2b"),
+        records.stream()
+            .map(r -> r.getCommitTimestamp().getSeconds() + r.getServerTransactionId())
+            .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void getRecordsTakesPrefetchedRecords() throws Exception {
+    String gcsPath = tempFolder.getRoot().getPath();
+    GCSReader reader = new GCSReader(context("prefetched", START, gcsPath), spannerDaoMock);
+    File nextFile = intervalFile(gcsPath, "prefetched", 1);
+    writeRecords(nextFile, record(1, "a"), record(2, "a"));
+
+    reader.prefetchNextRecords();
+    assertEquals(2, GCSReader.getPrefetchedFile("prefetched").get().size());
+    // The records are no longer read from the file.
+    Files.delete(nextFile.toPath());
+
+    GCSReader nextReader =
+        new GCSReader(context("prefetched", nextStart(1), gcsPath), spannerDaoMock);
+    assertEquals(2, nextReader.getRecords().size());
+    assertNull(GCSReader.getPrefetchedFile("prefetched"));
+  }
+
+  @Test
+  public void getRecordsReadsFileWhichDidNotExistWhenPrefetched() throws Exception {
+    String gcsPath = tempFolder.getRoot().getPath();
+    GCSReader reader = new GCSReader(context("late", START, gcsPath), spannerDaoMock);
+
+    reader.prefetchNextRecords();
+    assertNull(GCSReader.getPrefetchedFile("late").get());
+    writeRecords(intervalFile(gcsPath, "late", 1), record(1, "a"));
+
+    GCSReader nextReader = new GCSReader(context("late", nextStart(1), gcsPath), spannerDaoMock);
+    assertEquals(1, nextReader.getRecords().size());
+  }
+
+  @Test
+  public void prefetchedFilesAreBounded() {
+    String gcsPath = tempFolder.getRoot().getPath();
+    for (int i = 0; i <= GCSReader.MAX_PREFETCHED_FILES; i++) {
+      new GCSReader(context("bounded" + i, START, gcsPath), spannerDaoMock).prefetchNextRecords();
+    }
+
+    assertNull(GCSReader.getPrefetchedFile("bounded0"));
+    assertNotNull(GCSReader.getPrefetchedFile("bounded1"));
+    assertNotNull(GCSReader.getPrefetchedFile("bounded" + GCSReader.MAX_PREFETCHED_FILES));
+  }
+
+  private static ProcessingContext context(String shardId, String startTimestamp, String gcsPath) {
+    Shard shard = new Shard();
+    shard.setLogicalShardId(shardId);
+    return new ProcessingContext(shard, null, "+00:00", startTimestamp, WINDOW, gcsPath, "run1");
+  }
+
+  /** Returns the start of the interval the given number of windows after the first one. */
+  private static String nextStart(int windows) {
+    return Instant.parse(START).plus(WINDOW.multipliedBy(windows)).toString();
+  }
+
+  private static File intervalFile(String gcsPath, String shardId, int windows) {
+    Instant start = Instant.parse(START).plus(WINDOW.multipliedBy(windows));
+    File file =
+        new File(
+            gcsPath
+                + "/"
+                + shardId
+                + "/"
+                + start
+                + "-"
+                + start.plus(WINDOW)
+                + "-pane-0-last-0-of-1.txt");
+    file.getParentFile().mkdirs();
+    return file;
+  }
+
+  private static TrimmedShardedDataChangeRecord record(long seconds, String transactionId) {
+    return new TrimmedShardedDataChangeRecord(
+        Timestamp.ofTimeSecondsAndNanos(seconds, 0),
+        transactionId,
+        "0",
+        "Singers",
+        Collections.emptyList(),
+        ModType.INSERT,
+        1,
+        "");
+  }
+
+  private static void writeRecords(File file, TrimmedShardedDataChangeRecord... records)
+      throws IOException {
+    Gson gson = new Gson();
+    List<String> lines = new ArrayList<>();
+    for (TrimmedShardedDataChangeRecord record : records) {
+      lines.add(gson.toJson(record));
+      lines.add("");
+    }
+    Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+  }
+}
@@ -172,6 +172,7 @@ public class GCSToElasticsearch {
                     .setDelimiter(options.getDelimiter())
                     .setUdfFileSystemPath(options.getJavascriptTextTransformGcsPath())
                     .setUdfFunctionName(options.getJavascriptTextTransformFunctionName())
+                    .setUdfBatchSize(options.getJavascriptTextTransformBatchSize())
                     .setJsonSchemaPath(options.getJsonSchemaPath())
                     .setHeaderTag(CSV_HEADERS)
                     .setLineTag(CSV_LINES)
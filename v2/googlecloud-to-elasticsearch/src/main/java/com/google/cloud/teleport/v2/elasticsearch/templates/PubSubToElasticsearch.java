@@ -188,6 +188,8 @@ public class PubSubToElasticsearch {
                     .setJavascriptTextTransformFunctionName(
                         options.getJavascriptTextTransformFunctionName())
                     .setJavascriptTextTransformGcsPath(options.getJavascriptTextTransformGcsPath())
+                    .setJavascriptTextTransformBatchSize(
+                        options.getJavascriptTextTransformBatchSize())
                     .build());
 
     /*
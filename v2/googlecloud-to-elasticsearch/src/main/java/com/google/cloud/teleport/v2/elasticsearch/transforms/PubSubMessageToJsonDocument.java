@@ -61,6 +61,9 @@ public abstract class PubSubMessageToJsonDocument
   @Nullable
   public abstract Integer javascriptTextTransformReloadIntervalMinutes();
 
+  @Nullable
+  public abstract Integer javascriptTextTransformBatchSize();
+
   @Override
   public PCollectionTuple expand(PCollection<PubsubMessage> input) {
 
@@ -77,6 +80,7 @@ public abstract class PubSubMessageToJsonDocument
               .setFileSystemPath(javascriptTextTransformGcsPath())
               .setFunctionName(javascriptTextTransformFunctionName())
               .setReloadIntervalMinutes(javascriptTextTransformReloadIntervalMinutes())
+              .setBatchSize(javascriptTextTransformBatchSize())
               .setSuccessTag(PubSubToElasticsearch.TRANSFORM_OUT)
               .setFailureTag(PubSubToElasticsearch.TRANSFORM_ERROR_OUTPUT_OUT)
               .build());
@@ -102,6 +106,9 @@ public abstract class PubSubMessageToJsonDocument
     public abstract Builder setJavascriptTextTransformReloadIntervalMinutes(
         Integer javascriptTextTransformReloadIntervalMinutes);
 
+    public abstract Builder setJavascriptTextTransformBatchSize(
+        Integer javascriptTextTransformBatchSize);
+
     public abstract PubSubMessageToJsonDocument build();
   }
 }
@@ -236,6 +236,7 @@ public class TextIOToBigQuery {
                 .setFileSystemPath(options.getJavascriptTextTransformGcsPath())
                 .setFunctionName(options.getJavascriptTextTransformFunctionName())
                 .setReloadIntervalMinutes(options.getJavascriptTextTransformReloadIntervalMinutes())
+                .setBatchSize(options.getJavascriptTextTransformBatchSize())
                 .build())
         .apply(
             MapElements.via(
@@ -251,6 +251,7 @@ public class TextToBigQueryStreaming {
                     .setFunctionName(options.getJavascriptTextTransformFunctionName())
                     .setReloadIntervalMinutes(
                         options.getJavascriptTextTransformReloadIntervalMinutes())
+                    .setBatchSize(options.getJavascriptTextTransformBatchSize())
                     .setSuccessTag(UDF_OUT)
                     .setFailureTag(UDF_DEADLETTER_OUT)
                     .build());
@@ -212,6 +212,7 @@ public final class GCSToSplunk {
         .setDelimiter(options.getDelimiter())
         .setUdfFileSystemPath(options.getJavascriptTextTransformGcsPath())
         .setUdfFunctionName(options.getJavascriptTextTransformFunctionName())
+        .setUdfBatchSize(options.getJavascriptTextTransformBatchSize())
         .setJsonSchemaPath(options.getJsonSchemaPath())
         .setHeaderTag(CSV_HEADERS)
         .setLineTag(CSV_LINES)
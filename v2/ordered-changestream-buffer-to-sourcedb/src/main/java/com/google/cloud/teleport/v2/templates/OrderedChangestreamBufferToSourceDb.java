@@ -165,8 +165,8 @@ public class OrderedChangestreamBufferToSourceDb {
         optional = true,
         description = "Duration in seconds between calls to stateful timer processing. ",
         helpText =
-            "Controls the time between successive polls to buffer and processing of the resultant"
-                + " records.")
+            "Controls the time between successive consumer sessions of a shard. Each session keeps"
+                + " polling the buffer and applying the resultant records for up to a minute.")
     @Default.Integer(1)
     Integer getTimerInterval();
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates.common;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records read from the input buffer in one call, together with the means to acknowledge them once
+ * they are applied to the source database.
+ */
+public class InputBufferBatch {
+
+  private final List<String> records;
+
+  private final Runnable acknowledger;
+
+  public InputBufferBatch(List<String> records, Runnable acknowledger) {
+    this.records = records;
+    this.acknowledger = acknowledger;
+  }
+
+  public static InputBufferBatch empty() {
+    return new InputBufferBatch(Collections.emptyList(), () -> {});
+  }
+
+  public List<String> getRecords() {
+    return records;
+  }
+
+  public boolean isEmpty() {
+    return records.isEmpty();
+  }
+
+  /**
+   * Acknowledges the records of this batch. Batches are acknowledged in the order they were read,
+   * and may be acknowledged from another thread than the one reading the buffer.
+   */
+  public void acknowledge() {
+    acknowledger.run();
+  }
+}
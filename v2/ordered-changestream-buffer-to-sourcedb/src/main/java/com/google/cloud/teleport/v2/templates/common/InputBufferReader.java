@@ -15,12 +15,15 @@
  */
 package com.google.cloud.teleport.v2.templates.common;
 
-import java.util.List;
-
 /** Interface to read from input buffer. */
 public interface InputBufferReader {
 
-  void acknowledge();
+  /**
+   * Reads the next records of the buffer, in the order they were buffered. The batch is empty when
+   * there are no records to read.
+   */
+  InputBufferBatch getRecords();
 
-  List<String> getRecords();
+  /** Releases the reader, after acknowledging the batches acknowledged so far. */
+  void close();
 }
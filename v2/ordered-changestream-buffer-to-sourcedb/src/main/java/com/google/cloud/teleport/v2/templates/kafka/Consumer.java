@@ -15,25 +15,30 @@
  */
 package com.google.cloud.teleport.v2.templates.kafka;
 
+import com.google.cloud.teleport.v2.templates.common.InputBufferBatch;
 import com.google.cloud.teleport.v2.templates.common.InputBufferReader;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 
-/** */
 public class Consumer implements InputBufferReader {
 
   private KafkaConsumer<String, String> consumer;
 
-  private ConsumerRecords<String, String> recordsWm;
+  private final AtomicReference<Map<TopicPartition, OffsetAndMetadata>> acknowledgedOffsets =
+      new AtomicReference<>();
 
   private TopicPartition partition;
 
@@ -56,30 +61,40 @@ public class Consumer implements InputBufferReader {
     consumer.assign(Arrays.asList(partition));
   }
 
-  @Override
-  public void acknowledge() {
-
-    consumer.commitSync();
+  /**
+   * Commits the offsets of the batches acknowledged so far. The Kafka consumer is not thread-safe,
+   * so acknowledged offsets are only committed from the thread reading the records.
+   */
+  private void commitAcknowledged() {
+    Map<TopicPartition, OffsetAndMetadata> offsets = acknowledgedOffsets.getAndSet(null);
+    if (offsets != null) {
+      consumer.commitSync(offsets);
+    }
   }
 
   @Override
-  public List<String> getRecords() {
-
-    List<String> buffer = new ArrayList<>();
+  public void close() {
+    commitAcknowledged();
+    consumer.close();
+  }
 
-    if (partition != null) {
-      consumer.resume(Arrays.asList(partition));
-    }
+  @Override
+  public InputBufferBatch getRecords() {
+    commitAcknowledged();
 
     ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
 
     if (records.count() == 0) {
-      return buffer;
+      return InputBufferBatch.empty();
     }
+    List<String> buffer = new ArrayList<>(records.count());
+    long nextOffset = -1;
     for (ConsumerRecord<String, String> record : records) {
       buffer.add(record.value());
+      nextOffset = record.offset() + 1;
     }
-    consumer.pause(Arrays.asList(partition));
-    return buffer;
+    Map<TopicPartition, OffsetAndMetadata> offsets =
+        Collections.singletonMap(partition, new OffsetAndMetadata(nextOffset));
+    return new InputBufferBatch(buffer, () -> acknowledgedOffsets.set(offsets));
   }
 }
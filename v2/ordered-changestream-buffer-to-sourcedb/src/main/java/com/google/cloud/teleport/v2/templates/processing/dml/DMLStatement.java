@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates.processing.dml;
+
+import java.util.List;
+
+/** A DML statement, with the values of its {@code ?} parameters in order. */
+public class DMLStatement {
+  private final String statement;
+  private final List<Object> values;
+
+  public DMLStatement(String statement, List<Object> values) {
+    this.statement = statement;
+    this.values = values;
+  }
+
+  public String getStatement() {
+    return statement;
+  }
+
+  public List<Object> getValues() {
+    return values;
+  }
+}
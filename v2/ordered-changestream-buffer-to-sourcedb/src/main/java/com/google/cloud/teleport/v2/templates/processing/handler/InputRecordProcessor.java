@@ -19,6 +19,7 @@ import com.google.cloud.Timestamp;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.Schema;
 import com.google.cloud.teleport.v2.templates.dao.MySqlDao;
 import com.google.cloud.teleport.v2.templates.processing.dml.DMLGenerator;
+import com.google.cloud.teleport.v2.templates.processing.dml.DMLStatement;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -49,7 +50,7 @@ public class InputRecordProcessor {
           Metrics.counter(shardId, "numberOfRecordsProcessed_" + shardId);
       Distribution lagMetric = Metrics.distribution(shardId, "replicationLagInSeconds_" + shardId);
 
-      List<String> dmlBatch = new ArrayList<>();
+      List<DMLStatement> dmlBatch = new ArrayList<>();
       for (String s : recordList) {
         List<String> parsedValues = parseRecord(s);
         String tableName = parsedValues.get(0);
@@ -61,10 +62,10 @@ public class InputRecordProcessor {
         JSONObject newValuesJson = new JSONObject(newValuesJsonStr);
         JSONObject keysJson = new JSONObject(keysJsonStr);
 
-        String dmlStatement =
-            DMLGenerator.getDMLStatement(
+        DMLStatement dmlStatement =
+            DMLGenerator.getPreparedDMLStatement(
                 modType, tableName, schema, newValuesJson, keysJson, sourceDbTimezoneOffset);
-        if (!dmlStatement.isEmpty()) {
+        if (dmlStatement != null) {
           dmlBatch.add(dmlStatement);
         }
         if (!capturedlagMetric) {
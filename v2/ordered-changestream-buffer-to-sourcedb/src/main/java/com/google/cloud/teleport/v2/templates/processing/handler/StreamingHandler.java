@@ -15,19 +15,47 @@
  */
 package com.google.cloud.teleport.v2.templates.processing.handler;
 
+import com.google.cloud.teleport.v2.templates.common.InputBufferBatch;
 import com.google.cloud.teleport.v2.templates.common.InputBufferReader;
 import com.google.cloud.teleport.v2.templates.common.ProcessingContext;
 import com.google.cloud.teleport.v2.templates.dao.DaoFactory;
 import com.google.cloud.teleport.v2.templates.dao.MySqlDao;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.beam.sdk.metrics.Gauge;
+import org.apache.beam.sdk.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Abstract class for the streaming handlers. */
+/**
+ * Abstract class for the streaming handlers.
+ *
+ * <p>Each call to {@link #process()} runs a consumer session for the shard: a reader thread keeps
+ * polling the buffer while the calling thread applies the batches read to the source database, so
+ * that reading and applying overlap. Batches are applied in the order they were read and are only
+ * acknowledged once applied.
+ */
 public abstract class StreamingHandler {
   private static final Logger LOG = LoggerFactory.getLogger(StreamingHandler.class);
+
+  // How long a session keeps consuming the buffer, before handing back to the timer.
+  private static final Duration SESSION_DURATION = Duration.ofMinutes(1);
+
+  // How many batches the reader may read ahead of the batch being applied.
+  private static final int MAX_BUFFERED_BATCHES = 4;
+
+  private static final long POLL_TIMEOUT_MILLIS = 100;
+
   protected ProcessingContext taskContext;
 
   public StreamingHandler(ProcessingContext taskContext) {
@@ -36,46 +64,60 @@ public abstract class StreamingHandler {
 
   public void process() {
     String shardId = taskContext.getShard().getLogicalShardId();
+    Gauge bufferedBatchesMetric = Metrics.gauge(shardId, "bufferedBatches_" + shardId);
+    Gauge applyLagMetric = Metrics.gauge(shardId, "bufferApplyLagInMilliseconds_" + shardId);
+    Instant sessionEnd = Instant.now().plus(getSessionDuration());
+
     InputBufferReader inputBufferReader = this.getBufferReader();
+    BlockingQueue<TimedBatch> batches = new ArrayBlockingQueue<>(MAX_BUFFERED_BATCHES);
+    AtomicBoolean stopReading = new AtomicBoolean(false);
+    ExecutorService readerExecutor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "buffer-reader-" + shardId);
+              thread.setDaemon(true);
+              return thread;
+            });
+    MySqlDao dao = null;
+    long recordCount = 0;
+
+    Future<?> reader =
+        readerExecutor.submit(
+            () -> {
+              readBatches(inputBufferReader, batches, stopReading, sessionEnd);
+              return null;
+            });
 
     try {
-      Instant readStartTime = Instant.now();
-      List<String> records = inputBufferReader.getRecords();
-      Instant readEndTime = Instant.now();
-      LOG.info(
-          "Shard "
-              + shardId
-              + ": read "
-              + records.size()
-              + " records from the buffer in "
-              + ChronoUnit.MILLIS.between(readStartTime, readEndTime)
-              + " milliseconds");
-      if (records.isEmpty()) {
-        inputBufferReader.acknowledge();
-        return;
-      }
+      while (true) {
+        TimedBatch batch = batches.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (batch == null) {
+          if (reader.isDone()) {
+            // Surfaces the reader failure, if any. No batch can be added once the reader is done.
+            reader.get();
+            if (batches.isEmpty()) {
+              break;
+            }
+          }
+          continue;
+        }
+        bufferedBatchesMetric.set(batches.size());
+        applyLagMetric.set(ChronoUnit.MILLIS.between(batch.readTime, Instant.now()));
 
-      String connectString =
-          "jdbc:mysql://"
-              + taskContext.getShard().getHost()
-              + ":"
-              + taskContext.getShard().getPort()
-              + "/"
-              + taskContext.getShard().getDbName();
-
-      MySqlDao dao =
-          new DaoFactory(
-                  connectString,
-                  taskContext.getShard().getUserName(),
-                  taskContext.getShard().getPassword())
-              .getMySqlDao(shardId);
-
-      InputRecordProcessor.processRecords(
-          records, taskContext.getSchema(), dao, shardId, taskContext.getSourceDbTimezoneOffset());
-      inputBufferReader.acknowledge();
-      dao.cleanup();
+        if (dao == null) {
+          dao = getDao(shardId);
+        }
+        InputRecordProcessor.processRecords(
+            batch.batch.getRecords(),
+            taskContext.getSchema(),
+            dao,
+            shardId,
+            taskContext.getSourceDbTimezoneOffset());
+        batch.batch.acknowledge();
+        recordCount += batch.batch.getRecords().size();
+      }
       LOG.info(
-          "Shard " + shardId + ": Successfully processed batch of " + records.size() + " records.");
+          "Shard " + shardId + ": Successfully processed " + recordCount + " records in session.");
     } catch (Exception e) {
       // TODO: Error handling and retry
       /*
@@ -86,9 +128,95 @@ public abstract class StreamingHandler {
       If writing to DLQ topic also fails - write to logs
       */
 
-      throw new RuntimeException("Failure when processing records: " + e.getMessage());
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      throw new RuntimeException("Failure when processing records: " + cause.getMessage());
+    } finally {
+      stopReading.set(true);
+      // Interrupts a read waiting for records.
+      reader.cancel(true);
+      /*
+      The reader is closed on the reader thread, once the read has stopped, as the Kafka consumer
+      is not thread-safe. Only acknowledged batches are committed, the others are read again by the
+      next session.
+      */
+      Future<?> closed =
+          readerExecutor.submit(
+              () -> {
+                inputBufferReader.close();
+                return null;
+              });
+      readerExecutor.shutdown();
+      try {
+        closed.get(1, TimeUnit.MINUTES);
+      } catch (TimeoutException e) {
+        LOG.warn("Shard " + shardId + ": the buffer reader did not stop, closing it once it does");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        LOG.warn("Shard " + shardId + ": failed to close the buffer reader: " + e.getCause());
+      }
+      if (dao != null) {
+        try {
+          dao.cleanup();
+        } catch (Exception e) {
+          LOG.warn("Shard " + shardId + ": failed to close the connection pool: " + e);
+        }
+      }
     }
   }
 
+  /** Reads the buffer until the session ends, handing the non-empty batches over in order. */
+  private static void readBatches(
+      InputBufferReader inputBufferReader,
+      BlockingQueue<TimedBatch> batches,
+      AtomicBoolean stopReading,
+      Instant sessionEnd)
+      throws InterruptedException {
+    while (!stopReading.get() && Instant.now().isBefore(sessionEnd)) {
+      InputBufferBatch batch = inputBufferReader.getRecords();
+      if (batch.isEmpty()) {
+        continue;
+      }
+      TimedBatch timedBatch = new TimedBatch(batch, Instant.now());
+      while (!batches.offer(timedBatch, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (stopReading.get()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /** Returns how long a session keeps consuming the buffer, before handing back to the timer. */
+  protected Duration getSessionDuration() {
+    return SESSION_DURATION;
+  }
+
+  protected MySqlDao getDao(String shardId) {
+    String connectString =
+        "jdbc:mysql://"
+            + taskContext.getShard().getHost()
+            + ":"
+            + taskContext.getShard().getPort()
+            + "/"
+            + taskContext.getShard().getDbName();
+
+    return new DaoFactory(
+            connectString,
+            taskContext.getShard().getUserName(),
+            taskContext.getShard().getPassword())
+        .getMySqlDao(shardId);
+  }
+
   public abstract InputBufferReader getBufferReader();
+
+  /** A batch read from the buffer, with the time it was read at. */
+  private static class TimedBatch {
+    private final InputBufferBatch batch;
+    private final Instant readTime;
+
+    TimedBatch(InputBufferBatch batch, Instant readTime) {
+      this.batch = batch;
+      this.readTime = readTime;
+    }
+  }
 }
@@ -18,32 +18,82 @@ package com.google.cloud.teleport.v2.templates.pubsub;
 import com.google.cloud.pubsub.v1.stub.GrpcSubscriberStub;
 import com.google.cloud.pubsub.v1.stub.SubscriberStub;
 import com.google.cloud.pubsub.v1.stub.SubscriberStubSettings;
+import com.google.cloud.teleport.v2.templates.common.InputBufferBatch;
 import com.google.cloud.teleport.v2.templates.common.InputBufferReader;
 import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
 import com.google.pubsub.v1.ProjectSubscriptionName;
 import com.google.pubsub.v1.PullRequest;
 import com.google.pubsub.v1.PullResponse;
 import com.google.pubsub.v1.ReceivedMessage;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-/** Reads from PubSub ordered subscriber. */
+/**
+ * Reads from PubSub ordered subscriber.
+ *
+ * <p>Messages are read ahead of the ones being applied, so the ack deadline of the messages read
+ * but not acknowledged yet is extended in the background. The messages not acknowledged when the
+ * consumer is closed are released for redelivery right away, so that they do not hold back the
+ * later messages of their ordering key until their deadline expires.
+ */
 public class PubSubConsumer implements InputBufferReader {
 
+  private static final Logger LOG = LoggerFactory.getLogger(PubSubConsumer.class);
+
+  // The ack deadline of the messages read but not acknowledged yet.
+  private static final int ACK_DEADLINE_SECONDS = 60;
+
+  // Shorter than the minimum ack deadline of a subscription, which is 10 seconds.
+  private static final Duration ACK_DEADLINE_EXTENSION_PERIOD = Duration.ofSeconds(5);
+
   private String subscriptionName;
-  private List<String> ackIds;
   private SubscriberStub subscriber;
   private int maxReadMessageCount;
 
+  private final Set<String> unacknowledgedAckIds = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService ackDeadlineExtender;
+
   public PubSubConsumer(PubSubConsumerProfile pubSubConsumerProfile, String subscriptionId) {
+    this(
+        createSubscriber(),
+        ProjectSubscriptionName.format(pubSubConsumerProfile.getProjectId(), subscriptionId),
+        pubSubConsumerProfile.getMaxReadMessageCount(),
+        ACK_DEADLINE_EXTENSION_PERIOD);
+  }
 
-    try {
-      this.ackIds = new ArrayList<>();
-      this.maxReadMessageCount = pubSubConsumerProfile.getMaxReadMessageCount();
+  PubSubConsumer(
+      SubscriberStub subscriber,
+      String subscriptionName,
+      int maxReadMessageCount,
+      Duration ackDeadlineExtensionPeriod) {
+    this.subscriber = subscriber;
+    this.subscriptionName = subscriptionName;
+    this.maxReadMessageCount = maxReadMessageCount;
+    this.ackDeadlineExtender =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "ack-deadline-extender-" + subscriptionName);
+              thread.setDaemon(true);
+              return thread;
+            });
+    ackDeadlineExtender.scheduleAtFixedRate(
+        this::extendAckDeadlines,
+        ackDeadlineExtensionPeriod.toMillis(),
+        ackDeadlineExtensionPeriod.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
 
-      this.subscriptionName =
-          ProjectSubscriptionName.format(pubSubConsumerProfile.getProjectId(), subscriptionId);
+  private static SubscriberStub createSubscriber() {
+    try {
       SubscriberStubSettings subscriberStubSettings =
           SubscriberStubSettings.newBuilder()
               .setTransportChannelProvider(
@@ -52,37 +102,68 @@ public class PubSubConsumer implements InputBufferReader {
                       .build())
               .build();
 
-      this.subscriber = GrpcSubscriberStub.create(subscriberStubSettings);
+      return GrpcSubscriberStub.create(subscriberStubSettings);
     } catch (java.io.IOException e) {
       throw new RuntimeException("Failure when creating pubSub consumer: ", e);
     }
   }
 
+  /** Extends the ack deadline of the messages read but not acknowledged yet. */
+  private void extendAckDeadlines() {
+    List<String> ackIds = new ArrayList<>(unacknowledgedAckIds);
+    if (ackIds.isEmpty()) {
+      return;
+    }
+    try {
+      modifyAckDeadline(ackIds, ACK_DEADLINE_SECONDS);
+    } catch (RuntimeException e) {
+      // A failure must not cancel the next extensions, the messages are redelivered at worst.
+      LOG.warn("Failure when extending the ack deadline of " + subscriptionName + ": " + e);
+    }
+  }
+
+  private void modifyAckDeadline(List<String> ackIds, int ackDeadlineSeconds) {
+    ModifyAckDeadlineRequest modifyAckDeadlineRequest =
+        ModifyAckDeadlineRequest.newBuilder()
+            .setSubscription(this.subscriptionName)
+            .addAllAckIds(ackIds)
+            .setAckDeadlineSeconds(ackDeadlineSeconds)
+            .build();
+    this.subscriber.modifyAckDeadlineCallable().call(modifyAckDeadlineRequest);
+  }
+
+  private void acknowledge(List<String> ackIds) {
+    unacknowledgedAckIds.removeAll(ackIds);
+    AcknowledgeRequest acknowledgeRequest =
+        AcknowledgeRequest.newBuilder()
+            .setSubscription(this.subscriptionName)
+            .addAllAckIds(ackIds)
+            .build();
+    this.subscriber.acknowledgeCallable().call(acknowledgeRequest);
+  }
+
   @Override
-  public void acknowledge() {
+  public void close() {
     try {
-      if (ackIds.size() > 0) {
-        AcknowledgeRequest acknowledgeRequest =
-            AcknowledgeRequest.newBuilder()
-                .setSubscription(this.subscriptionName)
-                .addAllAckIds(this.ackIds)
-                .build();
-        this.subscriber.acknowledgeCallable().call(acknowledgeRequest);
+      ackDeadlineExtender.shutdownNow();
+      ackDeadlineExtender.awaitTermination(1, TimeUnit.MINUTES);
+      List<String> ackIds = new ArrayList<>(unacknowledgedAckIds);
+      if (!ackIds.isEmpty()) {
+        // Releases the messages read ahead for redelivery to the next session.
+        modifyAckDeadline(ackIds, 0);
+        unacknowledgedAckIds.clear();
       }
       this.subscriber.shutdownNow();
       if (!this.subscriber.awaitTermination(1, TimeUnit.MINUTES)) {
         throw new RuntimeException("Failure in shutdown of Pub/Sub consumer: ");
       }
     } catch (InterruptedException e) {
-      throw new RuntimeException("Failure in acknowledge pubSub consumer: ", e);
+      throw new RuntimeException("Failure in shutdown of Pub/Sub consumer: ", e);
     }
   }
 
   @Override
-  public List<String> getRecords() {
-    this.ackIds.clear();
-    List<String> response = new ArrayList<>();
-
+  public InputBufferBatch getRecords() {
     PullRequest pullRequest =
         PullRequest.newBuilder()
             .setMaxMessages(this.maxReadMessageCount)
@@ -92,18 +173,23 @@ public class PubSubConsumer implements InputBufferReader {
     // Use pullCallable().futureCall to asynchronously perform this operation.
     PullResponse pullResponse = this.subscriber.pullCallable().call(pullRequest);
 
-    // Stop the program if the pull response is empty to avoid acknowledging
+    // Return an empty batch if the pull response is empty, to avoid acknowledging
     // an empty list of ack IDs.
     if (pullResponse.getReceivedMessagesList().isEmpty()) {
-      return response;
+      return InputBufferBatch.empty();
     }
 
+    List<String> response = new ArrayList<>();
+    List<String> ackIds = new ArrayList<>();
     for (ReceivedMessage message : pullResponse.getReceivedMessagesList()) {
       // Handle received message
       response.add(message.getMessage().getData().toStringUtf8());
-      this.ackIds.add(message.getAckId());
+      ackIds.add(message.getAckId());
     }
+    unacknowledgedAckIds.addAll(ackIds);
 
-    return response;
+    // The subscriber stub is thread-safe, so the batch can be acknowledged from the applying
+    // thread.
+    return new InputBufferBatch(response, () -> acknowledge(ackIds));
   }
 }
@@ -38,7 +38,11 @@ import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Handles the per-shard processing from buffer to source. */
+/**
+ * Handles the per-shard processing from buffer to source. Each timer firing runs a consumer session
+ * for the shard, which polls the buffer and applies the records continuously, and the next session
+ * is scheduled once it ends.
+ */
 public class BufferToSourceStreamer extends DoFn<KV<String, ProcessingContext>, Void> {
   private static final Logger LOG = LoggerFactory.getLogger(BufferToSourceStreamer.class);
   private int incrementIntervalInSeconds = 1;
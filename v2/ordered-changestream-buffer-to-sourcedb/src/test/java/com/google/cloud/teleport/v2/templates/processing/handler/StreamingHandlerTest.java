@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates.processing.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.cloud.teleport.v2.spanner.migrations.utils.SessionFileReader;
+import com.google.cloud.teleport.v2.templates.common.InputBufferBatch;
+import com.google.cloud.teleport.v2.templates.common.InputBufferReader;
+import com.google.cloud.teleport.v2.templates.common.ProcessingContext;
+import com.google.cloud.teleport.v2.templates.common.Shard;
+import com.google.cloud.teleport.v2.templates.dao.MySqlDao;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(JUnit4.class)
+public final class StreamingHandlerTest {
+  @Rule public final MockitoRule mocktio = MockitoJUnit.rule();
+  @Mock private MySqlDao daoMock;
+
+  // What happened to the buffer, in order.
+  private final List<String> events = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void streamingHandlerAppliesBatchesInOrderThenClosesReader() throws Exception {
+    FakeBufferReader reader = new FakeBufferReader(Duration.ZERO, "b1", "b2", "b3");
+
+    new FakeStreamingHandler(reader, Duration.ofMillis(500)).process();
+
+    verify(daoMock, times(3)).batchWrite(any());
+    assertEquals(Arrays.asList("ack b1", "ack b2", "ack b3", "close"), events);
+    assertTrue(reader.closingThread.startsWith("buffer-reader-"));
+  }
+
+  @Test
+  public void streamingHandlerClosesReaderOnlyOnceReadStopped() throws Exception {
+    doThrow(new SQLException("failed")).when(daoMock).batchWrite(any());
+    // The read following the batch ignores interrupts and outlasts the failure to apply the batch.
+    FakeBufferReader reader = new FakeBufferReader(Duration.ofMillis(500), "b1");
+
+    assertThrows(
+        RuntimeException.class,
+        () -> new FakeStreamingHandler(reader, Duration.ofMinutes(1)).process());
+
+    // The failed batch is not acknowledged.
+    assertEquals(Arrays.asList("read", "close"), events);
+    assertTrue(reader.closingThread.startsWith("buffer-reader-"));
+  }
+
+  private class FakeStreamingHandler extends StreamingHandler {
+    private final InputBufferReader reader;
+    private final Duration sessionDuration;
+
+    FakeStreamingHandler(InputBufferReader reader, Duration sessionDuration) {
+      super(
+          new ProcessingContext(
+              shard(),
+              SessionFileReader.read("src/test/resources/allMatchSession.json"),
+              null,
+              "+00:00"));
+      this.reader = reader;
+      this.sessionDuration = sessionDuration;
+    }
+
+    @Override
+    public InputBufferReader getBufferReader() {
+      return reader;
+    }
+
+    @Override
+    protected Duration getSessionDuration() {
+      return sessionDuration;
+    }
+
+    @Override
+    protected MySqlDao getDao(String shardId) {
+      return daoMock;
+    }
+  }
+
+  /**
+   * Returns a batch of one record for each of the given names, then empty batches. Once the batches
+   * are read, a single read takes the given time regardless of interrupts.
+   */
+  private class FakeBufferReader implements InputBufferReader {
+    private final Deque<String> batchNames;
+    private Duration slowReadTime;
+    private volatile String closingThread;
+
+    FakeBufferReader(Duration slowReadTime, String... batchNames) {
+      this.slowReadTime = slowReadTime;
+      this.batchNames = new ArrayDeque<>(Arrays.asList(batchNames));
+    }
+
+    @Override
+    public InputBufferBatch getRecords() {
+      String batchName = batchNames.poll();
+      if (batchName != null) {
+        return new InputBufferBatch(
+            Collections.singletonList(record()), () -> events.add("ack " + batchName));
+      }
+      if (!slowReadTime.isZero()) {
+        long readEnd = System.currentTimeMillis() + slowReadTime.toMillis();
+        while (System.currentTimeMillis() < readEnd) {
+          try {
+            Thread.sleep(10);
+          } catch (InterruptedException e) {
+            // like a read which cannot be interrupted
+          }
+        }
+        slowReadTime = Duration.ZERO;
+        events.add("read");
+      }
+      return InputBufferBatch.empty();
+    }
+
+    @Override
+    public void close() {
+      closingThread = Thread.currentThread().getName();
+      events.add("close");
+    }
+  }
+
+  private static Shard shard() {
+    Shard shard = new Shard();
+    shard.setLogicalShardId("shard1");
+    return shard;
+  }
+
+  private static String record() {
+    return new JSONObject()
+        .put("tableName", "Singers")
+        .put(
+            "mods",
+            new JSONArray()
+                .put(
+                    new JSONObject()
+                        .put("keysJson", "{\"SingerId\":\"1\"}")
+                        .put("newValuesJson", "{\"FirstName\":\"kk\",\"LastName\":\"ll\"}")))
+        .put("modType", "INSERT")
+        .put("commitTimestamp", new JSONObject().put("seconds", 1685527032).put("nanos", 0))
+        .toString();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.google.cloud.teleport.v2.templates.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.pubsub.v1.stub.SubscriberStub;
+import com.google.cloud.teleport.v2.templates.common.InputBufferBatch;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import com.google.pubsub.v1.AcknowledgeRequest;
+import com.google.pubsub.v1.ModifyAckDeadlineRequest;
+import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.PullRequest;
+import com.google.pubsub.v1.PullResponse;
+import com.google.pubsub.v1.ReceivedMessage;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(JUnit4.class)
+public final class PubSubConsumerTest {
+  @Rule public final MockitoRule mocktio = MockitoJUnit.rule();
+  @Mock private SubscriberStub subscriberMock;
+  @Mock private UnaryCallable<PullRequest, PullResponse> pullCallableMock;
+  @Mock private UnaryCallable<AcknowledgeRequest, Empty> acknowledgeCallableMock;
+  @Mock private UnaryCallable<ModifyAckDeadlineRequest, Empty> modifyAckDeadlineCallableMock;
+
+  private final List<ModifyAckDeadlineRequest> modifyAckDeadlineRequests =
+      new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    doReturn(pullCallableMock).when(subscriberMock).pullCallable();
+    doReturn(acknowledgeCallableMock).when(subscriberMock).acknowledgeCallable();
+    doReturn(modifyAckDeadlineCallableMock).when(subscriberMock).modifyAckDeadlineCallable();
+    when(modifyAckDeadlineCallableMock.call(any()))
+        .thenAnswer(
+            invocation -> {
+              modifyAckDeadlineRequests.add(invocation.getArgument(0));
+              return Empty.getDefaultInstance();
+            });
+    when(subscriberMock.awaitTermination(1, TimeUnit.MINUTES)).thenReturn(true);
+  }
+
+  @Test
+  public void pubSubConsumerExtendsAckDeadlineOfUnacknowledgedMessages() throws Exception {
+    when(pullCallableMock.call(any()))
+        .thenReturn(pullResponse("ack1", "ack2"), pullResponse("ack3"));
+    PubSubConsumer consumer =
+        new PubSubConsumer(subscriberMock, "subscription", 10, Duration.ofMillis(50));
+
+    InputBufferBatch first = consumer.getRecords();
+    InputBufferBatch second = consumer.getRecords();
+    assertEquals(Arrays.asList("ack1", "ack2"), first.getRecords());
+    first.acknowledge();
+
+    verify(acknowledgeCallableMock)
+        .call(
+            AcknowledgeRequest.newBuilder()
+                .setSubscription("subscription")
+                .addAllAckIds(Arrays.asList("ack1", "ack2"))
+                .build());
+    ModifyAckDeadlineRequest extension =
+        ModifyAckDeadlineRequest.newBuilder()
+            .setSubscription("subscription")
+            .addAckIds("ack3")
+            .setAckDeadlineSeconds(60)
+            .build();
+    verify(modifyAckDeadlineCallableMock, timeout(10000).atLeastOnce()).call(extension);
+
+    second.acknowledge();
+    consumer.close();
+    // Acknowledged messages are no longer extended.
+    int extensions = modifyAckDeadlineRequests.size();
+    Thread.sleep(200);
+    assertEquals(extensions, modifyAckDeadlineRequests.size());
+  }
+
+  @Test
+  public void pubSubConsumerReleasesUnacknowledgedMessagesOnClose() throws Exception {
+    when(pullCallableMock.call(any())).thenReturn(pullResponse("ack1"), pullResponse("ack2"));
+    PubSubConsumer consumer =
+        new PubSubConsumer(subscriberMock, "subscription", 10, Duration.ofMinutes(1));
+
+    consumer.getRecords().acknowledge();
+    consumer.getRecords();
+    consumer.close();
+
+    assertEquals(1, modifyAckDeadlineRequests.size());
+    assertEquals(Arrays.asList("ack2"), modifyAckDeadlineRequests.get(0).getAckIdsList());
+    assertEquals(0, modifyAckDeadlineRequests.get(0).getAckDeadlineSeconds());
+    verify(subscriberMock).shutdownNow();
+  }
+
+  @Test
+  public void pubSubConsumerReturnsEmptyBatchWhenNoMessages() throws Exception {
+    when(pullCallableMock.call(any())).thenReturn(PullResponse.getDefaultInstance());
+    PubSubConsumer consumer =
+        new PubSubConsumer(subscriberMock, "subscription", 10, Duration.ofMinutes(1));
+
+    assertTrue(consumer.getRecords().isEmpty());
+    consumer.close();
+    assertTrue(modifyAckDeadlineRequests.isEmpty());
+  }
+
+  private static PullResponse pullResponse(String... ackIds) {
+    PullResponse.Builder response = PullResponse.newBuilder();
+    for (String ackId : ackIds) {
+      response.addReceivedMessages(
+          ReceivedMessage.newBuilder()
+              .setAckId(ackId)
+              .setMessage(
+                  PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8(ackId)).build()));
+    }
+    return response.build();
+  }
+}
@@ -115,6 +115,9 @@ public class PubSubCdcToBigQuery {
   /** The default suffix for error tables if dead letter table is not specified. */
   public static final String DEFAULT_DEADLETTER_TABLE_SUFFIX = "_error_records";
 
+  /** The date partitions DLQ files are written under, below the retry DLQ directory. */
+  private static final String DLQ_PARTITION_LAYOUT = "YYYY/MM/DD/HH/mm/";
+
   /** Pubsub message/string coder for pipeline. */
   public static final FailsafeElementCoder<PubsubMessage, String> CODER =
       FailsafeElementCoder.of(PubsubMessageWithAttributesCoder.of(), StringUtf8Coder.of());
@@ -279,7 +282,7 @@ public class PubSubCdcToBigQuery {
     String gcsOutputDateTimeDirectory = null;
 
     if (options.getDeadLetterQueueDirectory() != null) {
-      gcsOutputDateTimeDirectory = dlqManager.getRetryDlqDirectory() + "YYYY/MM/DD/HH/mm/";
+      gcsOutputDateTimeDirectory = dlqManager.getRetryDlqDirectory() + DLQ_PARTITION_LAYOUT;
     }
 
     CoderRegistry coderRegistry = pipeline.getCoderRegistry();
@@ -289,13 +292,15 @@ public class PubSubCdcToBigQuery {
 
     InputUDFToTableRow<String> failsafeTableRowTransformer =
         new InputUDFToTableRow<String>(
-            options.getJavascriptTextTransformGcsPath(),
-            options.getJavascriptTextTransformFunctionName(),
-            options.getJavascriptTextTransformReloadIntervalMinutes(),
-            options.getPythonTextTransformGcsPath(),
-            options.getPythonTextTransformFunctionName(),
-            options.getRuntimeRetries(),
-            FAILSAFE_ELEMENT_CODER);
+                options.getJavascriptTextTransformGcsPath(),
+                options.getJavascriptTextTransformFunctionName(),
+                options.getJavascriptTextTransformReloadIntervalMinutes(),
+                options.getPythonTextTransformGcsPath(),
+                options.getPythonTextTransformFunctionName(),
+                options.getRuntimeRetries(),
+                FAILSAFE_ELEMENT_CODER)
+            .withJavascriptTransformBatchSize(options.getJavascriptTextTransformBatchSize())
+            .withPythonTransformTimeoutSeconds(options.getPythonTextTransformTimeoutSeconds());
 
     BigQueryTableConfigManager bqConfigManager =
         new BigQueryTableConfigManager(
@@ -334,7 +339,7 @@ public class PubSubCdcToBigQuery {
 
       PCollection<FailsafeElement<String, String>> dlqJsonRecords =
           pipeline
-              .apply(dlqManager.dlqReconsumer())
+              .apply(dlqManager.dlqReconsumerForLayout(DLQ_PARTITION_LAYOUT))
               .apply(
                   ParDo.of(
                       new DoFn<String, FailsafeElement<String, String>>() {
@@ -71,6 +71,7 @@ public class FormatMessageTransform {
                   .setFunctionName(options.getJavascriptTextTransformFunctionName())
                   .setReloadIntervalMinutes(
                       options.getJavascriptTextTransformReloadIntervalMinutes())
+                  .setBatchSize(options.getJavascriptTextTransformBatchSize())
                   .setLoggingEnabled(true)
                   .setSuccessTag(PubsubKafkaConstants.UDF_OUT)
                   .setFailureTag(PubsubKafkaConstants.UDF_DEADLETTER_OUT)
@@ -316,6 +316,21 @@ public class SpannerChangeStreamsToShardedFileSink {
     String getShardingCustomParameters();
 
     void setShardingCustomParameters(String value);
+
+    @TemplateParameter.Integer(
+        order = 21,
+        optional = true,
+        description = "Custom sharding cache size",
+        helpText =
+            "Number of shard ids returned by the custom sharding class which are cached per worker"
+                + " thread, keyed by table and primary key. Only enable it when the custom shard id"
+                + " depends on nothing but the table name and the primary key of the record, as a"
+                + " cached shard id is reused for every later change to the same key. Defaults to"
+                + " 0, which disables the cache.")
+    @Default.Integer(0)
+    Integer getShardingCustomCacheSize();
+
+    void setShardingCustomCacheSize(Integer value);
   }
 
   /**
@@ -427,7 +442,8 @@ public class SpannerChangeStreamsToShardedFileSink {
                     options.getSkipDirectoryName(),
                     options.getShardingCustomJarPath(),
                     options.getShardingCustomClassName(),
-                    options.getShardingCustomParameters())))
+                    options.getShardingCustomParameters(),
+                    options.getShardingCustomCacheSize())))
         .apply(
             "Creating " + options.getWindowDuration() + " Window",
             Window.into(
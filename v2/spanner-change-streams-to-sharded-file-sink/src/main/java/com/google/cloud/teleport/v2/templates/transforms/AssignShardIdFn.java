@@ -18,6 +18,8 @@ package com.google.cloud.teleport.v2.templates.transforms;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.spanner.KeySet;
+import com.google.cloud.spanner.ResultSet;
 import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.TimestampBound;
 import com.google.cloud.spanner.Value;
@@ -35,6 +37,7 @@ import com.google.cloud.teleport.v2.templates.common.TrimmedShardedDataChangeRec
 import com.google.cloud.teleport.v2.templates.constants.Constants;
 import com.google.cloud.teleport.v2.templates.utils.ShardIdFetcherImpl;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -48,6 +51,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -56,9 +60,11 @@ import org.apache.beam.sdk.io.fs.ResourceId;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerAccessor;
 import org.apache.beam.sdk.io.gcp.spanner.SpannerConfig;
 import org.apache.beam.sdk.io.gcp.spanner.changestreams.model.ModType;
+import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.MimeTypes;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Splitter;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.io.ByteStreams;
@@ -68,11 +74,27 @@ import org.joda.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** This DoFn assigns the shardId as key to the record. */
+/**
+ * This DoFn assigns the shardId as key to the record.
+ *
+ * <p>The shard of a DELETE record is found from the row as it was before the delete, which is read
+ * from Spanner. Once a DELETE record is seen, the records of the bundle are buffered, so that the
+ * stale reads of all the DELETE records of a table and commit timestamp are made with a single
+ * multi-key read, and the records are output in the order they came in when the bundle finishes.
+ *
+ * <p>With a custom shard id fetcher, all the records of the bundle are buffered, so that the shard
+ * ids are fetched with a single {@link IShardIdFetcher#getShardIds(List)} call. When a cache size
+ * is set, the shard ids it returns are cached by table and primary key, in a bounded LRU cache. The
+ * cache is only correct for fetchers whose shard id depends on nothing but the table and the
+ * primary key, so it is disabled by default.
+ */
 public class AssignShardIdFn
     extends DoFn<TrimmedShardedDataChangeRecord, TrimmedShardedDataChangeRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(AssignShardIdFn.class);
 
+  // Maximum number of keys of a single stale read.
+  private static final int MAX_KEYS_PER_READ = 1000;
+
   private final SpannerConfig spannerConfig;
 
   /* SpannerAccessor must be transient so that its value is not serialized at runtime. */
@@ -98,8 +120,22 @@ public class AssignShardIdFn
 
   private final String shardingCustomParameters;
 
+  private final int shardIdCacheSize;
+
   private IShardIdFetcher shardIdFetcher;
 
+  // The shard ids returned by the custom shard id fetcher, by table and primary key.
+  private transient Map<String, String> shardIdCache;
+
+  private final Counter shardIdCacheHits =
+      Metrics.counter(AssignShardIdFn.class, "custom_shard_id_cache_hits");
+
+  private final Distribution shardIdBatchSize =
+      Metrics.distribution(AssignShardIdFn.class, "custom_shard_id_impl_batch_size");
+
+  // The records of the bundle which wait for the stale reads of the DELETE records, in input order.
+  private transient List<BufferedRecord> bufferedRecords = new ArrayList<>();
+
   public AssignShardIdFn(
       SpannerConfig spannerConfig,
       Schema schema,
@@ -110,6 +146,30 @@ public class AssignShardIdFn
       String customJarPath,
       String shardingCustomClassName,
       String shardingCustomParameters) {
+    this(
+        spannerConfig,
+        schema,
+        ddl,
+        shardingMode,
+        shardName,
+        skipDirName,
+        customJarPath,
+        shardingCustomClassName,
+        shardingCustomParameters,
+        0);
+  }
+
+  public AssignShardIdFn(
+      SpannerConfig spannerConfig,
+      Schema schema,
+      Ddl ddl,
+      String shardingMode,
+      String shardName,
+      String skipDirName,
+      String customJarPath,
+      String shardingCustomClassName,
+      String shardingCustomParameters,
+      int shardIdCacheSize) {
     this.spannerConfig = spannerConfig;
     this.schema = schema;
     this.ddl = ddl;
@@ -119,6 +179,8 @@ public class AssignShardIdFn
     this.customJarPath = customJarPath;
     this.shardingCustomClassName = shardingCustomClassName;
     this.shardingCustomParameters = shardingCustomParameters;
+    this.shardIdCacheSize = shardIdCacheSize;
+    this.shardIdCache = createShardIdCache(shardIdCacheSize);
   }
 
   // setSpannerAccessor is added to be used by unit tests
@@ -145,6 +207,18 @@ public class AssignShardIdFn
     mapper = new ObjectMapper();
     mapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
     shardIdFetcher = getShardIdFetcherImpl(customJarPath, shardingCustomClassName);
+    bufferedRecords = new ArrayList<>();
+    shardIdCache = createShardIdCache(shardIdCacheSize);
+  }
+
+  /** Returns a map which keeps the most recently used entries, up to the given size. */
+  private static Map<String, String> createShardIdCache(int maxSize) {
+    return new LinkedHashMap<String, String>(16, 0.75f, /* accessOrder= */ true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxSize;
+      }
+    };
   }
 
   /** Teardown function disconnects from the Cloud Spanner. */
@@ -161,76 +235,151 @@ public class AssignShardIdFn
    * ShardIdFetcherImpl to fetch the shard id.
    */
   @ProcessElement
-  public void processElement(ProcessContext c) throws Exception {
+  public void processElement(ProcessContext c, BoundedWindow window) throws Exception {
     TrimmedShardedDataChangeRecord record = new TrimmedShardedDataChangeRecord(c.element());
 
     try {
       if (shardingMode.equals(Constants.SHARDING_MODE_SINGLE_SHARD)) {
         record.setShard(this.shardName);
         c.output(record);
+      } else if (isCustomSharding()
+          || record.getModType() == ModType.DELETE
+          || !bufferedRecords.isEmpty()) {
+        // Records following a DELETE record are buffered too, to keep the output order.
+        bufferedRecords.add(new BufferedRecord(record, c.timestamp(), window));
       } else {
-        String keysJsonStr = record.getMods().get(0).getKeysJson();
-        JsonNode keysJson = mapper.readTree(keysJsonStr);
-
-        String newValueJsonStr = record.getMods().get(0).getNewValuesJson();
-        JsonNode newValueJson = mapper.readTree(newValueJsonStr);
-        Map<String, Object> spannerRecord = new HashMap<>();
-        // Query the spanner database in case of a DELETE event
-        if (record.getModType() == ModType.DELETE) {
-          spannerRecord =
-              fetchSpannerRecord(
-                  record.getTableName(),
-                  record.getCommitTimestamp(),
-                  record.getServerTransactionId(),
-                  keysJson);
-        } else {
-          Table table = ddl.table(record.getTableName());
+        ShardIdRequest shardIdRequest =
+            new ShardIdRequest(record.getTableName(), getSpannerRecord(record));
+        record.setShard(fetchShardIds(List.of(shardIdRequest)).get(0));
+        c.output(record);
+      }
 
-          // Add all fields from keysJson and valuesJson to spannerRecord
-          for (Iterator<String> it = keysJson.fieldNames(); it.hasNext(); ) {
-            String key = it.next();
-            Column column = table.column(key);
-            spannerRecord.put(key, getColumnValueFromJson(column, keysJson));
-          }
-          for (Iterator<String> it = newValueJson.fieldNames(); it.hasNext(); ) {
-            String key = it.next();
-            Column column = table.column(key);
-            spannerRecord.put(key, getColumnValueFromJson(column, newValueJson));
-          }
-        }
-        ShardIdRequest shardIdRequest = new ShardIdRequest(record.getTableName(), spannerRecord);
-
-        ShardIdResponse shardIdResponse;
-        if (!customJarPath.isEmpty() && !shardingCustomClassName.isEmpty()) {
-          Distribution getShardIdResponseTimeMetric =
-              Metrics.distribution(AssignShardIdFn.class, "custom_shard_id_impl_latency_ms");
-          Instant startTimestamp = Instant.now();
-          shardIdResponse = shardIdFetcher.getShardId(shardIdRequest);
-          Instant endTimestamp = Instant.now();
-          getShardIdResponseTimeMetric.update(
-              new Duration(startTimestamp, endTimestamp).getMillis());
+    } catch (Exception e) {
+      StringWriter errors = new StringWriter();
+      e.printStackTrace(new PrintWriter(errors));
+      LOG.error("Error fetching shard Id column: " + e.getMessage() + ": " + errors.toString());
+      throw e;
+    }
+  }
+
+  /** Assigns the shard ids of the buffered records and outputs them in order. */
+  @FinishBundle
+  public void finishBundle(FinishBundleContext c) throws Exception {
+    if (bufferedRecords.isEmpty()) {
+      return;
+    }
+    try {
+      List<BufferedRecord> uncachedRecords = new ArrayList<>();
+      for (BufferedRecord bufferedRecord : bufferedRecords) {
+        String shardId = shardIdCache.get(getShardIdCacheKey(bufferedRecord.record));
+        if (shardId != null) {
+          bufferedRecord.record.setShard(shardId);
+          shardIdCacheHits.inc();
         } else {
-          shardIdResponse = shardIdFetcher.getShardId(shardIdRequest);
+          uncachedRecords.add(bufferedRecord);
         }
+      }
 
-        String logicalShardId = shardIdResponse.getLogicalShardId();
-        if (logicalShardId == null || logicalShardId.isEmpty() || logicalShardId.contains("/")) {
-          throw new IllegalArgumentException(
-              "Invalid logical shard id value: "
-                  + logicalShardId
-                  + " for spanner table: "
-                  + record.getTableName());
+      fetchDeletedSpannerRecords(uncachedRecords);
+      List<ShardIdRequest> shardIdRequests = new ArrayList<>(uncachedRecords.size());
+      for (BufferedRecord bufferedRecord : uncachedRecords) {
+        TrimmedShardedDataChangeRecord record = bufferedRecord.record;
+        Map<String, Object> spannerRecord =
+            record.getModType() == ModType.DELETE
+                ? bufferedRecord.spannerRecord
+                : getSpannerRecord(record);
+        shardIdRequests.add(new ShardIdRequest(record.getTableName(), spannerRecord));
+      }
+      List<String> shardIds = fetchShardIds(shardIdRequests);
+      for (int i = 0; i < uncachedRecords.size(); i++) {
+        TrimmedShardedDataChangeRecord record = uncachedRecords.get(i).record;
+        record.setShard(shardIds.get(i));
+        if (isCustomSharding() && shardIdCacheSize > 0) {
+          shardIdCache.put(getShardIdCacheKey(record), shardIds.get(i));
         }
-        record.setShard(logicalShardId);
-        c.output(record);
       }
 
+      for (BufferedRecord bufferedRecord : bufferedRecords) {
+        c.output(bufferedRecord.record, bufferedRecord.timestamp, bufferedRecord.window);
+      }
     } catch (Exception e) {
       StringWriter errors = new StringWriter();
       e.printStackTrace(new PrintWriter(errors));
       LOG.error("Error fetching shard Id column: " + e.getMessage() + ": " + errors.toString());
       throw e;
+    } finally {
+      bufferedRecords.clear();
+    }
+  }
+
+  /** Returns the column values of a non-DELETE record, from its keys and new values. */
+  private Map<String, Object> getSpannerRecord(TrimmedShardedDataChangeRecord record)
+      throws Exception {
+    JsonNode keysJson = mapper.readTree(record.getMods().get(0).getKeysJson());
+    JsonNode newValueJson = mapper.readTree(record.getMods().get(0).getNewValuesJson());
+    Map<String, Object> spannerRecord = new HashMap<>();
+    Table table = ddl.table(record.getTableName());
+
+    // Add all fields from keysJson and valuesJson to spannerRecord
+    for (Iterator<String> it = keysJson.fieldNames(); it.hasNext(); ) {
+      String key = it.next();
+      Column column = table.column(key);
+      spannerRecord.put(key, getColumnValueFromJson(column, keysJson));
+    }
+    for (Iterator<String> it = newValueJson.fieldNames(); it.hasNext(); ) {
+      String key = it.next();
+      Column column = table.column(key);
+      spannerRecord.put(key, getColumnValueFromJson(column, newValueJson));
     }
+    return spannerRecord;
+  }
+
+  private boolean isCustomSharding() {
+    return !customJarPath.isEmpty() && !shardingCustomClassName.isEmpty();
+  }
+
+  private static String getShardIdCacheKey(TrimmedShardedDataChangeRecord record) {
+    return record.getTableName() + "/" + record.getMods().get(0).getKeysJson();
+  }
+
+  /** Fetches and validates the logical shard ids of a batch of records. */
+  private List<String> fetchShardIds(List<ShardIdRequest> shardIdRequests) {
+    if (shardIdRequests.isEmpty()) {
+      return List.of();
+    }
+    List<ShardIdResponse> shardIdResponses;
+    if (isCustomSharding()) {
+      Distribution getShardIdResponseTimeMetric =
+          Metrics.distribution(AssignShardIdFn.class, "custom_shard_id_impl_latency_ms");
+      Instant startTimestamp = Instant.now();
+      shardIdResponses = shardIdFetcher.getShardIds(shardIdRequests);
+      Instant endTimestamp = Instant.now();
+      getShardIdResponseTimeMetric.update(new Duration(startTimestamp, endTimestamp).getMillis());
+      shardIdBatchSize.update(shardIdRequests.size());
+    } else {
+      shardIdResponses = shardIdFetcher.getShardIds(shardIdRequests);
+    }
+    if (shardIdResponses == null || shardIdResponses.size() != shardIdRequests.size()) {
+      throw new IllegalStateException(
+          "Expected "
+              + shardIdRequests.size()
+              + " shard id responses but got "
+              + (shardIdResponses == null ? null : shardIdResponses.size()));
+    }
+
+    List<String> logicalShardIds = new ArrayList<>(shardIdResponses.size());
+    for (int i = 0; i < shardIdResponses.size(); i++) {
+      String logicalShardId = shardIdResponses.get(i).getLogicalShardId();
+      if (logicalShardId == null || logicalShardId.isEmpty() || logicalShardId.contains("/")) {
+        throw new IllegalArgumentException(
+            "Invalid logical shard id value: "
+                + logicalShardId
+                + " for spanner table: "
+                + shardIdRequests.get(i).getTableName());
+      }
+      logicalShardIds.add(logicalShardId);
+    }
+    return logicalShardIds;
   }
 
   public IShardIdFetcher getShardIdFetcherImpl(
@@ -309,6 +458,97 @@ public class AssignShardIdFn
     }
   }
 
+  /**
+   * Stale reads the rows of the DELETE records among the given records, with one multi-key read per
+   * table and commit timestamp.
+   */
+  private void fetchDeletedSpannerRecords(List<BufferedRecord> records) throws Exception {
+    Map<String, List<BufferedRecord>> deletesByRead = new LinkedHashMap<>();
+    for (BufferedRecord bufferedRecord : records) {
+      TrimmedShardedDataChangeRecord record = bufferedRecord.record;
+      if (record.getModType() == ModType.DELETE) {
+        deletesByRead
+            .computeIfAbsent(
+                record.getTableName() + "@" + record.getCommitTimestamp(), k -> new ArrayList<>())
+            .add(bufferedRecord);
+      }
+    }
+    for (List<BufferedRecord> deletes : deletesByRead.values()) {
+      for (List<BufferedRecord> readDeletes : Lists.partition(deletes, MAX_KEYS_PER_READ)) {
+        fetchSpannerRecords(readDeletes);
+      }
+    }
+  }
+
+  private void fetchSpannerRecords(List<BufferedRecord> deletes) throws Exception {
+    TrimmedShardedDataChangeRecord firstRecord = deletes.get(0).record;
+    String tableName = firstRecord.getTableName();
+    com.google.cloud.Timestamp commitTimestamp = firstRecord.getCommitTimestamp();
+    com.google.cloud.Timestamp staleReadTs =
+        com.google.cloud.Timestamp.ofTimeSecondsAndNanos(
+            commitTimestamp.getSeconds() - 1, commitTimestamp.getNanos());
+    List<String> columns =
+        ddl.table(tableName).columns().stream().map(Column::name).collect(Collectors.toList());
+
+    Map<com.google.cloud.spanner.Key, List<BufferedRecord>> deletesByKey = new HashMap<>();
+    KeySet.Builder keySet = KeySet.newBuilder();
+    for (BufferedRecord delete : deletes) {
+      JsonNode keysJson = mapper.readTree(delete.record.getMods().get(0).getKeysJson());
+      deletesByKey
+          .computeIfAbsent(
+              generateKey(tableName, keysJson),
+              key -> {
+                keySet.addKey(key);
+                return new ArrayList<>();
+              })
+          .add(delete);
+    }
+
+    // Stale read the spanner rows for all the columns for timestamp 1 second less than the DELETE
+    // events
+    try (ResultSet rows =
+        spannerAccessor
+            .getDatabaseClient()
+            .singleUse(TimestampBound.ofReadTimestamp(staleReadTs))
+            .read(tableName, keySet.build(), columns)) {
+      while (rows.next()) {
+        Map<String, Object> spannerRecord =
+            getRowAsMap(rows.getCurrentRowAsStruct(), columns, tableName);
+        List<BufferedRecord> rowDeletes = deletesByKey.get(getKey(tableName, spannerRecord));
+        if (rowDeletes != null) {
+          for (BufferedRecord delete : rowDeletes) {
+            delete.spannerRecord = spannerRecord;
+          }
+        }
+      }
+    }
+
+    // Rows which were not returned, or whose key could not be rebuilt, are read one at a time.
+    for (BufferedRecord delete : deletes) {
+      if (delete.spannerRecord == null) {
+        delete.spannerRecord =
+            fetchSpannerRecord(
+                tableName,
+                commitTimestamp,
+                delete.record.getServerTransactionId(),
+                mapper.readTree(delete.record.getMods().get(0).getKeysJson()));
+      }
+    }
+  }
+
+  /** Returns the key of a row read from Spanner, or null if it cannot be built. */
+  private com.google.cloud.spanner.Key getKey(String tableName, Map<String, Object> spannerRecord) {
+    com.google.cloud.spanner.Key.Builder key = com.google.cloud.spanner.Key.newBuilder();
+    try {
+      for (IndexColumn keyColumn : ddl.table(tableName).primaryKeys()) {
+        key.appendObject(spannerRecord.get(keyColumn.name()));
+      }
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return key.build();
+  }
+
   private Map<String, Object> fetchSpannerRecord(
       String tableName,
       com.google.cloud.Timestamp commitTimestamp,
@@ -513,4 +753,20 @@ public class AssignShardIdFn
       throw new Exception("Error getting column value from row: " + e.getMessage());
     }
   }
+
+  /** A record buffered until the end of the bundle, with its timestamp and window. */
+  private static class BufferedRecord {
+    private final TrimmedShardedDataChangeRecord record;
+    private final Instant timestamp;
+    private final BoundedWindow window;
+
+    // The row read from Spanner, for DELETE records.
+    private Map<String, Object> spannerRecord;
+
+    BufferedRecord(TrimmedShardedDataChangeRecord record, Instant timestamp, BoundedWindow window) {
+      this.record = record;
+      this.timestamp = timestamp;
+      this.window = window;
+    }
+  }
 }
@@ -18,7 +18,10 @@ package com.google.cloud.teleport.v2.templates.transforms;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,7 +30,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.Timestamp;
 import com.google.cloud.spanner.DatabaseClient;
 import com.google.cloud.spanner.Key;
+import com.google.cloud.spanner.KeySet;
 import com.google.cloud.spanner.ReadOnlyTransaction;
+import com.google.cloud.spanner.ResultSet;
 import com.google.cloud.spanner.Struct;
 import com.google.cloud.spanner.TimestampBound;
 import com.google.cloud.spanner.Value;
@@ -40,8 +45,11 @@ import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerColumnDefin
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerColumnType;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SpannerTable;
 import com.google.cloud.teleport.v2.spanner.migrations.schema.SyntheticPKey;
+import com.google.cloud.teleport.v2.spanner.utils.IShardIdFetcher;
+import com.google.cloud.teleport.v2.spanner.utils.ShardIdResponse;
 import com.google.cloud.teleport.v2.templates.common.TrimmedShardedDataChangeRecord;
 import com.google.cloud.teleport.v2.templates.constants.Constants;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -52,6 +60,7 @@ import org.apache.beam.sdk.io.gcp.spanner.changestreams.model.Mod;
 import org.apache.beam.sdk.io.gcp.spanner.changestreams.model.ModType;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -72,6 +81,12 @@ public class AssignShardIdFnTest {
 
   @Mock private DoFn.ProcessContext processContext;
 
+  @Mock
+  private DoFn<TrimmedShardedDataChangeRecord, TrimmedShardedDataChangeRecord>.FinishBundleContext
+      finishBundleContext;
+
+  @Mock private ResultSet mockResultSet;
+
   Struct mockRow = mock(Struct.class);
 
   @Before
@@ -93,6 +108,12 @@ public class AssignShardIdFnTest {
     // Mock readRow
     when(mockReadOnlyTransaction.readRow(eq("tableName"), any(Key.class), any(Iterable.class)))
         .thenReturn(mockRow);
+
+    // Mock the multi-key read
+    when(mockReadOnlyTransaction.read(eq("tableName"), any(KeySet.class), any(Iterable.class)))
+        .thenReturn(mockResultSet);
+    when(mockResultSet.next()).thenReturn(true, false);
+    when(mockResultSet.getCurrentRowAsStruct()).thenReturn(mockRow);
   }
 
   @Test
@@ -139,7 +160,7 @@ public class AssignShardIdFnTest {
 
   @Test
   public void testProcessElementInsertModForMultiShard() throws Exception {
-    TrimmedShardedDataChangeRecord record = getDeleteTrimmedDataChangeRecord("shard1");
+    TrimmedShardedDataChangeRecord record = getInsertTrimmedDataChangeRecord("shard1");
     when(processContext.element()).thenReturn(record);
     AssignShardIdFn assignShardIdFn =
         new AssignShardIdFn(
@@ -160,7 +181,7 @@ public class AssignShardIdFnTest {
     assignShardIdFn.setMapper(mapper);
     assignShardIdFn.setShardIdFetcher(assignShardIdFn.getShardIdFetcherImpl("", ""));
 
-    assignShardIdFn.processElement(processContext);
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
     verify(processContext).output(eq(record));
   }
 
@@ -187,8 +208,60 @@ public class AssignShardIdFnTest {
     assignShardIdFn.setMapper(mapper);
     assignShardIdFn.setShardIdFetcher(assignShardIdFn.getShardIdFetcherImpl("", ""));
 
-    assignShardIdFn.processElement(processContext);
-    verify(processContext).output(eq(record));
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
+    verify(processContext, never()).output(any());
+
+    assignShardIdFn.finishBundle(finishBundleContext);
+    verify(finishBundleContext).output(eq(record), any(), eq(GlobalWindow.INSTANCE));
+  }
+
+  @Test
+  public void testFinishBundleBatchesDeleteReadsAndKeepsOrder() throws Exception {
+    TrimmedShardedDataChangeRecord firstDelete = getDeleteTrimmedDataChangeRecord("shard1");
+    TrimmedShardedDataChangeRecord insert = getInsertTrimmedDataChangeRecord("shard1");
+    TrimmedShardedDataChangeRecord secondDelete = getDeleteTrimmedDataChangeRecord("shard1");
+    AssignShardIdFn assignShardIdFn =
+        new AssignShardIdFn(
+            SpannerConfig.create(),
+            getSchemaObject(),
+            getTestDdl(),
+            Constants.SHARDING_MODE_MULTI_SHARD,
+            "test",
+            "skip",
+            "",
+            "",
+            "");
+    assignShardIdFn.setSpannerAccessor(spannerAccessor);
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    assignShardIdFn.setMapper(mapper);
+    assignShardIdFn.setShardIdFetcher(assignShardIdFn.getShardIdFetcherImpl("", ""));
+
+    when(processContext.element()).thenReturn(firstDelete, insert, secondDelete);
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
+    verify(processContext, never()).output(any());
+
+    List<TrimmedShardedDataChangeRecord> output = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              output.add(invocation.getArgument(0));
+              return null;
+            })
+        .when(finishBundleContext)
+        .output(any(), any(), any());
+    assignShardIdFn.finishBundle(finishBundleContext);
+
+    // Both DELETE records share their table and commit timestamp, so a single read is made.
+    verify(mockReadOnlyTransaction, times(1))
+        .read(eq("tableName"), any(KeySet.class), any(Iterable.class));
+    verify(mockReadOnlyTransaction, never())
+        .readRow(eq("tableName"), any(Key.class), any(Iterable.class));
+    firstDelete.setShard("shard1");
+    insert.setShard("shard1");
+    secondDelete.setShard("shard1");
+    assertEquals(List.of(firstDelete, insert, secondDelete), output);
   }
 
   @Test
@@ -209,10 +282,53 @@ public class AssignShardIdFnTest {
 
     record.setShard("test");
 
-    assignShardIdFn.processElement(processContext);
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
     verify(processContext).output(eq(record));
   }
 
+  @Test
+  public void testCustomShardIdsAreFetchedInBatchesAndCached() throws Exception {
+    TrimmedShardedDataChangeRecord insert = getInsertTrimmedDataChangeRecord("shard1");
+    TrimmedShardedDataChangeRecord delete = getDeleteTrimmedDataChangeRecord("shard1");
+    AssignShardIdFn assignShardIdFn =
+        new AssignShardIdFn(
+            SpannerConfig.create(),
+            getSchemaObject(),
+            getTestDdl(),
+            Constants.SHARDING_MODE_MULTI_SHARD,
+            "test",
+            "skip",
+            "custom.jar",
+            "com.custom.CustomShardIdFetcher",
+            "",
+            10);
+    assignShardIdFn.setSpannerAccessor(spannerAccessor);
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    assignShardIdFn.setMapper(mapper);
+    IShardIdFetcher shardIdFetcher = mock(IShardIdFetcher.class);
+    ShardIdResponse shardIdResponse = new ShardIdResponse();
+    shardIdResponse.setLogicalShardId("custom1");
+    when(shardIdFetcher.getShardIds(any())).thenReturn(List.of(shardIdResponse));
+    assignShardIdFn.setShardIdFetcher(shardIdFetcher);
+
+    when(processContext.element()).thenReturn(insert, delete);
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
+    verify(processContext, never()).output(any());
+    assignShardIdFn.finishBundle(finishBundleContext);
+    insert.setShard("custom1");
+    verify(finishBundleContext).output(eq(insert), any(), eq(GlobalWindow.INSTANCE));
+
+    // The DELETE record has the same key, so neither its row nor its shard id are fetched.
+    assignShardIdFn.processElement(processContext, GlobalWindow.INSTANCE);
+    assignShardIdFn.finishBundle(finishBundleContext);
+    delete.setShard("custom1");
+    verify(finishBundleContext).output(eq(delete), any(), eq(GlobalWindow.INSTANCE));
+    verify(shardIdFetcher, times(1)).getShardIds(any());
+    verify(mockReadOnlyTransaction, never())
+        .read(eq("tableName"), any(KeySet.class), any(Iterable.class));
+  }
+
   @Test(expected = RuntimeException.class)
   public void testGetShardIdFetcherImplWithIncorrectCustomJarPath() throws Exception {
     TrimmedShardedDataChangeRecord record = getInsertTrimmedDataChangeRecord("shard1");
@@ -15,10 +15,28 @@
  */
 package com.google.cloud.teleport.v2.spanner.utils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /** The interface to get the shard identifier. */
 public interface IShardIdFetcher {
 
   void init(String parameters);
 
   ShardIdResponse getShardId(ShardIdRequest shardIdRequest);
+
+  /**
+   * Gets the shard identifiers of a batch of records, returned in the order of the requests.
+   *
+   * <p>The default implementation calls {@link #getShardId(ShardIdRequest)} for each request.
+   * Implementations which look the shard up remotely can override it to look up the whole batch at
+   * once.
+   */
+  default List<ShardIdResponse> getShardIds(List<ShardIdRequest> shardIdRequests) {
+    List<ShardIdResponse> shardIdResponses = new ArrayList<>(shardIdRequests.size());
+    for (ShardIdRequest shardIdRequest : shardIdRequests) {
+      shardIdResponses.add(getShardId(shardIdRequest));
+    }
+    return shardIdResponses;
+  }
 }